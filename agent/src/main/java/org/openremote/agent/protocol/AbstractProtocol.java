@@ -21,6 +21,7 @@ package org.openremote.agent.protocol;
 
 import org.apache.camel.ProducerTemplate;
 import org.apache.camel.impl.DefaultCamelContext;
+import org.openremote.container.concurrent.ContainerExecutor;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.model.Container;
@@ -37,8 +38,13 @@ import org.openremote.model.protocol.ProtocolUtil;
 import org.openremote.model.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static org.openremote.model.protocol.ProtocolUtil.hasDynamicWriteValue;
@@ -58,6 +64,11 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
     protected ProtocolDatapointService datapointService;
     protected T agent;
     protected final Object processorLock = new Object();
+    // Tail of the pending writes for each write key when concurrent writes are enabled
+    protected final Map<Object, CompletableFuture<Void>> writeChains = new ConcurrentHashMap<>();
+    protected Semaphore writePermits;
+    // Runs the blocking writes when concurrent writes are enabled; sized to the max concurrent writes
+    protected ExecutorService writeExecutor;
 
     public AbstractProtocol(T agent) {
         this.agent = agent;
@@ -76,6 +87,22 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
         datapointService = container.getService(ProtocolDatapointService.class);
         messageBrokerContext = container.getService(MessageBrokerService.class).getContext();
         this.producerTemplate = container.getService(MessageBrokerService.class).getProducerTemplate();
+        int maxConcurrentWrites = getMaxConcurrentWrites();
+        if (maxConcurrentWrites > 0) {
+            writePermits = new Semaphore(maxConcurrentWrites);
+            // Writes in flight are bounded by the permits so the queue never needs to hold more than that
+            ContainerExecutor executor = new ContainerExecutor(
+                "Protocol writes " + getProtocolName(),
+                maxConcurrentWrites,
+                maxConcurrentWrites,
+                60,
+                maxConcurrentWrites,
+                new ThreadPoolExecutor.AbortPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            writeExecutor = executor;
+        } else {
+            writePermits = null;
+        }
         doStart(container);
     }
 
@@ -90,6 +117,11 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
 
         } catch (Exception ex) {
             throw new RuntimeException(ex);
+        } finally {
+            if (writeExecutor != null) {
+                writeExecutor.shutdownNow();
+                writeExecutor = null;
+            }
         }
     }
 
@@ -138,8 +170,19 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
         return linkedAttributes;
     }
 
+    /**
+     * Processes the write synchronously whilst holding the {@link #processorLock} unless the protocol has enabled
+     * concurrent writes (see {@link #getMaxConcurrentWrites}) in which case it is queued behind any pending writes with
+     * the same {@link #getWriteKey} and written using {@link #doLinkedAttributeWriteAsync}; writes with different keys
+     * are processed in parallel. The caller blocks whilst the max number of writes are in flight.
+     */
     @Override
     public void processLinkedAttributeWrite(AttributeEvent event) {
+        if (writePermits != null) {
+            processLinkedAttributeWriteConcurrently(event);
+            return;
+        }
+
         synchronized (processorLock) {
             LOG.log(System.Logger.Level.TRACE, () -> "Processing linked attribute write on protocol '" + this + "': " + event);
             AgentLink<?> agentLink = agent.getAgentLink(event);
@@ -164,6 +207,61 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
         }
     }
 
+    protected void processLinkedAttributeWriteConcurrently(AttributeEvent event) {
+        LOG.log(System.Logger.Level.TRACE, () -> "Processing linked attribute write concurrently on protocol '" + this + "': " + event);
+        U agentLink = agent.getAgentLink(event);
+
+        Pair<Boolean, Object> ignoreAndConverted = ProtocolUtil.doOutboundValueProcessing(
+            event.getId(),
+            event,
+            agentLink,
+            event.getValue().orElse(null),
+            dynamicAttributes.contains(event.getRef()));
+
+        if (ignoreAndConverted.key) {
+            LOG.log(System.Logger.Level.DEBUG, "Value conversion returned ignore so attribute will not write to protocol: " + event.getRef());
+            return;
+        }
+
+        Object key = getWriteKey(agentLink, event);
+
+        try {
+            writePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.log(System.Logger.Level.WARNING, "Interrupted whilst waiting to write to protocol: " + event.getRef());
+            return;
+        }
+
+        CompletableFuture<Void> write = new CompletableFuture<>();
+
+        CompletableFuture<Void> previous = writeChains.put(key, write);
+        CompletableFuture<Void> ready = previous != null ? previous : CompletableFuture.completedFuture(null);
+
+        ready.whenComplete((r, ex) -> {
+            CompletionStage<Void> writeStage;
+            try {
+                writeStage = doLinkedAttributeWriteAsync(agentLink, event, ignoreAndConverted.value);
+            } catch (Exception e) {
+                writeStage = CompletableFuture.failedFuture(e);
+            }
+
+            writeStage.whenComplete((result, writeEx) -> {
+                try {
+                    if (writeEx != null) {
+                        LOG.log(System.Logger.Level.WARNING, "Linked attribute write failed on protocol '" + this + "': " + event.getRef(), writeEx);
+                    } else if (agent.isUpdateOnWrite().orElse(false) || agentLink.getUpdateOnWrite().orElse(false)) {
+                        updateLinkedAttribute(event.getRef(), ignoreAndConverted.value);
+                    }
+                } finally {
+                    writeChains.remove(key, write);
+                    writePermits.release();
+                    write.complete(null);
+                }
+            });
+        });
+    }
+
     /**
      * Send an arbitrary {@link AttributeState} through the processing chain using the current system time as the
      * timestamp. Use {@link #updateLinkedAttribute} to publish new sensor values, which performs additional
@@ -252,4 +350,31 @@ public abstract class AbstractProtocol<T extends Agent<T, ?, U>, U extends Agent
      * processedValue but may also choose to use the original value for some purpose if required.
      */
     abstract protected void doLinkedAttributeWrite(U agentLink, AttributeEvent event, Object processedValue);
+
+    /**
+     * The max number of linked attribute writes that can be in flight at once; returning a value greater than 0 enables
+     * concurrent writes (see {@link #processLinkedAttributeWrite}) for high latency protocols. Called once on start.
+     */
+    protected int getMaxConcurrentWrites() {
+        return 0;
+    }
+
+    /**
+     * The key that concurrent writes are ordered by; writes with the same key are written one at a time in the order
+     * they were received. Defaults to the {@link AttributeRef} but protocols can use something coarser such as the
+     * device address.
+     */
+    protected Object getWriteKey(U agentLink, AttributeEvent event) {
+        return event.getRef();
+    }
+
+    /**
+     * Asynchronous variant of {@link #doLinkedAttributeWrite} used when concurrent writes are enabled; the next write
+     * with the same {@link #getWriteKey} is not started until the returned stage completes. The default implementation
+     * calls {@link #doLinkedAttributeWrite} on a thread pool owned by this protocol so blocking writes don't occupy the
+     * shared container executor; protocols whose client has a non-blocking API should override this and use it.
+     */
+    protected CompletionStage<Void> doLinkedAttributeWriteAsync(U agentLink, AttributeEvent event, Object processedValue) {
+        return CompletableFuture.runAsync(() -> doLinkedAttributeWrite(agentLink, event, processedValue), writeExecutor);
+    }
 }
@@ -23,6 +23,7 @@ import jakarta.ws.rs.HttpMethod;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.client.Invocation;
 import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.MultivaluedHashMap;
 import jakarta.ws.rs.core.MultivaluedMap;
@@ -55,7 +56,9 @@ import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -78,6 +81,12 @@ import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
  * <p>
  * <b>NOTE: if an exception is thrown during the request that means no response is returned then this is treated as if
  * a 500 response has been received</b>
+ * <h1>Polling</h1>
+ * Linked attributes that poll the same request (method, path, headers, query parameters, body and polling interval)
+ * share a single {@link PollingRequest} whose response is passed to each of them. The first poll is delayed by a random
+ * amount of up to a tenth of the polling interval so agents do not all poll at the same moment. GET requests include
+ * If-None-Match/If-Modified-Since headers when the previous response had an ETag/Last-Modified header, a 304 response
+ * leaves the linked attributes unchanged.
  * <h1>Dynamic value injection</h1>
  * This allows the {@link HTTPAgentLink#getPath()}} and/or {@link AgentLink#getWriteValue()} to contain the linked
  * {@link Attribute} value when sending requests. To dynamically inject the attribute value use {@value
@@ -220,7 +229,14 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
 
         public Response invoke(String value) {
+            return invoke(value, null);
+        }
+
+        public Response invoke(String value, MultivaluedMap<String, Object> additionalHeaders) {
             Invocation.Builder requestBuilder = getRequestBuilder(value);
+            if (additionalHeaders != null) {
+                additionalHeaders.forEach((name, values) -> values.forEach(headerValue -> requestBuilder.header(name, headerValue)));
+            }
             Invocation invocation = buildInvocation(requestBuilder, value);
             return invocation.invoke();
         }
@@ -231,6 +247,64 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
     }
 
+    /**
+     * A scheduled polling request shared by all linked attributes with the same {@link #key}.
+     */
+    protected static class PollingRequest {
+        protected final List<Object> key;
+        protected final HttpClientRequest clientRequest;
+        protected final String body;
+        protected final HTTPAgentLink agentLink;
+        protected final Set<AttributeRef> attributeRefs = ConcurrentHashMap.newKeySet();
+        protected ScheduledFuture<?> future;
+        protected volatile String eTag;
+        protected volatile String lastModified;
+
+        protected PollingRequest(List<Object> key, HttpClientRequest clientRequest, String body, HTTPAgentLink agentLink) {
+            this.key = key;
+            this.clientRequest = clientRequest;
+            this.body = body;
+            this.agentLink = agentLink;
+        }
+
+        /**
+         * Conditional request headers based on the last response; only used for GET requests without paging.
+         */
+        protected MultivaluedMap<String, Object> getConditionalHeaders() {
+            if (!HttpMethod.GET.equals(clientRequest.method) || clientRequest.pagingEnabled || (eTag == null && lastModified == null)) {
+                return null;
+            }
+            MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+            if (eTag != null) {
+                headers.add(HttpHeaders.IF_NONE_MATCH, eTag);
+            }
+            if (lastModified != null) {
+                headers.add(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            return headers;
+        }
+
+        protected void onResponse(Response response) {
+            if (response != null && response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+                eTag = response.getHeaderString(HttpHeaders.ETAG);
+                lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            }
+        }
+
+        /**
+         * Forget the validators of the last response so the next poll is unconditional and returns the full response.
+         */
+        protected void clearConditionalHeaders() {
+            eTag = null;
+            lastModified = null;
+        }
+
+        @Override
+        public String toString() {
+            return clientRequest.toString();
+        }
+    }
+
     protected static class PagingResponse extends BuiltResponse {
 
         private PagingResponse(int status, Headers<Object> metadata, Object entity, Annotation[] entityAnnotations) {
@@ -274,12 +348,16 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     public static final String PROTOCOL_DISPLAY_NAME = "HTTP Client";
     public static final String DEFAULT_HTTP_METHOD = HttpMethod.GET;
     public static final String DEFAULT_CONTENT_TYPE = MediaType.TEXT_PLAIN;
+    // Max number of attribute write requests in flight at once (writes to the same attribute are still sent in order)
+    public static final int MAX_CONCURRENT_WRITES = 10;
     protected static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, HTTPProtocol.class);
     public static int MIN_POLLING_MILLIS = 5000;
     protected static final AtomicReference<ResteasyClient> client = new AtomicReference<>();
 
-    protected final Map<AttributeRef, HttpClientRequest> requestMap = new HashMap<>();
-    protected final Map<AttributeRef, ScheduledFuture<?>> pollingMap = new HashMap<>();
+    // Read by concurrent attribute writes whilst attributes are linked and unlinked
+    protected final Map<AttributeRef, HttpClientRequest> requestMap = new ConcurrentHashMap<>();
+    protected final Map<List<Object>, PollingRequest> pollingMap = new HashMap<>();
+    protected final Map<AttributeRef, PollingRequest> attributePollingMap = new HashMap<>();
     protected final Map<AttributeRef, Set<AttributeRef>> pollingLinkedAttributeMap = new HashMap<>();
     protected ResteasyWebTarget webTarget;
 
@@ -291,8 +369,11 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
     @Override
     protected void doStop(Container container) {
-        pollingMap.forEach((attributeRef, scheduledFuture) -> scheduledFuture.cancel(true));
-        pollingMap.clear();
+        synchronized (pollingMap) {
+            pollingMap.values().forEach(pollingRequest -> pollingRequest.future.cancel(true));
+            pollingMap.clear();
+            attributePollingMap.clear();
+        }
         requestMap.clear();
     }
 
@@ -400,13 +481,8 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
         requestMap.put(attributeRef, clientRequest);
 
-        Optional.ofNullable(pollingMillis).ifPresent(seconds ->
-            pollingMap.put(attributeRef, schedulePollingRequest(
-                attributeRef,
-                agentLink,
-                clientRequest,
-                body,
-                seconds)));
+        Optional.ofNullable(pollingMillis).ifPresent(millis ->
+            addPollingAttribute(attributeRef, agentLink, clientRequest, body, millis));
     }
 
     @Override
@@ -439,6 +515,11 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     }
 
 
+    @Override
+    protected int getMaxConcurrentWrites() {
+        return MAX_CONCURRENT_WRITES;
+    }
+
     @Override
     public String getProtocolName() {
         return PROTOCOL_DISPLAY_NAME;
@@ -468,34 +549,71 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
             contentType);
     }
 
-    protected ScheduledFuture<?> schedulePollingRequest(AttributeRef attributeRef,
-                                                        HTTPAgentLink agentLink,
-                                                        HttpClientRequest clientRequest,
-                                                        String body,
+    /**
+     * Add the attribute to the existing {@link PollingRequest} for the same request and polling interval or schedule a
+     * new one.
+     */
+    protected void addPollingAttribute(AttributeRef attributeRef,
+                                       HTTPAgentLink agentLink,
+                                       HttpClientRequest clientRequest,
+                                       String body,
+                                       int pollingMillis) {
+
+        boolean binaryMode = agent.getMessageConvertBinary().orElse(agentLink.isMessageConvertBinary());
+        boolean hexMode = agent.getMessageConvertHex().orElse(agentLink.isMessageConvertHex());
+        List<Object> key = Arrays.asList(
+            clientRequest.method,
+            clientRequest.path,
+            clientRequest.headers,
+            clientRequest.queryParameters,
+            clientRequest.contentType,
+            clientRequest.pagingEnabled,
+            body,
+            pollingMillis,
+            binaryMode,
+            hexMode);
+
+        synchronized (pollingMap) {
+            PollingRequest pollingRequest = pollingMap.computeIfAbsent(key, k -> {
+                PollingRequest request = new PollingRequest(k, clientRequest, body, agentLink);
+                request.future = schedulePollingRequest(request, pollingMillis);
+                return request;
+            });
+            pollingRequest.attributeRefs.add(attributeRef);
+            // The joining attribute has not seen the last response so it would never get a value whilst the server
+            // keeps answering 304; the ref is added first so a response that stores new validators includes it
+            pollingRequest.clearConditionalHeaders();
+            attributePollingMap.put(attributeRef, pollingRequest);
+        }
+    }
+
+    protected ScheduledFuture<?> schedulePollingRequest(PollingRequest pollingRequest,
                                                         int pollingMillis) {
 
-        LOG.fine("Scheduling polling request '" + clientRequest + "' to execute every " + pollingMillis + " ms for attribute: " + attributeRef);
+        long initialDelay = ThreadLocalRandom.current().nextLong(pollingMillis / 10 + 1);
+        LOG.fine("Scheduling polling request '" + pollingRequest + "' to execute every " + pollingMillis + " ms starting in " + initialDelay + " ms");
 
         return executorService.scheduleWithFixedDelay(() ->
-            executePollingRequest(clientRequest, body, response -> {
+            executePollingRequest(pollingRequest.clientRequest, pollingRequest.body, pollingRequest.getConditionalHeaders(), response -> {
                 try {
-                    onPollingResponse(
-                        clientRequest,
-                        response,
-                        attributeRef,
-                        agentLink);
+                    pollingRequest.onResponse(response);
+                    onPollingResponse(pollingRequest, response);
                 } catch (Exception e) {
-                    LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst processing polling response [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + clientRequest.requestTarget.getUriBuilder().build().toString()));
+                    LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst processing polling response [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + pollingRequest.clientRequest.requestTarget.getUriBuilder().build().toString()));
                 }
-            }), 0, pollingMillis, TimeUnit.MILLISECONDS);
+            }), initialDelay, pollingMillis, TimeUnit.MILLISECONDS);
     }
 
     protected void executePollingRequest(HttpClientRequest clientRequest, String body, Consumer<Response> responseConsumer) {
+        executePollingRequest(clientRequest, body, null, responseConsumer);
+    }
+
+    protected void executePollingRequest(HttpClientRequest clientRequest, String body, MultivaluedMap<String, Object> additionalHeaders, Consumer<Response> responseConsumer) {
         Response originalResponse = null, lastResponse = null;
         List<String> entities = new ArrayList<>();
 
         try {
-            originalResponse = clientRequest.invoke(body);
+            originalResponse = clientRequest.invoke(body, additionalHeaders);
             if (clientRequest.pagingEnabled) {
                 lastResponse = originalResponse;
                 entities.add(lastResponse.readEntity(String.class));
@@ -545,18 +663,22 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
     }
 
-    protected void onPollingResponse(HttpClientRequest request,
-                                     Response response,
-                                     AttributeRef attributeRef,
-                                     HTTPAgentLink agentLink) {
+    protected void onPollingResponse(PollingRequest pollingRequest, Response response) {
 
         int responseCode = response != null ? response.getStatus() : 500;
+
+        if (responseCode == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            LOG.finest(prefixLogMessage("Polling response not modified so linked attributes are unchanged: " + pollingRequest));
+            return;
+        }
+
         Object value = null;
 
         if (response != null && response.hasEntity() && response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
             try {
-                boolean binaryMode = agent.getMessageConvertBinary().orElse(agentLink.isMessageConvertBinary());
-                boolean hexMode = agent.getMessageConvertHex().orElse(agentLink.isMessageConvertHex());
+                // Read the response once for all attributes using this polling request
+                boolean binaryMode = agent.getMessageConvertBinary().orElse(pollingRequest.agentLink.isMessageConvertBinary());
+                boolean hexMode = agent.getMessageConvertHex().orElse(pollingRequest.agentLink.isMessageConvertHex());
 
                 if (hexMode || binaryMode) {
                     byte[] bytes = response.readEntity(byte[].class);
@@ -569,11 +691,11 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
                 response.close();
             }
         } else {
-            LOG.fine(prefixLogMessage("Request returned an un-successful response code (" + responseCode + "):" + request.requestTarget.getUriBuilder().build().toString()));
+            LOG.fine(prefixLogMessage("Request returned an un-successful response code (" + responseCode + "):" + pollingRequest.clientRequest.requestTarget.getUriBuilder().build().toString()));
             return;
         }
 
-        if (attributeRef != null) {
+        for (AttributeRef attributeRef : pollingRequest.attributeRefs) {
             updateLinkedAttribute(attributeRef, value);
 
             // Look for any attributes that also want to use this polling response
@@ -596,9 +718,17 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     }
 
     protected void cancelPolling(AttributeRef attributeRef) {
-        ScheduledFuture<?> pollTask = pollingMap.remove(attributeRef);
-        if (pollTask != null) {
-            pollTask.cancel(false);
+        synchronized (pollingMap) {
+            PollingRequest pollingRequest = attributePollingMap.remove(attributeRef);
+            if (pollingRequest != null) {
+                pollingRequest.attributeRefs.remove(attributeRef);
+
+                // Only cancel the polling request once no attributes are using it
+                if (pollingRequest.attributeRefs.isEmpty()) {
+                    pollingMap.remove(pollingRequest.key);
+                    pollingRequest.future.cancel(false);
+                }
+            }
         }
     }
 
@@ -359,7 +359,8 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
             }
         } finally {
             if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+                // Shared group is only shut down once no longer used; any other group is shut down
+                SharedEventLoopGroup.release(workerGroup);
                 workerGroup = null;
             }
         }
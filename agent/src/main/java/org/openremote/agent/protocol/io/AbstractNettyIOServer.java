@@ -23,7 +23,6 @@ import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import org.openremote.container.Container;
 import org.openremote.model.asset.agent.ConnectionStatus;
@@ -82,8 +81,7 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
         onConnectionStatusChanged(ConnectionStatus.CONNECTING);
 
         if (workerGroup == null) {
-            // TODO: In Netty 5 you can pass in an executor service; can only pass in thread factory for now
-            workerGroup = new NioEventLoopGroup();
+            workerGroup = SharedEventLoopGroup.acquire();
         }
 
         try {
@@ -173,7 +171,7 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
 
         } finally {
             if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+                SharedEventLoopGroup.release(workerGroup);
                 workerGroup = null;
             }
             onConnectionStatusChanged(ConnectionStatus.DISCONNECTED);
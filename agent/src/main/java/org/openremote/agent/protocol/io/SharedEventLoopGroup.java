@@ -0,0 +1,154 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.io;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * A single Netty {@link EventLoopGroup} shared by all {@link AbstractNettyIOClient}s and {@link AbstractNettyIOServer}s
+ * so the number of IO threads is bounded by the number of loops rather than the number of agents; each client/server
+ * still has its own channel(s) so connections remain isolated. The native epoll transport is used when it is available
+ * (Linux) otherwise NIO; the channel class for the transport must be obtained from here (see
+ * {@link #getSocketChannelClass} etc.).
+ * <p>
+ * The group is created on first {@link #acquire} and shut down when the last user {@link #release}s it. The number of
+ * loops defaults to the number of CPU cores and can be set using {@link #configure} (done by the manager's agent
+ * service from the {@link #OR_IO_EVENT_LOOP_THREADS} config).
+ */
+public final class SharedEventLoopGroup {
+
+    public static final String OR_IO_EVENT_LOOP_THREADS = "OR_IO_EVENT_LOOP_THREADS";
+    public static final int OR_IO_EVENT_LOOP_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, SharedEventLoopGroup.class);
+    private static final boolean USE_EPOLL = Epoll.isAvailable();
+    private static int threads = OR_IO_EVENT_LOOP_THREADS_DEFAULT;
+    private static MeterRegistry meterRegistry;
+    private static EventLoopGroup eventLoopGroup;
+    private static final List<Meter> meters = new ArrayList<>();
+    private static int references;
+
+    private SharedEventLoopGroup() {
+    }
+
+    /**
+     * Set the number of loops and the meter registry to use the next time the group is created.
+     */
+    public static synchronized void configure(int threads, MeterRegistry meterRegistry) {
+        SharedEventLoopGroup.threads = Math.max(1, threads);
+        SharedEventLoopGroup.meterRegistry = meterRegistry;
+    }
+
+    public static synchronized EventLoopGroup acquire() {
+        if (eventLoopGroup == null) {
+            DefaultThreadFactory threadFactory = new DefaultThreadFactory("IO event loop", true);
+            eventLoopGroup = USE_EPOLL ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+            LOG.info("Created shared IO event loop group: transport=" + (USE_EPOLL ? "epoll" : "nio") + ", threads=" + threads);
+            registerMetrics(eventLoopGroup);
+        }
+        references++;
+        return eventLoopGroup;
+    }
+
+    /**
+     * Release the group previously obtained from {@link #acquire}; any other group is shut down so callers can release
+     * whichever group they were using.
+     */
+    public static synchronized void release(EventLoopGroup group) {
+        if (group == null) {
+            return;
+        }
+
+        if (group != eventLoopGroup) {
+            group.shutdownGracefully();
+            return;
+        }
+
+        references--;
+
+        if (references <= 0) {
+            LOG.info("Shutting down shared IO event loop group as it is no longer used");
+            removeMetrics();
+            eventLoopGroup.shutdownGracefully();
+            eventLoopGroup = null;
+            references = 0;
+        }
+    }
+
+    public static Class<? extends SocketChannel> getSocketChannelClass() {
+        return USE_EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    public static Class<? extends ServerSocketChannel> getServerSocketChannelClass() {
+        return USE_EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return USE_EPOLL ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+
+    private static void registerMetrics(EventLoopGroup group) {
+        if (meterRegistry == null) {
+            return;
+        }
+
+        int index = 0;
+        for (EventExecutor executor : group) {
+            if (executor instanceof SingleThreadEventExecutor singleThreadEventExecutor) {
+                meters.add(Gauge.builder("or.io.event.loop.pending.tasks", singleThreadEventExecutor, SingleThreadEventExecutor::pendingTasks)
+                    .description("Pending tasks of each shared IO event loop")
+                    .tag("loop", Integer.toString(index))
+                    .register(meterRegistry));
+            }
+            index++;
+        }
+    }
+
+    private static void removeMetrics() {
+        if (meterRegistry != null) {
+            meters.forEach(meterRegistry::remove);
+        }
+        meters.clear();
+    }
+}
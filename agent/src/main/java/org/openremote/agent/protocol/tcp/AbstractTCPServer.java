@@ -23,8 +23,8 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.openremote.agent.protocol.io.AbstractNettyIOServer;
+import org.openremote.agent.protocol.io.SharedEventLoopGroup;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -50,7 +50,7 @@ public abstract class AbstractTCPServer<T> extends AbstractNettyIOServer<T, Sock
     @Override
     protected ServerBootstrap createAndConfigureBootstrap() {
         ServerBootstrap bootstrap = new ServerBootstrap();
-        bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.channel(SharedEventLoopGroup.getServerSocketChannelClass());
         bootstrap.group(workerGroup);
         bootstrap.localAddress(localAddress);
         bootstrap.option(ChannelOption.SO_BACKLOG, clientLimit);
@@ -20,10 +20,9 @@
 package org.openremote.agent.protocol.tcp;
 
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import org.openremote.agent.protocol.io.AbstractNettyIOClient;
 import org.openremote.agent.protocol.io.IOClient;
+import org.openremote.agent.protocol.io.SharedEventLoopGroup;
 import org.openremote.model.util.TextUtil;
 
 import java.net.InetSocketAddress;
@@ -50,7 +49,7 @@ public class TCPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
 
     @Override
     protected Class<? extends Channel> getChannelClass() {
-        return NioSocketChannel.class;
+        return SharedEventLoopGroup.getSocketChannelClass();
     }
 
     @Override
@@ -60,7 +59,7 @@ public class TCPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
 
     @Override
     protected EventLoopGroup getWorkerGroup() {
-        return new NioEventLoopGroup(1);
+        return SharedEventLoopGroup.acquire();
     }
 
     @Override
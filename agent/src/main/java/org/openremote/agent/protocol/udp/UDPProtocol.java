@@ -28,6 +28,7 @@ import org.openremote.model.protocol.ProtocolUtil;
 import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.Pair;
 import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.JsonPathFilter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -86,8 +87,10 @@ public class UDPProtocol extends AbstractUDPProtocol<UDPProtocol, UDPAgent, Defa
 
     @Override
     protected void onMessageReceived(String message) {
-        protocolMessageConsumers.forEach(attributeRefConsumerPair ->
-            attributeRefConsumerPair.value.accept(message));
+        // Parse the message at most once for all linked attribute JSON path filters
+        JsonPathFilter.withSharedDocuments(() ->
+            protocolMessageConsumers.forEach(attributeRefConsumerPair ->
+                attributeRefConsumerPair.value.accept(message)));
     }
 
     @Override
@@ -42,6 +42,7 @@ import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.Pair;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.JsonPathFilter;
 import org.openremote.model.value.ValueType;
 
 import java.net.URI;
@@ -107,11 +108,13 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
 
     @Override
     protected void onMessageReceived(String message) {
-        protocolMessageConsumers.forEach(c -> {
-            if (c.value != null) {
-                c.value.accept(message);
-            }
-        });
+        // Parse the message at most once for all linked attribute JSON path filters
+        JsonPathFilter.withSharedDocuments(() ->
+            protocolMessageConsumers.forEach(c -> {
+                if (c.value != null) {
+                    c.value.accept(message);
+                }
+            }));
     }
 
     @Override
@@ -21,8 +21,6 @@ package org.openremote.agent.protocol.websocket;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import io.netty.handler.codec.http.*;
 import io.netty.handler.codec.http.websocketx.*;
@@ -34,6 +32,7 @@ import io.netty.util.CharsetUtil;
 import org.jboss.resteasy.client.jaxrs.ResteasyClient;
 import org.openremote.agent.protocol.io.AbstractNettyIOClient;
 import org.openremote.agent.protocol.io.IOClient;
+import org.openremote.agent.protocol.io.SharedEventLoopGroup;
 import org.openremote.container.web.OAuthFilter;
 import org.openremote.model.auth.OAuthGrant;
 import org.openremote.model.syslog.SyslogCategory;
@@ -171,7 +170,7 @@ public class WebsocketIOClient<T> extends AbstractNettyIOClient<T, InetSocketAdd
 
     @Override
     protected Class<? extends Channel> getChannelClass() {
-        return NioSocketChannel.class;
+        return SharedEventLoopGroup.getSocketChannelClass();
     }
 
     @Override
@@ -181,7 +180,7 @@ public class WebsocketIOClient<T> extends AbstractNettyIOClient<T, InetSocketAdd
 
     @Override
     protected EventLoopGroup getWorkerGroup() {
-        return new NioEventLoopGroup(1);
+        return SharedEventLoopGroup.acquire();
     }
 
     @Override
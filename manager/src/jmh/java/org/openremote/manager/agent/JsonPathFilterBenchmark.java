@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.agent;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.model.asset.agent.DefaultAgentLink;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.query.filter.StringPredicate;
+import org.openremote.model.value.JsonPathFilter;
+import org.openremote.model.value.ValueFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.openremote.model.value.ValueType.NUMBER;
+
+/**
+ * Measures the fan-out of one inbound JSON message to many linked attributes as done by the websocket, TCP and UDP
+ * protocols; each link has a message match filter and a value filter that select its own sensor from the message.
+ * Compares sharing the parsed message within {@link JsonPathFilter#withSharedDocuments} with parsing it for every
+ * filter, and with compiling the path and parsing the message on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonPathFilterBenchmark {
+
+    @Param({"100", "1000"})
+    public int linkCount;
+
+    protected String message;
+    protected List<Consumer<String>> consumers;
+    protected Object[] values;
+
+    @Setup
+    public void setup() {
+        StringBuilder messageBuilder = new StringBuilder("{\"type\":\"reading\",\"sensors\":[");
+        for (int i = 0; i < linkCount; i++) {
+            messageBuilder.append(i > 0 ? "," : "").append("{\"id\":\"sensor").append(i).append("\",\"value\":").append(i).append(".5}");
+        }
+        message = messageBuilder.append("]}").toString();
+
+        consumers = new ArrayList<>(linkCount);
+        values = new Object[linkCount];
+
+        for (int i = 0; i < linkCount; i++) {
+            int index = i;
+            Attribute<Double> attribute = new Attribute<>("sensor" + i, NUMBER);
+            DefaultAgentLink agentLink = new DefaultAgentLink("agent")
+                .setMessageMatchFilters(new ValueFilter[] {new JsonPathFilter("$.type", false, false)})
+                .setMessageMatchPredicate(new StringPredicate("reading"))
+                .setValueFilters(new ValueFilter[] {new JsonPathFilter("$.sensors[" + i + "].value", false, false)});
+
+            consumers.add(ProtocolUtil.createGenericAttributeMessageConsumer(
+                "asset",
+                attribute,
+                agentLink,
+                System::currentTimeMillis,
+                (ref, value) -> values[index] = ProtocolUtil.doInboundValueProcessing("asset", attribute, agentLink, value).value));
+        }
+    }
+
+    @Benchmark
+    public Object[] fanOutSharedDocuments() {
+        JsonPathFilter.withSharedDocuments(() -> consumers.forEach(consumer -> consumer.accept(message)));
+        return values;
+    }
+
+    @Benchmark
+    public Object[] fanOutParsePerFilter() {
+        consumers.forEach(consumer -> consumer.accept(message));
+        return values;
+    }
+
+    @Benchmark
+    public Object[] compileAndParsePerFilter() {
+        for (int i = 0; i < linkCount; i++) {
+            if (new JsonPathFilter("$.type", false, false).filter(message) != null) {
+                values[i] = new JsonPathFilter("$.sensors[" + i + "].value", false, false).filter(message);
+            }
+        }
+        return values;
+    }
+}
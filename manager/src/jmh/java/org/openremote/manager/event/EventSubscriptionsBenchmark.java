@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.support.DefaultExchange;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openremote.container.timer.TimerService;
+import org.openremote.model.Constants;
+import org.openremote.model.asset.AssetFilter;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.shared.CancelEventSubscription;
+import org.openremote.model.event.shared.EventSubscription;
+import org.openremote.model.event.shared.SharedEvent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures {@link EventSubscriptions#splitForSubscribers} with many sessions subscribed to different assets and the
+ * cost of concurrently creating and cancelling subscriptions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSubscriptionsBenchmark {
+
+    @Param({"100", "10000"})
+    public int sessionCount;
+
+    protected EventSubscriptions eventSubscriptions;
+    protected CamelContext camelContext;
+    protected Exchange exchange;
+    protected final AtomicLong subscriptionCounter = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        eventSubscriptions = new EventSubscriptions(new TimerService());
+        camelContext = new DefaultCamelContext();
+
+        for (int i = 0; i < sessionCount; i++) {
+            eventSubscriptions.createOrUpdate(
+                "session" + i,
+                new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset" + i), "subscription" + i));
+        }
+
+        AttributeEvent event = new AttributeEvent("asset0", "temperature", 20d);
+        event.setRealm(Constants.MASTER_REALM);
+        exchange = new DefaultExchange(camelContext);
+        exchange.getIn().setBody(event, SharedEvent.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        camelContext.close();
+    }
+
+    @Benchmark
+    public void splitForSubscribers(Blackhole blackhole) {
+        blackhole.consume(eventSubscriptions.splitForSubscribers(exchange));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void createAndCancel() {
+        String sessionKey = "session" + (int) (subscriptionCounter.get() % sessionCount);
+        String subscriptionId = "benchmark" + subscriptionCounter.incrementAndGet();
+        eventSubscriptions.createOrUpdate(
+            sessionKey,
+            new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset0"), subscriptionId));
+        eventSubscriptions.cancel(sessionKey, new CancelEventSubscription(AttributeEvent.class, subscriptionId));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.rules;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.container.timer.TimerService;
+import org.openremote.manager.asset.AssetStorageService;
+import org.openremote.model.Constants;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.impl.LightAsset;
+import org.openremote.model.asset.impl.ThingAsset;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.filter.AttributePredicate;
+import org.openremote.model.query.filter.NumberPredicate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.openremote.model.value.ValueType.NUMBER;
+
+/**
+ * Measures {@link RulesFacts#matchAssetState(AssetQuery)} over 100k asset states (10k assets with 10 attributes each
+ * under 100 parents) for queries that the fact indexes can narrow, compared with applying the same query predicate to
+ * every asset state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RulesFactsBenchmark {
+
+    protected static final int ASSET_COUNT = 10000;
+    protected static final int ATTRIBUTE_COUNT = 10;
+    protected static final int PARENT_COUNT = 100;
+
+    protected TimerService timerService;
+    protected AssetStorageService assetStorageService;
+    protected RulesFacts rulesFacts;
+    protected AssetQuery idQuery;
+    protected AssetQuery parentQuery;
+    protected AssetQuery typeAndAttributeQuery;
+
+    @Setup
+    public void setup() {
+        timerService = new TimerService();
+        assetStorageService = new AssetStorageService();
+        rulesFacts = new RulesFacts(timerService, assetStorageService, null, this, Logger.getLogger(RulesFactsBenchmark.class.getName()));
+
+        for (int i = 0; i < ASSET_COUNT; i++) {
+            Asset<?> asset = i % 2 == 0 ? new LightAsset("Asset " + i) : new ThingAsset("Asset " + i);
+            asset.setId("asset" + i);
+            asset.setParentId("parent" + (i % PARENT_COUNT));
+            asset.setRealm(Constants.MASTER_REALM);
+
+            for (int j = 0; j < ATTRIBUTE_COUNT; j++) {
+                Attribute<Double> attribute = new Attribute<>("attribute" + j, NUMBER, (double) i);
+                rulesFacts.putAssetState(new AttributeEvent(asset, attribute, null, attribute.getValue().orElse(null), 0L, null, 0L));
+            }
+        }
+
+        idQuery = new AssetQuery().ids("asset" + (ASSET_COUNT / 2));
+        parentQuery = new AssetQuery().parents("parent" + (PARENT_COUNT / 2));
+        typeAndAttributeQuery = new AssetQuery()
+            .types(LightAsset.class)
+            .attributes(new AttributePredicate("attribute0", new NumberPredicate(ASSET_COUNT - 100, AssetQuery.Operator.GREATER_THAN)));
+    }
+
+    @Benchmark
+    public long matchById() {
+        return rulesFacts.matchAssetState(idQuery).count();
+    }
+
+    @Benchmark
+    public long matchByParent() {
+        return rulesFacts.matchAssetState(parentQuery).count();
+    }
+
+    @Benchmark
+    public long matchByTypeAndAttribute() {
+        return rulesFacts.matchAssetState(typeAndAttributeQuery).count();
+    }
+
+    @Benchmark
+    public long scanById() {
+        return rulesFacts.matchAssetState(new AssetQueryPredicate(timerService, assetStorageService, idQuery)).count();
+    }
+
+    @Benchmark
+    public long scanByParent() {
+        return rulesFacts.matchAssetState(new AssetQueryPredicate(timerService, assetStorageService, parentQuery)).count();
+    }
+
+    @Benchmark
+    public long scanByTypeAndAttribute() {
+        return rulesFacts.matchAssetState(new AssetQueryPredicate(timerService, assetStorageService, typeAndAttributeQuery)).count();
+    }
+}
@@ -21,11 +21,13 @@ package org.openremote.manager.agent;
 
 import jakarta.persistence.EntityManager;
 import org.apache.camel.builder.RouteBuilder;
+import org.openremote.agent.protocol.io.SharedEventLoopGroup;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingException;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
+import org.openremote.manager.event.AttributeEventInterceptor;
 import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.manager.security.ManagerIdentityService;
@@ -63,8 +65,11 @@ import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
+import static org.openremote.agent.protocol.io.SharedEventLoopGroup.OR_IO_EVENT_LOOP_THREADS;
+import static org.openremote.agent.protocol.io.SharedEventLoopGroup.OR_IO_EVENT_LOOP_THREADS_DEFAULT;
 import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceService.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
 import static org.openremote.model.value.MetaItemType.AGENT_LINK;
@@ -227,6 +232,10 @@ public class AgentService extends RouteBuilder implements ContainerService {
         gatewayService = container.getService(GatewayService.class);
         executorService = container.getExecutorService();
 
+        SharedEventLoopGroup.configure(
+            getInteger(container.getConfig(), OR_IO_EVENT_LOOP_THREADS, OR_IO_EVENT_LOOP_THREADS_DEFAULT),
+            container.getMeterRegistry());
+
         if (initDone) {
             return;
         }
@@ -240,7 +249,17 @@ public class AgentService extends RouteBuilder implements ContainerService {
                 container.getExecutorService())
         );
 
-        assetProcessingService.addEventInterceptor(this::onAttributeEventIntercepted);
+        assetProcessingService.addEventInterceptor(new AttributeEventInterceptor() {
+            @Override
+            public boolean isEntityManagerRequired() {
+                return false;
+            }
+
+            @Override
+            public boolean intercept(EntityManager em, AttributeEvent event) throws AssetProcessingException {
+                return onAttributeEventIntercepted(em, event);
+            }
+        });
 
         clientEventService.addInternalSubscription(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetClasses(Collections.singletonList(Agent.class)), this::onAgentAttributeEvent);
 
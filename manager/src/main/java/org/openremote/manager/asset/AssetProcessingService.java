@@ -22,12 +22,15 @@ package org.openremote.manager.asset;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
+import jakarta.persistence.EntityManager;
 import jakarta.validation.ConstraintViolation;
 import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.builder.RouteConfigurationBuilder;
+import org.apache.camel.component.seda.SedaEndpoint;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceService;
+import org.openremote.container.security.AuthContext;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.util.MapAccess;
 import org.openremote.manager.agent.AgentService;
@@ -41,19 +44,26 @@ import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.model.Constants;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
+import org.openremote.model.PersistenceEvent;
 import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.UserAssetLink;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.MetaItem;
 import org.openremote.model.security.ClientRole;
+import org.openremote.model.security.Realm;
+import org.openremote.model.security.User;
 import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.MetaItemType;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.IntStream;
 
+import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
+import static org.openremote.container.persistence.PersistenceService.isPersistenceEventForEntityType;
 import static org.openremote.manager.system.HealthService.OR_CAMEL_ROUTE_METRIC_PREFIX;
 import static org.openremote.model.attribute.AttributeWriteFailure.*;
 
@@ -80,6 +90,29 @@ import static org.openremote.model.attribute.AttributeWriteFailure.*;
  * {@link org.openremote.model.asset.agent.AgentLink} meta, and if so the {@link AttributeEvent}
  * is not stored in a time series DB of historical data, otherwise the value is stored. Then allows the message to
  * continue if the commit was successful.
+ * <h2>Attribute state cache</h2>
+ * <p>
+ * The asset info and attribute state needed to process an event is held in an {@link AttributeStateCache} (sized by
+ * {@link #OR_ATTRIBUTE_EVENT_CACHE_SIZE}) so the {@link Asset} only has to be loaded from the DB on a cache miss.
+ * <h2>Attribute write authorisation</h2>
+ * <p>
+ * The asset dependent part of the decision whether a client can write an attribute is held in an
+ * {@link AttributeWriteAuthorisationCache} (sized by {@link #OR_ATTRIBUTE_EVENT_AUTH_CACHE_SIZE} and expiring after
+ * {@link #OR_ATTRIBUTE_EVENT_AUTH_CACHE_TTL_MILLIS}) so repeated writes by the same user to the same attribute do not
+ * load the asset each time.
+ * <h2>Attribute value storage</h2>
+ * <p>
+ * Each processor has an {@link AttributeValueWriter} that groups value updates into a single transaction; the writer
+ * is flushed when {@link #OR_ATTRIBUTE_EVENT_BATCH_SIZE} events are pending, the oldest pending event is older than
+ * {@link #OR_ATTRIBUTE_EVENT_BATCH_MAX_LATENCY_MILLIS}, the processor queue is empty or the sender is waiting for the
+ * result. Events are only published to the {@link ClientEventService} once they have been committed.
+ * <h2>Event processor routing</h2>
+ * <p>
+ * Events are partitioned across {@link #OR_ATTRIBUTE_EVENT_THREADS} processor routes using a hash of the full asset ID
+ * so that events for the same asset are always processed in order. When {@link #OR_ATTRIBUTE_EVENT_WORK_STEALING} is
+ * enabled then events for an asset that has no events currently in flight can be routed to the least loaded processor
+ * when the hashed processor queue size exceeds {@link #OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD}; per asset ordering
+ * is still guaranteed as an asset is only ever in flight on a single processor.
  */
 public class AssetProcessingService extends RouteBuilder implements ContainerService {
 
@@ -88,13 +121,44 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     public static final String ATTRIBUTE_EVENT_ROUTER_QUEUE = "seda://AttributeEventRouter?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=false&discardIfNoConsumers=false&size=10000";
     public static final String OR_ATTRIBUTE_EVENT_THREADS = "OR_ATTRIBUTE_EVENT_THREADS";
     public static final int OR_ATTRIBUTE_EVENT_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+    public static final String OR_ATTRIBUTE_EVENT_THREADS_MAX = "OR_ATTRIBUTE_EVENT_THREADS_MAX";
+    public static final int OR_ATTRIBUTE_EVENT_THREADS_MAX_DEFAULT = Math.max(20, Runtime.getRuntime().availableProcessors() * 2);
+    public static final String OR_ATTRIBUTE_EVENT_WORK_STEALING = "OR_ATTRIBUTE_EVENT_WORK_STEALING";
+    public static final boolean OR_ATTRIBUTE_EVENT_WORK_STEALING_DEFAULT = false;
+    public static final String OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD = "OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD";
+    public static final int OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD_DEFAULT = 100;
+    public static final String OR_ATTRIBUTE_EVENT_CACHE_SIZE = "OR_ATTRIBUTE_EVENT_CACHE_SIZE";
+    public static final int OR_ATTRIBUTE_EVENT_CACHE_SIZE_DEFAULT = 10000;
+    public static final String OR_ATTRIBUTE_EVENT_BATCH_SIZE = "OR_ATTRIBUTE_EVENT_BATCH_SIZE";
+    public static final int OR_ATTRIBUTE_EVENT_BATCH_SIZE_DEFAULT = 100;
+    public static final String OR_ATTRIBUTE_EVENT_BATCH_MAX_LATENCY_MILLIS = "OR_ATTRIBUTE_EVENT_BATCH_MAX_LATENCY_MILLIS";
+    public static final int OR_ATTRIBUTE_EVENT_BATCH_MAX_LATENCY_MILLIS_DEFAULT = 100;
+    public static final String OR_ATTRIBUTE_EVENT_AUTH_CACHE_SIZE = "OR_ATTRIBUTE_EVENT_AUTH_CACHE_SIZE";
+    public static final int OR_ATTRIBUTE_EVENT_AUTH_CACHE_SIZE_DEFAULT = 10000;
+    public static final String OR_ATTRIBUTE_EVENT_AUTH_CACHE_TTL_MILLIS = "OR_ATTRIBUTE_EVENT_AUTH_CACHE_TTL_MILLIS";
+    public static final int OR_ATTRIBUTE_EVENT_AUTH_CACHE_TTL_MILLIS_DEFAULT = 60000;
     protected static final String EVENT_ROUTE_COUNT_HEADER = "EVENT_ROUTE_COUNT_HEADER";
+    protected static final String EVENT_ROUTE_IN_FLIGHT_HEADER = "EVENT_ROUTE_IN_FLIGHT_HEADER";
     protected static final String EVENT_PROCESSOR_URI_PREFIX = "seda://AttributeEventProcessor";
     protected static final String EVENT_PROCESSOR_URI_SUFFIX = "?size=3000&timeout=10000";
     public static final String EVENT_PROCESSOR_ROUTE_ID_PREFIX = "AttributeEvent-Processor";
     private static final System.Logger LOG = System.getLogger(AssetProcessingService.class.getName());
 
+    /**
+     * Tracks the processor an asset's events are currently routed to and how many of its events are in flight.
+     */
+    protected static class InFlightAsset {
+        protected final int routeNumber;
+        protected int count;
+
+        protected InFlightAsset(int routeNumber) {
+            this.routeNumber = routeNumber;
+        }
+    }
+
     final protected List<AttributeEventInterceptor> eventInterceptors = new ArrayList<>();
+    // Events are only processed in a transaction if an interceptor needs the entity manager
+    protected boolean eventInterceptorsRequireEntityManager;
     protected TimerService timerService;
     protected ManagerIdentityService identityService;
     protected PersistenceService persistenceService;
@@ -109,7 +173,15 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     // Used in testing to detect if initial/startup processing has completed
     protected long lastProcessedEventTimestamp = System.currentTimeMillis();
     protected int eventProcessingThreadCount;
+    protected boolean eventProcessingWorkStealing;
+    protected int eventProcessingWorkStealingThreshold;
+    protected final Map<String, InFlightAsset> inFlightAssets = new ConcurrentHashMap<>();
+    protected SedaEndpoint[] eventProcessingEndpoints;
     protected Counter queueFullCounter;
+    protected Counter workStolenCounter;
+    protected AttributeStateCache attributeStateCache;
+    protected AttributeWriteAuthorisationCache attributeWriteAuthorisationCache;
+    protected AttributeValueWriter[] attributeValueWriters;
 
     @Override
     public int getPriority() {
@@ -134,6 +206,7 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 
         if (meterRegistry != null) {
             queueFullCounter = meterRegistry.counter(OR_CAMEL_ROUTE_METRIC_PREFIX + "_failed_queue_full", Tags.empty());
+            workStolenCounter = meterRegistry.counter("or.attribute.event.work.stolen", Tags.empty());
         }
 
         clientEventService.addSubscriptionAuthorizer((requestedRealm, auth, subscription) -> {
@@ -143,7 +216,15 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
             return assetEventAuthorizer.authorise(requestedRealm, auth, subscription);
         });
 
-        // TODO: Introduce caching here similar to ActiveMQ auth caching
+        // A cache size or TTL of 0 disables caching so the asset is loaded for every write
+        attributeWriteAuthorisationCache = new AttributeWriteAuthorisationCache(
+            Math.max(0, MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_AUTH_CACHE_SIZE, OR_ATTRIBUTE_EVENT_AUTH_CACHE_SIZE_DEFAULT)),
+            Math.max(0, MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_AUTH_CACHE_TTL_MILLIS, OR_ATTRIBUTE_EVENT_AUTH_CACHE_TTL_MILLIS_DEFAULT)));
+
+        if (meterRegistry != null) {
+            meterRegistry.gauge("or.attribute.event.auth.cache.size", Tags.empty(), attributeWriteAuthorisationCache, AttributeWriteAuthorisationCache::size);
+        }
+
         clientEventService.addEventAuthorizer((requestedRealm, authContext, event) -> {
 
             if (!(event instanceof AttributeEvent attributeEvent)) {
@@ -154,13 +235,6 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                 return true;
             }
 
-            // Check realm against user
-            if (!identityService.getIdentityProvider().isRealmActiveAndAccessible(authContext,
-                requestedRealm)) {
-                LOG.log(System.Logger.Level.INFO, "Realm is inactive, inaccessible or nonexistent: " + requestedRealm);
-                return false;
-            }
-
             // Users must have write attributes role
             if (authContext != null && !authContext.hasResourceRoleOrIsSuperUser(ClientRole.WRITE_ATTRIBUTES.getValue(),
                 Constants.KEYCLOAK_CLIENT_ID)) {
@@ -168,54 +242,51 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                 return false;
             }
 
-            // Have to load the asset and attribute to perform additional checks - should permissions be moved out of the
-            // asset model (possibly if the performance is determined to be not good enough)
-            // TODO: Use a targeted query to retrieve just the info we need
-            Asset<?> asset = assetStorageService.find(attributeEvent.getId());
-            Attribute<?> attribute = asset != null ? asset.getAttribute(attributeEvent.getName()).orElse(null) : null;
+            boolean restrictedUser = identityService.getIdentityProvider().isRestrictedUser(authContext);
 
-            if (asset == null || !asset.hasAttribute(attributeEvent.getName())) {
-                LOG.log(System.Logger.Level.INFO, () -> "Cannot authorize asset event as asset and/or attribute doesn't exist: " + attributeEvent.getRef());
-                return false;
-            } else if (!Objects.equals(requestedRealm, asset.getRealm())) {
-                LOG.log(System.Logger.Level.INFO, () -> "Asset is not in the requested realm: requestedRealm=" + requestedRealm + ", ref=" + attributeEvent.getRef());
-                return false;
-            }
-
-            if (authContext != null) {
-                // Check restricted user
-                if (identityService.getIdentityProvider().isRestrictedUser(authContext)) {
-                    // Must be asset linked to user
-                    if (!assetStorageService.isUserAsset(authContext.getUserId(),
-                        attributeEvent.getId())) {
-                        LOG.log(System.Logger.Level.DEBUG, () -> "Restricted user is not linked to asset '" + attributeEvent.getId() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
-                        return false;
-                    }
-
-                    if (attribute == null || !attribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
-                        LOG.log(System.Logger.Level.DEBUG, () -> "Asset attribute doesn't support restricted write on '" + attributeEvent.getRef() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
-                        return false;
-                    }
-                }
-            } else {
-                // Check attribute has public write flag for anonymous write
-                if (attribute == null || !attribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
-                    LOG.log(System.Logger.Level.DEBUG, () -> "Asset doesn't support public write on '" + attributeEvent.getRef() + "': username=null");
-                    return false;
-                }
-            }
-
-            return true;
+            return attributeWriteAuthorisationCache.isAuthorised(
+                authContext != null ? authContext.getUserId() : null,
+                requestedRealm,
+                restrictedUser,
+                attributeEvent,
+                () -> isAttributeWriteAuthorised(requestedRealm, authContext, restrictedUser, attributeEvent));
         });
 
         // Get dynamic route count for event processing (multithreaded event processing but guaranteeing events for the same asset end up in the same route)
         eventProcessingThreadCount = MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_THREADS, OR_ATTRIBUTE_EVENT_THREADS_DEFAULT);
+        int eventProcessingThreadMax = Math.max(1, MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_THREADS_MAX, OR_ATTRIBUTE_EVENT_THREADS_MAX_DEFAULT));
         if (eventProcessingThreadCount < 1) {
             LOG.log(System.Logger.Level.WARNING, OR_ATTRIBUTE_EVENT_THREADS + " value " + eventProcessingThreadCount + " is less than 1; forcing to 1");
             eventProcessingThreadCount = 1;
-        } else if (eventProcessingThreadCount > 20) {
-            LOG.log(System.Logger.Level.WARNING, OR_ATTRIBUTE_EVENT_THREADS + " value " + eventProcessingThreadCount + " is greater than max value of 20; forcing to 20");
-            eventProcessingThreadCount = 20;
+        } else if (eventProcessingThreadCount > eventProcessingThreadMax) {
+            LOG.log(System.Logger.Level.WARNING, OR_ATTRIBUTE_EVENT_THREADS + " value " + eventProcessingThreadCount + " is greater than max value of " + eventProcessingThreadMax + "; forcing to " + eventProcessingThreadMax);
+            eventProcessingThreadCount = eventProcessingThreadMax;
+        }
+
+        eventProcessingWorkStealing = MapAccess.getBoolean(container.getConfig(), OR_ATTRIBUTE_EVENT_WORK_STEALING, OR_ATTRIBUTE_EVENT_WORK_STEALING_DEFAULT);
+        eventProcessingWorkStealingThreshold = Math.max(0, MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD, OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD_DEFAULT));
+
+        // A cache size of 0 disables caching so the asset is loaded for every event
+        attributeStateCache = new AttributeStateCache(Math.max(0, MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_CACHE_SIZE, OR_ATTRIBUTE_EVENT_CACHE_SIZE_DEFAULT)));
+
+        if (meterRegistry != null) {
+            meterRegistry.gauge("or.attribute.event.cache.size", Tags.empty(), attributeStateCache, AttributeStateCache::size);
+        }
+
+        // Each processor has its own writer so value updates can be grouped into a single transaction
+        int batchSize = Math.max(1, MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_BATCH_SIZE, OR_ATTRIBUTE_EVENT_BATCH_SIZE_DEFAULT));
+        int batchMaxLatencyMillis = Math.max(0, MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_EVENT_BATCH_MAX_LATENCY_MILLIS, OR_ATTRIBUTE_EVENT_BATCH_MAX_LATENCY_MILLIS_DEFAULT));
+        attributeValueWriters = new AttributeValueWriter[eventProcessingThreadCount];
+
+        for (int i = 0; i < eventProcessingThreadCount; i++) {
+            AttributeValueWriter writer = new AttributeValueWriter(persistenceService, assetStorageService, clientEventService, batchSize, batchMaxLatencyMillis, this::onAttributeValueWriteComplete);
+            if (meterRegistry != null) {
+                Tags tags = Tags.of("processor", Integer.toString(i + 1));
+                writer.setMetrics(
+                    meterRegistry.summary("or.attribute.event.batch.size", tags),
+                    meterRegistry.timer("or.attribute.event.batch.flush", tags));
+            }
+            attributeValueWriters[i] = writer;
         }
 
         // Add exception handling for attribute event processing that logs queue full exceptions and counts them
@@ -232,6 +303,11 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                         AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
                         Exception exception = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
 
+                        // Event never reached the processor so release it here
+                        if (exchange.getIn().removeHeader(EVENT_ROUTE_IN_FLIGHT_HEADER) != null) {
+                            releaseEventProcessingRoute(event.getId());
+                        }
+
                         if (exception instanceof RejectedExecutionException || (exception instanceof IllegalStateException illegalStateException && "Queue full".equals(illegalStateException.getMessage()))) {
                             exception = new AssetProcessingException(QUEUE_FULL, "Queue for this event is full");
                             if (queueFullCounter != null) {
@@ -279,12 +355,85 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 
     @Override
     public void stop(Container container) throws Exception {
+        if (attributeValueWriters != null) {
+            for (AttributeValueWriter writer : attributeValueWriters) {
+                writer.flush();
+            }
+        }
+    }
+
+    /**
+     * The checks of whether the client can write the attribute event that require the realm and/or asset to be loaded;
+     * the result is cached by the {@link AttributeWriteAuthorisationCache}.
+     */
+    protected boolean isAttributeWriteAuthorised(String requestedRealm, AuthContext authContext, boolean restrictedUser, AttributeEvent attributeEvent) {
+
+        // Check realm against user
+        if (!identityService.getIdentityProvider().isRealmActiveAndAccessible(authContext,
+            requestedRealm)) {
+            LOG.log(System.Logger.Level.INFO, "Realm is inactive, inaccessible or nonexistent: " + requestedRealm);
+            return false;
+        }
+
+        // Have to load the asset and attribute to perform additional checks - should permissions be moved out of the
+        // asset model (possibly if the performance is determined to be not good enough)
+        // TODO: Use a targeted query to retrieve just the info we need
+        Asset<?> asset = assetStorageService.find(attributeEvent.getId());
+        Attribute<?> attribute = asset != null ? asset.getAttribute(attributeEvent.getName()).orElse(null) : null;
+
+        if (asset == null || !asset.hasAttribute(attributeEvent.getName())) {
+            LOG.log(System.Logger.Level.INFO, () -> "Cannot authorize asset event as asset and/or attribute doesn't exist: " + attributeEvent.getRef());
+            return false;
+        } else if (!Objects.equals(requestedRealm, asset.getRealm())) {
+            LOG.log(System.Logger.Level.INFO, () -> "Asset is not in the requested realm: requestedRealm=" + requestedRealm + ", ref=" + attributeEvent.getRef());
+            return false;
+        }
+
+        if (authContext != null) {
+            // Check restricted user
+            if (restrictedUser) {
+                // Must be asset linked to user
+                if (!assetStorageService.isUserAsset(authContext.getUserId(),
+                    attributeEvent.getId())) {
+                    LOG.log(System.Logger.Level.DEBUG, () -> "Restricted user is not linked to asset '" + attributeEvent.getId() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
+                    return false;
+                }
+
+                if (attribute == null || !attribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
+                    LOG.log(System.Logger.Level.DEBUG, () -> "Asset attribute doesn't support restricted write on '" + attributeEvent.getRef() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
+                    return false;
+                }
+            }
+        } else {
+            // Check attribute has public write flag for anonymous write
+            if (attribute == null || !attribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
+                LOG.log(System.Logger.Level.DEBUG, () -> "Asset doesn't support public write on '" + attributeEvent.getRef() + "': username=null");
+                return false;
+            }
+        }
+
+        return true;
     }
 
     @SuppressWarnings({"rawtypes", "unchecked"})
     @Override
     public void configure() throws Exception {
 
+        // Keep the attribute state cache coherent with asset modifications
+        from(PERSISTENCE_TOPIC)
+            .routeId("Persistence-AttributeStateCache")
+            .filter(isPersistenceEventForEntityType(Asset.class))
+            .process(exchange -> attributeStateCache.onAssetPersistenceEvent(exchange.getIn().getBody(PersistenceEvent.class)));
+
+        // Keep the attribute write authorisation cache coherent with changes that affect authorisation decisions
+        from(PERSISTENCE_TOPIC)
+            .routeId("Persistence-AttributeWriteAuthorisationCache")
+            .filter(exchange -> isPersistenceEventForEntityType(Asset.class).matches(exchange)
+                || isPersistenceEventForEntityType(UserAssetLink.class).matches(exchange)
+                || isPersistenceEventForEntityType(User.class).matches(exchange)
+                || isPersistenceEventForEntityType(Realm.class).matches(exchange))
+            .process(exchange -> attributeWriteAuthorisationCache.onPersistenceEvent(exchange.getIn().getBody(PersistenceEvent.class)));
+
         // All user authorisation checks MUST have been carried out before events reach this queue
 
         // Router is responsible for routing events to the same processor for a given asset ID, this allows for
@@ -308,7 +457,13 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                     event.setTimestamp(timerService.getCurrentTimeMillis());
                 }
 
-                exchange.getIn().setHeader(EVENT_ROUTE_COUNT_HEADER, getEventProcessingRouteNumber(event.getId()));
+                int routeNumber = getEventProcessingRoute(event.getId());
+
+                if (eventProcessingWorkStealing) {
+                    exchange.getIn().setHeader(EVENT_ROUTE_IN_FLIGHT_HEADER, true);
+                }
+
+                exchange.getIn().setHeader(EVENT_ROUTE_COUNT_HEADER, routeNumber);
             })
             .toD(EVENT_PROCESSOR_URI_PREFIX + "${header." + EVENT_ROUTE_COUNT_HEADER + "}");
 
@@ -323,7 +478,25 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                     AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
                     LOG.log(System.Logger.Level.TRACE, () -> ">>> Attribute event processing start: processor=" + processorCount + ", event=" + event);
                     long startMillis = System.currentTimeMillis();
-                    boolean processed = processAttributeEvent(event);
+                    AttributeValueWriter writer = attributeValueWriters[processorCount - 1];
+                    boolean processed;
+
+                    try {
+                        processed = processAttributeEvent(event, writer);
+                    } finally {
+                        if (exchange.getIn().removeHeader(EVENT_ROUTE_IN_FLIGHT_HEADER) != null) {
+                            releaseEventProcessingRoute(event.getId());
+                        }
+                    }
+
+                    // Flush when the caller is waiting for the result, the batch is full/too old or there is nothing
+                    // else to process, so batches only grow whilst events are queueing up
+                    if (exchange.getPattern().isOutCapable() || writer.isFlushRequired() || getEventProcessingQueueSize(processorCount) == 0) {
+                        List<AttributeEvent> failedEvents = writer.flush();
+                        if (exchange.getPattern().isOutCapable() && failedEvents.contains(event)) {
+                            throw new AssetProcessingException(STATE_STORAGE_FAILED, "database update failed, no rows updated");
+                        }
+                    }
 
                     // Need to record time here otherwise an infinite loop generated inside one of the interceptors means the timestamp
                     // is not updated so tests can't then detect the problem.
@@ -344,6 +517,7 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 
     public void addEventInterceptor(AttributeEventInterceptor eventInterceptor) {
         eventInterceptors.add(eventInterceptor);
+        eventInterceptorsRequireEntityManager |= eventInterceptor.isEntityManagerRequired();
         eventInterceptors.sort(Comparator.comparingInt(AttributeEventInterceptor::getPriority));
     }
 
@@ -372,44 +546,55 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 
     /**
      * The {@link AttributeEvent} is passed to each registered {@link AttributeEventInterceptor} and if no interceptor
-     * handles the event then the {@link Attribute} value is updated in the DB with the new event value and timestamp.
+     * handles the event then it is added to the processor's {@link AttributeValueWriter} so the {@link Attribute} value
+     * is updated in the DB with the new event value and timestamp when the writer is next flushed.
      */
-    protected boolean processAttributeEvent(AttributeEvent event) throws AssetProcessingException {
+    protected boolean processAttributeEvent(AttributeEvent event, AttributeValueWriter writer) throws AssetProcessingException {
 
         // TODO: Get asset lock so it cannot be modified during event processing
-        persistenceService.doTransaction(em -> {
+        // Only open a transaction to load the asset on a cache miss
+        AttributeStateCache.CachedAsset asset = attributeStateCache.getOrLoad(event.getId(), () -> loadAsset(event.getId()));
 
-            // TODO: Retrieve optimised DTO rather than whole asset
-            Asset<?> asset = assetStorageService.find(em, event.getId(), true);
+        if (asset == null) {
+            throw new AssetProcessingException(ASSET_NOT_FOUND, "Asset may have been deleted before event could be processed or it never existed");
+        }
 
-            if (asset == null) {
-                throw new AssetProcessingException(ASSET_NOT_FOUND, "Asset may have been deleted before event could be processed or it never existed");
-            }
+        AttributeStateCache.CachedAttribute cachedAttribute = asset.getAttribute(event.getName());
 
-            Attribute<Object> attribute = asset.getAttribute(event.getName()).orElseThrow(() ->
-                new AssetProcessingException(ATTRIBUTE_NOT_FOUND, "Attribute may have been deleted before event could be processed or it never existed"));
+        if (cachedAttribute == null) {
+            // Attribute may have been added since the asset was cached so reload before failing
+            attributeStateCache.evict(event.getId());
+            asset = attributeStateCache.getOrLoad(event.getId(), () -> loadAsset(event.getId()));
+            cachedAttribute = asset != null ? asset.getAttribute(event.getName()) : null;
+        }
 
-            // Type coercion
-            Object value = event.getValue().map(eventValue -> {
-                Class<?> attributeValueType = attribute.getTypeClass();
-                return ValueUtil.getValueCoerced(eventValue, attributeValueType).orElseThrow(() -> {
-                    String msg = "Event processing failed unable to coerce value into the correct value type: realm=" + event.getRealm() + ", attribute=" + event.getRef() + ", event value type=" + eventValue.getClass() + ", attribute value type=" + attributeValueType;
-                    return new AssetProcessingException(INVALID_VALUE, msg);
-                });
-            }).orElse(null);
-            event.setValue(value);
+        if (asset == null || cachedAttribute == null) {
+            throw new AssetProcessingException(ATTRIBUTE_NOT_FOUND, "Attribute may have been deleted before event could be processed or it never existed");
+        }
 
-            AttributeEvent enrichedEvent = new AttributeEvent(asset, attribute, event.getSource(), event.getValue().orElse(null), event.getTimestamp(), attribute.getValue().orElse(null), attribute.getTimestamp().orElse(0L));
+        Attribute<Object> attribute = cachedAttribute.getAttribute();
 
-            // Do standard JSR-380 validation on the event
-            Set<ConstraintViolation<AttributeEvent>> validationFailures = ValueUtil.validate(enrichedEvent);
+        // Type coercion
+        Object value = event.getValue().map(eventValue -> {
+            Class<?> attributeValueType = attribute.getTypeClass();
+            return ValueUtil.getValueCoerced(eventValue, attributeValueType).orElseThrow(() -> {
+                String msg = "Event processing failed unable to coerce value into the correct value type: realm=" + event.getRealm() + ", attribute=" + event.getRef() + ", event value type=" + eventValue.getClass() + ", attribute value type=" + attributeValueType;
+                return new AssetProcessingException(INVALID_VALUE, msg);
+            });
+        }).orElse(null);
+        event.setValue(value);
 
-            if (!validationFailures.isEmpty()) {
-                String msg = "Event processing failed value failed constraint validation: realm=" + enrichedEvent.getRealm() + ", attribute=" + enrichedEvent.getRef() + ", event value type=" + enrichedEvent.getValue().map(v -> v.getClass().getName()).orElse("null") + ", attribute value type=" + enrichedEvent.getTypeClass();
-                throw new AssetProcessingException(INVALID_VALUE, msg);
-            }
+        AttributeEvent enrichedEvent = new AttributeEvent(asset, attribute, event.getSource(), event.getValue().orElse(null), event.getTimestamp(), cachedAttribute.getValue(), cachedAttribute.getTimestamp());
+
+        // Do standard JSR-380 validation on the event
+        Set<ConstraintViolation<AttributeEvent>> validationFailures = ValueUtil.validate(enrichedEvent);
+
+        if (!validationFailures.isEmpty()) {
+            String msg = "Event processing failed value failed constraint validation: realm=" + enrichedEvent.getRealm() + ", attribute=" + enrichedEvent.getRef() + ", event value type=" + enrichedEvent.getValue().map(v -> v.getClass().getName()).orElse("null") + ", attribute value type=" + enrichedEvent.getTypeClass();
+            throw new AssetProcessingException(INVALID_VALUE, msg);
+        }
 
-            // TODO: Remove AttributeExecuteStatus
+        // TODO: Remove AttributeExecuteStatus
 //            // For executable attributes, non-sensor sources can set a writable attribute execute status
 //            if (attribute.getType() == ValueType.EXECUTION_STATUS && source != SENSOR) {
 //                Optional<AttributeExecuteStatus> status = event.getValue()
@@ -421,54 +606,165 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 //                }
 //            }
 
-            String interceptorName = null;
-            boolean intercepted = false;
-
-            for (AttributeEventInterceptor interceptor : eventInterceptors) {
-                try {
-                    intercepted = interceptor.intercept(em, enrichedEvent);
-                } catch (AssetProcessingException ex) {
-                    throw new AssetProcessingException(ex.getReason(), "Interceptor '" + interceptor + "' error=" + ex.getMessage());
-                } catch (Throwable t) {
-                    throw new AssetProcessingException(
-                        INTERCEPTOR_FAILURE,
-                        "Interceptor '" + interceptor + "' uncaught exception error=" + t.getMessage(),
-                        t
-                    );
-                }
-                if (intercepted) {
-                    interceptorName = interceptor.getName();
-                    break;
-                }
-            }
-
-            if (intercepted) {
-                LOG.log(System.Logger.Level.TRACE, "Event intercepted: interceptor=" + interceptorName + ", ref=" + enrichedEvent.getRef() + ", source=" + enrichedEvent.getSource());
+        String interceptorName = eventInterceptorsRequireEntityManager
+            ? persistenceService.doReturningTransaction(em -> interceptEvent(em, enrichedEvent))
+            : interceptEvent(null, enrichedEvent);
+        boolean intercepted = interceptorName != null;
+
+        if (intercepted) {
+            LOG.log(System.Logger.Level.TRACE, "Event intercepted: interceptor=" + interceptorName + ", ref=" + enrichedEvent.getRef() + ", source=" + enrichedEvent.getSource());
+        } else {
+            if (enrichedEvent.isOutdated()) {
+                LOG.log(System.Logger.Level.INFO, () -> "Event is older than current attribute value so marking as outdated: ref=" + enrichedEvent.getRef() + ", event=" + Instant.ofEpochMilli(enrichedEvent.getTimestamp()) + ", previous=" + Instant.ofEpochMilli(enrichedEvent.getOldValueTimestamp()));
+                // Generate an event for this so internal subscribers can act on it if needed
+                clientEventService.publishEvent(new OutdatedAttributeEvent(enrichedEvent));
             } else {
-                if (enrichedEvent.isOutdated()) {
-                    LOG.log(System.Logger.Level.INFO, () -> "Event is older than current attribute value so marking as outdated: ref=" + enrichedEvent.getRef() + ", event=" + Instant.ofEpochMilli(enrichedEvent.getTimestamp()) + ", previous=" + Instant.ofEpochMilli(enrichedEvent.getOldValueTimestamp()));
-                    // Generate an event for this so internal subscribers can act on it if needed
-                    clientEventService.publishEvent(new OutdatedAttributeEvent(enrichedEvent));
-                } else if (!assetStorageService.updateAttributeValue(em, enrichedEvent)) {
-                    throw new AssetProcessingException(
-                        STATE_STORAGE_FAILED, "database update failed, no rows updated"
-                    );
+                // Update the cache straight away so subsequent events for this asset see the new value; the asset
+                // is evicted if the write fails. The asset stays in flight on this processor until it is written.
+                attributeStateCache.updateValue(enrichedEvent);
+                if (eventProcessingWorkStealing) {
+                    retainEventProcessingRoute(enrichedEvent.getId());
                 }
+                writer.add(enrichedEvent);
             }
-        });
+        }
 
         return true;
     }
 
+    protected Asset<?> loadAsset(String assetId) {
+        return persistenceService.doReturningTransaction(em -> assetStorageService.find(em, assetId, true));
+    }
+
+    /**
+     * Pass the event to each {@link AttributeEventInterceptor} until one intercepts it; the {@link EntityManager} is
+     * <code>null</code> unless an interceptor {@link AttributeEventInterceptor#isEntityManagerRequired}.
+     * @return The name of the interceptor that intercepted the event or <code>null</code> if not intercepted.
+     */
+    protected String interceptEvent(EntityManager em, AttributeEvent enrichedEvent) throws AssetProcessingException {
+        for (AttributeEventInterceptor interceptor : eventInterceptors) {
+            boolean intercepted;
+            try {
+                intercepted = interceptor.intercept(em, enrichedEvent);
+            } catch (AssetProcessingException ex) {
+                throw new AssetProcessingException(ex.getReason(), "Interceptor '" + interceptor + "' error=" + ex.getMessage());
+            } catch (Throwable t) {
+                throw new AssetProcessingException(
+                    INTERCEPTOR_FAILURE,
+                    "Interceptor '" + interceptor + "' uncaught exception error=" + t.getMessage(),
+                    t
+                );
+            }
+            if (intercepted) {
+                return interceptor.getName();
+            }
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{" +
             '}';
     }
 
+    /**
+     * Get the processor route number (1 based) for the next event of the specified asset; when work stealing is enabled
+     * the asset is in flight on the returned processor until {@link #releaseEventProcessingRoute} is called.
+     */
+    protected int getEventProcessingRoute(String assetId) {
+        int routeNumber = getEventProcessingRouteNumber(assetId);
+        return eventProcessingWorkStealing ? acquireEventProcessingRoute(assetId, routeNumber) : routeNumber;
+    }
+
+    /**
+     * Get the processor route number (1 based) for the specified asset ID; the whole ID is hashed and the hash bits
+     * are mixed (murmur3 finaliser) so that IDs are evenly spread across all processors.
+     */
     protected int getEventProcessingRouteNumber(String assetId) {
-        int charCode = Character.codePointAt(assetId, 0);
-        return (charCode % eventProcessingThreadCount) + 1;
+        int hash = assetId.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, eventProcessingThreadCount) + 1;
+    }
+
+    /**
+     * Get the processor route number to use for an event when work stealing is enabled; if the asset already has
+     * events in flight then the same processor is used to preserve ordering, otherwise if the preferred processor
+     * queue is busy then the least loaded processor is used instead.
+     */
+    protected int acquireEventProcessingRoute(String assetId, int preferredRouteNumber) {
+        return inFlightAssets.compute(assetId, (id, inFlightAsset) -> {
+            if (inFlightAsset == null) {
+                inFlightAsset = new InFlightAsset(getLeastLoadedEventProcessingRouteNumber(preferredRouteNumber));
+            }
+            inFlightAsset.count++;
+            return inFlightAsset;
+        }).routeNumber;
+    }
+
+    protected void retainEventProcessingRoute(String assetId) {
+        inFlightAssets.computeIfPresent(assetId, (id, inFlightAsset) -> {
+            inFlightAsset.count++;
+            return inFlightAsset;
+        });
+    }
+
+    protected void releaseEventProcessingRoute(String assetId) {
+        inFlightAssets.computeIfPresent(assetId, (id, inFlightAsset) -> --inFlightAsset.count > 0 ? inFlightAsset : null);
+    }
+
+    protected void onAttributeValueWriteComplete(AttributeEvent event, boolean stored) {
+        if (!stored) {
+            attributeStateCache.evict(event.getId());
+            LOG.log(System.Logger.Level.WARNING, () -> "Error processing from " + (event.getSource() != null ? event.getSource() : "N/A") + ": " + event.toStringWithValueType() + "  - " + STATE_STORAGE_FAILED);
+        }
+        if (eventProcessingWorkStealing) {
+            releaseEventProcessingRoute(event.getId());
+        }
+    }
+
+    protected int getLeastLoadedEventProcessingRouteNumber(int preferredRouteNumber) {
+        int preferredQueueSize = getEventProcessingQueueSize(preferredRouteNumber);
+
+        if (preferredQueueSize < eventProcessingWorkStealingThreshold) {
+            return preferredRouteNumber;
+        }
+
+        int routeNumber = preferredRouteNumber;
+        int queueSize = preferredQueueSize;
+
+        for (int i = 1; i <= eventProcessingThreadCount; i++) {
+            int size = getEventProcessingQueueSize(i);
+            if (size < queueSize) {
+                routeNumber = i;
+                queueSize = size;
+            }
+        }
+
+        if (routeNumber != preferredRouteNumber) {
+            int stolenRouteNumber = routeNumber;
+            LOG.log(System.Logger.Level.TRACE, () -> "Attribute event processor " + preferredRouteNumber + " is busy (queue size=" + preferredQueueSize + "), routing to processor " + stolenRouteNumber);
+            if (workStolenCounter != null) {
+                workStolenCounter.increment();
+            }
+        }
+
+        return routeNumber;
+    }
+
+    protected int getEventProcessingQueueSize(int routeNumber) {
+        if (eventProcessingEndpoints == null) {
+            SedaEndpoint[] endpoints = new SedaEndpoint[eventProcessingThreadCount];
+            for (int i = 0; i < eventProcessingThreadCount; i++) {
+                endpoints[i] = getContext().getEndpoint(getEventProcessingRouteURI(i + 1), SedaEndpoint.class);
+            }
+            eventProcessingEndpoints = endpoints;
+        }
+        return eventProcessingEndpoints[routeNumber - 1].getCurrentQueueSize();
     }
 
     protected String getEventProcessingRouteURI(int routeNumber) {
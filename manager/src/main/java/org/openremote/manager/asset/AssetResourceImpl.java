@@ -19,6 +19,9 @@
  */
 package org.openremote.manager.asset;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.NullNode;
 import jakarta.persistence.OptimisticLockException;
 import jakarta.validation.ConstraintViolationException;
@@ -29,6 +32,7 @@ import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.jboss.resteasy.plugins.validation.ResteasyViolationExceptionImpl;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.timer.TimerService;
@@ -47,6 +51,8 @@ import org.openremote.model.security.ClientRole;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -538,7 +544,13 @@ public class AssetResourceImpl extends ManagerWebResource implements AssetResour
             throw new ForbiddenException("User not authorized to execute specified query");
         }
 
-        List<Asset<?>> result = assetStorageService.findAll(query);
+        List<Asset<?>> result;
+
+        try {
+            result = assetStorageService.findAll(query);
+        } catch (IllegalArgumentException ex) {
+            throw new WebApplicationException(ex, BAD_REQUEST);
+        }
 
         // Compress response (the request attribute enables the interceptor)
         request.setAttribute(HttpHeaders.CONTENT_ENCODING, "gzip");
@@ -546,6 +558,45 @@ public class AssetResourceImpl extends ManagerWebResource implements AssetResour
         return result.toArray(new Asset[0]);
     }
 
+    @Override
+    public Response streamAssets(RequestParams requestParams, AssetQuery query) {
+        if (query == null) {
+            query = new AssetQuery();
+        }
+
+        if (!assetStorageService.authorizeAssetQuery(query, getAuthContext(), getRequestRealmName())) {
+            throw new ForbiddenException("User not authorized to execute specified query");
+        }
+
+        // The response is committed once streaming starts so fail a missing after asset (see AssetQuery.after) up front
+        if (query.after != null && assetStorageService.find(query.after, false) == null) {
+            throw new WebApplicationException(BAD_REQUEST);
+        }
+
+        AssetQuery assetQuery = query;
+        // Let the generator flush when its buffer is full rather than after every asset
+        ObjectWriter writer = ValueUtil.JSON.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        // Compress response (the request attribute enables the interceptor)
+        request.setAttribute(HttpHeaders.CONTENT_ENCODING, "gzip");
+
+        StreamingOutput output = outputStream -> {
+            try (JsonGenerator generator = ValueUtil.JSON.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                assetStorageService.streamAll(assetQuery, assets -> assets.forEach(asset -> {
+                    try {
+                        writer.writeValue(generator, asset);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+                generator.writeEndArray();
+            }
+        };
+
+        return Response.ok(output, MediaType.APPLICATION_JSON_TYPE).build();
+    }
+
     protected AttributeWriteResult doAttributeWrite(AttributeEvent event) {
         AttributeWriteFailure failure = null;
 
@@ -19,6 +19,14 @@
  */
 package org.openremote.manager.asset;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
@@ -33,6 +41,7 @@ import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.security.AuthContext;
 import org.openremote.container.timer.TimerService;
+import org.openremote.container.util.MapAccess;
 import org.openremote.manager.asset.console.ConsoleResourceImpl;
 import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.event.EventSubscriptionAuthorizer;
@@ -49,6 +58,7 @@ import org.openremote.model.asset.impl.ThingAsset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeMap;
+import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.event.shared.EventRequestResponseWrapper;
 import org.openremote.model.event.shared.EventSubscription;
 import org.openremote.model.event.shared.SharedEvent;
@@ -60,13 +70,13 @@ import org.openremote.model.security.User;
 import org.openremote.model.util.Pair;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
-import org.postgresql.util.PGobject;
 
 import java.sql.*;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -100,29 +110,32 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             this.binders = binders;
         }
 
-        protected void apply(EntityManager em, org.hibernate.query.Query<Object[]> query) {
+        /**
+         * Bind the parameter values of the specified query which must have the same shape as the query this was built
+         * for (see {@link #getQueryShapeKey}).
+         */
+        protected void apply(org.hibernate.query.Query<Object[]> st, AssetQuery query) {
             for (ParameterBinder binder : binders) {
-                binder.accept(em, query);
+                binder.bind(st, query);
             }
         }
     }
 
-    public interface ParameterBinder extends BiConsumer<EntityManager, org.hibernate.query.Query<Object[]>> {
-
-        @Override
-        default void accept(EntityManager em, org.hibernate.query.Query<Object[]> st) {
-            try {
-                acceptStatement(em, st);
-            } catch (SQLException ex) {
-                throw new RuntimeException(ex);
-            }
-        }
+    /**
+     * Binds a parameter of a {@link PreparedAssetQuery}; the value is read from the query being executed rather than
+     * the query the SQL was built for so the same prepared query can be used for all queries with the same shape.
+     */
+    public interface ParameterBinder {
 
-        void acceptStatement(EntityManager em, org.hibernate.query.Query<Object[]> st) throws SQLException;
+        void bind(org.hibernate.query.Query<Object[]> st, AssetQuery query);
     }
 
     private static final Logger LOG = Logger.getLogger(AssetStorageService.class.getName());
     public static final int PRIORITY = MED_PRIORITY;
+    public static final int STREAM_FETCH_SIZE = 500;
+    protected static final int PROJECTION_ASSET_COLUMNS = 6;
+    public static final String OR_ASSET_QUERY_CACHE_SIZE = "OR_ASSET_QUERY_CACHE_SIZE";
+    public static final int OR_ASSET_QUERY_CACHE_SIZE_DEFAULT = 1000;
 //    protected static final Field assetParentNameField;
 //    protected static final Field assetParentTypeField;
 //
@@ -232,6 +245,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
     protected ManagerIdentityService identityService;
     protected ClientEventService clientEventService;
     protected GatewayService gatewayService;
+    // Prepared queries keyed by the JSON of the query (after defaults are applied); null when disabled
+    protected Cache<String, Pair<PreparedAssetQuery, Boolean>> preparedQueryCache;
+    protected Counter preparedQueryCacheHitCounter;
+    protected Counter preparedQueryCacheMissCounter;
 
     /**
      * Will evaluate each {@link CalendarEventPredicate} and apply it depending on the {@link LogicGroup} type
@@ -319,6 +336,23 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         gatewayService = container.getService(GatewayService.class);
         EventSubscriptionAuthorizer assetEventAuthorizer = AssetStorageService.assetInfoAuthorizer(identityService, this);
 
+        // A cache size of 0 disables caching so the SQL is generated for every query
+        int preparedQueryCacheSize = Math.max(0, MapAccess.getInteger(container.getConfig(), OR_ASSET_QUERY_CACHE_SIZE, OR_ASSET_QUERY_CACHE_SIZE_DEFAULT));
+
+        if (preparedQueryCacheSize > 0) {
+            preparedQueryCache = CacheBuilder.newBuilder()
+                .maximumSize(preparedQueryCacheSize)
+                .build();
+
+            MeterRegistry meterRegistry = container.getMeterRegistry();
+
+            if (meterRegistry != null) {
+                preparedQueryCacheHitCounter = meterRegistry.counter("or.asset.query.cache.hits", Tags.empty());
+                preparedQueryCacheMissCounter = meterRegistry.counter("or.asset.query.cache.misses", Tags.empty());
+                meterRegistry.gauge("or.asset.query.cache.size", Tags.empty(), preparedQueryCache, Cache::size);
+            }
+        }
+
         clientEventService.addSubscriptionAuthorizer((realm, auth, subscription) -> {
              if (!subscription.isEventType(AssetEvent.class)) {
                  return false;
@@ -576,6 +610,29 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return persistenceService.doReturningTransaction(em -> findAll(em, query));
     }
 
+    /**
+     * Stream the assets matching the query to the consumer as they are read from the DB (using a cursor of
+     * {@link #STREAM_FETCH_SIZE} rows) rather than loading them all into memory first; the stream is only valid within
+     * the consumer as the transaction is committed when the consumer returns. The assets are detached so they can be
+     * garbage collected once consumed.
+     */
+    public void streamAll(AssetQuery query, Consumer<Stream<Asset<?>>> consumer) {
+        persistenceService.doTransaction(em -> {
+            try (Stream<Asset<?>> assets = streamAll(em, query)) {
+                consumer.accept(assets);
+            }
+        });
+    }
+
+    /**
+     * Get the {@link AssetProjection}s matching the query; the query must have a {@link Select#projection} select. Only
+     * the selected attribute values are extracted from the DB so use this instead of {@link #findAll(AssetQuery)} when
+     * the full assets are not needed.
+     */
+    public List<AssetProjection> findProjections(AssetQuery query) {
+        return persistenceService.doReturningTransaction(em -> findProjections(em, query));
+    }
+
     public List<String> findNames(String... ids) {
         if (ids == null || ids.length == 0)
             return new ArrayList<>();
@@ -1261,36 +1318,163 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
     @SuppressWarnings("unchecked")
     protected List<Asset<?>> findAll(EntityManager em, AssetQuery query) {
 
+        if (isProjection(query)) {
+            throw new IllegalArgumentException("Asset query with a projection select must be executed as a projection query");
+        }
+
         long startMillis = System.currentTimeMillis();
+        Pair<org.hibernate.query.Query<Object[]>, Boolean> jpqlAndContainsCalendarPredicate = createQuery(em, query);
+
+        if (jpqlAndContainsCalendarPredicate == null) {
+            return Collections.emptyList();
+        }
+
+        List<Asset<?>> assets = (List<Asset<?>>)(Object)jpqlAndContainsCalendarPredicate.key.getResultList();
+
+        if (jpqlAndContainsCalendarPredicate.value) {
+            return assets.stream().filter(asset -> calendarEventPredicateMatches(timerService::getCurrentTimeMillis, query, asset)).toList();
+        }
+
+        if (LOG.isLoggable(FINE)) {
+            LOG.fine("Asset query took " + (System.currentTimeMillis() - startMillis) + "ms: return count=" + assets.size());
+        }
+
+        return assets;
+    }
+
+    /**
+     * The returned stream must be closed and only consumed within the transaction of the entity manager.
+     */
+    @SuppressWarnings("unchecked")
+    protected Stream<Asset<?>> streamAll(EntityManager em, AssetQuery query) {
+
+        if (isProjection(query)) {
+            throw new IllegalArgumentException("Asset query with a projection select must be executed as a projection query");
+        }
+
+        Pair<org.hibernate.query.Query<Object[]>, Boolean> jpqlAndContainsCalendarPredicate = createQuery(em, query);
+
+        if (jpqlAndContainsCalendarPredicate == null) {
+            return Stream.empty();
+        }
+
+        Stream<Asset<?>> assets = ((Stream<Asset<?>>)(Object)jpqlAndContainsCalendarPredicate.key
+            .setFetchSize(STREAM_FETCH_SIZE)
+            .getResultStream())
+            .peek(em::detach);
+
+        if (jpqlAndContainsCalendarPredicate.value) {
+            return assets.filter(asset -> calendarEventPredicateMatches(timerService::getCurrentTimeMillis, query, asset));
+        }
+
+        return assets;
+    }
+
+    protected List<AssetProjection> findProjections(EntityManager em, AssetQuery query) {
+
+        if (!isProjection(query)) {
+            throw new IllegalArgumentException("Asset query must have a projection select to be executed as a projection query");
+        }
+
+        long startMillis = System.currentTimeMillis();
+        Pair<org.hibernate.query.Query<Object[]>, Boolean> jpqlAndContainsCalendarPredicate = createQuery(em, query);
+
+        if (jpqlAndContainsCalendarPredicate == null) {
+            return Collections.emptyList();
+        }
+
+        String[] attributeNames = query.select.attributes;
+        List<AssetProjection> projections = jpqlAndContainsCalendarPredicate.key.getResultList().stream()
+            .map(row -> {
+                Map<String, AssetProjection.AttributeProjection> attributes = new HashMap<>(attributeNames.length);
+
+                // Attribute columns follow the asset columns as (type, value, timestamp) triples
+                for (int i = 0; i < attributeNames.length; i++) {
+                    int column = PROJECTION_ASSET_COLUMNS + (i * 3);
+                    String type = (String) row[column];
+
+                    // Attribute doesn't exist or isn't readable
+                    if (type == null) {
+                        continue;
+                    }
+
+                    String valueJson = (String) row[column + 1];
+                    Object value = valueJson == null ? null : ValueUtil.getValueDescriptor(type)
+                        .<Object>flatMap(valueDescriptor -> ValueUtil.parse(valueJson, valueDescriptor.getType()))
+                        .or(() -> ValueUtil.parse(valueJson))
+                        .orElse(null);
+                    Long timestamp = row[column + 2] != null ? ((Number) row[column + 2]).longValue() : null;
+                    attributes.put(attributeNames[i], new AssetProjection.AttributeProjection(attributeNames[i], type, value, timestamp));
+                }
+
+                String path = (String) row[5];
+                return new AssetProjection(
+                    (String) row[0],
+                    (String) row[1],
+                    (String) row[2],
+                    (String) row[3],
+                    (String) row[4],
+                    path != null ? path.split("\\.") : null,
+                    attributes);
+            })
+            .toList();
+
+        if (LOG.isLoggable(FINE)) {
+            LOG.fine("Asset projection query took " + (System.currentTimeMillis() - startMillis) + "ms: return count=" + projections.size());
+        }
+
+        return projections;
+    }
+
+    protected static boolean isProjection(AssetQuery query) {
+        return query.select != null && query.select.projection;
+    }
+
+    /**
+     * Create the native query for the asset query or return null if the query cannot match any assets; the value of
+     * the returned pair indicates whether the calendar event predicate must be applied to the results.
+     */
+    @SuppressWarnings("unchecked")
+    protected Pair<org.hibernate.query.Query<Object[]>, Boolean> createQuery(EntityManager em, AssetQuery query) {
 
         if (query.access == null)
             query.access = PRIVATE;
 
         // Do some sanity checks on query values and return empty result set if empty query parameters
         if (query.ids != null && query.ids.length == 0) {
-            return Collections.emptyList();
+            return null;
         }
         if (query.paths != null && query.paths.length == 0) {
-            return Collections.emptyList();
+            return null;
         }
         if (query.types != null && query.types.length == 0) {
-            return Collections.emptyList();
+            return null;
         }
         if (query.names != null && query.names.length == 0) {
-            return Collections.emptyList();
+            return null;
         }
         if (query.userIds != null && query.userIds.length == 0) {
-            return Collections.emptyList();
+            return null;
         }
         if (query.parents != null && query.parents.length == 0) {
-            return Collections.emptyList();
+            return null;
         }
 
         // Default to order by creation date if the query may return multiple results
         if (query.orderBy == null && query.ids == null)
             query.orderBy = new OrderBy(OrderBy.Property.CREATED_ON);
 
-        Pair<PreparedAssetQuery, Boolean> queryAndContainsCalendarPredicate = buildQuery(query, timerService::getCurrentTimeMillis);
+        // The order by value of the after asset is looked up by the query so a missing asset would silently end paging
+        if (query.after != null && query.orderBy != null && query.orderBy.property != null) {
+            Long afterCount = em.createQuery("select count(a) from Asset a where a.id = :id", Long.class)
+                .setParameter("id", query.after)
+                .getSingleResult();
+            if (afterCount == 0) {
+                throw new IllegalArgumentException("Asset query after asset doesn't exist: " + query.after);
+            }
+        }
+
+        Pair<PreparedAssetQuery, Boolean> queryAndContainsCalendarPredicate = getPreparedQuery(query);
         PreparedAssetQuery querySql = queryAndContainsCalendarPredicate.key;
         boolean containsCalendarPredicate = queryAndContainsCalendarPredicate.value;
 
@@ -1299,6 +1483,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             throw new IllegalArgumentException("Asset query contains a calendar event predicate which requires the attribute values and types to be included in the select (as calendar event predicate is applied post DB query)");
         }
 
+        if (containsCalendarPredicate && isProjection(query)) {
+            throw new IllegalArgumentException("Asset query contains a calendar event predicate which cannot be used with a projection select (as calendar event predicate is applied post DB query)");
+        }
+
         // RT: No longer used as parent info removed for simplicity and security reasons
 //        // Use a SqlResultSetMapping to allow auto hydration with retrieval of transient data as well
 //        // Using hibernate query object rather than JPA as postgres array parameter support doesn't work in JPQL without specifying the data type
@@ -1322,66 +1510,226 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 //            return asset;
 //        });
 
-        org.hibernate.query.Query<Object[]> jpql = em.createNativeQuery(querySql.querySql, Asset.class).unwrap(org.hibernate.query.Query.class)
+        // Projection rows are returned as scalar columns rather than hydrated entities
+        org.hibernate.query.Query<Object[]> jpql = (isProjection(query)
+            ? em.createNativeQuery(querySql.querySql)
+            : em.createNativeQuery(querySql.querySql, Asset.class)).unwrap(org.hibernate.query.Query.class)
             .setHint(AvailableHints.HINT_READ_ONLY, true); // Make query readonly so no dirty checks are performed
-        querySql.apply(em, jpql);
-        List<Asset<?>> assets = (List<Asset<?>>)(Object)jpql.getResultList();
+        querySql.apply(jpql, query);
+        return new Pair<>(jpql, containsCalendarPredicate);
+    }
 
-        if (containsCalendarPredicate) {
-            return assets.stream().filter(asset -> calendarEventPredicateMatches(timerService::getCurrentTimeMillis, query, asset)).toList();
+    /**
+     * Get the SQL and parameter binders for the query from the {@link #preparedQueryCache} or build and cache them. The
+     * generated SQL only depends on the shape of the query (values are bound as parameters) and the parameter binders
+     * read the values from the query being executed, so the cache is keyed on the shape of the query (see
+     * {@link #getQueryShapeKey}) and repeated queries also reuse the same server side prepared statement.
+     */
+    protected Pair<PreparedAssetQuery, Boolean> getPreparedQuery(AssetQuery query) {
+        // Date time and calendar predicates bind values relative to the current time when built so cannot be cached
+        if (preparedQueryCache == null || (query.attributes != null && containsTimePredicate(query.attributes))) {
+            return buildQuery(query, timerService::getCurrentTimeMillis);
         }
 
-        if (LOG.isLoggable(FINE)) {
-            LOG.fine("Asset query took " + (System.currentTimeMillis() - startMillis) + "ms: return count=" + assets.size());
+        String key = getQueryShapeKey(query);
+
+        if (key == null) {
+            return buildQuery(query, timerService::getCurrentTimeMillis);
         }
 
-        return assets;
+        Pair<PreparedAssetQuery, Boolean> preparedQuery = preparedQueryCache.getIfPresent(key);
+
+        if (preparedQuery != null) {
+            if (preparedQueryCacheHitCounter != null) {
+                preparedQueryCacheHitCounter.increment();
+            }
+            return preparedQuery;
+        }
+
+        if (preparedQueryCacheMissCounter != null) {
+            preparedQueryCacheMissCounter.increment();
+        }
+
+        preparedQuery = buildQuery(query, timerService::getCurrentTimeMillis);
+        preparedQueryCache.put(key, preparedQuery);
+        return preparedQuery;
     }
 
     /**
-     * This does a low level JDBC update so hibernate event interceptor doesn't get called and we 'manually'
-     * generate the {@link AttributeEvent}
+     * Get a key that identifies the shape of the query; this is the JSON of the query with the values that are bound as
+     * parameters replaced by a placeholder so all queries with the same key generate the same SQL. Values that are
+     * inlined in the SQL (e.g. limit, boolean and geofence predicates) or that change its structure (e.g. the number of
+     * predicates, which attribute predicates share a name or whether a string is empty) are kept.
+     * @return The key or <code>null</code> if the query cannot be serialised.
      */
-    @SuppressWarnings("unchecked")
-    protected boolean updateAttributeValue(EntityManager em, AttributeEvent event) throws ConstraintViolationException {
-
-        long timestamp = event.getTimestamp() > 0 ? event.getTimestamp() : timerService.getCurrentTimeMillis();
+    protected static String getQueryShapeKey(AssetQuery query) {
+        ObjectNode queryNode;
 
         try {
-            PGobject valueTimestampJSON = new PGobject();
-            valueTimestampJSON.setType("jsonb");
-            valueTimestampJSON.setValue("{\"value\":" + ValueUtil.asJSON(event.getValue().orElse(null)).orElse(ValueUtil.NULL_LITERAL) + ",\"timestamp\":" + timestamp + "}");
+            queryNode = ValueUtil.JSON.valueToTree(query);
+        } catch (IllegalArgumentException e) {
+            LOG.log(Level.FINE, "Failed to serialise asset query so it cannot be cached: " + query, e);
+            return null;
+        }
 
-            // TODO: Use jsonb type directly to optimise over wire data (couldn't get this to work even after seeing https://stackoverflow.com/questions/53847917/postgresql-throws-column-is-of-type-jsonb-but-expression-is-of-type-bytea-with)
-            Query query = em.createNativeQuery("UPDATE asset SET attributes[?] = attributes[?] || ?\\:\\:jsonb where id = ?")
-                .setParameter(1, event.getName())
-                .setParameter(2, event.getName())
-                .setParameter(3, "{\"value\":" + ValueUtil.asJSON(event.getValue().orElse(null)).orElse(ValueUtil.NULL_LITERAL) + ",\"timestamp\":" + timestamp + "}")
-                .setParameter(4, event.getId());
+        // Bound as a single array parameter so only the presence matters
+        for (String arrayField : new String[] {"ids", "userIds", "types"}) {
+            if (queryNode.get(arrayField) instanceof ArrayNode) {
+                queryNode.set(arrayField, queryNode.arrayNode());
+            }
+        }
+        replaceValue(queryNode, "after");
+        replaceValue(queryNode.get("realm"), "name");
+        replaceArrayValues(queryNode.path("select").get("attributes"));
 
-            int affectedRows = query.executeUpdate();
-            boolean success = affectedRows == 1;
+        if (queryNode.get("parents") instanceof ArrayNode parentsNode) {
+            parentsNode.forEach(parentNode -> replaceValue(parentNode, "id"));
+        }
 
-            if (success) {
-                if (LOG.isLoggable(Level.FINEST)) {
-                    LOG.finest("Updated attribute value assetID=" + event.getId() + ", attributeName=" + event.getName() + ", timestamp=" + timestamp);
+        replacePredicateValues(queryNode);
+        return queryNode.toString();
+    }
+
+    protected static void replacePredicateValues(JsonNode node) {
+        if (node instanceof ArrayNode) {
+            node.forEach(AssetStorageService::replacePredicateValues);
+            return;
+        }
+
+        if (!(node instanceof ObjectNode objectNode)) {
+            return;
+        }
+
+        if (objectNode.get("items") instanceof ArrayNode itemsNode) {
+            // Items of a logic group are grouped by their name predicate so replace the name with its group number
+            Map<JsonNode, Integer> nameGroups = new HashMap<>();
+            itemsNode.forEach(itemNode -> {
+                if (itemNode.get("name") instanceof ObjectNode nameNode && nameNode.has("value")) {
+                    int group = nameGroups.computeIfAbsent(nameNode.deepCopy(), n -> nameGroups.size());
+                    nameNode.remove("value");
+                    nameNode.put("group", group);
                 }
+            });
+        }
+
+        String predicateType = objectNode.path("predicateType").asText(null);
+
+        if (StringPredicate.name.equals(predicateType) || ArrayPredicate.name.equals(predicateType)) {
+            replaceValue(objectNode, "value");
+        } else if (NumberPredicate.name.equals(predicateType)) {
+            replaceValue(objectNode, "value");
+            replaceValue(objectNode, "rangeValue");
+        }
+
+        // Path elements of path and name value predicates are bound as parameters
+        replaceArrayValues(objectNode.get("path"));
+
+        objectNode.forEach(AssetStorageService::replacePredicateValues);
+    }
+
+    /**
+     * Empty strings are kept as the SQL can differ for empty and non-empty values (e.g. no realm predicate is added for
+     * an empty realm name).
+     */
+    protected static void replaceValue(JsonNode node, String fieldName) {
+        if (node instanceof ObjectNode objectNode && objectNode.hasNonNull(fieldName)
+            && !(objectNode.get(fieldName).isTextual() && objectNode.get(fieldName).asText().isEmpty())) {
+            objectNode.put(fieldName, "?");
+        }
+    }
+
+    protected static void replaceArrayValues(JsonNode node) {
+        if (node instanceof ArrayNode arrayNode) {
+            for (int i = 0; i < arrayNode.size(); i++) {
+                arrayNode.set(i, arrayNode.textNode("?"));
+            }
+        }
+    }
+
+    protected static boolean containsTimePredicate(LogicGroup<AttributePredicate> group) {
+        if (group.getItems().stream().anyMatch(predicate -> isTimePredicate(predicate.value)
+            || (predicate.meta != null && Arrays.stream(predicate.meta).anyMatch(meta -> isTimePredicate(meta.value))))) {
+            return true;
+        }
+
+        return group.groups != null && group.groups.stream().anyMatch(AssetStorageService::containsTimePredicate);
+    }
+
+    protected static boolean isTimePredicate(ValuePredicate predicate) {
+        return predicate instanceof DateTimePredicate || predicate instanceof CalendarEventPredicate;
+    }
+
+    /**
+     * This does a low level JDBC update so hibernate event interceptor doesn't get called and the caller must
+     * 'manually' publish the {@link AttributeEvent}s once the transaction has been committed. Events for the same asset
+     * are merged into a single JSON patch (the last event for each attribute wins) and all assets are updated in a
+     * single statement that returns the attribute names that were actually updated; attributes that no longer exist
+     * are not re-created.
+     * @return The refs of the attributes that could not be updated (i.e. the asset or attribute no longer exists).
+     */
+    protected Set<AttributeRef> updateAttributeValues(EntityManager em, Collection<AttributeEvent> events) {
+
+        // Built as a JSON tree as the object mapper omits null values and a null value must clear the stored value
+        ObjectNode assetPatches = ValueUtil.JSON.createObjectNode();
+
+        for (AttributeEvent event : events) {
+            long timestamp = event.getTimestamp() > 0 ? event.getTimestamp() : timerService.getCurrentTimeMillis();
+            JsonNode value;
+            try {
+                value = ValueUtil.JSON.valueToTree(event.getValue().orElse(null));
+            } catch (IllegalArgumentException e) {
+                // Left out of the patch so it is reported as failed
+                LOG.log(Level.WARNING, "Failed to serialise attribute value: " + event.getRef(), e);
+                continue;
+            }
+            ObjectNode assetPatch = assetPatches.get(event.getId()) instanceof ObjectNode existingPatch
+                ? existingPatch
+                : assetPatches.putObject(event.getId());
+            ObjectNode valueTimestamp = assetPatch.putObject(event.getName());
+            if (value == null) {
+                valueTimestamp.putNull("value");
             } else {
-                if (LOG.isLoggable(Level.FINE)) {
-                    LOG.fine("Failed to update attribute value assetID=" + event.getId() + ", attributeName=" + event.getName() + ", timestamp=" + timestamp);
-                }
+                valueTimestamp.set("value", value);
             }
+            valueTimestamp.put("timestamp", timestamp);
+        }
 
-            if (success) {
-                clientEventService.publishEvent(event);
+        Map<String, Set<String>> updatedAttributeNames = new HashMap<>(assetPatches.size());
+
+        em.unwrap(Session.class).doWork(connection -> {
+            // TODO: Use jsonb type directly to optimise over wire data (couldn't get this to work even after seeing https://stackoverflow.com/questions/53847917/postgresql-throws-column-is-of-type-jsonb-but-expression-is-of-type-bytea-with)
+            // The patch only contains existing attributes so the updated attributes are the patch keys present in the new row
+            try (PreparedStatement st = connection.prepareStatement(
+                "UPDATE asset A SET attributes = A.attributes || (select coalesce(jsonb_object_agg(V.key, (A.attributes -> V.key) || V.value), '{}'::jsonb)"
+                    + " from jsonb_each(P.value) V where (A.attributes -> V.key) is not null)"
+                    + " from jsonb_each(?::jsonb) P where A.id = P.key"
+                    + " returning A.id, array(select K from jsonb_object_keys(P.value) K where (A.attributes -> K) is not null)")) {
+
+                st.setString(1, assetPatches.toString());
+
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        String[] names = (String[]) rs.getArray(2).getArray();
+                        updatedAttributeNames.put(rs.getString(1), new HashSet<>(Arrays.asList(names)));
+                    }
+                }
             }
+        });
 
-            return success;
+        Set<AttributeRef> failedAttributeRefs = new HashSet<>();
 
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Failed to store attribute value", e);
-            return false;
+        for (AttributeEvent event : events) {
+            Set<String> names = updatedAttributeNames.get(event.getId());
+            if (names == null || !names.contains(event.getName())) {
+                failedAttributeRefs.add(event.getRef());
+            }
+        }
+
+        if (LOG.isLoggable(Level.FINEST)) {
+            LOG.finest("Updated attribute values: events=" + events.size() + ", assets=" + assetPatches.size() + ", failed attributes=" + failedAttributeRefs.size());
         }
+
+        return failedAttributeRefs;
     }
 
     protected void publishModificationEvents(PersistenceEvent<Asset<?>> persistenceEvent) {
@@ -1517,6 +1865,8 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             containsCalendarPredicate = !containsCalendarPredicate && appendWhereClause(sb, query, 3, binders, timeProvider);
         }
 
+        // Keyset condition is added to the where clause of the outermost select
+        sb.append(buildKeysetString(query, binders));
         sb.append(buildOrderByString(query));
         sb.append(buildLimitString(query));
         return new Pair<>(new PreparedAssetQuery(sb.toString(), binders), containsCalendarPredicate);
@@ -1529,6 +1879,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         StringBuilder sb = new StringBuilder();
         AssetQuery.Select select = query.select;
 
+        if (isProjection(query) && (!query.recursive || level == 3)) {
+            return buildProjectionSelect(query, binders);
+        }
+
         sb.append("select A.ID as ID, A.NAME as NAME, A.ACCESS_PUBLIC_READ as ACCESS_PUBLIC_READ");
         sb.append(", A.CREATED_ON AS CREATED_ON, A.TYPE AS TYPE, A.PARENT_ID AS PARENT_ID");
         sb.append(", A.REALM AS REALM, A.VERSION as VERSION");
@@ -1552,6 +1906,36 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return sb.toString();
     }
 
+    /**
+     * Builds the select of the outermost query for a projection; the attribute type, value and timestamp are extracted
+     * from the attributes column so the attribute JSON never leaves the DB.
+     */
+    protected static String buildProjectionSelect(AssetQuery query, List<ParameterBinder> binders) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("select A.ID as ID, A.NAME as NAME, A.TYPE as TYPE, A.REALM as REALM, A.PARENT_ID as PARENT_ID");
+        sb.append(", cast(A.PATH as text) as PATH");
+
+        String[] attributeNames = query.select.attributes;
+
+        for (int i = 0; i < attributeNames.length; i++) {
+            final int pos = binders.size() + 1;
+            final int index = i;
+            binders.add((st, q) -> st.setParameter(pos, q.select.attributes[index]));
+            String attribute = "(A.ATTRIBUTES -> cast(?" + pos + " as text))";
+
+            if (query.access != PRIVATE) {
+                String metaName = query.access == PROTECTED ? ACCESS_RESTRICTED_READ.getName() : ACCESS_PUBLIC_READ.getName();
+                attribute = "(case when " + attribute + " #>> '{meta," + metaName + "}' = 'true' then " + attribute + " end)";
+            }
+
+            sb.append(", ").append(attribute).append(" ->> 'type' as ATTRIBUTE_TYPE_").append(i);
+            sb.append(", cast(").append(attribute).append(" -> 'value' as text) as ATTRIBUTE_VALUE_").append(i);
+            sb.append(", cast(").append(attribute).append(" ->> 'timestamp' as bigint) as ATTRIBUTE_TIMESTAMP_").append(i);
+        }
+
+        return sb.toString();
+    }
+
     protected static String buildAttributeSelect(AssetQuery query, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
 
         Select select = query.select;
@@ -1573,7 +1957,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 .append("?")
                 .append(pos)
                 .append(")");
-            binders.add((em, st) -> st.setParameter(pos, select.attributes));
+            binders.add((st, q) -> st.setParameter(pos, q.select.attributes));
         }
 
         if (query.access != PRIVATE) {
@@ -1611,26 +1995,75 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
     protected static String buildOrderByString(AssetQuery query) {
         StringBuilder sb = new StringBuilder();
 
-        if (query.ids != null && !query.recursive) {
+        if (query.ids != null && !query.recursive && query.after == null) {
             return sb.toString();
         }
 
+        // Pages must have a total order so ties are ordered by ID
+        boolean paged = query.limit > 0 || query.after != null;
+
         if (query.orderBy != null && query.orderBy.property != null) {
-            sb.append(" order by ");
+            String direction = query.orderBy.descending ? "desc " : "asc ";
+            sb.append(" order by A.").append(getOrderByColumn(query.orderBy.property)).append(" ").append(direction);
 
-            switch (query.orderBy.property) {
-                case CREATED_ON -> sb.append(" A.CREATED_ON ");
-                case ASSET_TYPE -> sb.append(" A.TYPE ");
-                case NAME -> sb.append(" A.NAME ");
-                case PARENT_ID -> sb.append(" A.PARENT_ID ");
-                case REALM -> sb.append(" A.REALM ");
+            if (paged) {
+                sb.append(", A.ID ").append(direction);
             }
-            sb.append(query.orderBy.descending ? "desc " : "asc ");
+        } else if (paged) {
+            sb.append(" order by A.ID asc ");
         }
 
         return sb.toString();
     }
 
+    protected static String getOrderByColumn(OrderBy.Property property) {
+        return switch (property) {
+            case CREATED_ON -> "CREATED_ON";
+            case ASSET_TYPE -> "TYPE";
+            case NAME -> "NAME";
+            case PARENT_ID -> "PARENT_ID";
+            case REALM -> "REALM";
+        };
+    }
+
+    /**
+     * Builds the keyset pagination condition that only matches assets that come after the {@link AssetQuery#after}
+     * asset in the order of {@link #buildOrderByString}; the order by value of the after asset is looked up in the same
+     * statement so clients only need to supply the asset ID.
+     */
+    protected static String buildKeysetString(AssetQuery query, List<ParameterBinder> binders) {
+        if (query.after == null) {
+            return "";
+        }
+
+        final int pos = binders.size() + 1;
+        binders.add((st, q) -> st.setParameter(pos, q.after));
+        String afterId = "?" + pos;
+
+        if (query.orderBy == null || query.orderBy.property == null) {
+            return " AND A.ID > " + afterId;
+        }
+
+        boolean descending = query.orderBy.descending;
+        String operator = descending ? " < " : " > ";
+        String column = "A." + getOrderByColumn(query.orderBy.property);
+        String afterValue = "(select AK." + getOrderByColumn(query.orderBy.property) + " from ASSET AK where AK.ID = " + afterId + ")";
+
+        if (query.orderBy.property != OrderBy.Property.PARENT_ID) {
+            return " AND (" + column + ", A.ID)" + operator + "(" + afterValue + ", " + afterId + ")";
+        }
+
+        // Parent ID is nullable and postgres orders nulls last when ascending and first when descending
+        String afterNull = descending
+            ? column + " IS NOT NULL OR (" + column + " IS NULL AND A.ID < " + afterId + ")"
+            : column + " IS NULL AND A.ID > " + afterId;
+        String afterNotNull = descending
+            ? column + " < " + afterValue + " OR (" + column + " = " + afterValue + " AND A.ID < " + afterId + ")"
+            : column + " > " + afterValue + " OR " + column + " IS NULL OR (" + column + " = " + afterValue + " AND A.ID > " + afterId + ")";
+
+        return " AND ((" + afterValue + " IS NULL AND (" + afterNull + ")) OR (" + afterValue + " IS NOT NULL AND (" + afterNotNull + ")))";
+    }
+
     protected static String buildLimitString(AssetQuery query) {
         if (query.limit > 0) {
             return " LIMIT " + query.limit;
@@ -1655,7 +2088,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             sb.append(" and A.ID = ANY(?")
                 .append(pos)
                 .append(")");
-            binders.add((em, st) -> st.setParameter(pos, query.ids));
+            binders.add((st, q) -> st.setParameter(pos, q.ids));
         }
 
         if (level == 1 && query.names != null) {
@@ -1663,15 +2096,17 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             sb.append(" and (");
             boolean isFirst = true;
 
-            for (StringPredicate pred : query.names) {
+            for (int i = 0; i < query.names.length; i++) {
+                StringPredicate pred = query.names[i];
                 if (!isFirst) {
                     sb.append(" or ");
                 }
                 isFirst = false;
                 final int pos = binders.size() + 1;
+                final int index = i;
                 sb.append(pred.caseSensitive ? "A.NAME " : "upper(A.NAME)");
                 sb.append(StringPredicate.toSQLParameter(pred, pos, false));
-                binders.add((em, st) -> st.setParameter(pos, pred.prepareValue()));
+                binders.add((st, q) -> st.setParameter(pos, q.names[index].prepareValue()));
             }
             sb.append(")");
         }
@@ -1681,7 +2116,9 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             sb.append(" and (");
             boolean isFirst = true;
 
-            for (ParentPredicate pred : query.parents) {
+            for (int i = 0; i < query.parents.length; i++) {
+                ParentPredicate pred = query.parents[i];
+                final int index = i;
                 if (!isFirst) {
                     sb.append(" or (");
                 } else {
@@ -1692,7 +2129,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 if (level == 1 && pred.id != null) {
                     final int pos = binders.size() + 1;
                     sb.append("A.PARENT_ID = ?").append(pos);
-                    binders.add((em, st) -> st.setParameter(pos, pred.id));
+                    binders.add((st, q) -> st.setParameter(pos, q.parents[index].id));
                 } else if (level == 1) {
                     sb.append("A.PARENT_ID is null");
                 } else {
@@ -1707,13 +2144,12 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
         if (level == 1 && query.paths != null) {
             sb.append(" and (");
-            Arrays.stream(query.paths)
-                .map(p -> String.join(".", p.path))
-                .forEach(lqueryStr -> {
-                    int pos = binders.size() + 1;
-                    sb.append("A.PATH ~ lquery(?").append(pos).append(") or ");
-                    binders.add((em, st) -> st.setParameter(pos, "*." + lqueryStr + ".*"));
-                });
+            for (int i = 0; i < query.paths.length; i++) {
+                final int pos = binders.size() + 1;
+                final int index = i;
+                sb.append("A.PATH ~ lquery(?").append(pos).append(") or ");
+                binders.add((st, q) -> st.setParameter(pos, "*." + String.join(".", q.paths[index].path) + ".*"));
+            }
 
             sb.append("false)");
         }
@@ -1722,7 +2158,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             if (query.realm != null && !TextUtil.isNullOrEmpty(query.realm.name)) {
                 final int pos = binders.size() + 1;
                 sb.append(" and A.REALM = ?").append(pos);
-                binders.add((em, st) -> st.setParameter(pos, query.realm.name));
+                binders.add((st, q) -> st.setParameter(pos, q.realm.name));
             }
 
             if (query.userIds != null) {
@@ -1730,7 +2166,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 sb.append(" and UA.USER_ID = ANY(?")
                     .append(pos)
                     .append(")");
-                binders.add((em, st) -> st.setParameter(pos, query.userIds));
+                binders.add((st, q) -> st.setParameter(pos, q.userIds));
             }
 
             if (level == 1 && query.access == Access.PUBLIC) {
@@ -1738,12 +2174,11 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             }
 
             if (query.types != null) {
-                String[] resolvedTypes = getResolvedAssetTypes(query.types);
                 final int pos = binders.size() + 1;
                 sb.append(" and A.TYPE = ANY(?")
                     .append(pos)
                     .append(")");
-                binders.add((em, st) -> st.setParameter(pos, resolvedTypes));
+                binders.add((st, q) -> st.setParameter(pos, getResolvedAssetTypes(q.types)));
             }
 
             if (query.attributes != null) {
@@ -1751,14 +2186,17 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 AtomicInteger offset = new AtomicInteger(sb.length());
                 Consumer<String> selectInserter = (str) -> sb.insert(offset.getAndAdd(str.length()), str);
                 sb.append(" where true AND ");
-                containsCalendarPredicate = addAttributePredicateGroupQuery(sb, binders, 0, selectInserter, query.attributes, timeProvider);
+                containsCalendarPredicate = addAttributePredicateGroupQuery(sb, binders, 0, selectInserter, query.attributes, q -> q.attributes, timeProvider);
                 sb.append(")");
             }
         }
         return containsCalendarPredicate;
     }
 
-    protected static boolean addAttributePredicateGroupQuery(StringBuilder sb, List<ParameterBinder> binders, int groupIndex, Consumer<String> selectInserter, LogicGroup<AttributePredicate> attributePredicateGroup, Supplier<Long> timeProvider) {
+    /**
+     * @param groupAccessor Gets the same group from the query being executed so parameter binders can read its values.
+     */
+    protected static boolean addAttributePredicateGroupQuery(StringBuilder sb, List<ParameterBinder> binders, int groupIndex, Consumer<String> selectInserter, LogicGroup<AttributePredicate> attributePredicateGroup, Function<AssetQuery, LogicGroup<AttributePredicate>> groupAccessor, Supplier<Long> timeProvider) {
 
         boolean containsCalendarPredicate = false;
         LogicGroup.Operator operator = attributePredicateGroup.operator;
@@ -1771,34 +2209,44 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
         if (!attributePredicateGroup.getItems().isEmpty()) {
 
-            Collection<List<AttributePredicate>> grouped;
+            List<AttributePredicate> items = attributePredicateGroup.getItems();
+            Collection<List<Integer>> grouped;
 
             if (operator == LogicGroup.Operator.AND) {
                 // Group predicates by their attribute name predicate
-                grouped = attributePredicateGroup.getItems().stream().collect(groupingBy(predicate -> predicate.name != null ? predicate.name : "")).values();
+                grouped = IntStream.range(0, items.size()).boxed().collect(groupingBy(i -> items.get(i).name != null ? (Object) items.get(i).name : "")).values();
             } else {
                 grouped = new ArrayList<>();
-                grouped.add(attributePredicateGroup.getItems());
+                grouped.add(IntStream.range(0, items.size()).boxed().toList());
             }
 
             boolean isFirst = true;
 
-            for (List<AttributePredicate> group : grouped) {
+            for (List<Integer> group : grouped) {
                 if (!isFirst) {
                     sb.append(operator == LogicGroup.Operator.OR ? " or " : " and ");
                 }
                 isFirst = false;
 
+                List<NameValuePredicate> predicates = new ArrayList<>(group.size());
+                List<Function<AssetQuery, NameValuePredicate>> predicateAccessors = new ArrayList<>(group.size());
+                for (int index : group) {
+                    predicates.add(items.get(index));
+                    predicateAccessors.add(q -> groupAccessor.apply(q).getItems().get(index));
+                }
+
                 selectInserter.accept((groupIndex > 0 ? ", " : "") + "jsonb_each(A.attributes) as AX" + groupIndex);
-                containsCalendarPredicate = !containsCalendarPredicate && addNameValuePredicates(group, sb, binders, "AX" + groupIndex, selectInserter, operator == LogicGroup.Operator.OR, timeProvider);
+                containsCalendarPredicate = !containsCalendarPredicate && addNameValuePredicates(predicates, predicateAccessors, sb, binders, "AX" + groupIndex, selectInserter, operator == LogicGroup.Operator.OR, timeProvider);
                 groupIndex++;
             }
         }
 
         if (attributePredicateGroup.groups != null && attributePredicateGroup.groups.size() > 0) {
-            for (LogicGroup<AttributePredicate> group : attributePredicateGroup.groups) {
+            for (int i = 0; i < attributePredicateGroup.groups.size(); i++) {
+                LogicGroup<AttributePredicate> group = attributePredicateGroup.groups.get(i);
+                final int index = i;
                 sb.append(operator == LogicGroup.Operator.OR ? " or " : " and ");
-                boolean containsCalPred = addAttributePredicateGroupQuery(sb, binders, groupIndex, selectInserter, group, timeProvider);
+                boolean containsCalPred = addAttributePredicateGroupQuery(sb, binders, groupIndex, selectInserter, group, q -> groupAccessor.apply(q).groups.get(index), timeProvider);
                 if (!containsCalendarPredicate && containsCalPred) {
                     containsCalendarPredicate = true;
                 }
@@ -1809,12 +2257,18 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return containsCalendarPredicate;
     }
 
-    protected static boolean addNameValuePredicates(List<? extends NameValuePredicate> nameValuePredicates, StringBuilder sb, List<ParameterBinder> binders, String jsonObjName, Consumer<String> selectInserter, boolean useOr, Supplier<Long> timeProvider) {
+    /**
+     * @param predicateAccessors Get the same predicates from the query being executed so parameter binders can read
+     *                           their values.
+     */
+    protected static boolean addNameValuePredicates(List<? extends NameValuePredicate> nameValuePredicates, List<Function<AssetQuery, NameValuePredicate>> predicateAccessors, StringBuilder sb, List<ParameterBinder> binders, String jsonObjName, Consumer<String> selectInserter, boolean useOr, Supplier<Long> timeProvider) {
         boolean containsCalendarPredicate = false;
 
         boolean isFirst = true;
         int metaIndex = 0;
-        for (NameValuePredicate nameValuePredicate : nameValuePredicates) {
+        for (int i = 0; i < nameValuePredicates.size(); i++) {
+            NameValuePredicate nameValuePredicate = nameValuePredicates.get(i);
+            Function<AssetQuery, NameValuePredicate> predicateAccessor = predicateAccessors.get(i);
             if (!containsCalendarPredicate && nameValuePredicate.value instanceof CalendarEventPredicate) {
                 containsCalendarPredicate = true;
             }
@@ -1825,7 +2279,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
             sb.append("(");
 
-            sb.append(buildNameValuePredicateFilter(nameValuePredicate, jsonObjName, binders, timeProvider));
+            sb.append(buildNameValuePredicateFilter(nameValuePredicate, predicateAccessor, jsonObjName, binders, timeProvider));
 
             if (nameValuePredicate instanceof AttributePredicate attributePredicate) {
 
@@ -1833,7 +2287,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     String metaJsonObjName = jsonObjName + "_AM" + metaIndex++;
                     selectInserter.accept(" LEFT JOIN jsonb_each(" + jsonObjName + ".VALUE #> '{meta}') as " + metaJsonObjName + " ON true");
                     sb.append(" and (");
-                    addNameValuePredicates(Arrays.asList(attributePredicate.meta.clone()), sb, binders, metaJsonObjName, selectInserter, true, timeProvider);
+                    List<Function<AssetQuery, NameValuePredicate>> metaAccessors = IntStream.range(0, attributePredicate.meta.length)
+                        .mapToObj(metaItemIndex -> (Function<AssetQuery, NameValuePredicate>) q -> ((AttributePredicate) predicateAccessor.apply(q)).meta[metaItemIndex])
+                        .toList();
+                    addNameValuePredicates(Arrays.asList(attributePredicate.meta.clone()), metaAccessors, sb, binders, metaJsonObjName, selectInserter, true, timeProvider);
                     sb.append(")");
                 }
             }
@@ -1843,7 +2300,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return containsCalendarPredicate;
     }
 
-    protected static String buildNameValuePredicateFilter(NameValuePredicate nameValuePredicate, String jsonObjName, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
+    protected static String buildNameValuePredicateFilter(NameValuePredicate nameValuePredicate, Function<AssetQuery, NameValuePredicate> predicateAccessor, String jsonObjName, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
         if (nameValuePredicate.name == null && nameValuePredicate.value == null) {
             return "TRUE";
         }
@@ -1864,7 +2321,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
             final int pos = binders.size() + 1;
             attributeBuilder.append(StringPredicate.toSQLParameter(nameValuePredicate.name, pos, false));
-            binders.add((em, st) -> st.setParameter(pos, nameValuePredicate.name.prepareValue()));
+            binders.add((st, q) -> st.setParameter(pos, predicateAccessor.apply(q).name.prepareValue()));
 
         }
 
@@ -1896,16 +2353,17 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     }
                 };
             } else {
-                List<String> paths = new ArrayList<>();
-                if (isAttributePredicate) {
-                    paths.add("value");
-                }
-                paths.addAll(Arrays.stream(nameValuePredicate.path.getPaths()).map(Object::toString).toList());
-
                 valuePathInserter = (sb, b) -> {
                     final int pos = binders.size() + 1;
                     sb.append("(").append(jsonObjName).append(".VALUE ").append(operator).append(" ?").append(pos).append(")");
-                    binders.add((em, st) -> st.setParameter(pos, paths.toArray(new String[0])));
+                    binders.add((st, q) -> {
+                        List<String> paths = new ArrayList<>();
+                        if (isAttributePredicate) {
+                            paths.add("value");
+                        }
+                        paths.addAll(Arrays.stream(predicateAccessor.apply(q).path.getPaths()).map(Object::toString).toList());
+                        st.setParameter(pos, paths.toArray(new String[0]));
+                    });
                 };
             }
 
@@ -1919,7 +2377,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 }
                 final int pos = binders.size() + 1;
                 attributeBuilder.append(StringPredicate.toSQLParameter(stringPredicate, pos, false));
-                binders.add((em, st) -> st.setParameter(pos, stringPredicate.prepareValue()));
+                binders.add((st, q) -> st.setParameter(pos, ((StringPredicate) predicateAccessor.apply(q).value).prepareValue()));
             } else if (nameValuePredicate.value instanceof BooleanPredicate booleanPredicate) {
                 valuePathInserter.accept(attributeBuilder, binders);
                 attributeBuilder
@@ -1932,15 +2390,16 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 attributeBuilder
                     .append(" #>> '{}')\\:\\:timestamp");
 
+                // Relative to the current time so queries with date time predicates are not cached
                 Pair<Long, Long> fromAndTo = dateTimePredicate.asFromAndTo(timeProvider.get());
 
                 final int pos = binders.size() + 1;
-                binders.add((em, st) -> st.setParameter(pos, new java.sql.Timestamp(fromAndTo.key != null ? fromAndTo.key : 0L)));
+                binders.add((st, q) -> st.setParameter(pos, new java.sql.Timestamp(fromAndTo.key != null ? fromAndTo.key : 0L)));
                 attributeBuilder.append(buildOperatorFilter(dateTimePredicate.operator, dateTimePredicate.negate, pos));
 
                 if (dateTimePredicate.operator == Operator.BETWEEN) {
                     final int pos2 = binders.size() + 1;
-                    binders.add((em, st) -> st.setParameter(pos2, new java.sql.Timestamp(fromAndTo.value != null ? fromAndTo.value : Long.MAX_VALUE)));
+                    binders.add((st, q) -> st.setParameter(pos2, new java.sql.Timestamp(fromAndTo.value != null ? fromAndTo.value : Long.MAX_VALUE)));
                 }
             } else if (nameValuePredicate.value instanceof NumberPredicate numberPredicate) {
                 attributeBuilder.append("(");
@@ -1949,10 +2408,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     .append(" #>> '{}')\\:\\:numeric");
                 final int pos = binders.size() + 1;
                 attributeBuilder.append(buildOperatorFilter(numberPredicate.operator, numberPredicate.negate, pos));
-                binders.add((em, st) -> st.setParameter(pos, numberPredicate.value));
+                binders.add((st, q) -> st.setParameter(pos, ((NumberPredicate) predicateAccessor.apply(q).value).value));
                 if (numberPredicate.operator == Operator.BETWEEN) {
                     final int pos2 = binders.size() + 1;
-                    binders.add((em, st) -> st.setParameter(pos2, numberPredicate.rangeValue));
+                    binders.add((st, q) -> st.setParameter(pos2, ((NumberPredicate) predicateAccessor.apply(q).value).rangeValue));
                 }
             } else if (nameValuePredicate.value instanceof ArrayPredicate arrayPredicate) {
                 if (arrayPredicate.negated) {
@@ -1968,7 +2427,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     }
                     final int pos = binders.size() + 1;
                     attributeBuilder.append(" @> ?").append(pos).append(" \\:\\:jsonb");
-                    binders.add((em, st) -> st.setParameter(pos, ValueUtil.asJSON(arrayPredicate.value).orElse(ValueUtil.NULL_LITERAL)));
+                    binders.add((st, q) -> st.setParameter(pos, ValueUtil.asJSON(((ArrayPredicate) predicateAccessor.apply(q).value).value).orElse(ValueUtil.NULL_LITERAL)));
                 } else {
                     attributeBuilder.append("true");
                 }
@@ -2062,8 +2521,8 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 valuePathInserter.accept(attributeBuilder, binders);
                 attributeBuilder
                     .append(" #> '{recurrence}') = 'string'))");
-                binders.add((em, st) -> st.setParameter(pos, when));
-                binders.add((em, st) -> st.setParameter(pos+1, when));
+                binders.add((st, q) -> st.setParameter(pos, when));
+                binders.add((st, q) -> st.setParameter(pos+1, when));
             } else {
                 throw new UnsupportedOperationException("Attribute value predicate is not supported: " + nameValuePredicate.value);
             }
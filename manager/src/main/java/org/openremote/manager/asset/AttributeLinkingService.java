@@ -24,7 +24,7 @@ import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.gateway.GatewayService;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
-import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.AssetProjection;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeLink;
@@ -39,6 +39,7 @@ import org.openremote.model.value.MetaItemType;
 
 import java.util.Arrays;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.logging.Logger;
 
@@ -113,7 +114,7 @@ public class AttributeLinkingService implements ContainerService {
         final Object[] value = {sendConvertedValue.value};
 
         // Get the attribute and try and coerce the value into the correct type
-        getAttribute(assetStorageService, attributeInfo.getRealm(), attributeLink.getAttributeRef()).ifPresent(attr -> {
+        getAttribute(assetStorageService, assetProcessingService.attributeStateCache, attributeInfo.getRealm(), attributeLink.getAttributeRef()).ifPresent(attr -> {
 
             if (value[0] != null) {
 
@@ -160,6 +161,7 @@ public class AttributeLinkingService implements ContainerService {
                     return getSpecialConverter(converterValue.value).map(
                         specialConverter -> doSpecialConversion(
                             assetStorageService,
+                            assetProcessingService.attributeStateCache,
                             attributeInfo,
                             specialConverter,
                             attributeLink.getAttributeRef()
@@ -177,14 +179,15 @@ public class AttributeLinkingService implements ContainerService {
     }
 
     protected static Pair<Boolean, Object> doSpecialConversion(AssetStorageService assetStorageService,
+                                                              AttributeStateCache attributeStateCache,
                                                               AttributeInfo attributeInfo,
                                                               AttributeLink.ConverterType converter,
                                                               AttributeRef linkedAttributeRef) throws RuntimeException {
         switch (converter) {
             case TOGGLE -> {
-                // Look up current value of the linked attribute within the same database session
+                // Look up current value of the linked attribute, the cache holds values not yet flushed to the DB
                 try {
-                    Attribute<?> currentAttribute = getAttribute(assetStorageService, attributeInfo.getRealm(), linkedAttributeRef).orElseThrow(
+                    Attribute<?> currentAttribute = getAttribute(assetStorageService, attributeStateCache, attributeInfo.getRealm(), linkedAttributeRef).orElseThrow(
                         () -> new RuntimeException("Cannot toggle value as attribute cannot be found: " + linkedAttributeRef));
                     if (!ValueUtil.isBoolean(currentAttribute.getTypeClass())) {
                         throw new RuntimeException(
@@ -197,9 +200,9 @@ public class AttributeLinkingService implements ContainerService {
                 }
             }
             case INCREMENT, DECREMENT -> {
-                // Look up current value of the linked attribute within the same database session
+                // Look up current value of the linked attribute, the cache holds values not yet flushed to the DB
                 try {
-                    Attribute<?> currentAttribute = getAttribute(assetStorageService, attributeInfo.getRealm(), linkedAttributeRef)
+                    Attribute<?> currentAttribute = getAttribute(assetStorageService, attributeStateCache, attributeInfo.getRealm(), linkedAttributeRef)
                         .orElseThrow(() ->
                             new RuntimeException("Cannot toggle value as attribute cannot be found: " + linkedAttributeRef));
                     if (!ValueUtil.isNumber(currentAttribute.getTypeClass())) {
@@ -218,17 +221,40 @@ public class AttributeLinkingService implements ContainerService {
         }
     }
 
+    /**
+     * Get the current state of the attribute from the {@link AttributeStateCache} when the asset is cached, as the DB
+     * may not yet contain the latest accepted value, otherwise from the DB.
+     */
     protected static Optional<Attribute<?>> getAttribute(AssetStorageService assetStorageService,
+                                                         AttributeStateCache attributeStateCache,
                                                          String realm,
                                                          AttributeRef attributeRef) {
-        // Get the full asset as shared em
-        Asset<?> asset = assetStorageService.find(
+        AttributeStateCache.CachedAsset cachedAsset = attributeStateCache != null ? attributeStateCache.get(attributeRef.getId()) : null;
+
+        if (cachedAsset != null && Objects.equals(cachedAsset.getRealm(), realm)) {
+            AttributeStateCache.CachedAttribute cachedAttribute = cachedAsset.getAttribute(attributeRef.getName());
+
+            if (cachedAttribute == null) {
+                LOG.warning("Attribute or asset could not be found: " + attributeRef);
+                return Optional.empty();
+            }
+
+            Attribute<Object> attribute = new Attribute<>(attributeRef.getName(), cachedAttribute.getAttribute().getType(), cachedAttribute.getValue(), cachedAttribute.getTimestamp());
+            attribute.setMeta(cachedAttribute.getAttribute().getMeta());
+            return Optional.of(attribute);
+        }
+
+        // Only the current value and type of the attribute are needed so don't load the full asset
+        Attribute<?> attribute = assetStorageService.findProjections(
             new AssetQuery()
+                .select(new AssetQuery.Select().projection(attributeRef.getName()))
                 .realm(new RealmPredicate(realm))
                 .ids(attributeRef.getId())
-        );
-
-        Attribute<?> attribute = asset != null ? asset.getAttributes().get(attributeRef.getName()).orElse(null) : null;
+        ).stream()
+            .findFirst()
+            .flatMap(asset -> asset.getAttribute(attributeRef.getName()))
+            .map(AssetProjection.AttributeProjection::toAttribute)
+            .orElse(null);
 
         if (attribute == null) {
             LOG.warning("Attribute or asset could not be found: " + attributeRef);
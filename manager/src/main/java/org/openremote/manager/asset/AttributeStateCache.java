@@ -0,0 +1,264 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.openremote.model.PersistenceEvent;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.AssetInfo;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.value.ValueDescriptor;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded write-through cache of the asset info and attribute state needed by the {@link AssetProcessingService} to
+ * process an {@link AttributeEvent} without loading the whole {@link Asset} from the DB.
+ * <p>
+ * Attribute values are updated by {@link #updateValue} when a new value is accepted for storage (the asset should be
+ * evicted if storing the value then fails); any {@link Asset} {@link PersistenceEvent} results in the asset (and its
+ * descendants if it has moved) being evicted so the next event reloads it. Loads that race with an eviction are not
+ * cached (see {@link #getOrLoad}).
+ */
+public class AttributeStateCache {
+
+    /**
+     * The cached state of an {@link Attribute}; the attribute instance only holds the name, type and meta and must be
+     * treated as read only.
+     */
+    public static class CachedAttribute {
+        protected final Attribute<Object> attribute;
+        protected final Object value;
+        protected final long timestamp;
+
+        protected CachedAttribute(Attribute<Object> attribute, Object value, long timestamp) {
+            this.attribute = attribute;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        public Attribute<Object> getAttribute() {
+            return attribute;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+    }
+
+    /**
+     * The cached info of an {@link Asset} along with the state of each of its {@link Attribute}s.
+     */
+    public static class CachedAsset implements AssetInfo {
+        protected final String id;
+        protected final String realm;
+        protected final String parentId;
+        protected final String[] path;
+        protected final String name;
+        protected final String type;
+        protected final Class<? extends Asset> assetClass;
+        protected final Date createdOn;
+        protected final Map<String, CachedAttribute> attributes;
+
+        @SuppressWarnings("unchecked")
+        protected CachedAsset(Asset<?> asset) {
+            id = asset.getId();
+            realm = asset.getRealm();
+            parentId = asset.getParentId();
+            path = asset.getPath();
+            name = asset.getAssetName();
+            type = asset.getAssetType();
+            assetClass = asset.getAssetClass();
+            createdOn = asset.getCreatedOn();
+            attributes = new HashMap<>(asset.getAttributes().size());
+            asset.getAttributes().forEach(attribute -> {
+                Attribute<Object> attributeInfo = new Attribute<>(attribute.getName(), (ValueDescriptor<Object>) attribute.getType());
+                attributeInfo.setMeta(attribute.getMeta());
+                attributes.put(attribute.getName(), new CachedAttribute(attributeInfo, attribute.getValue().orElse(null), attribute.getTimestamp().orElse(0L)));
+            });
+        }
+
+        public CachedAttribute getAttribute(String name) {
+            synchronized (attributes) {
+                return attributes.get(name);
+            }
+        }
+
+        protected void setAttribute(String name, CachedAttribute cachedAttribute) {
+            synchronized (attributes) {
+                attributes.put(name, cachedAttribute);
+            }
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public String getRealm() {
+            return realm;
+        }
+
+        @Override
+        public String getParentId() {
+            return parentId;
+        }
+
+        @Override
+        public String[] getPath() {
+            return path;
+        }
+
+        @Override
+        public String[] getAttributeNames() {
+            synchronized (attributes) {
+                return attributes.keySet().toArray(new String[0]);
+            }
+        }
+
+        @Override
+        public String getAssetName() {
+            return name;
+        }
+
+        @Override
+        public String getAssetType() {
+            return type;
+        }
+
+        @Override
+        public Class<? extends Asset> getAssetClass() {
+            return assetClass;
+        }
+
+        @Override
+        public Date getCreatedOn() {
+            return createdOn;
+        }
+    }
+
+    private static final System.Logger LOG = System.getLogger(AttributeStateCache.class.getName());
+    protected final Cache<String, CachedAsset> cache;
+    // Incremented on every eviction so loads that started before an eviction are not cached
+    protected final AtomicLong evictionCounter = new AtomicLong();
+
+    public AttributeStateCache(long maxSize) {
+        cache = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    /**
+     * Get the {@link CachedAsset} for the specified asset ID; if it is not cached then the loader is called and the
+     * result is cached unless the asset has been modified during the load.
+     */
+    public CachedAsset getOrLoad(String assetId, Supplier<Asset<?>> loader) {
+        CachedAsset cachedAsset = cache.getIfPresent(assetId);
+
+        if (cachedAsset != null) {
+            return cachedAsset;
+        }
+
+        long evictionCount = evictionCounter.get();
+        Asset<?> asset = loader.get();
+
+        if (asset == null) {
+            return null;
+        }
+
+        CachedAsset loadedAsset = new CachedAsset(asset);
+
+        cache.asMap().compute(assetId, (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            return evictionCount == evictionCounter.get() ? loadedAsset : null;
+        });
+
+        return loadedAsset;
+    }
+
+    /**
+     * Get the {@link CachedAsset} for the specified asset ID if it is cached.
+     */
+    public CachedAsset get(String assetId) {
+        return cache.getIfPresent(assetId);
+    }
+
+    /**
+     * Update the cached value of the attribute.
+     */
+    public void updateValue(AttributeEvent event) {
+        CachedAsset cachedAsset = cache.getIfPresent(event.getId());
+
+        if (cachedAsset == null) {
+            return;
+        }
+
+        CachedAttribute cachedAttribute = cachedAsset.getAttribute(event.getName());
+
+        if (cachedAttribute == null) {
+            evict(event.getId());
+            return;
+        }
+
+        cachedAsset.setAttribute(event.getName(), new CachedAttribute(cachedAttribute.attribute, event.getValue().orElse(null), event.getTimestamp()));
+    }
+
+    public void evict(String assetId) {
+        evictionCounter.incrementAndGet();
+        cache.invalidate(assetId);
+    }
+
+    /**
+     * Evict the modified asset and if the asset has moved then also any cached descendants as their path will have
+     * changed.
+     */
+    public void onAssetPersistenceEvent(PersistenceEvent<Asset<?>> persistenceEvent) {
+        String assetId = persistenceEvent.getEntity().getId();
+        evict(assetId);
+
+        if (persistenceEvent.getCause() == PersistenceEvent.Cause.UPDATE && persistenceEvent.hasPropertyChanged("parentId")) {
+            LOG.log(System.Logger.Level.TRACE, () -> "Asset has moved so evicting descendants from attribute state cache: " + assetId);
+            cache.asMap().values().removeIf(cachedAsset -> cachedAsset.path != null && Arrays.asList(cachedAsset.path).contains(assetId));
+        }
+    }
+
+    public void clear() {
+        evictionCounter.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+}
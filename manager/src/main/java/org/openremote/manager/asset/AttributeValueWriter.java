@@ -0,0 +1,138 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.openremote.container.persistence.PersistenceService;
+import org.openremote.manager.event.ClientEventService;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Group commit stage for the attribute value updates of a single attribute event processor; the processor
+ * {@link #add}s the events to be stored and calls {@link #flush} when {@link #isFlushRequired} or it has no more events
+ * to process. A flush stores all pending values in a single transaction (see
+ * {@link AssetStorageService#updateAttributeValues}) and only then publishes the events to the
+ * {@link ClientEventService} in the order they were added.
+ */
+public class AttributeValueWriter {
+
+    private static final System.Logger LOG = System.getLogger(AttributeValueWriter.class.getName());
+    protected final PersistenceService persistenceService;
+    protected final AssetStorageService assetStorageService;
+    protected final ClientEventService clientEventService;
+    protected final int maxBatchSize;
+    protected final long maxLatencyMillis;
+    protected final BiConsumer<AttributeEvent, Boolean> completionHandler;
+    protected final List<AttributeEvent> pendingEvents = new ArrayList<>();
+    protected long firstPendingMillis;
+    protected DistributionSummary batchSizeSummary;
+    protected Timer flushTimer;
+
+    /**
+     * @param maxBatchSize      Max number of pending events before a flush is required.
+     * @param maxLatencyMillis  Max time the oldest pending event can wait before a flush is required.
+     * @param completionHandler Called for each event once it has been flushed indicating whether it was stored.
+     */
+    public AttributeValueWriter(PersistenceService persistenceService, AssetStorageService assetStorageService, ClientEventService clientEventService, int maxBatchSize, long maxLatencyMillis, BiConsumer<AttributeEvent, Boolean> completionHandler) {
+        this.persistenceService = persistenceService;
+        this.assetStorageService = assetStorageService;
+        this.clientEventService = clientEventService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyMillis = maxLatencyMillis;
+        this.completionHandler = completionHandler;
+    }
+
+    public AttributeValueWriter setMetrics(DistributionSummary batchSizeSummary, Timer flushTimer) {
+        this.batchSizeSummary = batchSizeSummary;
+        this.flushTimer = flushTimer;
+        return this;
+    }
+
+    public synchronized void add(AttributeEvent event) {
+        if (pendingEvents.isEmpty()) {
+            firstPendingMillis = System.currentTimeMillis();
+        }
+        pendingEvents.add(event);
+    }
+
+    public synchronized boolean isFlushRequired() {
+        return !pendingEvents.isEmpty()
+            && (pendingEvents.size() >= maxBatchSize || System.currentTimeMillis() - firstPendingMillis >= maxLatencyMillis);
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingEvents.isEmpty();
+    }
+
+    /**
+     * Store all pending events and publish those that were successfully stored.
+     * @return The events that failed to be stored.
+     */
+    public synchronized List<AttributeEvent> flush() {
+        if (pendingEvents.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<AttributeEvent> events = new ArrayList<>(pendingEvents);
+        pendingEvents.clear();
+        long startMillis = System.currentTimeMillis();
+        Set<AttributeRef> failedAttributeRefs;
+
+        try {
+            failedAttributeRefs = persistenceService.doReturningTransaction(em -> assetStorageService.updateAttributeValues(em, events));
+        } catch (Exception e) {
+            LOG.log(System.Logger.Level.WARNING, "Failed to store attribute values: count=" + events.size(), e);
+            failedAttributeRefs = null;
+        }
+
+        long flushMillis = System.currentTimeMillis() - startMillis;
+        LOG.log(System.Logger.Level.TRACE, () -> "Attribute values flushed in " + flushMillis + "ms: count=" + events.size());
+
+        if (batchSizeSummary != null) {
+            batchSizeSummary.record(events.size());
+        }
+        if (flushTimer != null) {
+            flushTimer.record(Duration.ofMillis(flushMillis));
+        }
+
+        List<AttributeEvent> failedEvents = new ArrayList<>();
+
+        for (AttributeEvent event : events) {
+            boolean stored = failedAttributeRefs != null && !failedAttributeRefs.contains(event.getRef());
+
+            if (stored) {
+                clientEventService.publishEvent(event);
+            } else {
+                LOG.log(System.Logger.Level.DEBUG, () -> "Failed to store attribute value, database update failed, asset or attribute not found: " + event.toStringWithValueType());
+                failedEvents.add(event);
+            }
+
+            completionHandler.accept(event, stored);
+        }
+
+        return failedEvents;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.openremote.model.PersistenceEvent;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.UserAssetLink;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.security.Realm;
+import org.openremote.model.security.User;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache of the asset dependent part of the decision whether a user can write an {@link AttributeEvent} (realm
+ * is active, asset and attribute exist, restricted user is linked to the asset and access meta items) so that a high
+ * rate of writes from the same user to the same attribute does not load the asset for every write; checks that only
+ * depend on the user's token (e.g. roles) must still be done for every write.
+ * <p>
+ * Decisions expire after the configured TTL and are invalidated by {@link Asset}, {@link UserAssetLink}, {@link User}
+ * and {@link Realm} {@link PersistenceEvent}s (see {@link #onPersistenceEvent}). Decisions made whilst an invalidation
+ * is in progress are not cached (see {@link #isAuthorised}).
+ */
+public class AttributeWriteAuthorisationCache {
+
+    protected static final class Key {
+        protected final String userId;
+        protected final String realm;
+        protected final boolean restricted;
+        protected final String assetId;
+        protected final String attributeName;
+
+        protected Key(String userId, String realm, boolean restricted, String assetId, String attributeName) {
+            this.userId = userId;
+            this.realm = realm;
+            this.restricted = restricted;
+            this.assetId = assetId;
+            this.attributeName = attributeName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return restricted == key.restricted
+                && Objects.equals(userId, key.userId)
+                && Objects.equals(realm, key.realm)
+                && Objects.equals(assetId, key.assetId)
+                && Objects.equals(attributeName, key.attributeName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, realm, restricted, assetId, attributeName);
+        }
+    }
+
+    private static final System.Logger LOG = System.getLogger(AttributeWriteAuthorisationCache.class.getName());
+    protected final Cache<Key, Boolean> cache;
+    // Incremented on every invalidation so decisions that started before an invalidation are not cached
+    protected final AtomicLong invalidationCounter = new AtomicLong();
+
+    public AttributeWriteAuthorisationCache(long maxSize, long ttlMillis) {
+        cache = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    /**
+     * Get the cached decision for the user writing the attribute event; if there is no cached decision then the
+     * authoriser is called and the result is cached unless there has been an invalidation during the call.
+     *
+     * @param userId     The ID of the user or <code>null</code> for anonymous writes.
+     * @param restricted Whether the user is a restricted user.
+     */
+    public boolean isAuthorised(String userId, String realm, boolean restricted, AttributeEvent event, BooleanSupplier authoriser) {
+        Key key = new Key(userId, realm, restricted, event.getId(), event.getName());
+        Boolean authorised = cache.getIfPresent(key);
+
+        if (authorised != null) {
+            return authorised;
+        }
+
+        long invalidationCount = invalidationCounter.get();
+        boolean result = authoriser.getAsBoolean();
+
+        if (invalidationCount == invalidationCounter.get()) {
+            cache.put(key, result);
+        }
+
+        return result;
+    }
+
+    public void onPersistenceEvent(PersistenceEvent<?> persistenceEvent) {
+        Object entity = persistenceEvent.getEntity();
+
+        if (entity instanceof Asset<?> asset) {
+            invalidate(key -> Objects.equals(key.assetId, asset.getId()));
+        } else if (entity instanceof UserAssetLink userAssetLink) {
+            String userId = userAssetLink.getId().getUserId();
+            String assetId = userAssetLink.getId().getAssetId();
+            invalidate(key -> Objects.equals(key.userId, userId) && Objects.equals(key.assetId, assetId));
+        } else if (entity instanceof User user) {
+            invalidate(key -> Objects.equals(key.userId, user.getId()));
+        } else if (entity instanceof Realm) {
+            LOG.log(System.Logger.Level.TRACE, "Realm modified so clearing attribute write authorisation cache");
+            clear();
+        }
+    }
+
+    public void clear() {
+        invalidationCounter.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    protected void invalidate(Predicate<Key> predicate) {
+        invalidationCounter.incrementAndGet();
+        cache.asMap().keySet().removeIf(predicate);
+    }
+}
@@ -24,6 +24,7 @@ import jakarta.persistence.TypedQuery;
 import jakarta.validation.constraints.NotNull;
 import org.hibernate.Session;
 import org.hibernate.jdbc.AbstractReturningWork;
+import org.openremote.container.concurrent.ContainerExecutor;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetStorageService;
@@ -36,6 +37,7 @@ import org.openremote.model.datapoint.Datapoint;
 import org.openremote.model.datapoint.DatapointPeriod;
 import org.openremote.model.datapoint.ValueDatapoint;
 import org.openremote.model.datapoint.query.AssetDatapointQuery;
+import org.openremote.model.util.Pair;
 import org.openremote.model.util.ValueUtil;
 import org.postgresql.util.PGobject;
 
@@ -43,20 +45,30 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static java.time.temporal.ChronoUnit.DAYS;
+import static org.openremote.container.util.MapAccess.getInteger;
 
 /**
  * Base class for all classes that store and retrieve {@link org.openremote.model.datapoint.Datapoint}.
@@ -64,11 +76,17 @@ import static java.time.temporal.ChronoUnit.DAYS;
 public abstract class AbstractDatapointService<T extends Datapoint> implements ContainerService {
 
     public static final int PRIORITY = AssetStorageService.PRIORITY + 100;
+    public static final String OR_DATA_POINTS_QUERY_PARALLELISM = "OR_DATA_POINTS_QUERY_PARALLELISM";
+    public static final int OR_DATA_POINTS_QUERY_PARALLELISM_DEFAULT = 4;
+    protected static final int NUMERIC_VALUE_BACKFILL_BATCH_SIZE = 10000;
     protected PersistenceService persistenceService;
     protected AssetStorageService assetStorageService;
     protected TimerService timerService;
     protected ScheduledExecutorService executorService;
     protected ScheduledFuture<?> dataPointsPurgeScheduledFuture;
+    protected int queryParallelism;
+    protected ExecutorService queryExecutor;
+    protected Future<?> numericValueBackfillFuture;
 
     @Override
     public int getPriority() {
@@ -81,6 +99,21 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         assetStorageService = container.getService(AssetStorageService.class);
         timerService = container.getService(TimerService.class);
         executorService = container.getExecutorService();
+        queryParallelism = Math.max(1, getInteger(container.getConfig(), OR_DATA_POINTS_QUERY_PARALLELISM, OR_DATA_POINTS_QUERY_PARALLELISM_DEFAULT));
+
+        if (queryParallelism > 1) {
+            // The calling thread queries one group so at most parallelism - 1 groups run on the pool; when all pool
+            // threads are busy (concurrent batch queries) the group is queried on the calling thread instead
+            ContainerExecutor executor = new ContainerExecutor(
+                "Datapoint queries " + getClass().getSimpleName(),
+                queryParallelism - 1,
+                queryParallelism - 1,
+                60,
+                -1,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            queryExecutor = executor;
+        }
     }
 
     @Override
@@ -88,6 +121,16 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         if (dataPointsPurgeScheduledFuture != null) {
             dataPointsPurgeScheduledFuture.cancel(true);
         }
+
+        if (queryExecutor != null) {
+            queryExecutor.shutdownNow();
+            queryExecutor = null;
+        }
+
+        if (numericValueBackfillFuture != null) {
+            numericValueBackfillFuture.cancel(true);
+            numericValueBackfillFuture = null;
+        }
     }
 
     public void upsertValue(String assetId, String attributeName, Object value, LocalDateTime timestamp) throws IllegalStateException {
@@ -110,6 +153,8 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                     throw new IllegalStateException(msg, e);
                 }
             }));
+
+        onDatapointsStored(timestamp);
     }
 
     public void upsertValues(String assetId, String attributeName, List<ValueDatapoint<?>> valuesAndTimestamps) throws IllegalStateException {
@@ -133,6 +178,37 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                         throw new IllegalStateException(msg, e);
                     }
                 }));
+
+        valuesAndTimestamps.stream().mapToLong(ValueDatapoint::getTimestamp).min().ifPresent(this::onDatapointsStored);
+    }
+
+    /**
+     * Insert/update the datapoints of any number of attributes using a single JDBC batch in one transaction.
+     */
+    public void upsertDatapoints(Collection<? extends Datapoint> datapoints) throws IllegalStateException {
+        if (datapoints.isEmpty()) {
+            return;
+        }
+
+        persistenceService.doTransaction(em ->
+                em.unwrap(Session.class).doWork(connection -> {
+
+                    getLogger().finest("Storing datapoints: count=" + datapoints.size());
+
+                    try (PreparedStatement st = getUpsertPreparedStatement(connection)) {
+                        for (Datapoint datapoint : datapoints) {
+                            setUpsertValues(st, datapoint.getAssetId(), datapoint.getAttributeName(), datapoint.getValue(), datapoint.getTimestamp());
+                            st.addBatch();
+                        }
+                        st.executeBatch();
+                    } catch (Exception e) {
+                        String msg = "Failed to insert/update data points: count=" + datapoints.size();
+                        getLogger().log(Level.WARNING, msg, e);
+                        throw new IllegalStateException(msg, e);
+                    }
+                }));
+
+        datapoints.stream().mapToLong(Datapoint::getTimestamp).min().ifPresent(this::onDatapointsStored);
     }
 
     public List<ValueDatapoint> getDatapoints(AttributeRef attributeRef) {
@@ -187,7 +263,6 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
     public List<ValueDatapoint<?>> queryDatapoints(String assetId, Attribute<?> attribute, @NotNull AssetDatapointQuery datapointQuery) {
 
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
-        Map<Integer, Object> parameters = datapointQuery.getSQLParameters(attributeRef);
 
         getLogger().finest("Querying datapoints for: " + attributeRef);
 
@@ -196,53 +271,237 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
 
                     @Override
                     public List<ValueDatapoint<?>> execute(Connection connection) throws SQLException {
+                        return queryDatapoints(connection, attributeRef, attribute.getTypeClass(), datapointQuery);
+                    }
+                })
+        );
+    }
 
-                        Class<?> attributeType = attribute.getTypeClass();
-                        boolean isNumber = Number.class.isAssignableFrom(attributeType);
-                        boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
+    /**
+     * Applies the same query to the datapoints of each of the specified attributes (with their value type); the
+     * attributes are split into at most {@link #OR_DATA_POINTS_QUERY_PARALLELISM} groups that are queried in parallel
+     * on the calling thread and a dedicated bounded pool, each group using a single connection.
+     */
+    public Map<AttributeRef, List<ValueDatapoint<?>>> queryDatapoints(Map<AttributeRef, Class<?>> attributeTypes, @NotNull AssetDatapointQuery datapointQuery) {
 
-                        String query;
-                        try {
-                            query = datapointQuery.getSQLQuery(getDatapointTableName(), attributeType);
-                        } catch (IllegalStateException ise) {
-                            getLogger().log(Level.WARNING, ise.getMessage());
-                            throw ise;
-                        }
-                        try (PreparedStatement st = connection.prepareStatement(query)) {
+        List<AttributeRef> attributeRefs = new ArrayList<>(attributeTypes.keySet());
+        int groupCount = Math.min(queryParallelism, attributeRefs.size());
 
-                            if(!parameters.isEmpty()) {
-                                for(Map.Entry<Integer, Object> param : parameters.entrySet()) {
-                                    if(param.getValue() instanceof String) {
-                                        st.setString(param.getKey(), param.getValue().toString());
-                                    } else {
-                                        st.setObject(param.getKey(), param.getValue());
-                                    }
-                                }
-                            }
+        getLogger().finest("Querying datapoints for: count=" + attributeRefs.size() + ", groups=" + groupCount);
 
-                            try (ResultSet rs = st.executeQuery()) {
-                                List<ValueDatapoint<?>> result = new ArrayList<>();
-                                while (rs.next()) {
-                                    Object value = null;
-                                    if (rs.getObject(2) != null) {
-                                        if(isNumber || isBoolean) {
-                                            value = ValueUtil.getValueCoerced(rs.getObject(2), Double.class).orElse(null);
-                                        } else {
-                                            if (rs.getObject(2) instanceof PGobject) {
-                                                value = ValueUtil.parse(((PGobject) rs.getObject(2)).getValue()).orElse(null);
-                                            } else {
-                                                value = ValueUtil.getValueCoerced(rs.getObject(2), JsonNode.class).orElse(null);
-                                            }
-                                        }
-                                    }
-                                    result.add(new ValueDatapoint<>(rs.getTimestamp(1).getTime(), value));
-                                }
-                                return result;
+        List<Supplier<Map<AttributeRef, List<ValueDatapoint<?>>>>> groupQueries = new ArrayList<>(groupCount);
+
+        for (int i = 0; i < groupCount; i++) {
+            List<AttributeRef> group = new ArrayList<>();
+            for (int j = i; j < attributeRefs.size(); j += groupCount) {
+                group.add(attributeRefs.get(j));
+            }
+
+            groupQueries.add(() -> persistenceService.doReturningTransaction(entityManager ->
+                entityManager.unwrap(Session.class).doReturningWork(connection -> {
+                    Map<AttributeRef, List<ValueDatapoint<?>>> groupResult = new HashMap<>(group.size());
+                    for (AttributeRef attributeRef : group) {
+                        groupResult.put(attributeRef, queryDatapoints(connection, attributeRef, attributeTypes.get(attributeRef), datapointQuery));
+                    }
+                    return groupResult;
+                })));
+        }
+
+        Map<AttributeRef, List<ValueDatapoint<?>>> result = new HashMap<>(attributeRefs.size());
+
+        if (groupQueries.isEmpty()) {
+            return result;
+        }
+
+        // The first group is queried on the calling thread
+        List<CompletableFuture<Map<AttributeRef, List<ValueDatapoint<?>>>>> futures = groupQueries.subList(1, groupQueries.size()).stream()
+            .map(groupQuery -> CompletableFuture.supplyAsync(groupQuery, queryExecutor))
+            .toList();
+
+        try {
+            result.putAll(groupQueries.get(0).get());
+
+            for (CompletableFuture<Map<AttributeRef, List<ValueDatapoint<?>>>> future : futures) {
+                result.putAll(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        } finally {
+            futures.forEach(future -> future.cancel(false));
+        }
+
+        return result;
+    }
+
+    protected List<ValueDatapoint<?>> queryDatapoints(Connection connection, AttributeRef attributeRef, Class<?> attributeType, AssetDatapointQuery datapointQuery) throws SQLException {
+        boolean isNumber = Number.class.isAssignableFrom(attributeType);
+        boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
+
+        Pair<String, Map<Integer, Object>> queryAndParameters;
+        try {
+            queryAndParameters = getDatapointQuery(attributeRef, attributeType, datapointQuery);
+        } catch (IllegalStateException ise) {
+            getLogger().log(Level.WARNING, ise.getMessage());
+            throw ise;
+        }
+        String query = queryAndParameters.key;
+        Map<Integer, Object> parameters = queryAndParameters.value;
+
+        try (PreparedStatement st = connection.prepareStatement(query)) {
+
+            if(!parameters.isEmpty()) {
+                for(Map.Entry<Integer, Object> param : parameters.entrySet()) {
+                    if(param.getValue() instanceof String) {
+                        st.setString(param.getKey(), param.getValue().toString());
+                    } else {
+                        st.setObject(param.getKey(), param.getValue());
+                    }
+                }
+            }
+
+            try (ResultSet rs = st.executeQuery()) {
+                List<ValueDatapoint<?>> result = new ArrayList<>();
+                while (rs.next()) {
+                    Object value = null;
+                    if (rs.getObject(2) != null) {
+                        if(isNumber || isBoolean) {
+                            value = ValueUtil.getValueCoerced(rs.getObject(2), Double.class).orElse(null);
+                        } else {
+                            if (rs.getObject(2) instanceof PGobject) {
+                                value = ValueUtil.parse(((PGobject) rs.getObject(2)).getValue()).orElse(null);
+                            } else {
+                                value = ValueUtil.getValueCoerced(rs.getObject(2), JsonNode.class).orElse(null);
                             }
                         }
                     }
-                })
-        );
+                    result.add(new ValueDatapoint<>(rs.getTimestamp(1).getTime(), value));
+                }
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Get the SQL and its parameters for the specified query; subclasses can override this to answer a query from
+     * something other than the datapoint table as long as the result columns are the same.
+     */
+    protected Pair<String, Map<Integer, Object>> getDatapointQuery(AttributeRef attributeRef, Class<?> attributeType, AssetDatapointQuery datapointQuery) throws IllegalStateException {
+        return new Pair<>(datapointQuery.getSQLQuery(getDatapointTableName(), attributeType), datapointQuery.getSQLParameters(attributeRef));
+    }
+
+    /**
+     * Moves the number and boolean values of datapoints stored before the NUMERIC_VALUE column was added to that column
+     * in batches of {@link #NUMERIC_VALUE_BACKFILL_BATCH_SIZE} in the background; does nothing once all datapoints have
+     * been backfilled.
+     */
+    protected void startNumericValueBackfill() {
+        numericValueBackfillFuture = executorService.submit(() -> {
+            try {
+                backfillNumericValues();
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Failed to backfill numeric values of " + getDatapointTableName() + " so it will be resumed on next start", e);
+            }
+        });
+    }
+
+    /**
+     * Each batch is its own transaction that also stores how far the backfill has got so it resumes from there after
+     * a restart; the row of the table is deleted from DATAPOINT_NUMERIC_VALUE_BACKFILL once complete. Numbers outside
+     * of the double range only keep their jsonb value.
+     */
+    protected void backfillNumericValues() {
+        String sql = "with B as (select ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP from " + getDatapointTableName() +
+            " where NUMERIC_VALUE is null and jsonb_typeof(VALUE) in ('number', 'boolean') and abs(DATAPOINT_NUMERIC_VALUE(VALUE)) < 1e308" +
+            " and TIMESTAMP >= ? order by TIMESTAMP limit ?)" +
+            " update " + getDatapointTableName() + " D set NUMERIC_VALUE = DATAPOINT_NUMERIC_VALUE(D.VALUE)," +
+            " VALUE = case when jsonb_typeof(D.VALUE) = 'number' and to_jsonb(DATAPOINT_NUMERIC_VALUE(D.VALUE)::double precision) = D.VALUE then null else D.VALUE end" +
+            " from B where D.ENTITY_ID = B.ENTITY_ID and D.ATTRIBUTE_NAME = B.ATTRIBUTE_NAME and D.TIMESTAMP = B.TIMESTAMP" +
+            " returning D.TIMESTAMP";
+
+        LocalDateTime lowerBound = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            // Start from the first datapoint when not yet started so the rollups aren't invalidated from the epoch
+            try (PreparedStatement st = connection.prepareStatement("select greatest(BACKFILLED_TO, (select min(TIMESTAMP) from " + getDatapointTableName() + ")) from DATAPOINT_NUMERIC_VALUE_BACKFILL where TABLE_NAME = ?")) {
+                st.setString(1, getDatapointTableName());
+                try (ResultSet rs = st.executeQuery()) {
+                    return rs.next() ? rs.getObject(1, LocalDateTime.class) : null;
+                }
+            }
+        }));
+
+        if (lowerBound == null) {
+            return;
+        }
+
+        getLogger().info("Backfilling numeric values of " + getDatapointTableName() + " from " + lowerBound);
+        long startMillis = System.currentTimeMillis();
+        long backfilled = 0;
+
+        while (!Thread.currentThread().isInterrupted()) {
+            LocalDateTime batchLowerBound = lowerBound;
+            Pair<Integer, LocalDateTime> batch = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                int count = 0;
+                LocalDateTime last = batchLowerBound;
+
+                try (PreparedStatement st = connection.prepareStatement(sql)) {
+                    st.setObject(1, batchLowerBound);
+                    st.setInt(2, NUMERIC_VALUE_BACKFILL_BATCH_SIZE);
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            count++;
+                            LocalDateTime timestamp = rs.getObject(1, LocalDateTime.class);
+                            last = timestamp.isAfter(last) ? timestamp : last;
+                        }
+                    }
+                }
+
+                boolean complete = count < NUMERIC_VALUE_BACKFILL_BATCH_SIZE;
+                try (PreparedStatement st = connection.prepareStatement(complete
+                    ? "delete from DATAPOINT_NUMERIC_VALUE_BACKFILL where TABLE_NAME = ?"
+                    : "update DATAPOINT_NUMERIC_VALUE_BACKFILL set BACKFILLED_TO = ? where TABLE_NAME = ?")) {
+                    int index = 1;
+                    if (!complete) {
+                        st.setObject(index++, last);
+                    }
+                    st.setString(index, getDatapointTableName());
+                    st.executeUpdate();
+                }
+
+                return new Pair<>(count, last);
+            }));
+
+            if (batch.key > 0) {
+                // Rollups of the updated datapoints must be re-aggregated
+                onDatapointsStored(batchLowerBound.toInstant(ZoneOffset.UTC).toEpochMilli());
+            }
+
+            backfilled += batch.key;
+
+            if (batch.key < NUMERIC_VALUE_BACKFILL_BATCH_SIZE) {
+                getLogger().info("Backfilled numeric values of " + backfilled + " datapoint(s) of " + getDatapointTableName() + " in " + (System.currentTimeMillis() - startMillis) + "ms");
+                if (backfilled > 0) {
+                    onNumericValuesBackfilled(batch.value);
+                }
+                return;
+            }
+
+            lowerBound = batch.value;
+        }
+    }
+
+    /**
+     * Called after datapoints have been committed with the earliest timestamp of the stored datapoints.
+     */
+    protected void onDatapointsStored(long minTimestamp) {
+    }
+
+    /**
+     * Called once the numeric values of all existing datapoints have been backfilled with the timestamp of the last
+     * backfilled datapoint.
+     */
+    protected void onNumericValuesBackfilled(LocalDateTime backfilledTo) {
     }
 
     public DatapointPeriod getDatapointPeriod(String assetId, String attributeName) {
@@ -275,20 +534,56 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
     }
 
     protected PreparedStatement getUpsertPreparedStatement(Connection connection) throws SQLException {
-        return connection.prepareStatement("INSERT INTO " + getDatapointTableName() + " (entity_id, attribute_name, value, timestamp) " +
-                "VALUES (?, ?, ?, ?) " +
+        return connection.prepareStatement("INSERT INTO " + getDatapointTableName() + " (entity_id, attribute_name, value, numeric_value, timestamp) " +
+                "VALUES (?, ?, ?, ?, ?) " +
                 "ON CONFLICT (entity_id, attribute_name, timestamp) DO UPDATE " +
-                "SET value = excluded.value");
+                "SET value = excluded.value, numeric_value = excluded.numeric_value");
     }
 
+    /**
+     * Numbers and booleans are written to the double precision NUMERIC_VALUE column; the jsonb VALUE column is only
+     * written for other values, booleans and numbers that a double cannot represent exactly (see
+     * {@link Datapoint#VALUE_SQL}).
+     */
     protected void setUpsertValues(PreparedStatement st, String assetId, String attributeName, Object value, long timestamp) throws Exception {
-        PGobject pgJsonValue = new PGobject();
-        pgJsonValue.setType("jsonb");
-        pgJsonValue.setValue(ValueUtil.asJSON(value).orElse("null"));
+        Double numericValue = getNumericValue(value);
         st.setString(1, assetId);
         st.setString(2, attributeName);
-        st.setObject(3, pgJsonValue);
-        st.setObject(4, Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC).toLocalDateTime());
+
+        if (numericValue != null && isExactNumber(value)) {
+            st.setNull(3, Types.OTHER);
+        } else {
+            PGobject pgJsonValue = new PGobject();
+            pgJsonValue.setType("jsonb");
+            pgJsonValue.setValue(ValueUtil.asJSON(value).orElse("null"));
+            st.setObject(3, pgJsonValue);
+        }
+
+        if (numericValue != null) {
+            st.setDouble(4, numericValue);
+        } else {
+            st.setNull(4, Types.DOUBLE);
+        }
+        st.setObject(5, Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC).toLocalDateTime());
+    }
+
+    protected static Double getNumericValue(Object value) {
+        if (value instanceof Boolean booleanValue) {
+            return booleanValue ? 1d : 0d;
+        }
+        if (value instanceof Number number) {
+            double doubleValue = number.doubleValue();
+            return Double.isFinite(doubleValue) ? doubleValue : null;
+        }
+        return null;
+    }
+
+    protected static boolean isExactNumber(Object value) {
+        if (value instanceof Double || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return true;
+        }
+        // Doubles have 53 bits of precision
+        return value instanceof Long longValue && longValue >= -(1L << 53) && longValue <= (1L << 53);
     }
 
     protected abstract Class<T> getDatapointClass();
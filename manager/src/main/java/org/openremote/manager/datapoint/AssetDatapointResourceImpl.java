@@ -22,37 +22,43 @@ package org.openremote.manager.datapoint;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.BeanParam;
+import jakarta.ws.rs.ForbiddenException;
 import jakarta.ws.rs.NotSupportedException;
 import jakarta.ws.rs.WebApplicationException;
-import jakarta.ws.rs.container.AsyncResponse;
-import jakarta.ws.rs.container.ConnectionCallback;
 import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.Response;
-import org.apache.commons.io.IOUtils;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.manager.web.ManagerWebResource;
 import org.openremote.model.Constants;
 import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.AssetProjection;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.datapoint.AssetDatapointResource;
 import org.openremote.model.datapoint.DatapointPeriod;
+import org.openremote.model.datapoint.DatapointSeries;
 import org.openremote.model.datapoint.ValueDatapoint;
+import org.openremote.model.datapoint.query.AssetDatapointBatchQuery;
 import org.openremote.model.datapoint.query.AssetDatapointQuery;
 import org.openremote.model.http.RequestParams;
+import org.openremote.model.query.AssetQuery;
 import org.openremote.model.security.ClientRole;
 import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.MetaItemType;
+import org.openremote.model.value.ValueDescriptor;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.util.concurrent.ScheduledFuture;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.stream.Collectors;
 
 import static org.openremote.model.syslog.SyslogCategory.DATA;
 import static org.openremote.model.util.ValueUtil.JSON;
@@ -140,6 +146,51 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
         }
     }
 
+    @Override
+    public DatapointSeries[] getDatapointSeries(RequestParams requestParams, AssetDatapointBatchQuery query) {
+        if (query == null || query.query == null || query.attributeRefs == null) {
+            throw new BadRequestException("Attribute refs and query must be specified");
+        }
+
+        if (query.attributeRefs.length == 0) {
+            return new DatapointSeries[0];
+        }
+
+        // Resolve the attribute types with a single projection query which only returns the readable attributes
+        AssetQuery assetQuery = new AssetQuery()
+            .ids(Arrays.stream(query.attributeRefs).map(AttributeRef::getId).distinct().toArray(String[]::new))
+            .select(new AssetQuery.Select().projection(Arrays.stream(query.attributeRefs).map(AttributeRef::getName).distinct().toArray(String[]::new)));
+
+        if (!assetStorageService.authorizeAssetQuery(assetQuery, getAuthContext(), getRequestRealmName())) {
+            throw new ForbiddenException("User not authorized to read the specified assets");
+        }
+
+        Map<String, AssetProjection> assets = assetStorageService.findProjections(assetQuery).stream()
+            .collect(Collectors.toMap(AssetProjection::getId, asset -> asset));
+        Map<AttributeRef, Class<?>> attributeTypes = new LinkedHashMap<>(query.attributeRefs.length);
+
+        for (AttributeRef attributeRef : query.attributeRefs) {
+            AssetProjection asset = assets.get(attributeRef.getId());
+            AssetProjection.AttributeProjection attribute = asset != null ? asset.getAttributes().get(attributeRef.getName()) : null;
+
+            if (attribute != null) {
+                attributeTypes.put(attributeRef, ValueUtil.getValueDescriptor(attribute.getType()).<Class<?>>map(ValueDescriptor::getType).orElse(Object.class));
+            }
+        }
+
+        try {
+            Map<AttributeRef, List<ValueDatapoint<?>>> datapoints = assetDatapointService.queryDatapoints(attributeTypes, query.query);
+
+            return attributeTypes.keySet().stream()
+                .map(attributeRef -> new DatapointSeries(attributeRef.getId(), attributeRef.getName(), datapoints.get(attributeRef)))
+                .toArray(DatapointSeries[]::new);
+        } catch (IllegalStateException ex) {
+            throw new BadRequestException(ex);
+        } catch (UnsupportedOperationException ex) {
+            throw new NotSupportedException(ex);
+        }
+    }
+
     @Override
     public DatapointPeriod getDatapointPeriod(RequestParams requestParams, String assetId, String attributeName) {
         try {
@@ -171,72 +222,55 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
     }
 
     @Override
-    public void getDatapointExport(AsyncResponse asyncResponse, String attributeRefsString, long fromTimestamp, long toTimestamp) {
-        try {
-            AttributeRef[] attributeRefs = JSON.readValue(attributeRefsString, AttributeRef[].class);
-
-            for (AttributeRef attributeRef : attributeRefs) {
-                if (isRestrictedUser() && !assetStorageService.isUserAsset(getUserId(), attributeRef.getId())) {
-                    throw new WebApplicationException(Response.Status.FORBIDDEN);
-                }
+    public Response getDatapointExport(String attributeRefsString, long fromTimestamp, long toTimestamp) {
+        AttributeRef[] attributeRefs;
 
-                Asset<?> asset = assetStorageService.find(attributeRef.getId(), true);
+        try {
+            attributeRefs = JSON.readValue(attributeRefsString, AttributeRef[].class);
+        } catch (JsonProcessingException ex) {
+            throw new BadRequestException(ex);
+        }
 
-                if (asset == null) {
-                    throw new WebApplicationException(Response.Status.NOT_FOUND);
-                }
+        for (AttributeRef attributeRef : attributeRefs) {
+            if (isRestrictedUser() && !assetStorageService.isUserAsset(getUserId(), attributeRef.getId())) {
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
 
-                if (!isRealmActiveAndAccessible(asset.getRealm())) {
-                    DATA_EXPORT_LOG.info("Forbidden access for user '" + getUsername() + "': " + asset);
-                    throw new WebApplicationException(Response.Status.FORBIDDEN);
-                }
+            Asset<?> asset = assetStorageService.find(attributeRef.getId(), true);
 
-                asset.getAttribute(attributeRef.getName()).orElseThrow(() ->
-                        new WebApplicationException(Response.Status.NOT_FOUND)
-                );
+            if (asset == null) {
+                throw new WebApplicationException(Response.Status.NOT_FOUND);
             }
 
-            DATA_EXPORT_LOG.info("User '" + getUsername() +  "' started data export for " + attributeRefsString + " from " + fromTimestamp + " to " + toTimestamp);
+            if (!isRealmActiveAndAccessible(asset.getRealm())) {
+                DATA_EXPORT_LOG.info("Forbidden access for user '" + getUsername() + "': " + asset);
+                throw new WebApplicationException(Response.Status.FORBIDDEN);
+            }
 
-            ScheduledFuture<File> exportFuture = assetDatapointService.exportDatapoints(attributeRefs, fromTimestamp, toTimestamp);
+            asset.getAttribute(attributeRef.getName()).orElseThrow(() ->
+                    new WebApplicationException(Response.Status.NOT_FOUND)
+            );
+        }
 
-            asyncResponse.register((ConnectionCallback) disconnected -> exportFuture.cancel(true));
+        String username = getUsername();
+        DATA_EXPORT_LOG.info("User '" + username +  "' started data export for " + attributeRefsString + " from " + fromTimestamp + " to " + toTimestamp);
 
-            File exportFile = null;
+        // Compress response (the request attribute enables the interceptor)
+        request.setAttribute(HttpHeaders.CONTENT_ENCODING, "gzip");
 
+        StreamingOutput output = outputStream -> {
             try {
-                exportFile = exportFuture.get();
-
-                ZipOutputStream zipOut = new ZipOutputStream(response.getOutputStream());
-                FileInputStream fin = new FileInputStream(exportFile);
-                ZipEntry zipEntry = new ZipEntry(exportFile.getName());
-                zipOut.putNextEntry(zipEntry);
-                IOUtils.copy(fin, zipOut);
-                zipOut.closeEntry();
-                zipOut.close();
-                fin.close();
-
-                response.setContentType("application/zip");
-                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"dataexport.zip\"");
-
-                asyncResponse.resume(
-                    response
-                );
+                long rows = assetDatapointService.exportDatapoints(attributeRefs, fromTimestamp, toTimestamp, outputStream);
+                DATA_EXPORT_LOG.fine("Exported " + rows + " data points for user '" + username + "'");
             } catch (Exception ex) {
-                exportFuture.cancel(true);
-                asyncResponse.resume(new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR));
-                DATA_EXPORT_LOG.log(Level.SEVERE, "Exception in ScheduledFuture: ", ex);
-            } finally {
-                if (exportFile != null && exportFile.exists()) {
-                    try {
-                        exportFile.delete();
-                    } catch (Exception e) {
-                        DATA_EXPORT_LOG.log(Level.SEVERE, "Failed to delete temporary export file: " + exportFile.getPath(), e);
-                    }
-                }
+                // The response has already been committed so the client will see a truncated response
+                DATA_EXPORT_LOG.log(Level.SEVERE, "Data export failed", ex);
+                throw new IOException("Data export failed", ex);
             }
-        } catch (JsonProcessingException ex) {
-            asyncResponse.resume(new BadRequestException(ex));
-        }
+        };
+
+        return Response.ok(output, "text/csv")
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"dataexport.csv\"")
+            .build();
     }
 }
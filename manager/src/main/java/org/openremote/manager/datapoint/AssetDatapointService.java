@@ -1,8 +1,12 @@
 package org.openremote.manager.datapoint;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.Session;
 import org.openremote.agent.protocol.ProtocolDatapointService;
 import org.openremote.container.timer.TimerService;
-import org.openremote.container.util.UniqueIdentifierGenerator;
 import org.openremote.manager.asset.AssetProcessingException;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
@@ -11,39 +15,45 @@ import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.manager.web.ManagerWebService;
 import org.openremote.model.Container;
 import org.openremote.model.asset.Asset;
-import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.attribute.AttributeWriteFailure;
 import org.openremote.model.datapoint.AssetDatapoint;
+import org.openremote.model.datapoint.Datapoint;
+import org.openremote.model.datapoint.query.AssetDatapointIntervalQuery;
+import org.openremote.model.datapoint.query.AssetDatapointQuery;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.filter.AttributePredicate;
 import org.openremote.model.query.filter.NameValuePredicate;
 import org.openremote.model.util.Pair;
 import org.openremote.model.value.MetaHolder;
 import org.openremote.model.value.MetaItemType;
+import org.postgresql.PGConnection;
 
 import jakarta.persistence.EntityManager;
-import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.sql.Date;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
 import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.value.MetaItemType.STORE_DATA_POINTS;
 
@@ -51,16 +61,46 @@ import static org.openremote.model.value.MetaItemType.STORE_DATA_POINTS;
  * Store and retrieve datapoints for asset attributes and periodically purge data points based on
  * {@link MetaItemType#DATA_POINTS_MAX_AGE_DAYS} {@link org.openremote.model.attribute.MetaItem}
  * and {@link #OR_DATA_POINTS_MAX_AGE_DAYS} setting; storage duration defaults to {@value #OR_DATA_POINTS_MAX_AGE_DAYS_DEFAULT}
- * days.
+ * days. The purge drops whole hypertable chunks older than the largest max age and deletes the remaining expired data
+ * points in batches of {@link #OR_DATA_POINTS_PURGE_BATCH_SIZE}; chunks older than
+ * {@link #OR_DATA_POINTS_COMPRESS_AFTER_DAYS} are compressed by TimescaleDB when this is greater than zero.
+ * <p>
+ * Datapoints of {@link AttributeEvent}s are written asynchronously in batches through a bounded
+ * {@link DatapointWriteBuffer} (see {@link #OR_DATA_POINTS_BUFFER_SIZE}); a buffer size of zero writes each datapoint
+ * synchronously.
+ * <p>
+ * Interval queries of number and boolean attributes whose interval is a multiple of an hour or a day read the
+ * pre-aggregated {@link DatapointRollups} for whole buckets within the requested range; the
+ * {@link #OR_DATA_POINTS_ROLLUP_REFRESH_MINUTES} setting controls how often rollup tables are refreshed when TimescaleDB
+ * continuous aggregates aren't available and a value of zero disables the use of rollups. The purge applies the same
+ * max ages to the rollups.
  */
 public class AssetDatapointService extends AbstractDatapointService<AssetDatapoint> implements ProtocolDatapointService {
 
     public static final String OR_DATA_POINTS_MAX_AGE_DAYS = "OR_DATA_POINTS_MAX_AGE_DAYS";
     public static final int OR_DATA_POINTS_MAX_AGE_DAYS_DEFAULT = 31;
+    public static final String OR_DATA_POINTS_BUFFER_SIZE = "OR_DATA_POINTS_BUFFER_SIZE";
+    public static final int OR_DATA_POINTS_BUFFER_SIZE_DEFAULT = 10000;
+    public static final String OR_DATA_POINTS_BATCH_SIZE = "OR_DATA_POINTS_BATCH_SIZE";
+    public static final int OR_DATA_POINTS_BATCH_SIZE_DEFAULT = 500;
+    public static final String OR_DATA_POINTS_FLUSH_INTERVAL_MILLIS = "OR_DATA_POINTS_FLUSH_INTERVAL_MILLIS";
+    public static final int OR_DATA_POINTS_FLUSH_INTERVAL_MILLIS_DEFAULT = 250;
+    public static final String OR_DATA_POINTS_PURGE_BATCH_SIZE = "OR_DATA_POINTS_PURGE_BATCH_SIZE";
+    public static final int OR_DATA_POINTS_PURGE_BATCH_SIZE_DEFAULT = 10000;
+    public static final String OR_DATA_POINTS_COMPRESS_AFTER_DAYS = "OR_DATA_POINTS_COMPRESS_AFTER_DAYS";
+    public static final int OR_DATA_POINTS_COMPRESS_AFTER_DAYS_DEFAULT = 0;
+    public static final String OR_DATA_POINTS_ROLLUP_REFRESH_MINUTES = "OR_DATA_POINTS_ROLLUP_REFRESH_MINUTES";
+    public static final int OR_DATA_POINTS_ROLLUP_REFRESH_MINUTES_DEFAULT = 15;
     private static final Logger LOG = Logger.getLogger(AssetDatapointService.class.getName());
-    protected static final String EXPORT_STORAGE_DIR_NAME = "datapoint";
     protected int maxDatapointAgeDays;
-    protected Path exportPath;
+    protected int purgeBatchSize;
+    protected int compressAfterDays;
+    protected Counter purgeRowsCounter;
+    protected Counter purgeBytesCounter;
+    protected Timer purgeTimer;
+    protected DatapointWriteBuffer<AssetDatapoint> writeBuffer;
+    protected DatapointRollups rollups;
+    protected int rollupRefreshMinutes;
 
     @Override
     public void init(Container container) throws Exception {
@@ -83,17 +123,50 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
             LOG.log(Level.INFO, "Data point purge interval days = " + maxDatapointAgeDays);
         }
 
-        Path storageDir = persistenceService.getStorageDir();
-        exportPath = storageDir.resolve(EXPORT_STORAGE_DIR_NAME);
-        // Ensure export dir exists and is writable
-        Files.createDirectories(exportPath);
-        if (!exportPath.toFile().setWritable(true, false)) {
-            LOG.log(Level.WARNING, "Failed to set export dir write flag; data export may not work");
+        purgeBatchSize = Math.max(1, getInteger(container.getConfig(), OR_DATA_POINTS_PURGE_BATCH_SIZE, OR_DATA_POINTS_PURGE_BATCH_SIZE_DEFAULT));
+        compressAfterDays = getInteger(container.getConfig(), OR_DATA_POINTS_COMPRESS_AFTER_DAYS, OR_DATA_POINTS_COMPRESS_AFTER_DAYS_DEFAULT);
+
+        int bufferSize = getInteger(container.getConfig(), OR_DATA_POINTS_BUFFER_SIZE, OR_DATA_POINTS_BUFFER_SIZE_DEFAULT);
+        MeterRegistry meterRegistry = container.getMeterRegistry();
+
+        if (meterRegistry != null) {
+            purgeRowsCounter = meterRegistry.counter("or.datapoints.purge.rows", Tags.empty());
+            purgeBytesCounter = meterRegistry.counter("or.datapoints.purge.bytes", Tags.empty());
+            purgeTimer = meterRegistry.timer("or.datapoints.purge", Tags.empty());
+        }
+
+        if (bufferSize > 0) {
+            writeBuffer = new DatapointWriteBuffer<>(
+                this,
+                bufferSize,
+                getInteger(container.getConfig(), OR_DATA_POINTS_BATCH_SIZE, OR_DATA_POINTS_BATCH_SIZE_DEFAULT),
+                getInteger(container.getConfig(), OR_DATA_POINTS_FLUSH_INTERVAL_MILLIS, OR_DATA_POINTS_FLUSH_INTERVAL_MILLIS_DEFAULT));
+
+            if (meterRegistry != null) {
+                meterRegistry.gauge("or.datapoints.buffer.size", Tags.empty(), writeBuffer, DatapointWriteBuffer::size);
+                writeBuffer.setMetrics(
+                    meterRegistry.summary("or.datapoints.buffer.flush.size", Tags.empty()),
+                    meterRegistry.timer("or.datapoints.buffer.flush", Tags.empty()),
+                    meterRegistry.counter("or.datapoints.buffer.full", Tags.empty()),
+                    meterRegistry.counter("or.datapoints.buffer.dropped", Tags.empty()));
+            }
+        } else {
+            LOG.info(OR_DATA_POINTS_BUFFER_SIZE + " is not greater than zero so datapoints will be written synchronously");
+        }
+
+        rollupRefreshMinutes = getInteger(container.getConfig(), OR_DATA_POINTS_ROLLUP_REFRESH_MINUTES, OR_DATA_POINTS_ROLLUP_REFRESH_MINUTES_DEFAULT);
+
+        if (rollupRefreshMinutes > 0) {
+            rollups = new DatapointRollups(persistenceService, timerService);
+        } else {
+            LOG.info(OR_DATA_POINTS_ROLLUP_REFRESH_MINUTES + " is not greater than zero so interval queries won't use datapoint rollups");
         }
     }
 
     @Override
     public void start(Container container) throws Exception {
+        configureCompression();
+
         if (maxDatapointAgeDays > 0) {
             dataPointsPurgeScheduledFuture = executorService.scheduleAtFixedRate(
                 this::purgeDataPoints,
@@ -102,18 +175,48 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
             );
         }
 
+        if (writeBuffer != null) {
+            writeBuffer.start(executorService);
+        }
+
+        if (rollups != null) {
+            rollups.start(executorService, Duration.ofMinutes(rollupRefreshMinutes).toMillis());
+        }
+
+        startNumericValueBackfill();
+
         ClientEventService clientEventService = container.getService(ClientEventService.class);
         clientEventService.addInternalSubscription(AttributeEvent.class, null, this::onAttributeEvent);
     }
 
+    @Override
+    public void stop(Container container) throws Exception {
+        super.stop(container);
+
+        if (writeBuffer != null) {
+            writeBuffer.stop();
+        }
+
+        if (rollups != null) {
+            rollups.stop();
+        }
+    }
+
     public static boolean attributeIsStoreDatapoint(MetaHolder attributeInfo) {
         return attributeInfo.getMetaValue(STORE_DATA_POINTS).orElse(attributeInfo.hasMeta(MetaItemType.AGENT_LINK));
     }
 
     public void onAttributeEvent(AttributeEvent attributeEvent) {
         if (attributeIsStoreDatapoint(attributeEvent) && attributeEvent.getValue().isPresent()) { // Don't store datapoints with null value
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(attributeEvent.getTimestamp()), ZoneId.systemDefault());
+
+            if (writeBuffer != null) {
+                writeBuffer.add(new AssetDatapoint(attributeEvent.getId(), attributeEvent.getName(), attributeEvent.getValue().orElse(null), timestamp.toInstant(ZoneOffset.UTC).toEpochMilli()));
+                return;
+            }
+
             try {
-                upsertValue(attributeEvent.getId(), attributeEvent.getName(), attributeEvent.getValue().orElse(null), LocalDateTime.ofInstant(Instant.ofEpochMilli(attributeEvent.getTimestamp()), ZoneId.systemDefault()));
+                upsertValue(attributeEvent.getId(), attributeEvent.getName(), attributeEvent.getValue().orElse(null), timestamp);
             } catch (Exception e) {
                 throw new AssetProcessingException(AttributeWriteFailure.STATE_STORAGE_FAILED, "Failed to insert or update asset data point for attribute: " + attributeEvent, e);
             }
@@ -130,6 +233,39 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         return AssetDatapoint.TABLE_NAME;
     }
 
+    @Override
+    protected Pair<String, Map<Integer, Object>> getDatapointQuery(AttributeRef attributeRef, Class<?> attributeType, AssetDatapointQuery datapointQuery) throws IllegalStateException {
+        if (rollups != null
+            && datapointQuery instanceof AssetDatapointIntervalQuery intervalQuery
+            && (Number.class.isAssignableFrom(attributeType) || Boolean.class.isAssignableFrom(attributeType))) {
+
+            Optional<DatapointRollups.RollupRange> rollupRange = rollups.getRollupRange(intervalQuery.interval, intervalQuery.getFromLocalDateTime(), intervalQuery.getToLocalDateTime());
+
+            if (rollupRange.isPresent()) {
+                DatapointRollups.RollupRange range = rollupRange.get();
+                return new Pair<>(
+                    intervalQuery.getRollupSQLQuery(getDatapointTableName(), range.getLevel().getTableName(), attributeType),
+                    intervalQuery.getRollupSQLParameters(attributeRef, range.getFrom(), range.getTo()));
+            }
+        }
+
+        return super.getDatapointQuery(attributeRef, attributeType, datapointQuery);
+    }
+
+    @Override
+    protected void onDatapointsStored(long minTimestamp) {
+        if (rollups != null) {
+            rollups.onDatapointsStored(minTimestamp);
+        }
+    }
+
+    @Override
+    protected void onNumericValuesBackfilled(LocalDateTime backfilledTo) {
+        if (rollups != null) {
+            rollups.refreshBackfilled(backfilledTo);
+        }
+    }
+
     @Override
     protected Logger getLogger() {
         return LOG;
@@ -137,9 +273,12 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
 
     protected void purgeDataPoints() {
         LOG.info("Running data points purge daily task");
+        long startMillis = System.currentTimeMillis();
+        long purgedRows = 0;
+        Long sizeBefore = getDatapointTableSize();
 
         try {
-            // Get list of attributes that have custom durations
+            // Get attributes that have custom durations
             List<Asset<?>> assets = assetStorageService.findAll(
                 new AssetQuery()
                     .attributes(
@@ -147,111 +286,257 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                             new NameValuePredicate(MetaItemType.DATA_POINTS_MAX_AGE_DAYS, null)
                         )));
 
-            List<Pair<String, Attribute<?>>> attributes = assets.stream()
-                .map(asset -> asset
-                    .getAttributes().stream()
-                    .filter(assetAttribute -> assetAttribute.hasMeta(MetaItemType.DATA_POINTS_MAX_AGE_DAYS))
-                    .map(assetAttribute -> new Pair<String, Attribute<?>>(asset.getId(), assetAttribute))
-                    .collect(toList()))
-                .flatMap(List::stream)
-                .collect(toList());
+            Map<AttributeRef, Integer> attributeMaxAgeDays = new HashMap<>();
+            assets.forEach(asset -> asset.getAttributes().stream()
+                .filter(assetAttribute -> assetAttribute.hasMeta(MetaItemType.DATA_POINTS_MAX_AGE_DAYS))
+                .forEach(assetAttribute -> attributeMaxAgeDays.put(
+                    new AttributeRef(asset.getId(), assetAttribute.getName()),
+                    assetAttribute.getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS).orElse(maxDatapointAgeDays))));
+
+            Instant today = timerService.getNow().truncatedTo(DAYS);
+            int chunkMaxAgeDays = attributeMaxAgeDays.values().stream().reduce(maxDatapointAgeDays, Math::max);
+
+            int rollupMaxAgeDays = attributeMaxAgeDays.values().stream().reduce(maxDatapointAgeDays, Math::min);
 
-            // Purge data points not in the above list using default duration
+            // Drop whole chunks that only contain data points older than any max age
+            LOG.fine("Dropping data point chunks older than " + chunkMaxAgeDays + " days");
+            LocalDateTime chunkOlderThan = toDatapointTime(today.minus(chunkMaxAgeDays, DAYS));
+            purgedRows += dropChunks(chunkOlderThan);
+            purgeRollups(null, Collections.emptyList(), chunkOlderThan);
+
+            // Delete remaining data points of attributes that use the default max age
             LOG.fine("Purging data points of attributes that use default max age days of " + maxDatapointAgeDays);
+            LocalDateTime defaultOlderThan = toDatapointTime(today.minus(maxDatapointAgeDays, DAYS));
+            purgedRows += deleteDatapoints(null, attributeMaxAgeDays.keySet(), defaultOlderThan);
+            purgeRollups(null, attributeMaxAgeDays.keySet(), defaultOlderThan);
+
+            // Delete data points of attributes that have specific age constraints
+            for (Map.Entry<AttributeRef, Integer> attributeAndMaxAge : attributeMaxAgeDays.entrySet()) {
+                try {
+                    LocalDateTime olderThan = toDatapointTime(today.minus(attributeAndMaxAge.getValue(), DAYS));
+                    purgedRows += deleteDatapoints(attributeAndMaxAge.getKey(), null, olderThan);
+                    purgeRollups(attributeAndMaxAge.getKey(), null, olderThan);
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE, "An error occurred whilst deleting data points of: " + attributeAndMaxAge.getKey(), e);
+                }
+            }
 
-            persistenceService.doTransaction(em -> em.createQuery(
-                "delete from AssetDatapoint dp " +
-                    "where dp.timestamp < :dt" + buildWhereClause(attributes, true)
-            ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(maxDatapointAgeDays, DAYS))).executeUpdate());
-
-            if (!attributes.isEmpty()) {
-                // Purge data points that have specific age constraints
-                Map<Integer, List<Pair<String, Attribute<?>>>> ageAttributeRefMap = attributes.stream()
-                    .collect(groupingBy(attributeRef ->
-                        attributeRef.value
-                            .getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS)
-                            .orElse(maxDatapointAgeDays)));
-
-                ageAttributeRefMap.forEach((age, attrs) -> {
-                    LOG.fine("Purging data points of " + attrs.size() + " attributes that use a max age of " + age);
-
-                    try {
-                        persistenceService.doTransaction(em -> em.createQuery(
-                            "delete from AssetDatapoint dp " +
-                                "where dp.timestamp < :dt" + buildWhereClause(attrs, false)
-                        ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(age, DAYS))).executeUpdate());
-                    } catch (Exception e) {
-                        LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
-                    }
-                });
+            if (rollups != null) {
+                rollups.refreshPurged(toDatapointTime(today.minus(rollupMaxAgeDays, DAYS)));
             }
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
 
-        // Purge old exports
-        try {
-            long oneDayMillis = 24*60*60*1000;
-            File[] obsoleteExports = exportPath.toFile()
-                .listFiles(file ->
-                    file.isFile()
-                        && file.getName().endsWith("csv")
-                        && file.lastModified() < timerService.getCurrentTimeMillis() - oneDayMillis
-                );
-
-            if (obsoleteExports != null) {
-                Arrays.stream(obsoleteExports)
-                    .forEach(file -> {
-                        boolean success = false;
-                        try {
-                            success = file.delete();
-                        } catch (SecurityException e) {
-                            LOG.log(Level.WARNING, "Cannot access the export file to delete it", e);
-                        }
-                        if (!success) {
-                            LOG.log(Level.WARNING, "Failed to delete obsolete export '" + file.getName() + "'");
+        Long sizeAfter = getDatapointTableSize();
+        long reclaimedBytes = sizeBefore != null && sizeAfter != null ? Math.max(0, sizeBefore - sizeAfter) : 0;
+        long durationMillis = System.currentTimeMillis() - startMillis;
+
+        if (purgeRowsCounter != null) {
+            purgeRowsCounter.increment(purgedRows);
+            purgeBytesCounter.increment(reclaimedBytes);
+            purgeTimer.record(durationMillis, TimeUnit.MILLISECONDS);
+        }
+
+        LOG.info("Purged " + purgedRows + " data points and reclaimed " + reclaimedBytes + " bytes in " + durationMillis + "ms");
+    }
+
+    /**
+     * Applies the same max age to the datapoint rollups as to the data points that have just been purged.
+     */
+    protected void purgeRollups(AttributeRef attributeRef, Collection<AttributeRef> excludedAttributeRefs, LocalDateTime olderThan) {
+        if (rollups != null) {
+            rollups.purge(attributeRef, excludedAttributeRefs, olderThan);
+        }
+    }
+
+    /**
+     * Drops the hypertable chunks that only contain data points older than the specified time and returns the
+     * (estimated) number of data points that were dropped.
+     */
+    protected long dropChunks(LocalDateTime olderThan) {
+        return persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            long rows = 0;
+
+            try (PreparedStatement st = connection.prepareStatement(
+                "select coalesce(sum(greatest(C.reltuples, 0)), 0)::bigint from public.show_chunks(?::regclass, older_than => ?::timestamp) CH(CHUNK) join pg_class C on C.oid = CH.CHUNK")) {
+                st.setString(1, getDatapointTableName());
+                st.setObject(2, olderThan);
+                try (ResultSet rs = st.executeQuery()) {
+                    if (rs.next()) {
+                        rows = rs.getLong(1);
+                    }
+                }
+            }
+
+            try (PreparedStatement st = connection.prepareStatement("select public.drop_chunks(?::regclass, older_than => ?::timestamp)")) {
+                st.setString(1, getDatapointTableName());
+                st.setObject(2, olderThan);
+                int chunks = 0;
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        chunks++;
+                    }
+                }
+                LOG.fine("Dropped " + chunks + " data point chunks containing approximately " + rows + " data points");
+            }
+
+            return rows;
+        }));
+    }
+
+    /**
+     * Deletes the data points older than the specified time in batches of {@link #OR_DATA_POINTS_PURGE_BATCH_SIZE}
+     * (each in its own transaction) using the timestamp of the last deleted data point as the lower bound of the next
+     * batch; the data points of the specified attribute are deleted or when this is null those of all attributes except
+     * the excluded attributes.
+     */
+    protected long deleteDatapoints(AttributeRef attributeRef, Collection<AttributeRef> excludedAttributeRefs, LocalDateTime olderThan) {
+        String filter = attributeRef != null
+            ? "ENTITY_ID = ? and ATTRIBUTE_NAME = ?"
+            : "not exists (select 1 from unnest(?::text[], ?::text[]) E(ID, NAME) where E.ID = ENTITY_ID and E.NAME = ATTRIBUTE_NAME)";
+        String sql = "delete from " + getDatapointTableName() + " where (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP) in (" +
+            "select ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP from " + getDatapointTableName() + " where " + filter +
+            " and TIMESTAMP >= ? and TIMESTAMP < ? order by TIMESTAMP limit ?) returning TIMESTAMP";
+
+        long deleted = 0;
+        LocalDateTime lowerBound = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+        while (true) {
+            LocalDateTime batchLowerBound = lowerBound;
+            Pair<Integer, LocalDateTime> batch = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement(sql)) {
+                    if (attributeRef != null) {
+                        st.setString(1, attributeRef.getId());
+                        st.setString(2, attributeRef.getName());
+                    } else {
+                        st.setArray(1, connection.createArrayOf("text", excludedAttributeRefs.stream().map(AttributeRef::getId).toArray()));
+                        st.setArray(2, connection.createArrayOf("text", excludedAttributeRefs.stream().map(AttributeRef::getName).toArray()));
+                    }
+                    st.setObject(3, batchLowerBound);
+                    st.setObject(4, olderThan);
+                    st.setInt(5, purgeBatchSize);
+
+                    int count = 0;
+                    LocalDateTime last = batchLowerBound;
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            count++;
+                            LocalDateTime timestamp = rs.getObject(1, LocalDateTime.class);
+                            last = timestamp.isAfter(last) ? timestamp : last;
                         }
-                    });
+                    }
+                    return new Pair<>(count, last);
+                }
+            }));
+
+            deleted += batch.key;
+            lowerBound = batch.value;
+
+            if (batch.key < purgeBatchSize) {
+                return deleted;
             }
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Failed to purge old exports", e);
         }
     }
 
-    protected String buildWhereClause(List<Pair<String, Attribute<?>>> attributes, boolean negate) {
+    /**
+     * Enables native compression of data point chunks older than {@link #OR_DATA_POINTS_COMPRESS_AFTER_DAYS} or
+     * removes the compression policy when not greater than zero; already compressed chunks are left as they are.
+     */
+    protected void configureCompression() {
+        try {
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement("select public.remove_compression_policy(?::regclass, if_exists => true)")) {
+                    st.setString(1, getDatapointTableName());
+                    st.execute();
+                }
+
+                if (compressAfterDays <= 0) {
+                    return;
+                }
+
+                boolean compressionEnabled = false;
+                try (PreparedStatement st = connection.prepareStatement("select compression_enabled from timescaledb_information.hypertables where hypertable_name = ?")) {
+                    st.setString(1, getDatapointTableName());
+                    try (ResultSet rs = st.executeQuery()) {
+                        compressionEnabled = rs.next() && rs.getBoolean(1);
+                    }
+                }
+
+                if (!compressionEnabled) {
+                    try (Statement st = connection.createStatement()) {
+                        st.execute("alter table " + getDatapointTableName() + " set (timescaledb.compress, " +
+                            "timescaledb.compress_segmentby = 'entity_id, attribute_name', timescaledb.compress_orderby = 'timestamp desc')");
+                    }
+                }
+
+                try (PreparedStatement st = connection.prepareStatement("select public.add_compression_policy(?::regclass, compress_after => make_interval(days => ?))")) {
+                    st.setString(1, getDatapointTableName());
+                    st.setInt(2, compressAfterDays);
+                    st.execute();
+                }
+            }));
 
-        if (attributes.isEmpty()) {
-            return "";
+            if (compressAfterDays > 0) {
+                LOG.info("Data point chunks older than " + compressAfterDays + " days will be compressed");
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to configure data point compression", e);
         }
+    }
 
-        String whereStr = attributes.stream()
-            .map(attributeRef -> "('" + attributeRef.key + "','" + attributeRef.value.getName() + "')")
-            .collect(Collectors.joining(","));
+    protected Long getDatapointTableSize() {
+        try {
+            return persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement("select public.hypertable_size(?::regclass)")) {
+                    st.setString(1, getDatapointTableName());
+                    try (ResultSet rs = st.executeQuery()) {
+                        return rs.next() ? rs.getLong(1) : null;
+                    }
+                }
+            }));
+        } catch (Exception e) {
+            LOG.log(Level.FINE, "Failed to get data point table size", e);
+            return null;
+        }
+    }
 
-        return " and (dp.assetId, dp.attributeName) " + (negate ? "not " : "") + "in (" + whereStr + ")";
+    protected static LocalDateTime toDatapointTime(Instant instant) {
+        // Data point timestamps are stored as UTC
+        return LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
     }
 
     /**
-     * Exports datapoints as CSV using SQL; the export path used in the SQL query must also be mapped into the manager
-     * container so it can be accessed by this process.
+     * Writes the datapoints of the specified attributes between the specified times to the output stream as CSV using
+     * {@code COPY ... TO STDOUT} so the rows are streamed from the database as they are read. The attribute references
+     * and times are bound to a temporary table (COPY doesn't support parameters) within the same transaction; returns
+     * the number of exported datapoints.
      */
-    public ScheduledFuture<File> exportDatapoints(AttributeRef[] attributeRefs,
-                                                  long fromTimestamp,
-                                                  long toTimestamp) {
-        return executorService.schedule(() -> {
-            String fileName = UniqueIdentifierGenerator.generateId() + ".csv";
-            StringBuilder sb = new StringBuilder(String.format("copy (select ad.timestamp, a.name, ad.attribute_name, value from asset_datapoint ad, asset a where ad.entity_id = a.id and ad.timestamp >= to_timestamp(%d) and ad.timestamp <= to_timestamp(%d) and (", fromTimestamp / 1000, toTimestamp / 1000))
-                .append(Arrays.stream(attributeRefs).map(attributeRef -> String.format("(ad.entity_id = '%s' and ad.attribute_name = '%s')", attributeRef.getId(), attributeRef.getName())).collect(Collectors.joining(" or ")))
-                .append(")) to '/storage/")
-                .append(EXPORT_STORAGE_DIR_NAME)
-                .append("/")
-                .append(fileName)
-                .append("' delimiter ',' CSV HEADER;");
-
-            persistenceService.doTransaction(em -> em.createNativeQuery(sb.toString()).executeUpdate());
-
-            // The same path must resolve in both the postgresql container and the manager container
-            return exportPath.resolve(fileName).toFile();
-        }, 0, TimeUnit.MILLISECONDS);
+    public long exportDatapoints(AttributeRef[] attributeRefs,
+                                 long fromTimestamp,
+                                 long toTimestamp,
+                                 OutputStream outputStream) {
+        return persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement st = connection.prepareStatement(
+                "create temporary table DATAPOINT_EXPORT on commit drop as " +
+                    "select R.ID, R.NAME, ?::timestamp as FROM_TIMESTAMP, ?::timestamp as TO_TIMESTAMP from unnest(?::text[], ?::text[]) R(ID, NAME)")) {
+                st.setObject(1, toDatapointTime(Instant.ofEpochMilli(fromTimestamp)));
+                st.setObject(2, toDatapointTime(Instant.ofEpochMilli(toTimestamp)));
+                st.setArray(3, connection.createArrayOf("text", Arrays.stream(attributeRefs).map(AttributeRef::getId).toArray()));
+                st.setArray(4, connection.createArrayOf("text", Arrays.stream(attributeRefs).map(AttributeRef::getName).toArray()));
+                st.executeUpdate();
+            }
+
+            String copySql = "copy (select AD.TIMESTAMP, A.NAME, AD.ATTRIBUTE_NAME, " + Datapoint.VALUE_SQL + " as VALUE " +
+                "from " + getDatapointTableName() + " AD join DATAPOINT_EXPORT E on AD.ENTITY_ID = E.ID and AD.ATTRIBUTE_NAME = E.NAME " +
+                "join ASSET A on A.ID = AD.ENTITY_ID " +
+                "where AD.TIMESTAMP >= E.FROM_TIMESTAMP and AD.TIMESTAMP <= E.TO_TIMESTAMP) to stdout with (format csv, header true, delimiter ',')";
+
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(copySql, outputStream);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
     }
 }
@@ -70,6 +70,8 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
             getFirstPurgeMillis(timerService.getNow()),
             Duration.ofDays(1).toMillis(), TimeUnit.MILLISECONDS
         );
+
+        startNumericValueBackfill();
     }
 
     public void updateValue(AttributeRef attributeRef, Object value, LocalDateTime timestamp) {
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.openremote.container.persistence.PersistenceService;
+import org.openremote.container.timer.TimerService;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.AssetDatapoint;
+import org.openremote.model.datapoint.Datapoint;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hourly and daily rollups (min, max, sum, count, first and last value per bucket) of numeric and boolean
+ * {@link AssetDatapoint}s that interval queries use instead of the raw datapoints when the requested interval is a
+ * multiple of the rollup bucket width (see {@link #getRollupRange}).
+ * <p>
+ * The rollups are TimescaleDB continuous aggregates when available (refreshed by TimescaleDB and including not yet
+ * materialized data) otherwise they are tables that are maintained by this class: every refresh re-aggregates the
+ * buckets from the {@link LevelState#watermark} (the end of the last refreshed bucket) up to the last complete bucket,
+ * as well as any older buckets that datapoints have been stored in since the last refresh (see
+ * {@link #onDatapointsStored}). Queries only use table rollup buckets before the watermark and before any such dirty
+ * bucket.
+ * <p>
+ * When datapoints are purged the rollup buckets of the purged time range are removed as well (see {@link #purge} and
+ * {@link #refreshPurged}) so that interval queries don't return data that has exceeded its max age.
+ */
+public class DatapointRollups {
+
+    public enum Mode {
+        CONTINUOUS_AGGREGATE,
+        TABLE,
+        NONE
+    }
+
+    public enum RollupLevel {
+        HOURLY("ASSET_DATAPOINT_HOURLY", ChronoUnit.HOURS, "1 hour", 7),
+        DAILY("ASSET_DATAPOINT_DAILY", ChronoUnit.DAYS, "1 day", 31);
+
+        protected final String tableName;
+        protected final ChronoUnit unit;
+        protected final String interval;
+        // Number of days that are re-aggregated per transaction
+        protected final int refreshChunkDays;
+
+        RollupLevel(String tableName, ChronoUnit unit, String interval, int refreshChunkDays) {
+            this.tableName = tableName;
+            this.unit = unit;
+            this.interval = interval;
+            this.refreshChunkDays = refreshChunkDays;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+    }
+
+    /**
+     * The buckets of a rollup that fall entirely within the requested time range; the time before {@link #from} and
+     * from {@link #to} must be read from the raw datapoints.
+     */
+    public static class RollupRange {
+        protected final RollupLevel level;
+        protected final LocalDateTime from;
+        protected final LocalDateTime to;
+
+        public RollupRange(RollupLevel level, LocalDateTime from, LocalDateTime to) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        public RollupLevel getLevel() {
+            return level;
+        }
+
+        public LocalDateTime getFrom() {
+            return from;
+        }
+
+        public LocalDateTime getTo() {
+            return to;
+        }
+    }
+
+    protected static class LevelState {
+        protected final RollupLevel level;
+        // Table mode only: buckets before this time are up to date (unless dirty); null until initialised
+        protected volatile LocalDateTime watermark;
+
+        protected LevelState(RollupLevel level) {
+            this.level = level;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger(DatapointRollups.class.getName());
+    protected final PersistenceService persistenceService;
+    protected final TimerService timerService;
+    protected final LevelState[] levelStates;
+    // Earliest timestamp of datapoints stored since the last refresh (table mode only)
+    protected final AtomicLong dirtyFromMillis = new AtomicLong(Long.MAX_VALUE);
+    protected Mode mode = Mode.NONE;
+    protected ScheduledFuture<?> refreshFuture;
+
+    public DatapointRollups(PersistenceService persistenceService, TimerService timerService) {
+        this.persistenceService = persistenceService;
+        this.timerService = timerService;
+        RollupLevel[] levels = RollupLevel.values();
+        levelStates = new LevelState[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            levelStates[i] = new LevelState(levels[i]);
+        }
+    }
+
+    public void start(ScheduledExecutorService executorService, long refreshIntervalMillis) {
+        mode = detectMode();
+        LOG.info("Datapoint rollup mode: " + mode);
+
+        if (mode == Mode.TABLE) {
+            refreshFuture = executorService.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        if (refreshFuture != null) {
+            refreshFuture.cancel(false);
+            refreshFuture = null;
+        }
+        mode = Mode.NONE;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Must be called after datapoints have been committed with the earliest timestamp of the datapoints.
+     */
+    public void onDatapointsStored(long minTimestampMillis) {
+        if (mode == Mode.TABLE) {
+            dirtyFromMillis.accumulateAndGet(minTimestampMillis, Math::min);
+        }
+    }
+
+    /**
+     * Get the coarsest rollup whose bucket width divides the interval (a PostgreSQL interval such as "1 day" or
+     * "6 hours") along with the range of whole rollup buckets within the from and to times; empty if no rollup can be
+     * used.
+     */
+    public Optional<RollupRange> getRollupRange(String interval, LocalDateTime from, LocalDateTime to) {
+        if (mode == Mode.NONE || from == null || to == null) {
+            return Optional.empty();
+        }
+
+        return getRollupLevel(interval).flatMap(level -> {
+            LocalDateTime rollupFrom = from.truncatedTo(level.unit);
+            if (rollupFrom.isBefore(from)) {
+                rollupFrom = rollupFrom.plus(1, level.unit);
+            }
+            LocalDateTime rollupTo = to.truncatedTo(level.unit);
+
+            if (mode == Mode.TABLE) {
+                LocalDateTime watermark = levelStates[level.ordinal()].watermark;
+                if (watermark == null) {
+                    return Optional.empty();
+                }
+                long dirtyFrom = dirtyFromMillis.get();
+                if (dirtyFrom != Long.MAX_VALUE) {
+                    LocalDateTime dirtyBucket = toLocalDateTime(dirtyFrom).truncatedTo(level.unit);
+                    watermark = dirtyBucket.isBefore(watermark) ? dirtyBucket : watermark;
+                }
+                rollupTo = watermark.isBefore(rollupTo) ? watermark : rollupTo;
+            }
+
+            return rollupFrom.isBefore(rollupTo) ? Optional.of(new RollupRange(level, rollupFrom, rollupTo)) : Optional.empty();
+        });
+    }
+
+    /**
+     * Deletes the table rollup buckets before the specified time of the specified attribute or when this is null
+     * those of all attributes except the excluded attributes; must be called after the datapoints have been purged.
+     * Purge times are at midnight so these buckets only contain purged datapoints. Continuous aggregates record the
+     * purged datapoints as invalidations instead (see {@link #refreshPurged}).
+     */
+    public void purge(AttributeRef attributeRef, Collection<AttributeRef> excludedAttributeRefs, LocalDateTime olderThan) {
+        if (mode != Mode.TABLE) {
+            return;
+        }
+
+        String filter = attributeRef != null
+            ? "ENTITY_ID = ? and ATTRIBUTE_NAME = ?"
+            : "not exists (select 1 from unnest(?::text[], ?::text[]) E(ID, NAME) where E.ID = ENTITY_ID and E.NAME = ATTRIBUTE_NAME)";
+
+        for (RollupLevel level : RollupLevel.values()) {
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement("delete from " + level.tableName + " where " + filter + " and BUCKET < ?")) {
+                    if (attributeRef != null) {
+                        st.setString(1, attributeRef.getId());
+                        st.setString(2, attributeRef.getName());
+                    } else {
+                        st.setArray(1, connection.createArrayOf("text", excludedAttributeRefs.stream().map(AttributeRef::getId).toArray()));
+                        st.setArray(2, connection.createArrayOf("text", excludedAttributeRefs.stream().map(AttributeRef::getName).toArray()));
+                    }
+                    st.setTimestamp(3, Timestamp.valueOf(olderThan));
+                    int deleted = st.executeUpdate();
+                    LOG.fine("Purged " + deleted + " datapoint rollup " + level + " buckets before " + olderThan);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Refreshes the continuous aggregates up to the specified time (the latest purge time) so the buckets of purged
+     * datapoints are removed straight away rather than on the next scheduled refresh (see
+     * {@link #refreshContinuousAggregates}).
+     */
+    public void refreshPurged(LocalDateTime olderThan) {
+        if (mode != Mode.CONTINUOUS_AGGREGATE) {
+            return;
+        }
+
+        try {
+            refreshContinuousAggregates(olderThan);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to refresh datapoint rollups after purge so purged buckets will be removed on the next scheduled refresh", e);
+        }
+    }
+
+    /**
+     * Must be called once the numeric values of existing datapoints have been backfilled up to the specified time;
+     * the continuous aggregates are refreshed up to that time so the whole history is materialised straight away
+     * rather than aggregated on every query until the scheduled refresh. Table rollups re-aggregate the backfilled
+     * buckets on the next refresh as each backfilled batch is reported through {@link #onDatapointsStored}.
+     */
+    public void refreshBackfilled(LocalDateTime backfilledTo) {
+        if (mode != Mode.CONTINUOUS_AGGREGATE) {
+            return;
+        }
+
+        long startMillis = System.currentTimeMillis();
+        try {
+            refreshContinuousAggregates(backfilledTo);
+            LOG.info("Refreshed datapoint rollups up to " + backfilledTo + " after backfill in " + (System.currentTimeMillis() - startMillis) + "ms");
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to refresh datapoint rollups after backfill so they will be materialised on the next scheduled refresh", e);
+        }
+    }
+
+    /**
+     * Only the invalidated buckets before the specified time are re-aggregated. The refresh cannot run in a transaction
+     * so uses a connection in auto commit mode.
+     */
+    protected void refreshContinuousAggregates(LocalDateTime to) {
+        EntityManager em = persistenceService.createEntityManager();
+        try {
+            em.unwrap(Session.class).doWork(connection -> {
+                for (RollupLevel level : RollupLevel.values()) {
+                    try (PreparedStatement st = connection.prepareStatement("call public.refresh_continuous_aggregate(?::regclass, null, ?::timestamp)")) {
+                        st.setString(1, level.tableName.toLowerCase(Locale.ROOT));
+                        st.setObject(2, to);
+                        st.execute();
+                    }
+                }
+            });
+        } finally {
+            em.close();
+        }
+    }
+
+    protected static Optional<RollupLevel> getRollupLevel(String interval) {
+        if (interval == null) {
+            return Optional.empty();
+        }
+
+        String[] amountAndUnit = interval.trim().toLowerCase(Locale.ROOT).split("\\s+");
+
+        if (amountAndUnit.length != 2) {
+            return Optional.empty();
+        }
+
+        long amount;
+        try {
+            amount = Long.parseLong(amountAndUnit[0]);
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+
+        if (amount <= 0) {
+            return Optional.empty();
+        }
+
+        String unit = amountAndUnit[1].endsWith("s") ? amountAndUnit[1].substring(0, amountAndUnit[1].length() - 1) : amountAndUnit[1];
+
+        // Month and year buckets start at midnight so are made up of whole days
+        return switch (unit) {
+            case "minute", "min" -> amount % (60 * 24) == 0 ? Optional.of(RollupLevel.DAILY) : amount % 60 == 0 ? Optional.of(RollupLevel.HOURLY) : Optional.empty();
+            case "hour" -> amount % 24 == 0 ? Optional.of(RollupLevel.DAILY) : Optional.of(RollupLevel.HOURLY);
+            case "day", "week", "month", "year" -> Optional.of(RollupLevel.DAILY);
+            default -> Optional.empty();
+        };
+    }
+
+    protected Mode detectMode() {
+        try {
+            return persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement("select exists(select 1 from timescaledb_information.continuous_aggregates where view_name = lower(?))")) {
+                    st.setString(1, RollupLevel.HOURLY.tableName);
+                    try (ResultSet rs = st.executeQuery()) {
+                        if (rs.next() && rs.getBoolean(1)) {
+                            return Mode.CONTINUOUS_AGGREGATE;
+                        }
+                    }
+                }
+                try (PreparedStatement st = connection.prepareStatement("select to_regclass(lower(?)) is not null")) {
+                    st.setString(1, RollupLevel.HOURLY.tableName);
+                    try (ResultSet rs = st.executeQuery()) {
+                        if (rs.next() && rs.getBoolean(1)) {
+                            return Mode.TABLE;
+                        }
+                    }
+                }
+                return Mode.NONE;
+            }));
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to determine datapoint rollup mode so rollups won't be used", e);
+            return Mode.NONE;
+        }
+    }
+
+    protected void refresh() {
+        long dirtyFrom = dirtyFromMillis.getAndSet(Long.MAX_VALUE);
+
+        // Lower the watermarks first so queries don't use the dirty buckets whilst they are being refreshed
+        if (dirtyFrom != Long.MAX_VALUE) {
+            for (LevelState levelState : levelStates) {
+                LocalDateTime dirtyBucket = toLocalDateTime(dirtyFrom).truncatedTo(levelState.level.unit);
+                if (levelState.watermark != null && dirtyBucket.isBefore(levelState.watermark)) {
+                    levelState.watermark = dirtyBucket;
+                }
+            }
+        }
+
+        for (LevelState levelState : levelStates) {
+            try {
+                refresh(levelState);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to refresh datapoint rollup: " + levelState.level, e);
+            }
+        }
+    }
+
+    protected void refresh(LevelState levelState) {
+        RollupLevel level = levelState.level;
+        LocalDateTime end = toLocalDateTime(timerService.getCurrentTimeMillis()).truncatedTo(level.unit);
+        LocalDateTime from = levelState.watermark;
+
+        if (from == null) {
+            from = getInitialWatermark(level).orElse(end);
+        }
+
+        long startMillis = System.currentTimeMillis();
+        int chunks = 0;
+
+        while (from.isBefore(end)) {
+            LocalDateTime chunkFrom = from;
+            LocalDateTime chunkEnd = from.plusDays(level.refreshChunkDays);
+            LocalDateTime chunkTo = chunkEnd.isBefore(end) ? chunkEnd : end;
+            refresh(level, chunkFrom, chunkTo);
+            levelState.watermark = chunkTo;
+            from = chunkTo;
+            chunks++;
+        }
+
+        levelState.watermark = from;
+
+        if (chunks > 0) {
+            LOG.fine("Refreshed datapoint rollup " + level + " up to " + from + " in " + (System.currentTimeMillis() - startMillis) + "ms");
+        }
+    }
+
+    /**
+     * The last rollup bucket (which may have been incomplete when stored) or the first datapoint when the rollup is
+     * empty.
+     */
+    protected Optional<LocalDateTime> getInitialWatermark(RollupLevel level) {
+        return persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement st = connection.prepareStatement(
+                "select coalesce((select max(BUCKET) from " + level.tableName + "), (select min(TIMESTAMP) from " + AssetDatapoint.TABLE_NAME + "))");
+                 ResultSet rs = st.executeQuery()) {
+                if (rs.next() && rs.getTimestamp(1) != null) {
+                    return Optional.of(rs.getTimestamp(1).toLocalDateTime().truncatedTo(level.unit));
+                }
+                return Optional.empty();
+            }
+        }));
+    }
+
+    protected void refresh(RollupLevel level, LocalDateTime from, LocalDateTime to) {
+        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement st = connection.prepareStatement("delete from " + level.tableName + " where BUCKET >= ? and BUCKET < ?")) {
+                st.setTimestamp(1, Timestamp.valueOf(from));
+                st.setTimestamp(2, Timestamp.valueOf(to));
+                st.executeUpdate();
+            }
+            try (PreparedStatement st = connection.prepareStatement(
+                "insert into " + level.tableName + " (ENTITY_ID, ATTRIBUTE_NAME, BUCKET, MIN_VALUE, MAX_VALUE, SUM_VALUE, VALUE_COUNT, FIRST_VALUE, LAST_VALUE) " +
+                    "select ENTITY_ID, ATTRIBUTE_NAME, public.time_bucket(?::interval, TIMESTAMP) AS B, " +
+                    "min(V), max(V), sum(V), count(V), public.first(V, TIMESTAMP), public.last(V, TIMESTAMP) " +
+                    "from (select ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP, " + Datapoint.NUMERIC_VALUE_SQL + " AS V from " + AssetDatapoint.TABLE_NAME + " " +
+                    "where TIMESTAMP >= ? and TIMESTAMP < ?) D " +
+                    "where V is not null " +
+                    "group by ENTITY_ID, ATTRIBUTE_NAME, B")) {
+                st.setString(1, level.interval);
+                st.setTimestamp(2, Timestamp.valueOf(from));
+                st.setTimestamp(3, Timestamp.valueOf(to));
+                st.executeUpdate();
+            }
+        }));
+    }
+
+    protected static LocalDateTime toLocalDateTime(long millis) {
+        // Datapoint timestamps are stored as UTC
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.exception.JDBCConnectionException;
+import org.openremote.model.datapoint.Datapoint;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded buffer of datapoints from any number of assets that are written to the DB in batches by
+ * {@link AbstractDatapointService#upsertDatapoints} either every flush interval or as soon as a full batch is
+ * available.
+ * <p>
+ * When the buffer is full the caller flushes the buffer itself before adding its datapoint, which applies back-pressure
+ * to the producer rather than dropping datapoints or growing without bound. When a batch fails to be written its
+ * datapoints are written one at a time so a single invalid datapoint doesn't discard the rest of the batch; datapoints
+ * that still fail, or all datapoints of the batch when the DB connection failed, are logged, counted (see
+ * {@link #getDroppedCount}) and discarded so a DB outage cannot block ingestion indefinitely.
+ */
+public class DatapointWriteBuffer<T extends Datapoint> {
+
+    private static final Logger LOG = Logger.getLogger(DatapointWriteBuffer.class.getName());
+    protected final AbstractDatapointService<T> datapointService;
+    protected final BlockingQueue<T> queue;
+    protected final int maxBatchSize;
+    protected final long flushIntervalMillis;
+    protected final ReentrantLock flushLock = new ReentrantLock();
+    protected ScheduledExecutorService executorService;
+    protected ScheduledFuture<?> flushFuture;
+    protected DistributionSummary batchSizeSummary;
+    protected Timer flushTimer;
+    protected Counter bufferFullCounter;
+    protected Counter droppedCounter;
+    protected final AtomicLong droppedCount = new AtomicLong();
+
+    public DatapointWriteBuffer(AbstractDatapointService<T> datapointService, int capacity, int maxBatchSize, long flushIntervalMillis) {
+        this.datapointService = datapointService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    public DatapointWriteBuffer<T> setMetrics(DistributionSummary batchSizeSummary, Timer flushTimer, Counter bufferFullCounter, Counter droppedCounter) {
+        this.batchSizeSummary = batchSizeSummary;
+        this.flushTimer = flushTimer;
+        this.bufferFullCounter = bufferFullCounter;
+        this.droppedCounter = droppedCounter;
+        return this;
+    }
+
+    public void start(ScheduledExecutorService executorService) {
+        this.executorService = executorService;
+        flushFuture = executorService.scheduleWithFixedDelay(this::flushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the scheduled flushing and write any buffered datapoints.
+     */
+    public void stop() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        flushAll();
+    }
+
+    /**
+     * Add the datapoint to the buffer; if the buffer is full then buffered datapoints are written by the calling thread
+     * until there is space.
+     */
+    public void add(T datapoint) {
+        while (!queue.offer(datapoint)) {
+            if (bufferFullCounter != null) {
+                bufferFullCounter.increment();
+            }
+            LOG.finest("Datapoint buffer is full so writing datapoints in calling thread");
+            flush();
+        }
+
+        if (queue.size() >= maxBatchSize && executorService != null && !flushLock.isLocked()) {
+            executorService.execute(this::flush);
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * The number of datapoints that have been discarded because they could not be written.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    protected void flushAll() {
+        while (!queue.isEmpty()) {
+            if (flush() == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write up to max batch size datapoints from the buffer.
+     * @return The number of datapoints taken from the buffer.
+     */
+    protected int flush() {
+        flushLock.lock();
+        try {
+            List<T> batch = new ArrayList<>(Math.min(maxBatchSize, queue.size()));
+            queue.drainTo(batch, maxBatchSize);
+
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            long startMillis = System.currentTimeMillis();
+            try {
+                datapointService.upsertDatapoints(batch);
+            } catch (Exception e) {
+                if (isConnectionFailure(e)) {
+                    LOG.log(Level.WARNING, "Failed to connect to the DB to write buffered datapoints so they have been discarded: count=" + batch.size(), e);
+                    onDropped(batch.size());
+                } else {
+                    LOG.log(Level.WARNING, "Failed to write buffered datapoints so writing them one at a time: count=" + batch.size(), e);
+                    upsertEach(batch);
+                }
+            }
+            long flushMillis = System.currentTimeMillis() - startMillis;
+            LOG.finest(() -> "Buffered datapoints written in " + flushMillis + "ms: count=" + batch.size());
+
+            if (batchSizeSummary != null) {
+                batchSizeSummary.record(batch.size());
+            }
+            if (flushTimer != null) {
+                flushTimer.record(Duration.ofMillis(flushMillis));
+            }
+            return batch.size();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to flush datapoint buffer", e);
+            return 0;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    protected void upsertEach(List<T> batch) {
+        int dropped = 0;
+
+        for (T datapoint : batch) {
+            try {
+                datapointService.upsertDatapoints(List.of(datapoint));
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to write buffered datapoint so it has been discarded: " + datapoint, e);
+                dropped++;
+            }
+        }
+
+        onDropped(dropped);
+    }
+
+    protected void onDropped(int count) {
+        if (count == 0) {
+            return;
+        }
+        droppedCount.addAndGet(count);
+        if (droppedCounter != null) {
+            droppedCounter.increment(count);
+        }
+    }
+
+    protected static boolean isConnectionFailure(Throwable throwable) {
+        while (throwable != null) {
+            if (throwable instanceof JDBCConnectionException
+                || throwable instanceof SQLTransientConnectionException
+                || throwable instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            throwable = throwable.getCause();
+        }
+        return false;
+    }
+}
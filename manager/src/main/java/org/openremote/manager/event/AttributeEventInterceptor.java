@@ -44,9 +44,17 @@ public interface AttributeEventInterceptor {
         return getClass().getSimpleName();
     }
 
+    /**
+     * Whether this interceptor uses the {@link EntityManager} passed to {@link #intercept}; events are only processed
+     * within a DB transaction when at least one registered interceptor requires it.
+     */
+    default boolean isEntityManagerRequired() {
+        return true;
+    }
+
     /**
      * @param em    The current session and transaction on the database, processors may use this to query additional
-     *              data.
+     *              data; this is <code>null</code> when no registered interceptor {@link #isEntityManagerRequired}.
      * @param event The {@link AttributeEvent} enriched with {@link org.openremote.model.asset.Asset} and
      *              {@link org.openremote.model.attribute.Attribute} data.
      * @return <code>true</code> if interceptor has handled event and subsequent interceptors should be skipped.
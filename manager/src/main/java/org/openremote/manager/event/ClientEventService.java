@@ -22,6 +22,7 @@ package org.openremote.manager.event;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import io.undertow.websockets.core.WebSocketChannel;
 import io.undertow.websockets.spi.WebSocketHttpExchange;
 import org.apache.camel.Exchange;
@@ -30,6 +31,7 @@ import org.apache.camel.component.undertow.UndertowComponent;
 import org.apache.camel.component.undertow.UndertowConstants;
 import org.apache.camel.component.undertow.UndertowHostKey;
 import org.keycloak.KeycloakPrincipal;
+import org.openremote.container.concurrent.ContainerExecutor;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.security.AuthContext;
 import org.openremote.container.security.basic.BasicAuthContext;
@@ -51,12 +53,15 @@ import java.security.Principal;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 import static java.lang.System.Logger.Level.*;
 import static org.apache.camel.builder.PredicateBuilder.or;
+import static org.openremote.container.util.MapAccess.getInteger;
+import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.manager.asset.AssetProcessingService.ATTRIBUTE_EVENT_ROUTER_QUEUE;
 import static org.openremote.manager.asset.AssetProcessingService.ATTRIBUTE_EVENT_ROUTE_CONFIG_ID;
 import static org.openremote.manager.system.HealthService.OR_CAMEL_ROUTE_METRIC_PREFIX;
@@ -103,12 +108,19 @@ import static org.openremote.model.Constants.*;
  * The payload is an array of {@link SharedEvent}s.
  * </p></dd>
  * </dl>
+ * <p>
+ * Messages for websocket sessions are sent through a {@link SessionOutboundQueue} per session (see
+ * {@link #OR_CLIENT_EVENT_SESSION_QUEUE_SIZE} and {@link #OR_CLIENT_EVENT_SLOW_CONSUMER_POLICY}) so a slow client cannot
+ * delay delivery to other clients; the queues are drained by a small dedicated pool (see
+ * {@link #OR_CLIENT_EVENT_SESSION_SEND_THREADS}) and sessions that lag more than
+ * {@link #OR_CLIENT_EVENT_SESSION_MAX_LAG_MILLIS} behind are disconnected.
  */
 public class ClientEventService extends RouteBuilder implements ContainerService {
 
     protected static class SessionInfo {
         String connectionType;
         Runnable closeRunnable;
+        SessionOutboundQueue outboundQueue;
 
         public SessionInfo(String connectionType, Runnable closeRunnable) {
             this.connectionType = connectionType;
@@ -124,6 +136,16 @@ public class ClientEventService extends RouteBuilder implements ContainerService
     public static final String WEBSOCKET_URI = "undertow://ws://0.0.0.0/websocket/events?fireWebSocketChannelEvents=true&sendTimeout=15000"; // Host is not used as existing undertow instance is utilised
     public static final String CLIENT_INBOUND_QUEUE = "seda://ClientInboundQueue?multipleConsumers=true&concurrentConsumers=2&waitForTaskToComplete=IfReplyExpected&purgeWhenStopping=true&discardIfNoConsumers=true&limitConcurrentConsumers=false&size=1000";
     public static final String CLIENT_OUTBOUND_QUEUE = "seda://ClientOutboundQueue?multipleConsumers=true&concurrentConsumers=2&purgeWhenStopping=true&discardIfNoConsumers=true&limitConcurrentConsumers=false&size=1000";
+    public static final String OR_CLIENT_EVENT_SESSION_QUEUE_SIZE = "OR_CLIENT_EVENT_SESSION_QUEUE_SIZE";
+    public static final int OR_CLIENT_EVENT_SESSION_QUEUE_SIZE_DEFAULT = 1000;
+    public static final String OR_CLIENT_EVENT_SLOW_CONSUMER_POLICY = "OR_CLIENT_EVENT_SLOW_CONSUMER_POLICY";
+    public static final SessionOutboundQueue.SlowConsumerPolicy OR_CLIENT_EVENT_SLOW_CONSUMER_POLICY_DEFAULT = SessionOutboundQueue.SlowConsumerPolicy.DROP_OLDEST;
+    public static final String OR_CLIENT_EVENT_SESSION_MAX_LAG_MILLIS = "OR_CLIENT_EVENT_SESSION_MAX_LAG_MILLIS";
+    public static final int OR_CLIENT_EVENT_SESSION_MAX_LAG_MILLIS_DEFAULT = 60000;
+    public static final String OR_CLIENT_EVENT_SESSION_SEND_THREADS = "OR_CLIENT_EVENT_SESSION_SEND_THREADS";
+    public static final int OR_CLIENT_EVENT_SESSION_SEND_THREADS_DEFAULT = 4;
+    // Each session has at most one drain task queued so this bounds the number of sessions waiting for a send thread
+    protected static final int SESSION_SEND_QUEUE_CAPACITY = 10000;
     protected static final System.Logger LOG = System.getLogger(ClientEventService.class.getName());
     protected static final String INTERNAL_SESSION_KEY = "ClientEventServiceInternal";
     protected static final String PUBLISH_QUEUE = "seda://ClientPublishQueue?multipleConsumers=false&purgeWhenStopping=true&discardIfNoConsumers=true&size=1000";
@@ -141,6 +163,14 @@ public class ClientEventService extends RouteBuilder implements ContainerService
     protected Set<EventSubscription<?>> pendingInternalSubscriptions;
     protected boolean started;
     protected Counter queueFullCounter;
+    protected int sessionQueueSize;
+    protected SessionOutboundQueue.SlowConsumerPolicy slowConsumerPolicy;
+    protected int sessionMaxLagMillis;
+    protected ExecutorService sessionSendExecutor;
+    protected Timer sessionLagTimer;
+    protected Counter sessionCoalescedCounter;
+    protected Counter sessionDroppedCounter;
+    protected Counter sessionDisconnectedCounter;
 
     public static String getSessionKey(Exchange exchange) {
         return exchange.getIn().getHeader(SESSION_KEY, String.class);
@@ -168,8 +198,30 @@ public class ClientEventService extends RouteBuilder implements ContainerService
         executorService = container.getExecutorService();
         MeterRegistry meterRegistry = container.getMeterRegistry();
 
+        sessionQueueSize = getInteger(container.getConfig(), OR_CLIENT_EVENT_SESSION_QUEUE_SIZE, OR_CLIENT_EVENT_SESSION_QUEUE_SIZE_DEFAULT);
+        slowConsumerPolicy = Optional.ofNullable(getString(container.getConfig(), OR_CLIENT_EVENT_SLOW_CONSUMER_POLICY, null))
+            .map(SessionOutboundQueue.SlowConsumerPolicy::valueOf)
+            .orElse(OR_CLIENT_EVENT_SLOW_CONSUMER_POLICY_DEFAULT);
+        sessionMaxLagMillis = getInteger(container.getConfig(), OR_CLIENT_EVENT_SESSION_MAX_LAG_MILLIS, OR_CLIENT_EVENT_SESSION_MAX_LAG_MILLIS_DEFAULT);
+        int sessionSendThreads = Math.max(1, getInteger(container.getConfig(), OR_CLIENT_EVENT_SESSION_SEND_THREADS, OR_CLIENT_EVENT_SESSION_SEND_THREADS_DEFAULT));
+        sessionSendExecutor = new ContainerExecutor(
+            "Client event session sender",
+            sessionSendThreads,
+            sessionSendThreads,
+            60,
+            SESSION_SEND_QUEUE_CAPACITY,
+            new ThreadPoolExecutor.AbortPolicy());
+
         if (meterRegistry != null) {
             queueFullCounter = meterRegistry.counter(OR_CAMEL_ROUTE_METRIC_PREFIX + "_failed_queue_full", Tags.empty());
+            sessionLagTimer = meterRegistry.timer("or.client.event.session.lag", Tags.empty());
+            sessionCoalescedCounter = meterRegistry.counter("or.client.event.session.coalesced", Tags.empty());
+            sessionDroppedCounter = meterRegistry.counter("or.client.event.session.dropped", Tags.empty());
+            sessionDisconnectedCounter = meterRegistry.counter("or.client.event.session.disconnected", Tags.empty());
+            meterRegistry.gauge("or.client.event.session.queue.max", Tags.empty(), sessionKeyInfoMap, map ->
+                map.values().stream().filter(sessionInfo -> sessionInfo.outboundQueue != null).mapToInt(sessionInfo -> sessionInfo.outboundQueue.size()).max().orElse(0));
+            meterRegistry.gauge("or.client.event.session.lag.max", Tags.empty(), sessionKeyInfoMap, map ->
+                map.values().stream().filter(sessionInfo -> sessionInfo.outboundQueue != null).mapToLong(sessionInfo -> sessionInfo.outboundQueue.getLagMillis()).max().orElse(0L));
         }
 
         eventSubscriptions = new EventSubscriptions(
@@ -362,7 +414,10 @@ public class ClientEventService extends RouteBuilder implements ContainerService
             .process(exchange -> {
                 String sessionKey = getSessionKey(exchange);
                 LOG.log(TRACE, "Removing session: " + sessionKey);
-                sessionKeyInfoMap.remove(sessionKey);
+                SessionInfo sessionInfo = sessionKeyInfoMap.remove(sessionKey);
+                if (sessionInfo != null && sessionInfo.outboundQueue != null) {
+                    sessionInfo.outboundQueue.close();
+                }
                 eventSubscriptions.cancelAll(sessionKey);
             })
             .stop()
@@ -403,17 +458,18 @@ public class ClientEventService extends RouteBuilder implements ContainerService
             })
             .to(CLIENT_OUTBOUND_QUEUE);
 
-        // Route messages destined for websocket clients
+        // Route messages destined for websocket clients via the session outbound queue
         from(CLIENT_OUTBOUND_QUEUE)
             .routeId("ClientOutbound-Websocket")
             .filter(header(HEADER_CONNECTION_TYPE).isEqualTo(HEADER_CONNECTION_TYPE_WEBSOCKET))
             .process(exchange -> {
                 String sessionKey = exchange.getIn().getHeader(SESSION_KEY, String.class);
-                messageBrokerService.getFluentProducerTemplate()
-                    .withBody(exchange.getIn().getBody())
-                    .withHeader(UndertowConstants.CONNECTION_KEY, sessionKey)
-                    .to(WEBSOCKET_URI)
-                    .asyncSend();
+                SessionInfo sessionInfo = sessionKeyInfoMap.get(sessionKey);
+                if (sessionInfo == null || sessionInfo.outboundQueue == null) {
+                    LOG.log(DEBUG, () -> "Cannot send to requested session it doesn't exist or is disconnected: " + sessionKey);
+                    return;
+                }
+                sessionInfo.outboundQueue.add(exchange.getIn().getBody());
             });
     }
 
@@ -462,6 +518,11 @@ public class ClientEventService extends RouteBuilder implements ContainerService
     @Override
     public void stop(Container container) {
         started = false;
+
+        if (sessionSendExecutor != null) {
+            sessionSendExecutor.shutdownNow();
+            sessionSendExecutor = null;
+        }
     }
 
     public void addExchangeInterceptor(Consumer<Exchange> exchangeInterceptor) throws RuntimeException {
@@ -586,10 +647,27 @@ public class ClientEventService extends RouteBuilder implements ContainerService
             '}';
     }
 
-    protected static SessionInfo createSessionInfo(String sessionKey, Exchange exchange) {
+    protected SessionInfo createSessionInfo(String sessionKey, Exchange exchange) {
         String connectionType = (String) exchange.getIn().getHeader(HEADER_CONNECTION_TYPE);
         Runnable closeRunnable = exchange.getIn().getHeader(SESSION_TERMINATOR, Runnable.class);
-        return new SessionInfo(connectionType, closeRunnable);
+        SessionInfo sessionInfo = new SessionInfo(connectionType, closeRunnable);
+
+        if (HEADER_CONNECTION_TYPE_WEBSOCKET.equals(connectionType)) {
+            sessionInfo.outboundQueue = new SessionOutboundQueue(
+                sessionKey,
+                sessionQueueSize,
+                slowConsumerPolicy,
+                sessionMaxLagMillis,
+                sessionSendExecutor,
+                body -> messageBrokerService.getProducerTemplate().asyncSend(WEBSOCKET_URI, sendExchange -> {
+                    sendExchange.getIn().setBody(body);
+                    sendExchange.getIn().setHeader(UndertowConstants.CONNECTION_KEY, sessionKey);
+                }),
+                () -> closeSession(sessionKey)
+            ).setMetrics(sessionLagTimer, sessionCoalescedCounter, sessionDroppedCounter, sessionDisconnectedCounter);
+        }
+
+        return sessionInfo;
     }
 
     /**
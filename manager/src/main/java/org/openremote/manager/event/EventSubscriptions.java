@@ -24,15 +24,16 @@ import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.support.DefaultMessage;
 import org.openremote.container.timer.TimerService;
+import org.openremote.model.asset.AssetFilter;
+import org.openremote.model.asset.AssetInfo;
 import org.openremote.model.event.TriggeredEventSubscription;
-import org.openremote.model.event.shared.CancelEventSubscription;
-import org.openremote.model.event.shared.EventSubscription;
-import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.event.shared.*;
 import org.openremote.model.util.TextUtil;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,6 +41,10 @@ import static org.openremote.model.Constants.SESSION_KEY;
 
 /**
  * Manages subscriptions to events for WebSocket sessions.
+ * <p>
+ * Subscriptions are also held in a {@link SubscriptionIndex} per event type so that
+ * {@link #splitForSubscribers} only has to apply the filters of subscriptions that could match the event rather than
+ * those of every subscription of every session.
  */
 public class EventSubscriptions {
 
@@ -47,9 +52,16 @@ public class EventSubscriptions {
 
     final protected TimerService timerService;
     final protected ConcurrentMap<String, SessionSubscriptions> sessionSubscriptionIdMap = new ConcurrentHashMap<>();
+    final protected ConcurrentMap<String, SubscriptionIndex> eventTypeIndexMap = new ConcurrentHashMap<>();
 
     class SessionSubscriptions extends ConcurrentHashSet<SessionSubscription<?>> {
-        protected void createOrUpdate(EventSubscription<?> eventSubscription) {
+        final protected String sessionKey;
+
+        SessionSubscriptions(String sessionKey) {
+            this.sessionKey = sessionKey;
+        }
+
+        protected synchronized void createOrUpdate(EventSubscription<?> eventSubscription) {
 
             if (TextUtil.isNullOrEmpty(eventSubscription.getSubscriptionId())) {
                 cancelByType(eventSubscription.getEventType());
@@ -57,27 +69,50 @@ public class EventSubscriptions {
                 cancelById(eventSubscription.getSubscriptionId());
             }
 
-            add(new SessionSubscription<>(timerService.getCurrentTimeMillis(), eventSubscription));
+            SessionSubscription<?> sessionSubscription = new SessionSubscription<>(sessionKey, timerService.getCurrentTimeMillis(), eventSubscription);
+            add(sessionSubscription);
+            eventTypeIndexMap.computeIfAbsent(eventSubscription.getEventType(), eventType -> new SubscriptionIndex()).add(sessionSubscription);
+        }
+
+        protected synchronized void cancelByType(String eventType) {
+            cancelIf(sessionSubscription -> sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType));
+        }
+
+        protected synchronized void cancelById(String subscriptionId) {
+            cancelIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId));
         }
 
-        protected void cancelByType(String eventType) {
-            removeIf(sessionSubscription -> sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType));
+        protected synchronized void cancelAll() {
+            cancelIf(sessionSubscription -> true);
         }
 
-        protected void cancelById(String subscriptionId) {
-            removeIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId));
+        protected void cancelIf(Predicate<SessionSubscription<?>> predicate) {
+            removeIf(sessionSubscription -> {
+                if (!predicate.test(sessionSubscription)) {
+                    return false;
+                }
+                SubscriptionIndex index = eventTypeIndexMap.get(sessionSubscription.subscription.getEventType());
+                if (index != null) {
+                    index.remove(sessionSubscription);
+                }
+                return true;
+            });
         }
     }
 
     static class SessionSubscription<T extends SharedEvent> {
         long timestamp;
+        final String sessionKey;
         final EventSubscription<T> subscription;
         final String subscriptionId;
+        final List<String> indexKeys;
 
-        public SessionSubscription(long timestamp, EventSubscription<T> subscription) {
+        public SessionSubscription(String sessionKey, long timestamp, EventSubscription<T> subscription) {
+            this.sessionKey = sessionKey;
             this.timestamp = timestamp;
             this.subscription = subscription;
             this.subscriptionId = subscription.getSubscriptionId();
+            this.indexKeys = SubscriptionIndex.getIndexKeys(subscription.getFilter());
         }
 
         public boolean matches(SharedEvent event) {
@@ -85,45 +120,155 @@ public class EventSubscriptions {
         }
     }
 
+    /**
+     * Inverted index of the subscriptions to a single event type; each subscription is indexed by the values of the
+     * most selective {@link AssetFilter} (or {@link RealmFilter}) criteria that an event must satisfy to pass the filter
+     * so only those subscriptions whose filter could match an event need to be applied to it. Subscriptions without a
+     * filter (or without any indexable criteria) are always candidates.
+     */
+    static class SubscriptionIndex {
+        protected static final String ASSET_ID_KEY = "id:";
+        protected static final String PARENT_ID_KEY = "parent:";
+        protected static final String PATH_KEY = "path:";
+        protected static final String ATTRIBUTE_NAME_KEY = "attribute:";
+        protected static final String REALM_KEY = "realm:";
+
+        final protected Set<SessionSubscription<?>> unindexed = ConcurrentHashMap.newKeySet();
+        final protected ConcurrentMap<String, Set<SessionSubscription<?>>> indexed = new ConcurrentHashMap<>();
+
+        protected static List<String> getIndexKeys(EventFilter<?> filter) {
+            if (filter instanceof AssetFilter<?> assetFilter) {
+                if (assetFilter.getAssetIds() != null && assetFilter.getAssetIds().length > 0) {
+                    return prefixKeys(ASSET_ID_KEY, assetFilter.getAssetIds());
+                }
+                if (assetFilter.getParentIds() != null && assetFilter.getParentIds().length > 0) {
+                    return prefixKeys(PARENT_ID_KEY, assetFilter.getParentIds());
+                }
+                if (assetFilter.getPath() != null && assetFilter.getPath().length > 0) {
+                    return prefixKeys(PATH_KEY, assetFilter.getPath());
+                }
+                if (assetFilter.getAttributeNames() != null && assetFilter.getAttributeNames().length > 0) {
+                    return prefixKeys(ATTRIBUTE_NAME_KEY, assetFilter.getAttributeNames());
+                }
+                if (!TextUtil.isNullOrEmpty(assetFilter.getRealm())) {
+                    return prefixKeys(REALM_KEY, assetFilter.getRealm());
+                }
+            } else if (filter instanceof RealmFilter<?> realmFilter && realmFilter.getName() != null) {
+                return prefixKeys(REALM_KEY, realmFilter.getName());
+            }
+            return Collections.emptyList();
+        }
+
+        protected static List<String> prefixKeys(String prefix, String... values) {
+            return Arrays.stream(values).map(value -> prefix + value).toList();
+        }
+
+        protected void add(SessionSubscription<?> sessionSubscription) {
+            if (sessionSubscription.indexKeys.isEmpty()) {
+                unindexed.add(sessionSubscription);
+                return;
+            }
+            sessionSubscription.indexKeys.forEach(key ->
+                indexed.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(sessionSubscription));
+        }
+
+        protected void remove(SessionSubscription<?> sessionSubscription) {
+            if (sessionSubscription.indexKeys.isEmpty()) {
+                unindexed.remove(sessionSubscription);
+                return;
+            }
+            sessionSubscription.indexKeys.forEach(key ->
+                indexed.computeIfPresent(key, (k, subscriptions) -> {
+                    subscriptions.remove(sessionSubscription);
+                    return subscriptions.isEmpty() ? null : subscriptions;
+                }));
+        }
+
+        /**
+         * Get the subscriptions whose filter could match the event (the filter must still be applied).
+         */
+        protected Collection<SessionSubscription<?>> getCandidates(SharedEvent event) {
+            if (indexed.isEmpty()) {
+                return unindexed;
+            }
+
+            // Identity based as a subscription can be indexed by more than one key matched by the event (e.g. path)
+            Set<SessionSubscription<?>> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            candidates.addAll(unindexed);
+
+            if (event instanceof AssetInfo assetInfo) {
+                addCandidates(candidates, ASSET_ID_KEY, assetInfo.getId());
+                addCandidates(candidates, PARENT_ID_KEY, assetInfo.getParentId());
+                if (assetInfo.getPath() != null) {
+                    for (String pathId : assetInfo.getPath()) {
+                        addCandidates(candidates, PATH_KEY, pathId);
+                    }
+                }
+                String[] attributeNames = assetInfo.getAttributeNames();
+                if (attributeNames != null) {
+                    for (String attributeName : attributeNames) {
+                        addCandidates(candidates, ATTRIBUTE_NAME_KEY, attributeName);
+                    }
+                }
+            }
+            if (event instanceof RealmScopedEvent realmScopedEvent) {
+                addCandidates(candidates, REALM_KEY, realmScopedEvent.getRealm());
+            } else if (event instanceof AssetInfo assetInfo) {
+                addCandidates(candidates, REALM_KEY, assetInfo.getRealm());
+            }
+
+            return candidates;
+        }
+
+        protected void addCandidates(Set<SessionSubscription<?>> candidates, String prefix, String value) {
+            if (value == null) {
+                return;
+            }
+            Set<SessionSubscription<?>> subscriptions = indexed.get(prefix + value);
+            if (subscriptions != null) {
+                candidates.addAll(subscriptions);
+            }
+        }
+    }
+
     public EventSubscriptions(TimerService timerService) {
         this.timerService = timerService;
     }
 
     protected void createOrUpdate(String sessionKey, EventSubscription<?> subscription) {
         LOG.finest("Create/update subscription for session '" + sessionKey + "': " + subscription);
-        SessionSubscriptions sessionSubscriptions =
-            this.sessionSubscriptionIdMap.computeIfAbsent(sessionKey, k -> new SessionSubscriptions());
-        sessionSubscriptions.createOrUpdate(subscription);
+        // Done within compute so a concurrent cancel cannot remove the session subscriptions whilst adding to them
+        this.sessionSubscriptionIdMap.compute(sessionKey, (key, sessionSubscriptions) -> {
+            if (sessionSubscriptions == null) {
+                sessionSubscriptions = new SessionSubscriptions(key);
+            }
+            sessionSubscriptions.createOrUpdate(subscription);
+            return sessionSubscriptions;
+        });
     }
 
     protected void cancel(String sessionKey, CancelEventSubscription subscription) {
-        if (!this.sessionSubscriptionIdMap.containsKey(sessionKey)) {
-            return;
-        }
         if (subscription.getEventType() == null && subscription.getSubscriptionId() == null) {
             return;
         }
         LOG.finest("Cancel subscription for session '" + sessionKey + "': " + subscription);
-        SessionSubscriptions sessionSubscriptions = this.sessionSubscriptionIdMap.get(sessionKey);
-
-        if (sessionSubscriptions == null) {
-            return;
-        }
 
-        if (!TextUtil.isNullOrEmpty(subscription.getSubscriptionId())) {
-            sessionSubscriptions.cancelById(subscription.getSubscriptionId());
-        } else {
-            sessionSubscriptions.cancelByType(subscription.getEventType());
-        }
-        if (sessionSubscriptions.isEmpty()) {
-            this.sessionSubscriptionIdMap.remove(sessionKey);
-        }
+        // Cancel and remove the session subscriptions if now empty atomically with respect to createOrUpdate
+        this.sessionSubscriptionIdMap.computeIfPresent(sessionKey, (key, sessionSubscriptions) -> {
+            if (!TextUtil.isNullOrEmpty(subscription.getSubscriptionId())) {
+                sessionSubscriptions.cancelById(subscription.getSubscriptionId());
+            } else {
+                sessionSubscriptions.cancelByType(subscription.getEventType());
+            }
+            return sessionSubscriptions.isEmpty() ? null : sessionSubscriptions;
+        });
     }
 
     protected void cancelAll(String sessionKey) {
-        if (this.sessionSubscriptionIdMap.containsKey(sessionKey)) {
+        SessionSubscriptions sessionSubscriptions = this.sessionSubscriptionIdMap.remove(sessionKey);
+        if (sessionSubscriptions != null) {
             LOG.finest("Cancelling all subscriptions for session: " + sessionKey);
-            this.sessionSubscriptionIdMap.remove(sessionKey);
+            sessionSubscriptions.cancelAll();
         }
     }
 
@@ -138,39 +283,37 @@ public class EventSubscriptions {
         if (event == null)
             return messageList;
 
-        for (Map.Entry<String, SessionSubscriptions> entry : sessionSubscriptionIdMap.entrySet()) {
-            String sessionKey = entry.getKey();
-            SessionSubscriptions subscriptions = entry.getValue();
-
-            for (SessionSubscription<?> sessionSubscription : subscriptions) {
-
-                if (!sessionSubscription.matches(event))
-                    continue;
-
-                SessionSubscription<T> sessionSub = (SessionSubscription<T>) sessionSubscription;
-                T filteredEvent = sessionSub.subscription.getFilter() == null ? event : sessionSub.subscription.getFilter().apply(event);
-
-                if (filteredEvent != null) {
-                    LOG.finest("Creating message for subscribed session '" + sessionKey + "': " + filteredEvent);
-                    List<T> events = Collections.singletonList(filteredEvent);
-                    TriggeredEventSubscription<T> triggeredEventSubscription = new TriggeredEventSubscription<>(events, sessionSub.subscriptionId);
-
-                    if (sessionSub.subscription.isInternal()) {
-                        if (triggeredEventSubscription.getEvents() != null) {
-                            try {
-                                triggeredEventSubscription.getEvents().forEach(e ->
-                                        sessionSub.subscription.getInternalConsumer().accept(e));
-                            } catch (Exception e) {
-                                LOG.log(Level.WARNING, "Internal subscription consumer has thrown an exception: id=" + triggeredEventSubscription.getSubscriptionId(), e);
-                            }
-                        }
-                    } else {
-                        Message msg = new DefaultMessage(exchange.getContext());
-                        msg.setBody(triggeredEventSubscription); // Don't copy the event, use same reference
-                        msg.setHeaders(new HashMap<>(exchange.getIn().getHeaders())); // Copy headers
-                        msg.setHeader(SESSION_KEY, sessionKey);
-                        messageList.add(msg);
+        SubscriptionIndex index = eventTypeIndexMap.get(event.getEventType());
+
+        if (index == null)
+            return messageList;
+
+        // Each distinct (filtered) event is only serialised once for all the subscriptions it is delivered to
+        Map<T, SerializedEvent<T>> serializedEvents = new IdentityHashMap<>();
+
+        for (SessionSubscription<?> sessionSubscription : index.getCandidates(event)) {
+            String sessionKey = sessionSubscription.sessionKey;
+
+            SessionSubscription<T> sessionSub = (SessionSubscription<T>) sessionSubscription;
+            T filteredEvent = sessionSub.subscription.getFilter() == null ? event : sessionSub.subscription.getFilter().apply(event);
+
+            if (filteredEvent != null) {
+                LOG.finest("Creating message for subscribed session '" + sessionKey + "': " + filteredEvent);
+
+                if (sessionSub.subscription.isInternal()) {
+                    try {
+                        sessionSub.subscription.getInternalConsumer().accept(filteredEvent);
+                    } catch (Exception e) {
+                        LOG.log(Level.WARNING, "Internal subscription consumer has thrown an exception: id=" + sessionSub.subscriptionId, e);
                     }
+                } else {
+                    SerializedEvent<T> serializedEvent = serializedEvents.computeIfAbsent(filteredEvent, SerializedEvent::new);
+                    TriggeredEventSubscription<T> triggeredEventSubscription = new SerializedTriggeredEventSubscription<>(serializedEvent, sessionSub.subscriptionId);
+                    Message msg = new DefaultMessage(exchange.getContext());
+                    msg.setBody(triggeredEventSubscription); // Don't copy the event, use same reference
+                    msg.setHeaders(new HashMap<>(exchange.getIn().getHeaders())); // Copy headers
+                    msg.setHeader(SESSION_KEY, sessionKey);
+                    messageList.add(msg);
                 }
             }
         }
@@ -67,6 +67,9 @@ public class EventTypeConverters implements TypeConverters {
 
     @Converter
     public String writeTriggeredEventSubscription(TriggeredEventSubscription triggeredEventSubscription, Exchange exchange) throws Exception {
+        if (triggeredEventSubscription instanceof SerializedTriggeredEventSubscription<?> serializedTriggeredEventSubscription) {
+            return serializedTriggeredEventSubscription.toMessageString();
+        }
         return TriggeredEventSubscription.MESSAGE_PREFIX + ValueUtil.JSON.writeValueAsString(triggeredEventSubscription);
     }
 
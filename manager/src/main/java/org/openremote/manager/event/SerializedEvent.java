@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.util.ValueUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Holds a {@link SharedEvent} along with its lazily serialised JSON representations so that an event delivered to
+ * many subscribers is only serialised once regardless of the number of subscribers (see
+ * {@link SerializedTriggeredEventSubscription}). Serialisation is idempotent so concurrent first access may serialise
+ * more than once but all callers see an equivalent result.
+ */
+public class SerializedEvent<T extends SharedEvent> {
+
+    protected final T event;
+    protected volatile String json;
+    protected volatile byte[] jsonBytes;
+    protected volatile byte[] valueJsonBytes;
+
+    public SerializedEvent(T event) {
+        this.event = event;
+    }
+
+    public T getEvent() {
+        return event;
+    }
+
+    /**
+     * Get the JSON representation of the event.
+     */
+    public String getJson() throws IllegalStateException {
+        String json = this.json;
+        if (json == null) {
+            json = ValueUtil.asJSON(event).orElseThrow(() -> new IllegalStateException("Failed to convert event to JSON string: " + event));
+            this.json = json;
+        }
+        return json;
+    }
+
+    /**
+     * Get the UTF-8 encoded JSON representation of the event.
+     */
+    public byte[] getJsonBytes() throws IllegalStateException {
+        byte[] jsonBytes = this.jsonBytes;
+        if (jsonBytes == null) {
+            jsonBytes = getJson().getBytes(StandardCharsets.UTF_8);
+            this.jsonBytes = jsonBytes;
+        }
+        return jsonBytes;
+    }
+
+    /**
+     * Get the UTF-8 encoded JSON representation of the value of an {@link AttributeEvent}.
+     */
+    public byte[] getValueJsonBytes() throws IllegalStateException {
+        byte[] valueJsonBytes = this.valueJsonBytes;
+        if (valueJsonBytes == null) {
+            if (!(event instanceof AttributeEvent attributeEvent)) {
+                throw new IllegalStateException("Event is not an attribute event: " + event);
+            }
+            Object value = attributeEvent.getValue().orElse(null);
+            valueJsonBytes = ValueUtil.asJSON(value)
+                .map(valueJson -> valueJson.getBytes(StandardCharsets.UTF_8))
+                .orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + value));
+            this.valueJsonBytes = valueJsonBytes;
+        }
+        return valueJsonBytes;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.openremote.model.event.TriggeredEventSubscription;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.util.ValueUtil;
+
+import java.util.Collections;
+
+/**
+ * A {@link TriggeredEventSubscription} for a single event that shares the {@link SerializedEvent} with all other
+ * subscriptions triggered by the same event; the message is built by splicing the subscription ID into the shared
+ * event JSON rather than serialising the event for each subscriber.
+ */
+public class SerializedTriggeredEventSubscription<T extends SharedEvent> extends TriggeredEventSubscription<T> {
+
+    protected final SerializedEvent<T> serializedEvent;
+
+    public SerializedTriggeredEventSubscription(SerializedEvent<T> serializedEvent, String subscriptionId) {
+        super(Collections.singletonList(serializedEvent.getEvent()), subscriptionId);
+        this.serializedEvent = serializedEvent;
+    }
+
+    @JsonIgnore
+    public SerializedEvent<T> getSerializedEvent() {
+        return serializedEvent;
+    }
+
+    /**
+     * Get the message string which is equivalent to {@link #MESSAGE_PREFIX} followed by the JSON representation of this
+     * instance.
+     */
+    public String toMessageString() throws IllegalStateException {
+        String eventJson = serializedEvent.getJson();
+        String subscriptionIdJson = subscriptionId != null ? ValueUtil.asJSON(subscriptionId).orElseThrow() : null;
+        StringBuilder sb = new StringBuilder(MESSAGE_PREFIX.length() + eventJson.length() + (subscriptionIdJson != null ? subscriptionIdJson.length() : 0) + 35);
+        sb.append(MESSAGE_PREFIX).append("{\"events\":[").append(eventJson).append(']');
+        if (subscriptionIdJson != null) {
+            sb.append(",\"subscriptionId\":").append(subscriptionIdJson);
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.TriggeredEventSubscription;
+import org.openremote.model.event.shared.SharedEvent;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import static java.lang.System.Logger.Level.*;
+
+/**
+ * A bounded outbound message queue for a single client session; messages are sent one at a time by a drain task on
+ * the supplied executor (never on the thread adding the message) so a slow client only delays delivery of its own
+ * messages. If a client falls behind then pending messages for the same
+ * {@link org.openremote.model.attribute.AttributeRef} of the same subscription are coalesced so only the newest value
+ * is sent, if the queue is full then the {@link SlowConsumerPolicy} is applied and if the oldest pending message has
+ * waited longer than the max lag then the session is disconnected.
+ */
+public class SessionOutboundQueue {
+
+    public enum SlowConsumerPolicy {
+        /**
+         * Drop the oldest pending message to make room for the new message
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new message
+         */
+        DROP_NEWEST,
+        /**
+         * Disconnect the client session and discard all pending messages
+         */
+        DISCONNECT
+    }
+
+    protected static class PendingMessage {
+        final Object body;
+        final long enqueuedMillis;
+
+        protected PendingMessage(Object body, long enqueuedMillis) {
+            this.body = body;
+            this.enqueuedMillis = enqueuedMillis;
+        }
+    }
+
+    private static final System.Logger LOG = System.getLogger(SessionOutboundQueue.class.getName());
+    protected final String sessionKey;
+    protected final int maxSize;
+    protected final SlowConsumerPolicy slowConsumerPolicy;
+    protected final long maxLagMillis;
+    protected final Executor drainExecutor;
+    protected final Function<Object, CompletableFuture<?>> sender;
+    protected final Runnable disconnector;
+    protected final LinkedHashMap<Object, PendingMessage> pendingMessages = new LinkedHashMap<>();
+    protected long sequence;
+    protected boolean draining;
+    protected boolean closed;
+    protected volatile long oldestPendingMillis;
+    protected Timer lagTimer;
+    protected Counter coalescedCounter;
+    protected Counter droppedCounter;
+    protected Counter disconnectedCounter;
+
+    /**
+     * @param maxLagMillis  Disconnect the session when the oldest pending message has waited longer than this (not
+     *                      checked when not greater than zero).
+     * @param drainExecutor Runs the drain tasks that send the pending messages; at most one drain task per session is
+     *                      queued or running at any time.
+     * @param sender        Sends the message to the client and returns a future that completes once the send has
+     *                      completed (successfully or not).
+     * @param disconnector  Closes the client session.
+     */
+    public SessionOutboundQueue(String sessionKey, int maxSize, SlowConsumerPolicy slowConsumerPolicy, long maxLagMillis, Executor drainExecutor, Function<Object, CompletableFuture<?>> sender, Runnable disconnector) {
+        this.sessionKey = sessionKey;
+        this.maxSize = Math.max(1, maxSize);
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.maxLagMillis = maxLagMillis;
+        this.drainExecutor = drainExecutor;
+        this.sender = sender;
+        this.disconnector = disconnector;
+    }
+
+    public SessionOutboundQueue setMetrics(Timer lagTimer, Counter coalescedCounter, Counter droppedCounter, Counter disconnectedCounter) {
+        this.lagTimer = lagTimer;
+        this.coalescedCounter = coalescedCounter;
+        this.droppedCounter = droppedCounter;
+        this.disconnectedCounter = disconnectedCounter;
+        return this;
+    }
+
+    public void add(Object body) {
+        boolean disconnect = false;
+        boolean drain = false;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            Object coalesceKey = getCoalesceKey(body);
+
+            if (maxLagMillis > 0 && oldestPendingMillis > 0 && now - oldestPendingMillis > maxLagMillis) {
+                LOG.log(INFO, "Session outbound queue lag exceeds " + maxLagMillis + "ms so disconnecting slow consumer: " + sessionKey);
+                close();
+                disconnect = true;
+            } else if (coalesceKey != null && pendingMessages.containsKey(coalesceKey)) {
+                // Replace the pending value (keeping its original position and enqueue time so lag is still reported)
+                PendingMessage existing = pendingMessages.get(coalesceKey);
+                pendingMessages.put(coalesceKey, new PendingMessage(body, existing.enqueuedMillis));
+                increment(coalescedCounter);
+                LOG.log(TRACE, () -> "Coalesced pending message for session '" + sessionKey + "': " + body);
+            } else {
+                if (pendingMessages.size() >= maxSize) {
+                    switch (slowConsumerPolicy) {
+                        case DROP_OLDEST -> {
+                            Iterator<PendingMessage> it = pendingMessages.values().iterator();
+                            it.next();
+                            it.remove();
+                            increment(droppedCounter);
+                            LOG.log(DEBUG, () -> "Session outbound queue is full so dropping oldest message: " + sessionKey);
+                        }
+                        case DROP_NEWEST -> {
+                            increment(droppedCounter);
+                            LOG.log(DEBUG, () -> "Session outbound queue is full so dropping new message: " + sessionKey);
+                            return;
+                        }
+                        case DISCONNECT -> {
+                            LOG.log(INFO, "Session outbound queue is full so disconnecting slow consumer: " + sessionKey);
+                            close();
+                            disconnect = true;
+                        }
+                    }
+                }
+
+                if (!disconnect) {
+                    pendingMessages.put(coalesceKey != null ? coalesceKey : sequence++, new PendingMessage(body, now));
+                }
+            }
+
+            updateOldestPendingMillis();
+
+            if (!disconnect && !draining) {
+                draining = true;
+                drain = true;
+            }
+        }
+
+        if (disconnect) {
+            increment(disconnectedCounter);
+            try {
+                disconnector.run();
+            } catch (Exception e) {
+                LOG.log(WARNING, "Failed to disconnect slow consumer session: " + sessionKey, e);
+            }
+            return;
+        }
+
+        if (drain) {
+            scheduleDrain();
+        }
+    }
+
+    /**
+     * Discard all pending messages and ignore any further messages.
+     */
+    public synchronized void close() {
+        closed = true;
+        pendingMessages.clear();
+        updateOldestPendingMillis();
+    }
+
+    public synchronized int size() {
+        return pendingMessages.size();
+    }
+
+    /**
+     * Get how long the oldest pending message has been waiting to be sent (0 if no pending messages).
+     */
+    public long getLagMillis() {
+        long oldest = oldestPendingMillis;
+        return oldest > 0 ? System.currentTimeMillis() - oldest : 0L;
+    }
+
+    /**
+     * Submit a drain task; the caller must have set {@link #draining} so only one drain task exists at a time.
+     */
+    protected void scheduleDrain() {
+        try {
+            drainExecutor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Pending messages are kept and the drain is retried when the next message is added
+            LOG.log(WARNING, "Session outbound drain executor rejected drain of session: " + sessionKey);
+            synchronized (this) {
+                draining = false;
+            }
+        }
+    }
+
+    protected void drain() {
+        // Loop whilst sends complete synchronously
+        while (true) {
+            PendingMessage next;
+
+            synchronized (this) {
+                if (closed || pendingMessages.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                Iterator<PendingMessage> it = pendingMessages.values().iterator();
+                next = it.next();
+                it.remove();
+                updateOldestPendingMillis();
+            }
+
+            if (lagTimer != null) {
+                lagTimer.record(Duration.ofMillis(System.currentTimeMillis() - next.enqueuedMillis));
+            }
+
+            CompletableFuture<?> future;
+            try {
+                future = sender.apply(next.body);
+            } catch (Exception e) {
+                LOG.log(WARNING, "Failed to send message to session: " + sessionKey, e);
+                future = null;
+            }
+
+            if (future != null && !future.isDone()) {
+                // Continue on the drain executor rather than on the thread that completes the send
+                future.whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        LOG.log(DEBUG, "Failed to send message to session: " + sessionKey, ex);
+                    }
+                    scheduleDrain();
+                });
+                return;
+            }
+        }
+    }
+
+    protected void updateOldestPendingMillis() {
+        oldestPendingMillis = pendingMessages.isEmpty() ? 0L : pendingMessages.values().iterator().next().enqueuedMillis;
+    }
+
+    /**
+     * Only single attribute event messages of a subscription are coalesced
+     */
+    protected static Object getCoalesceKey(Object body) {
+        if (body instanceof TriggeredEventSubscription<?> triggeredEventSubscription
+            && triggeredEventSubscription.getEvents() != null
+            && triggeredEventSubscription.getEvents().size() == 1) {
+            SharedEvent event = triggeredEventSubscription.getEvents().get(0);
+            if (event instanceof AttributeEvent attributeEvent) {
+                return Arrays.asList(triggeredEventSubscription.getSubscriptionId(), attributeEvent.getRef());
+            }
+        }
+        return null;
+    }
+
+    protected static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
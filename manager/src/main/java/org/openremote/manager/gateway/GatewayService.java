@@ -193,6 +193,11 @@ public class GatewayService extends RouteBuilder implements ContainerService {
                     return AttributeEventInterceptor.DEFAULT_PRIORITY - 1000;
                 }
 
+                @Override
+                public boolean isEntityManagerRequired() {
+                    return false;
+                }
+
                 @Override
                 public boolean intercept(EntityManager em, AttributeEvent event) throws AssetProcessingException {
                     return onAttributeEventIntercepted(em, event);
@@ -29,6 +29,8 @@ import org.apache.camel.builder.RouteBuilder;
 import org.keycloak.KeycloakSecurityContext;
 import org.openremote.container.security.AuthContext;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.SerializedEvent;
+import org.openremote.manager.event.SerializedTriggeredEventSubscription;
 import org.openremote.model.Container;
 import org.openremote.model.PersistenceEvent;
 import org.openremote.model.asset.AssetEvent;
@@ -65,14 +67,14 @@ import static org.openremote.model.syslog.SyslogCategory.API;
 public class DefaultMQTTHandler extends MQTTHandler {
 
     public static class SubscriberInfo {
-        protected Map<String, Consumer<SharedEvent>> topicSubscriptionMap;
+        protected Map<String, Consumer<SerializedEvent<?>>> topicSubscriptionMap;
 
-        public SubscriberInfo(String topic, Consumer<SharedEvent> subscriptionConsumer) {
+        public SubscriberInfo(String topic, Consumer<SerializedEvent<?>> subscriptionConsumer) {
             this.topicSubscriptionMap = new HashMap<>();
             this.topicSubscriptionMap.put(topic, subscriptionConsumer);
         }
 
-        protected void add(String topic, Consumer<SharedEvent> subscriptionConsumer) {
+        protected void add(String topic, Consumer<SerializedEvent<?>> subscriptionConsumer) {
             topicSubscriptionMap.put(topic, subscriptionConsumer);
         }
 
@@ -123,10 +125,13 @@ public class DefaultMQTTHandler extends MQTTHandler {
                         if (subscriberInfo != null) {
                             TriggeredEventSubscription<?> triggeredEventSubscription = exchange.getIn().getBody(TriggeredEventSubscription.class);
                             String topic = triggeredEventSubscription.getSubscriptionId();
-                            // Should only be a single event in here
-                            SharedEvent event = triggeredEventSubscription.getEvents().get(0);
-                            Consumer<SharedEvent> eventConsumer = subscriberInfo.topicSubscriptionMap.get(topic);
+                            Consumer<SerializedEvent<?>> eventConsumer = subscriberInfo.topicSubscriptionMap.get(topic);
                             if (eventConsumer != null) {
+                                // Use the shared serialised event so it is only serialised once for all subscribers
+                                SerializedEvent<?> event = triggeredEventSubscription instanceof SerializedTriggeredEventSubscription<?> serializedTriggeredEventSubscription
+                                    ? serializedTriggeredEventSubscription.getSerializedEvent()
+                                    // Should only be a single event in here
+                                    : new SerializedEvent<>(triggeredEventSubscription.getEvents().get(0));
                                 eventConsumer.accept(event);
                             }
                         }
@@ -360,7 +365,7 @@ public class DefaultMQTTHandler extends MQTTHandler {
             return;
         }
 
-        Consumer<SharedEvent> eventConsumer = getSubscriptionEventConsumer(connection, topic);
+        Consumer<SerializedEvent<?>> eventConsumer = getSubscriptionEventConsumer(connection, topic);
 
         EventSubscription subscription = new EventSubscription(
             subscriptionClass,
@@ -536,7 +541,7 @@ public class DefaultMQTTHandler extends MQTTHandler {
         return assetFilter;
     }
 
-    protected Consumer<SharedEvent> getSubscriptionEventConsumer(RemotingConnection connection, Topic topic) {
+    protected Consumer<SerializedEvent<?>> getSubscriptionEventConsumer(RemotingConnection connection, Topic topic) {
         boolean isValueSubscription = ATTRIBUTE_VALUE_TOPIC.equalsIgnoreCase(topicTokenIndexToString(topic, 2));
         boolean isAssetTopic = isAssetTopic(topic);
 
@@ -570,18 +575,19 @@ public class DefaultMQTTHandler extends MQTTHandler {
         }
 
 
-        return ev -> {
+        return serializedEvent -> {
+            SharedEvent ev = serializedEvent.getEvent();
 
             if (isAssetTopic) {
                 if (ev instanceof AssetEvent) {
-                    mqttBrokerService.publishMessage(topicExpander.apply(ev), ev, mqttQoS);
+                    mqttBrokerService.publishMessage(topicExpander.apply(ev), serializedEvent.getJsonBytes(), mqttQoS);
                 }
             } else {
-                if (ev instanceof AttributeEvent attributeEvent) {
+                if (ev instanceof AttributeEvent) {
                     if (isValueSubscription) {
-                        mqttBrokerService.publishMessage(topicExpander.apply(ev), attributeEvent.getValue().orElse(null), mqttQoS);
+                        mqttBrokerService.publishMessage(topicExpander.apply(ev), serializedEvent.getValueJsonBytes(), mqttQoS);
                     } else {
-                        mqttBrokerService.publishMessage(topicExpander.apply(ev), ev, mqttQoS);
+                        mqttBrokerService.publishMessage(topicExpander.apply(ev), serializedEvent.getJsonBytes(), mqttQoS);
                     }
                 }
             }
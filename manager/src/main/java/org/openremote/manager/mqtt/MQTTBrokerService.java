@@ -21,6 +21,8 @@ package org.openremote.manager.mqtt;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.netty.channel.ChannelId;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import org.apache.activemq.artemis.api.core.ActiveMQException;
@@ -85,7 +87,6 @@ import java.util.stream.Collectors;
 
 import static java.lang.System.Logger.Level.*;
 import static java.util.stream.StreamSupport.stream;
-import static org.apache.activemq.artemis.core.protocol.mqtt.MQTTUtil.MQTT_QOS_LEVEL_KEY;
 import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
 import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.util.MapAccess.getString;
@@ -96,6 +97,10 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
 
     public static final String MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS = "MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS";
     public static int MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS_DEFAULT = 5000;
+    public static final String MQTT_PUBLISHER_SESSIONS = "MQTT_PUBLISHER_SESSIONS";
+    public static int MQTT_PUBLISHER_SESSIONS_DEFAULT = Runtime.getRuntime().availableProcessors();
+    public static final String MQTT_PUBLISHER_QUEUE_SIZE = "MQTT_PUBLISHER_QUEUE_SIZE";
+    public static int MQTT_PUBLISHER_QUEUE_SIZE_DEFAULT = 1000;
     public static final int PRIORITY = MED_PRIORITY;
     public static final String MQTT_SERVER_LISTEN_HOST = "MQTT_SERVER_LISTEN_HOST";
     public static final String MQTT_SERVER_LISTEN_PORT = "MQTT_SERVER_LISTEN_PORT";
@@ -123,8 +128,11 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
     protected int port;
     protected EmbeddedActiveMQ server;
     protected ActiveMQORSecurityManager securityManager;
-    protected ClientProducer producer;
     protected ClientSessionInternal internalSession;
+    protected MQTTPublisher publisher;
+    protected int publisherSessions;
+    protected int publisherQueueSize;
+    protected MeterRegistry meterRegistry;
 
     @Override
     public int getPriority() {
@@ -136,6 +144,9 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
         host = getString(container.getConfig(), MQTT_SERVER_LISTEN_HOST, "0.0.0.0");
         port = getInteger(container.getConfig(), MQTT_SERVER_LISTEN_PORT, 1883);
         int debounceMillis = getInteger(container.getConfig(), MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS, MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS_DEFAULT);
+        publisherSessions = Math.max(1, getInteger(container.getConfig(), MQTT_PUBLISHER_SESSIONS, MQTT_PUBLISHER_SESSIONS_DEFAULT));
+        publisherQueueSize = getInteger(container.getConfig(), MQTT_PUBLISHER_QUEUE_SIZE, MQTT_PUBLISHER_QUEUE_SIZE_DEFAULT);
+        meterRegistry = container.getMeterRegistry();
         assetStorageService = container.getService(AssetStorageService.class);
         authorisationService = container.getService(AuthorisationService.class);
         clientEventService = container.getService(ClientEventService.class);
@@ -262,18 +273,22 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
             }
         });
 
-        // Create internal producer for producing messages
+        // Create internal session for consuming messages
         ServerLocator serverLocator = ActiveMQClient.createServerLocator("vm://0");
         ClientSessionFactory factory = serverLocator.createSessionFactory();
-        String internalClientID = UniqueIdentifierGenerator.generateId("Internal client");
-        internalSession = (ClientSessionInternal) factory.createSession(null, null, false, true, true, true, serverLocator.getAckBatchSize(), internalClientID);
-        internalSession.addMetaData(ClientSession.JMS_SESSION_IDENTIFIER_PROPERTY, "Internal session");
-        ServerSession serverSession = server.getActiveMQServer().getSessionByID(internalSession.getName());
-        serverSession.disableSecurity();
-        internalSession.start();
+        internalSession = createInternalSession(serverLocator, factory, "Internal session");
 
-        // Create producer
-        producer = internalSession.createProducer();
+        // Create pool of internal sessions for publishing messages
+        List<ClientSessionInternal> sessions = new ArrayList<>(publisherSessions);
+        for (int i = 0; i < publisherSessions; i++) {
+            sessions.add(createInternalSession(serverLocator, factory, "Internal publisher session " + i));
+        }
+        publisher = new MQTTPublisher(sessions, publisherQueueSize);
+        if (meterRegistry != null) {
+            publisher.setMetrics(meterRegistry.counter("or.mqtt.publish.queue.full", Tags.empty()));
+            meterRegistry.gauge("or.mqtt.publish.queue.size", Tags.empty(), publisher, MQTTPublisher::size);
+        }
+        LOG.log(DEBUG, "Created MQTT publisher sessions: count=" + publisherSessions + ", queueSize=" + publisherQueueSize);
 
         // Start each custom handler
         for (MQTTHandler handler : customHandlers) {
@@ -331,6 +346,11 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
 
         userAssetDisconnectDebouncer.cancelAll(true);
 
+        if (publisher != null) {
+            publisher.close();
+            publisher = null;
+        }
+
         server.stop();
         LOG.log(DEBUG, "Stopped MQTT broker");
 
@@ -497,19 +517,42 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
     }
 
     public void publishMessage(String topic, Object data, MqttQoS qoS) {
+        byte[] payload;
         try {
-            if (internalSession != null) {
-                // Artemis' sessions are not threadsafe
-                synchronized (internalSession) {
-                    ClientMessage message = internalSession.createMessage(false);
-                    message.putIntProperty(MQTT_QOS_LEVEL_KEY, qoS.value());
-                    message.writeBodyBufferBytes(ValueUtil.asJSON(data).map(String::getBytes).orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data)));
-                    producer.send(MQTTUtil.convertMqttTopicFilterToCoreAddress(topic, server.getConfiguration().getWildcardConfiguration()), message);
-                }
-            }
+            payload = ValueUtil.asJSON(data).map(String::getBytes).orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data));
         } catch (Exception e) {
             LOG.log(WARNING, "Couldn't publish to MQTT client: topic=" + topic, e);
+            return;
         }
+        publishMessage(topic, payload, qoS);
+    }
+
+    /**
+     * Publish an already serialised payload; this allows the same payload to be published to many topics without
+     * serialising it for each one.
+     */
+    public void publishMessage(String topic, byte[] payload, MqttQoS qoS) {
+        MQTTPublisher publisher = this.publisher;
+
+        if (publisher == null) {
+            return;
+        }
+
+        try {
+            publisher.publish(topic, MQTTUtil.convertMqttTopicFilterToCoreAddress(topic, server.getConfiguration().getWildcardConfiguration()), payload, qoS.value());
+        } catch (Exception e) {
+            LOG.log(WARNING, "Couldn't publish to MQTT client: topic=" + topic, e);
+        }
+    }
+
+    protected ClientSessionInternal createInternalSession(ServerLocator serverLocator, ClientSessionFactory factory, String name) throws Exception {
+        String internalClientID = UniqueIdentifierGenerator.generateId("Internal client");
+        ClientSessionInternal session = (ClientSessionInternal) factory.createSession(null, null, false, true, true, true, serverLocator.getAckBatchSize(), internalClientID);
+        session.addMetaData(ClientSession.JMS_SESSION_IDENTIFIER_PROPERTY, name);
+        ServerSession serverSession = server.getActiveMQServer().getSessionByID(session.getName());
+        serverSession.disableSecurity();
+        session.start();
+        return session;
     }
 
     public WildcardConfiguration getWildcardConfiguration() {
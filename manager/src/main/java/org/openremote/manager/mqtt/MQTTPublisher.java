@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.mqtt;
+
+import io.micrometer.core.instrument.Counter;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.activemq.artemis.api.core.client.ClientProducer;
+import org.apache.activemq.artemis.api.core.client.ClientSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.Logger.Level.*;
+import static org.apache.activemq.artemis.core.protocol.mqtt.MQTTUtil.MQTT_QOS_LEVEL_KEY;
+
+/**
+ * Publishes messages to the MQTT broker using a pool of internal sessions (Artemis sessions are not threadsafe); each
+ * message is assigned to a session by the hash of its topic so messages for the same topic are always sent in order.
+ * <p>
+ * Messages are added to the bounded queue of their session and sent by whichever publishing thread holds the session's
+ * send lock; a publisher that finds the session busy returns immediately and its message is sent by the current holder.
+ * When the queue is full the publisher waits for the lock and sends the queued messages itself, which applies
+ * back-pressure to the producer rather than dropping messages or growing without bound.
+ */
+public class MQTTPublisher {
+
+    protected static class PendingMessage {
+        protected final String address;
+        protected final byte[] payload;
+        protected final int qos;
+
+        protected PendingMessage(String address, byte[] payload, int qos) {
+            this.address = address;
+            this.payload = payload;
+            this.qos = qos;
+        }
+    }
+
+    protected static class PublisherSession {
+        protected final ClientSession session;
+        protected final ClientProducer producer;
+        protected final BlockingQueue<PendingMessage> queue;
+        protected final ReentrantLock sendLock = new ReentrantLock();
+
+        protected PublisherSession(ClientSession session, int queueSize) throws Exception {
+            this.session = session;
+            this.producer = session.createProducer();
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+    }
+
+    private static final System.Logger LOG = System.getLogger(MQTTPublisher.class.getName());
+    protected final List<PublisherSession> sessions;
+    protected Counter queueFullCounter;
+
+    public MQTTPublisher(List<? extends ClientSession> sessions, int queueSize) throws Exception {
+        this.sessions = new ArrayList<>(sessions.size());
+        for (ClientSession session : sessions) {
+            this.sessions.add(new PublisherSession(session, Math.max(1, queueSize)));
+        }
+    }
+
+    public MQTTPublisher setMetrics(Counter queueFullCounter) {
+        this.queueFullCounter = queueFullCounter;
+        return this;
+    }
+
+    /**
+     * Queue the message for publishing on the session for the topic and send queued messages if the session is not
+     * already sending.
+     *
+     * @param topic   The MQTT topic (used to select the session).
+     * @param address The core address of the topic.
+     */
+    public void publish(String topic, String address, byte[] payload, int qos) {
+        PublisherSession publisherSession = sessions.get(Math.floorMod(topic.hashCode(), sessions.size()));
+        PendingMessage message = new PendingMessage(address, payload, qos);
+
+        while (!publisherSession.queue.offer(message)) {
+            if (queueFullCounter != null) {
+                queueFullCounter.increment();
+            }
+            LOG.log(TRACE, "MQTT publish queue is full so sending queued messages in calling thread");
+            publisherSession.sendLock.lock();
+            try {
+                sendQueued(publisherSession);
+            } finally {
+                publisherSession.sendLock.unlock();
+            }
+        }
+
+        // Re-check after releasing the lock so a message queued whilst the holder was finishing is not stranded
+        do {
+            if (!publisherSession.sendLock.tryLock()) {
+                return;
+            }
+            try {
+                sendQueued(publisherSession);
+            } finally {
+                publisherSession.sendLock.unlock();
+            }
+        } while (!publisherSession.queue.isEmpty());
+    }
+
+    /**
+     * The total number of messages waiting to be sent.
+     */
+    public int size() {
+        return sessions.stream().mapToInt(publisherSession -> publisherSession.queue.size()).sum();
+    }
+
+    /**
+     * Send any queued messages and close the sessions.
+     */
+    public void close() {
+        for (PublisherSession publisherSession : sessions) {
+            publisherSession.sendLock.lock();
+            try {
+                sendQueued(publisherSession);
+                publisherSession.session.close();
+            } catch (Exception e) {
+                LOG.log(WARNING, "Failed to close MQTT publisher session", e);
+            } finally {
+                publisherSession.sendLock.unlock();
+            }
+        }
+    }
+
+    protected void sendQueued(PublisherSession publisherSession) {
+        PendingMessage pendingMessage;
+        while ((pendingMessage = publisherSession.queue.poll()) != null) {
+            try {
+                ClientMessage message = publisherSession.session.createMessage(false);
+                message.putIntProperty(MQTT_QOS_LEVEL_KEY, pendingMessage.qos);
+                message.writeBodyBufferBytes(pendingMessage.payload);
+                publisherSession.producer.send(pendingMessage.address, message);
+            } catch (Exception e) {
+                LOG.log(WARNING, "Couldn't publish to MQTT client: address=" + pendingMessage.address, e);
+            }
+        }
+    }
+}
@@ -36,6 +36,9 @@ import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.LogicGroup;
 import org.openremote.model.query.UserQuery;
 import org.openremote.model.query.filter.AttributePredicate;
+import org.openremote.model.query.filter.CalendarEventPredicate;
+import org.openremote.model.query.filter.DateTimePredicate;
+import org.openremote.model.query.filter.ValuePredicate;
 import org.openremote.model.rules.*;
 import org.openremote.model.rules.json.*;
 import org.openremote.model.util.EnumUtil;
@@ -93,6 +96,14 @@ public class JsonRulesBuilder extends RulesBuilder {
         LogicGroup<AttributePredicate> attributePredicates = null;
         Function<Collection<AttributeInfo>, Set<AttributeInfo>> assetPredicate = null;
         Set<AttributeInfo> unfilteredAssetStates = new HashSet<>();
+        Map<String, Set<AttributeInfo>> unfilteredAssetStatesByAssetId = new HashMap<>();
+        // Attribute predicate results per asset ID; only assets whose states have changed since the last evaluation are
+        // re-evaluated unless a full evaluation is required
+        Map<String, Set<AttributeInfo>> assetMatchedStates = new HashMap<>();
+        Map<String, Collection<AttributeInfo>> assetUnmatchedStates = new HashMap<>();
+        Set<String> changedAssetIds = new HashSet<>();
+        boolean fullEvaluationRequired = true;
+        boolean timeDependentAttributePredicates;
         Set<AttributeInfo> previouslyMatchedAssetStates = new HashSet<>();
         Set<AttributeInfo> previouslyUnmatchedAssetStates;
         Predicate<Long> timePredicate;
@@ -194,6 +205,7 @@ public class JsonRulesBuilder extends RulesBuilder {
                     // don't support it here either)
                     attributePredicates.groups = null;
                     assetPredicate = AssetQueryPredicate.asAttributeMatcher(timerService::getCurrentTimeMillis, attributePredicates);
+                    timeDependentAttributePredicates = attributePredicates.items.stream().anyMatch(JsonRulesBuilder::isTimeDependent);
                 }
                 ruleCondition.assets.orderBy = null;
                 ruleCondition.assets.limit = 0;
@@ -213,6 +225,9 @@ public class JsonRulesBuilder extends RulesBuilder {
                 if (event == null || event.cause == PersistenceEvent.Cause.CREATE) {
                     // Do a complete refresh of unfiltered asset states based on the asset query (without attribute predicates)
                     unfilteredAssetStates = facts.matchAssetState(ruleCondition.assets).collect(Collectors.toSet());
+                    unfilteredAssetStatesByAssetId = unfilteredAssetStates.stream().collect(Collectors.groupingBy(AttributeInfo::getId, Collectors.toCollection(HashSet::new)));
+                    fullEvaluationRequired = true;
+                    changedAssetIds.clear();
                 } else {
                     // Replace or remove asset state as required
                     switch (event.cause) {
@@ -220,9 +235,23 @@ public class JsonRulesBuilder extends RulesBuilder {
                             // Only insert if fact was already in there (i.e. it matches the asset type constraints)
                             if (unfilteredAssetStates.remove(event.assetState)) {
                                 unfilteredAssetStates.add(event.assetState);
+                                Set<AttributeInfo> assetStates = unfilteredAssetStatesByAssetId.get(event.assetState.getId());
+                                if (assetStates != null) {
+                                    assetStates.remove(event.assetState);
+                                    assetStates.add(event.assetState);
+                                }
+                                changedAssetIds.add(event.assetState.getId());
+                            }
+                        }
+                        case DELETE -> {
+                            if (unfilteredAssetStates.remove(event.assetState)) {
+                                unfilteredAssetStatesByAssetId.computeIfPresent(event.assetState.getId(), (id, assetStates) -> {
+                                    assetStates.remove(event.assetState);
+                                    return assetStates.isEmpty() ? null : assetStates;
+                                });
+                                changedAssetIds.add(event.assetState.getId());
                             }
                         }
-                        case DELETE -> unfilteredAssetStates.remove(event.assetState);
                     }
                 }
 
@@ -253,6 +282,9 @@ public class JsonRulesBuilder extends RulesBuilder {
 
             if (unfilteredAssetStates.isEmpty()) {
                 // Maybe assets have been deleted so remove any previous match data
+                assetMatchedStates.clear();
+                assetUnmatchedStates.clear();
+                changedAssetIds.clear();
                 previouslyMatchedAssetStates.clear();
                 if (trackUnmatched) {
                     previouslyUnmatchedAssetStates.clear();
@@ -270,24 +302,12 @@ public class JsonRulesBuilder extends RulesBuilder {
                 matchedAssetStates = new ArrayList<>(unfilteredAssetStates);
             } else {
 
-                Map<Boolean, List<AttributeInfo>> results = new HashMap<>();
-                ArrayList<AttributeInfo> matched = new ArrayList<>();
-                ArrayList<AttributeInfo> unmatched = new ArrayList<>();
-                results.put(true, matched);
-                results.put(false, unmatched);
-
-                unfilteredAssetStates.stream().collect(Collectors.groupingBy(AttributeInfo::getId)).forEach((id, states) -> {
-                    Set<AttributeInfo> matches = assetPredicate.apply(states);
-                    if (matches != null) {
-                        matched.addAll(matches);
-                        unmatched.addAll(states.stream().filter(matches::contains).collect(Collectors.toSet()));
-                    } else {
-                        unmatched.addAll(states);
-                    }
-                });
+                updateAssetMatches();
 
-                matchedAssetStates = results.getOrDefault(true, Collections.emptyList());
-                unmatchedAssetStates = results.getOrDefault(false, Collections.emptyList());
+                matchedAssetStates = new ArrayList<>();
+                unmatchedAssetStates = new ArrayList<>();
+                assetMatchedStates.values().forEach(matchedAssetStates::addAll);
+                assetUnmatchedStates.values().forEach(unmatchedAssetStates::addAll);
 
                 if (trackUnmatched) {
 
@@ -301,11 +321,12 @@ public class JsonRulesBuilder extends RulesBuilder {
             }
 
             // Remove previous matches where the asset state no longer matches
+            Map<AttributeInfo, AttributeInfo> matchedAssetStateMap = new HashMap<>(matchedAssetStates.size());
+            matchedAssetStates.forEach(matchedAssetState -> matchedAssetStateMap.putIfAbsent(matchedAssetState, matchedAssetState));
+
             previouslyMatchedAssetStates.removeIf(previousAssetState -> {
 
-                Optional<AttributeInfo> matched = matchedAssetStates.stream()
-                    .filter(matchedAssetState -> Objects.equals(previousAssetState, matchedAssetState))
-                    .findFirst();
+                Optional<AttributeInfo> matched = Optional.ofNullable(matchedAssetStateMap.get(previousAssetState));
 
                 boolean noLongerMatches = matched.isEmpty();
 
@@ -359,6 +380,46 @@ public class JsonRulesBuilder extends RulesBuilder {
             log(Level.FINEST, "Rule evaluation result: " + lastEvaluationResult);
         }
 
+        /**
+         * Applies the attribute predicates to the asset states of each asset that has changed since the last evaluation;
+         * all assets are evaluated after a complete refresh of the unfiltered asset states or when the predicates are
+         * time dependent.
+         */
+        void updateAssetMatches() {
+            Collection<String> assetIds;
+
+            if (fullEvaluationRequired || timeDependentAttributePredicates) {
+                assetMatchedStates.clear();
+                assetUnmatchedStates.clear();
+                assetIds = unfilteredAssetStatesByAssetId.keySet();
+            } else {
+                assetIds = changedAssetIds;
+            }
+
+            log(Level.FINEST, "Evaluating rule condition attribute predicates for asset count: " + assetIds.size());
+
+            assetIds.forEach(assetId -> {
+                assetMatchedStates.remove(assetId);
+                assetUnmatchedStates.remove(assetId);
+                Set<AttributeInfo> states = unfilteredAssetStatesByAssetId.get(assetId);
+
+                if (states == null || states.isEmpty()) {
+                    return;
+                }
+
+                Set<AttributeInfo> matches = assetPredicate.apply(states);
+                if (matches != null) {
+                    assetMatchedStates.put(assetId, matches);
+                    assetUnmatchedStates.put(assetId, states.stream().filter(matches::contains).collect(Collectors.toSet()));
+                } else {
+                    assetUnmatchedStates.put(assetId, new ArrayList<>(states));
+                }
+            });
+
+            changedAssetIds.clear();
+            fullEvaluationRequired = false;
+        }
+
         Collection<String> getMatchedAssetIds() {
 
             if (lastEvaluationResult == null) {
@@ -523,6 +584,24 @@ public class JsonRulesBuilder extends RulesBuilder {
         }
     }
 
+    /**
+     * Indicates whether the result of the {@link AttributePredicate} can change without the asset state changing, in
+     * which case it must be re-evaluated on every firing.
+     */
+    protected static boolean isTimeDependent(AttributePredicate attributePredicate) {
+        if (attributePredicate == null) {
+            return false;
+        }
+        if (isTimeDependent(attributePredicate.value) || isTimeDependent(attributePredicate.previousValue)) {
+            return true;
+        }
+        return attributePredicate.meta != null && Arrays.stream(attributePredicate.meta).anyMatch(metaPredicate -> metaPredicate != null && isTimeDependent(metaPredicate.value));
+    }
+
+    protected static boolean isTimeDependent(ValuePredicate valuePredicate) {
+        return valuePredicate instanceof DateTimePredicate || valuePredicate instanceof CalendarEventPredicate;
+    }
+
     public static final String PLACEHOLDER_RULESET_ID = "%RULESET_ID%";
     public static final String PLACEHOLDER_RULESET_NAME = "%RULESET_NAME%";
     public static final String PLACEHOLDER_TRIGGER_ASSETS = "%TRIGGER_ASSETS%";
@@ -1109,7 +1188,7 @@ public class JsonRulesBuilder extends RulesBuilder {
             })
             // Get the asset states that are in the assetId list and optionally linked to this user
             .filter(assetState -> assetIds.contains(assetState.getId()) && (userAssetLinks == null || userAssetLinks.stream().anyMatch(ual -> ual.getId().getAssetId().equals(assetState.getId()) && ual.getId().getUserId().equals(userId))))
-            .collect(Collectors.groupingBy(AttributeInfo::getId, Collectors.toSet()));
+            .collect(Collectors.groupingBy(AttributeInfo::getId, Collectors.toCollection(HashSet::new)));
     }
 
     protected String getRealm() {
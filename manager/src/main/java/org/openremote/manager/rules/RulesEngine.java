@@ -46,6 +46,7 @@ import org.openremote.model.query.filter.GeofencePredicate;
 import org.openremote.model.query.filter.LocationAttributePredicate;
 import org.openremote.model.rules.*;
 import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.Pair;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -539,6 +540,23 @@ public class RulesEngine<T extends Ruleset> {
         }
     }
 
+    /**
+     * Same as {@link #updateOrInsertAttributeInfo} for a batch of attribute infos (the value of each pair indicates
+     * whether it is an insert) but the engine lock is only acquired and firing only scheduled once for the batch.
+     */
+    public synchronized void updateOrInsertAttributeInfos(List<Pair<AttributeInfo, Boolean>> attributeInfos) {
+        for (Pair<AttributeInfo, Boolean> attributeInfoAndInsert : attributeInfos) {
+            AttributeInfo attributeInfo = attributeInfoAndInsert.key;
+            boolean insert = attributeInfoAndInsert.value;
+            facts.putAssetState(attributeInfo);
+            trackLocationPredicates(trackLocationPredicates || (insert && attributeInfo.getName().equals(Asset.LOCATION.getName())));
+            notifyAssetStatesChanged(new AssetStateChangeEvent(insert ? PersistenceEvent.Cause.CREATE : PersistenceEvent.Cause.UPDATE, attributeInfo));
+        }
+        if (running && !attributeInfos.isEmpty()) {
+            scheduleFire(true);
+        }
+    }
+
     public synchronized void removeAttributeInfo(AttributeInfo attributeInfo) {
         facts.removeAssetState(attributeInfo);
         // Make sure location predicate tracking is activated before notifying the deployments otherwise they won't report location predicates
@@ -31,6 +31,9 @@ import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeInfo;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.LogicGroup;
+import org.openremote.model.query.filter.AttributePredicate;
+import org.openremote.model.query.filter.StringPredicate;
 import org.openremote.model.query.filter.GeofencePredicate;
 import org.openremote.model.rules.Assets;
 import org.openremote.model.rules.RulesClock;
@@ -57,6 +60,8 @@ public class RulesFacts extends Facts implements RuleListener {
     public static final int MAX_RULES_TRIGGERED_PER_EXECUTION = 100;
 
     public static final int INITIAL_CAPACITY = 100000;
+    // Asset state matching only uses a parallel stream when there are at least this many candidates
+    public static final int MATCH_PARALLEL_THRESHOLD = 10000;
 
     public static final String ASSET_STATES = "INTERNAL_ASSET_STATES";
     public static final String ASSET_EVENTS = "INTERNAL_ASSET_EVENTS";
@@ -70,6 +75,8 @@ public class RulesFacts extends Facts implements RuleListener {
     final protected Logger LOG;
     final protected Map<String, Collection<AttributeInfo>> assetIdIndex = new HashMap<>();
     final protected Map<String, Collection<AttributeInfo>> assetTypeIndex = new HashMap<>();
+    final protected Map<String, Collection<AttributeInfo>> parentIdIndex = new HashMap<>();
+    final protected Map<String, Collection<AttributeInfo>> attributeNameIndex = new HashMap<>();
     protected int triggerCount;
     protected boolean trackLocationRules;
     protected Map<String, Set<GeofencePredicate>> assetStateLocationPredicateMap = null;
@@ -81,7 +88,7 @@ public class RulesFacts extends Facts implements RuleListener {
         this.loggingContext = loggingContext;
         this.LOG = logger;
 
-        super.put(ASSET_STATES, new ArrayDeque<AttributeInfo>(INITIAL_CAPACITY));
+        super.put(ASSET_STATES, new LinkedHashSet<AttributeInfo>(INITIAL_CAPACITY));
         super.put(ASSET_EVENTS, new ArrayDeque<AssetEvent>(INITIAL_CAPACITY));
         super.put(EXECUTION_VARS, new HashMap<>());
         super.put(ANONYMOUS_FACTS, new ArrayDeque<>(INITIAL_CAPACITY));
@@ -204,19 +211,10 @@ public class RulesFacts extends Facts implements RuleListener {
         if (LOG.isLoggable(Level.FINEST)) {
             LOG.finest("Fact change (UPDATE): " + assetState + " - on: " + loggingContext);
         }
-        getAssetStates().remove(assetState);
+        // The previous instance may be indexed under different keys (e.g. the asset has been moved)
+        removeIndexedAssetState(assetState);
         getAssetStates().add(assetState);
-
-        // Maintain index of all asset states for this asset by ID
-        assetIdIndex.putIfAbsent(assetState.getId(), new ArrayDeque<>());
-        assetIdIndex.get(assetState.getId()).remove(assetState);
-        assetIdIndex.get(assetState.getId()).add(assetState);
-
-        // Maintain index of all asset states for this asset by type
-        assetTypeIndex.putIfAbsent(assetState.getAssetType(), new ArrayDeque<>());
-        assetTypeIndex.get(assetState.getAssetType()).remove(assetState);
-        assetTypeIndex.get(assetState.getAssetType()).add(assetState);
-
+        indexAssetState(assetState);
         return this;
     }
 
@@ -224,20 +222,7 @@ public class RulesFacts extends Facts implements RuleListener {
         if (LOG.isLoggable(Level.FINEST)) {
             LOG.finest("Fact change (DELETE): " + assetState + " - on: " + loggingContext);
         }
-        getAssetStates().remove(assetState);
-
-        // Maintain index of all asset states for this asset by ID
-        Collection<AttributeInfo> assetIdIndexCollection = assetIdIndex.get(assetState.getId());
-        if (assetIdIndexCollection != null) {
-            assetIdIndexCollection.remove(assetState);
-        }
-
-        // Maintain index of all asset states for this asset by type
-        Collection<AttributeInfo> assetTypeIndexCollection = assetTypeIndex.get(assetState.getAssetType());
-        if (assetTypeIndexCollection != null) {
-            assetTypeIndexCollection.remove(assetState);
-        }
-
+        removeIndexedAssetState(assetState);
         return this;
     }
 
@@ -431,13 +416,156 @@ public class RulesFacts extends Facts implements RuleListener {
         }
 
         Predicate<AttributeInfo> p = new AssetQueryPredicate(timerService, assetStorageService, assetQuery);
-        return matchAssetState(p);
+        Collection<AttributeInfo> candidates = getAssetStateCandidates(assetQuery);
+        return stream(candidates != null ? candidates : getAssetStates()).filter(p);
     }
 
     public Stream<AttributeInfo> matchAssetState(Predicate<AttributeInfo> p) {
         // Match against all asset states by default
-        Stream<AttributeInfo> assetStates = getAssetStates().stream();
-        return assetStates.parallel().filter(p);
+        return stream(getAssetStates()).filter(p);
+    }
+
+    /**
+     * Use the indexes to get the smallest collection of asset states that must contain all the asset states matched
+     * by the query; the query must still be applied to the candidates.
+     * @return The candidates or null if the query cannot be narrowed by the indexes.
+     */
+    protected Collection<AttributeInfo> getAssetStateCandidates(AssetQuery assetQuery) {
+        Collection<AttributeInfo> candidates = null;
+
+        if (assetQuery.ids != null && assetQuery.ids.length > 0) {
+            candidates = smallest(candidates, getIndexed(assetIdIndex, Arrays.asList(assetQuery.ids)));
+        }
+
+        if (assetQuery.types != null && assetQuery.types.length > 0) {
+            candidates = smallest(candidates, getIndexed(assetTypeIndex, Arrays.asList(AssetQuery.getResolvedAssetTypes(assetQuery.types))));
+        }
+
+        if (assetQuery.parents != null && assetQuery.parents.length > 0) {
+            candidates = smallest(candidates, getIndexed(parentIdIndex, Arrays.stream(assetQuery.parents).map(parentPredicate -> parentPredicate.id).toList()));
+        }
+
+        if (assetQuery.attributes != null) {
+            Set<String> attributeNames = getRequiredAttributeNames(assetQuery.attributes);
+            if (attributeNames != null) {
+                candidates = smallest(candidates, getIndexed(attributeNameIndex, attributeNames));
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Get attribute names such that an asset state can only match the condition if its name is one of them.
+     * @return The names or null if the condition doesn't constrain the attribute name.
+     */
+    protected static Set<String> getRequiredAttributeNames(LogicGroup<AttributePredicate> condition) {
+        boolean isOr = condition.operator == LogicGroup.Operator.OR;
+        Set<String> names = new HashSet<>();
+
+        for (AttributePredicate attributePredicate : condition.getItems()) {
+            StringPredicate namePredicate = attributePredicate.name;
+            boolean exact = namePredicate != null && namePredicate.value != null && namePredicate.match == AssetQuery.Match.EXACT
+                && namePredicate.caseSensitive && !namePredicate.negate;
+
+            if (exact && !isOr) {
+                // Any item of an AND group must match
+                return Collections.singleton(namePredicate.value);
+            }
+            if (!exact && isOr) {
+                return null;
+            }
+            if (exact) {
+                names.add(namePredicate.value);
+            }
+        }
+
+        if (condition.groups != null) {
+            for (LogicGroup<AttributePredicate> group : condition.groups) {
+                Set<String> groupNames = getRequiredAttributeNames(group);
+                if (groupNames != null && !isOr) {
+                    return groupNames;
+                }
+                if (groupNames == null && isOr) {
+                    return null;
+                }
+                if (groupNames != null) {
+                    names.addAll(groupNames);
+                }
+            }
+        }
+
+        // An empty OR group never matches, an AND group without constraining names doesn't constrain the name
+        return isOr && !names.isEmpty() ? names : null;
+    }
+
+    protected static Collection<AttributeInfo> getIndexed(Map<String, Collection<AttributeInfo>> index, Collection<String> keys) {
+        Set<String> distinctKeys = new LinkedHashSet<>(keys);
+
+        if (distinctKeys.size() == 1) {
+            return index.getOrDefault(distinctKeys.iterator().next(), Collections.emptyList());
+        }
+
+        List<AttributeInfo> indexed = new ArrayList<>();
+        distinctKeys.forEach(key -> indexed.addAll(index.getOrDefault(key, Collections.emptyList())));
+        return indexed;
+    }
+
+    protected static Collection<AttributeInfo> smallest(Collection<AttributeInfo> a, Collection<AttributeInfo> b) {
+        return a == null || b.size() < a.size() ? b : a;
+    }
+
+    protected static <T> Stream<T> stream(Collection<T> collection) {
+        return collection.size() >= MATCH_PARALLEL_THRESHOLD ? collection.parallelStream() : collection.stream();
+    }
+
+    /**
+     * Removes the asset state instance that is equal to the specified asset state from the asset states and from the
+     * indexes using the keys of that (previous) instance.
+     */
+    protected void removeIndexedAssetState(AttributeInfo assetState) {
+        // Equal asset states have the same asset ID so the asset ID index holds the previous instance
+        AttributeInfo previous = assetIdIndex.getOrDefault(assetState.getId(), Collections.emptyList()).stream()
+            .filter(assetState::equals)
+            .findFirst()
+            .orElse(null);
+
+        getAssetStates().remove(assetState);
+
+        if (previous != null) {
+            unindexAssetState(previous);
+        }
+    }
+
+    protected void indexAssetState(AttributeInfo assetState) {
+        addToIndex(assetIdIndex, assetState.getId(), assetState);
+        addToIndex(assetTypeIndex, assetState.getAssetType(), assetState);
+        addToIndex(parentIdIndex, assetState.getParentId(), assetState);
+        addToIndex(attributeNameIndex, assetState.getName(), assetState);
+    }
+
+    protected void unindexAssetState(AttributeInfo assetState) {
+        removeFromIndex(assetIdIndex, assetState.getId(), assetState);
+        removeFromIndex(assetTypeIndex, assetState.getAssetType(), assetState);
+        removeFromIndex(parentIdIndex, assetState.getParentId(), assetState);
+        removeFromIndex(attributeNameIndex, assetState.getName(), assetState);
+    }
+
+    protected static void addToIndex(Map<String, Collection<AttributeInfo>> index, String key, AttributeInfo assetState) {
+        Collection<AttributeInfo> indexed = index.computeIfAbsent(key, k -> new LinkedHashSet<>());
+        // Remove first so the replaced asset state instance is held and insertion order matches the asset states
+        indexed.remove(assetState);
+        indexed.add(assetState);
+    }
+
+    protected static void removeFromIndex(Map<String, Collection<AttributeInfo>> index, String key, AttributeInfo assetState) {
+        Collection<AttributeInfo> indexed = index.get(key);
+        if (indexed != null) {
+            indexed.remove(assetState);
+            if (indexed.isEmpty()) {
+                index.remove(key);
+            }
+        }
     }
 
     public Optional<TemporaryFact<AttributeInfo>> matchFirstAssetEvent(AssetQuery assetQuery) {
@@ -612,16 +740,7 @@ public class RulesFacts extends Facts implements RuleListener {
                         if (LOG.isLoggable(Level.FINEST)) {
                             LOG.finest("Fact change (INTERNAL DELETE): " + assetState + " - on: " + loggingContext);
                         }
-                        // Maintain index of all asset states for this asset by ID
-                        Collection<AttributeInfo> assetIdIndexCollection = assetIdIndex.get(assetState.getId());
-                        if (assetIdIndexCollection != null) {
-                            assetIdIndexCollection.remove(assetState);
-                        }
-                        // Maintain index of all asset states for this asset by type
-                        Collection<AttributeInfo> assetTypeIndexCollection = assetTypeIndex.get(assetState.getAssetType());
-                        if (assetTypeIndexCollection != null) {
-                            assetTypeIndexCollection.remove(assetState);
-                        }
+                        unindexAssetState(assetState);
                     }
                     return invalid;
                 });
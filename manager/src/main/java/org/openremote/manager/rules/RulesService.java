@@ -19,6 +19,7 @@
  */
 package org.openremote.manager.rules;
 
+import com.google.common.util.concurrent.Striped;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.apache.camel.builder.RouteBuilder;
@@ -49,9 +50,14 @@ import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeInfo;
 import org.openremote.model.attribute.AttributeMap;
+import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.LogicGroup;
 import org.openremote.model.query.RulesetQuery;
+import org.openremote.model.query.filter.AttributePredicate;
+import org.openremote.model.query.filter.BooleanPredicate;
 import org.openremote.model.query.filter.LocationAttributePredicate;
+import org.openremote.model.query.filter.NameValuePredicate;
 import org.openremote.model.rules.*;
 import org.openremote.model.rules.geofence.GeofenceDefinition;
 import org.openremote.model.security.ClientRole;
@@ -66,6 +72,10 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -116,6 +126,7 @@ public class RulesService extends RouteBuilder implements ContainerService {
     public static final int OR_RULES_MIN_TEMP_FACT_EXPIRATION_MILLIS_DEFAULT = 50000; // Just under a minute to catch 1 min timer rules
     public static final String OR_RULES_QUICK_FIRE_MILLIS = "OR_RULES_QUICK_FIRE_MILLIS";
     public static final int OR_RULES_QUICK_FIRE_MILLIS_DEFAULT = 3000;
+    protected static final int RULE_STATE_PAGE_SIZE = 1000;
     private static final Logger LOG = Logger.getLogger(RulesService.class.getName());
     protected final Map<String, RulesEngine<RealmRuleset>> realmEngines = new ConcurrentHashMap<>();
     protected final Map<String, RulesEngine<AssetRuleset>> assetEngines = new ConcurrentHashMap<>();
@@ -138,16 +149,22 @@ public class RulesService extends RouteBuilder implements ContainerService {
     protected AssetLocationPredicateProcessor locationPredicateRulesConsumer;
     protected final ConcurrentMap<RulesEngine<?>, List<RulesEngine.AssetLocationPredicates>> engineAssetLocationPredicateMap = new ConcurrentHashMap<>();
     protected final Set<String> assetsWithModifiedLocationPredicates = new HashSet<>();
-    // Keep global list of asset states that have been pushed to any engines
+    // Keep global map of asset states that have been pushed to any engines
     // The objects are already in memory inside the rule engines but keeping them
     // here means we can quickly insert facts into newly started engines
-    protected final Set<AttributeEvent> attributeEvents = new HashSet<>();
+    protected final ConcurrentMap<AttributeRef, AttributeEvent> attributeEvents = new ConcurrentHashMap<>();
+    // Index of asset states by each asset ID in their path so asset scoped lookups don't scan all asset states
+    protected final ConcurrentMap<String, Set<AttributeRef>> attributeEventPathIndex = new ConcurrentHashMap<>();
+    // Updates of different attributes run concurrently (but are serialised per attribute), pushing all asset states into
+    // a new engine excludes updates so the engine sees a consistent snapshot
+    protected final ReadWriteLock attributeEventsLock = new ReentrantReadWriteLock();
+    protected final Striped<Lock> attributeEventLocks = Striped.lock(64);
     protected final Set<AttributeEvent> preInitAttributeEvents = new HashSet<>();
     protected long defaultEventExpiresMillis = 1000*60*60;
     protected long tempFactExpirationMillis;
     protected long quickFireMillis;
     protected boolean initDone;
-    protected boolean startDone;
+    protected volatile boolean startDone;
     protected MeterRegistry meterRegistry;
 
     @Override
@@ -320,25 +337,7 @@ public class RulesService extends RouteBuilder implements ContainerService {
             .count();//Needed in order to execute the stream. TODO: can this be done differently?
 
         LOG.fine("Loading all assets with fact attributes to initialize state of rules engines");
-        Stream<Pair<Asset<?>, Stream<Attribute<?>>>> stateAttributes = findRuleStateAttributes();
-
-        // Push each attribute as an asset update through the rule engine chain
-        // that will ensure the insert only happens to the engines in scope
-        stateAttributes
-            .forEach(pair -> {
-                Asset<?> asset = pair.key;
-                pair.value.forEach(ruleAttribute -> {
-                    AttributeEvent attributeEvent = new AttributeEvent(
-                        asset,
-                        ruleAttribute,
-                        null,
-                        ruleAttribute.getValue().orElse(null),
-                        ruleAttribute.getTimestamp().orElse(0L),
-                        ruleAttribute.getValue().orElse(null),
-                        ruleAttribute.getTimestamp().orElse(0L));
-                    updateAttributeEvent(attributeEvent);
-                });
-            });
+        loadRuleStateAttributes();
 
         // Start the engines
         if (globalEngine != null) {
@@ -375,9 +374,10 @@ public class RulesService extends RouteBuilder implements ContainerService {
             globalEngine = null;
         }
 
-        synchronized (attributeEvents) {
+        withAllAttributeEvents(() -> {
             attributeEvents.clear();
-        }
+            attributeEventPathIndex.clear();
+        });
 
         for (GeofenceAssetAdapter geofenceAssetAdapter : geofenceAssetAdapters) {
             geofenceAssetAdapter.stop(container);
@@ -397,13 +397,15 @@ public class RulesService extends RouteBuilder implements ContainerService {
      * React to events that have been committed to the DB and inject them into the appropriate {@link RulesEngine}s.
      */
     public void onAttributeEvent(AttributeEvent event) throws AssetProcessingException {
-        synchronized (preInitAttributeEvents) {
-            if (!startDone) {
-                preInitAttributeEvents.add(event);
-            } else {
-                doProcessAttributeUpdate(event);
+        if (!startDone) {
+            synchronized (preInitAttributeEvents) {
+                if (!startDone) {
+                    preInitAttributeEvents.add(event);
+                    return;
+                }
             }
         }
+        doProcessAttributeUpdate(event);
     }
 
     protected void doProcessAttributeUpdate(AttributeEvent attributeEvent) {
@@ -583,10 +585,9 @@ public class RulesService extends RouteBuilder implements ContainerService {
                 RulesEngine<GlobalRuleset> engine = deployGlobalRuleset((GlobalRuleset) ruleset);
 
                 if (isNewEngine) {
-                    synchronized (attributeEvents) {
-                        // Push all existing facts into the engine
-                        attributeEvents.forEach(assetState -> engine.updateOrInsertAttributeInfo(assetState, true));
-                    }
+                    // Push all existing facts into the engine
+                    withAllAttributeEvents(() ->
+                        attributeEvents.values().forEach(assetState -> engine.updateOrInsertAttributeInfo(assetState, true)));
                 }
 
                 engine.start();
@@ -598,13 +599,12 @@ public class RulesService extends RouteBuilder implements ContainerService {
 
                 if (isNewEngine) {
                     // Push all existing facts into the engine
-                    synchronized (attributeEvents) {
-                        attributeEvents.forEach(assetState -> {
+                    withAllAttributeEvents(() ->
+                        attributeEvents.values().forEach(assetState -> {
                             if (assetState.getRealm().equals(((RealmRuleset) ruleset).getRealm())) {
                                 engine.updateOrInsertAttributeInfo(assetState, true);
                             }
-                        });
-                    }
+                        }));
                 }
 
                 engine.start();
@@ -618,8 +618,9 @@ public class RulesService extends RouteBuilder implements ContainerService {
 
                 if (isNewEngine) {
                     // Push all existing facts for this asset (and it's children into the engine)
-                    getAssetStatesInScope(((AssetRuleset) ruleset).getAssetId())
-                        .forEach(assetState -> engine.updateOrInsertAttributeInfo(assetState, true));
+                    withAllAttributeEvents(() ->
+                        getAssetStatesInScope(((AssetRuleset) ruleset).getAssetId())
+                            .forEach(assetState -> engine.updateOrInsertAttributeInfo(assetState, true)));
                 }
 
                 engine.start();
@@ -800,10 +801,17 @@ public class RulesService extends RouteBuilder implements ContainerService {
 
     protected void updateAttributeEvent(AttributeEvent attributeEvent) {
         LOG.finest("Updating attribute event: " + attributeEvent);
+        updateAttributeEvent(attributeEvent, (rulesEngine, inserted) -> rulesEngine.updateOrInsertAttributeInfo(attributeEvent, inserted));
+    }
 
-        synchronized (attributeEvents) {
-            boolean isNewer = attributeEvents.stream().filter(event -> event.getRef().equals(attributeEvent.getRef())).findFirst()
-                .map(existingEvent -> existingEvent.getTimestamp() < attributeEvent.getTimestamp()).orElse(true);
+    /**
+     * Replace the state of the attribute if the event is newer and pass it to the engine updater for each engine in
+     * scope along with whether it is an insert.
+     */
+    protected void updateAttributeEvent(AttributeEvent attributeEvent, BiConsumer<RulesEngine<?>, Boolean> engineUpdater) {
+        withAttributeEvent(attributeEvent.getRef(), () -> {
+            AttributeEvent existingEvent = attributeEvents.get(attributeEvent.getRef());
+            boolean isNewer = existingEvent == null || existingEvent.getTimestamp() < attributeEvent.getTimestamp();
 
             if (!isNewer) {
                 // Attribute event is older than the state already loaded
@@ -813,39 +821,100 @@ public class RulesService extends RouteBuilder implements ContainerService {
             // Get the chain of rule engines that we need to pass through
             List<RulesEngine<?>> rulesEngines = getEnginesInScope(attributeEvent.getRealm(), attributeEvent.getPath());
 
-            // Remove asset state with same attribute ref as new state, add new state
-            boolean inserted = !attributeEvents.remove(attributeEvent);
-            attributeEvents.add(attributeEvent);
+            // Replace asset state with same attribute ref with new state
+            boolean inserted = existingEvent == null;
+            attributeEvents.put(attributeEvent.getRef(), attributeEvent);
+            updateAttributeEventPathIndex(attributeEvent.getRef(), existingEvent != null ? existingEvent.getPath() : null, attributeEvent.getPath());
 
             // Pass through each rules engine
             for (RulesEngine<?> rulesEngine : rulesEngines) {
-                rulesEngine.updateOrInsertAttributeInfo(attributeEvent, inserted);
+                engineUpdater.accept(rulesEngine, inserted);
             }
-        }
+        });
     }
 
     protected void retractAttributeEvent(AttributeEvent attributeEvent) {
         // Get the chain of rule engines that we need to pass through
         List<RulesEngine<?>> rulesEngines = getEnginesInScope(attributeEvent.getRealm(), attributeEvent.getPath());
 
-        synchronized (attributeEvents) {
+        withAttributeEvent(attributeEvent.getRef(), () -> {
             // Remove asset state with same attribute ref
-            attributeEvents.remove(attributeEvent);
+            AttributeEvent existingEvent = attributeEvents.remove(attributeEvent.getRef());
+            if (existingEvent != null) {
+                updateAttributeEventPathIndex(attributeEvent.getRef(), existingEvent.getPath(), null);
+            }
 
             // Pass through each rules engine
             for (RulesEngine<?> rulesEngine : rulesEngines) {
                 rulesEngine.removeAttributeInfo(attributeEvent);
             }
+        });
+    }
+
+    /**
+     * Run the action exclusively for the attribute; actions for other attributes can run concurrently.
+     */
+    protected void withAttributeEvent(AttributeRef attributeRef, Runnable action) {
+        Lock lock = attributeEventLocks.get(attributeRef);
+        attributeEventsLock.readLock().lock();
+        try {
+            lock.lock();
+            try {
+                action.run();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            attributeEventsLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run the action whilst no asset states are being updated.
+     */
+    protected void withAllAttributeEvents(Runnable action) {
+        attributeEventsLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            attributeEventsLock.writeLock().unlock();
+        }
+    }
+
+    protected void updateAttributeEventPathIndex(AttributeRef attributeRef, String[] oldPath, String[] newPath) {
+        if (oldPath != null && !Arrays.equals(oldPath, newPath)) {
+            for (String assetId : oldPath) {
+                attributeEventPathIndex.computeIfPresent(assetId, (id, refs) -> {
+                    refs.remove(attributeRef);
+                    return refs.isEmpty() ? null : refs;
+                });
+            }
+        }
+        if (newPath != null && !Arrays.equals(oldPath, newPath)) {
+            for (String assetId : newPath) {
+                attributeEventPathIndex.compute(assetId, (id, refs) -> {
+                    if (refs == null) {
+                        refs = ConcurrentHashMap.newKeySet();
+                    }
+                    refs.add(attributeRef);
+                    return refs;
+                });
+            }
         }
     }
 
     protected List<AttributeInfo> getAssetStatesInScope(String assetId) {
-        synchronized (attributeEvents) {
-            return attributeEvents
-                .stream()
-                .filter(assetState -> Arrays.asList(assetState.getPath()).contains(assetId))
-                .collect(Collectors.toList());
+        Set<AttributeRef> attributeRefs = attributeEventPathIndex.get(assetId);
+
+        if (attributeRefs == null) {
+            return new ArrayList<>();
         }
+
+        return attributeRefs
+            .stream()
+            .map(attributeEvents::get)
+            .filter(assetState -> assetState != null && assetState.getPath() != null && Arrays.asList(assetState.getPath()).contains(assetId))
+            .collect(Collectors.toList());
     }
 
     protected List<RulesEngine<?>> getEnginesInScope(String realm, String[] assetPath) {
@@ -874,15 +943,58 @@ public class RulesService extends RouteBuilder implements ContainerService {
         return rulesEngines;
     }
 
-    protected Stream<Pair<Asset<?>, Stream<Attribute<?>>>> findRuleStateAttributes() {
-        // Get all assets then filter out any attributes with RULE_STATE=false
-        List<Asset<?>> assets = assetStorageService.findAll(new AssetQuery());
+    /**
+     * Load the rule state attributes of all assets into the engines in scope; only assets that may have rule state
+     * attributes are queried and they are loaded in pages of {@link #RULE_STATE_PAGE_SIZE} so the whole asset table is
+     * never held in memory, each page is inserted into each engine as a single batch. Pages are ordered by asset ID
+     * alone so the next page only needs the last ID seen and assets deleted whilst loading don't affect paging.
+     */
+    protected void loadRuleStateAttributes() {
+        long startMillis = System.currentTimeMillis();
+
+        // Attributes with RULE_STATE=true or with an agent link and no RULE_STATE meta (see isRuleState)
+        AssetQuery query = new AssetQuery()
+            .attributes(new LogicGroup<>(
+                LogicGroup.Operator.OR,
+                new AttributePredicate().meta(new NameValuePredicate(MetaItemType.RULE_STATE, new BooleanPredicate(true))),
+                new AttributePredicate().meta(new NameValuePredicate(MetaItemType.AGENT_LINK, null))))
+            .orderBy(new AssetQuery.OrderBy())
+            .limit(RULE_STATE_PAGE_SIZE);
+
+        List<Asset<?>> assets;
+        int assetCount = 0;
+        int attributeCount = 0;
+
+        do {
+            assets = assetStorageService.findAll(query);
+            Map<RulesEngine<?>, List<Pair<AttributeInfo, Boolean>>> engineAttributeInfos = new HashMap<>();
+
+            for (Asset<?> asset : assets) {
+                for (Attribute<?> ruleAttribute : asset.getAttributes().stream().filter(RulesService::isRuleState).toList()) {
+                    AttributeEvent attributeEvent = new AttributeEvent(
+                        asset,
+                        ruleAttribute,
+                        null,
+                        ruleAttribute.getValue().orElse(null),
+                        ruleAttribute.getTimestamp().orElse(0L),
+                        ruleAttribute.getValue().orElse(null),
+                        ruleAttribute.getTimestamp().orElse(0L));
+                    updateAttributeEvent(attributeEvent, (rulesEngine, inserted) ->
+                        engineAttributeInfos.computeIfAbsent(rulesEngine, engine -> new ArrayList<>()).add(new Pair<>(attributeEvent, inserted)));
+                    attributeCount++;
+                }
+            }
+
+            engineAttributeInfos.forEach(RulesEngine::updateOrInsertAttributeInfos);
+            assetCount += assets.size();
+
+            if (!assets.isEmpty()) {
+                query.after(assets.get(assets.size() - 1).getId());
+                LOG.fine("Loaded rule state attributes: assets=" + assetCount + ", attributes=" + attributeCount);
+            }
+        } while (assets.size() == RULE_STATE_PAGE_SIZE);
 
-        return assets.stream()
-            .map(asset ->
-                new Pair<>(asset, asset.getAttributes().stream()
-                    .filter(RulesService::isRuleState))
-            );
+        LOG.info("Loaded " + attributeCount + " rule state attribute(s) of " + assetCount + " asset(s) in " + (System.currentTimeMillis() - startMillis) + "ms");
     }
 
     /**
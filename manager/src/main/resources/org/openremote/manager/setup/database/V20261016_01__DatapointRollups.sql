@@ -0,0 +1,85 @@
+/*
+  Hourly and daily rollups of numeric and boolean (as 0/1) asset datapoints used to answer interval queries with coarse
+  intervals. TimescaleDB continuous aggregates are used when available otherwise tables with the same columns are
+  created and maintained by the manager (see DatapointRollups).
+ */
+CREATE OR REPLACE FUNCTION DATAPOINT_NUMERIC_VALUE(VALUE jsonb) RETURNS numeric AS $$
+    SELECT CASE jsonb_typeof(VALUE)
+        WHEN 'number' THEN (VALUE #>> '{}')::numeric
+        WHEN 'boolean' THEN CASE WHEN (VALUE #>> '{}')::boolean THEN 1 ELSE 0 END
+    END
+$$ LANGUAGE sql IMMUTABLE;
+
+DO $$
+BEGIN
+    CREATE MATERIALIZED VIEW ASSET_DATAPOINT_HOURLY WITH (timescaledb.continuous) AS
+    SELECT ENTITY_ID,
+           ATTRIBUTE_NAME,
+           public.time_bucket(INTERVAL '1 hour', TIMESTAMP) AS BUCKET,
+           min(DATAPOINT_NUMERIC_VALUE(VALUE)) AS MIN_VALUE,
+           max(DATAPOINT_NUMERIC_VALUE(VALUE)) AS MAX_VALUE,
+           sum(DATAPOINT_NUMERIC_VALUE(VALUE)) AS SUM_VALUE,
+           count(VALUE) AS VALUE_COUNT,
+           public.first(DATAPOINT_NUMERIC_VALUE(VALUE), TIMESTAMP) AS FIRST_VALUE,
+           public.last(DATAPOINT_NUMERIC_VALUE(VALUE), TIMESTAMP) AS LAST_VALUE
+    FROM ASSET_DATAPOINT
+    WHERE jsonb_typeof(VALUE) IN ('number', 'boolean')
+    GROUP BY ENTITY_ID, ATTRIBUTE_NAME, BUCKET
+    WITH NO DATA;
+
+    CREATE MATERIALIZED VIEW ASSET_DATAPOINT_DAILY WITH (timescaledb.continuous) AS
+    SELECT ENTITY_ID,
+           ATTRIBUTE_NAME,
+           public.time_bucket(INTERVAL '1 day', TIMESTAMP) AS BUCKET,
+           min(DATAPOINT_NUMERIC_VALUE(VALUE)) AS MIN_VALUE,
+           max(DATAPOINT_NUMERIC_VALUE(VALUE)) AS MAX_VALUE,
+           sum(DATAPOINT_NUMERIC_VALUE(VALUE)) AS SUM_VALUE,
+           count(VALUE) AS VALUE_COUNT,
+           public.first(DATAPOINT_NUMERIC_VALUE(VALUE), TIMESTAMP) AS FIRST_VALUE,
+           public.last(DATAPOINT_NUMERIC_VALUE(VALUE), TIMESTAMP) AS LAST_VALUE
+    FROM ASSET_DATAPOINT
+    WHERE jsonb_typeof(VALUE) IN ('number', 'boolean')
+    GROUP BY ENTITY_ID, ATTRIBUTE_NAME, BUCKET
+    WITH NO DATA;
+
+    -- Include data that hasn't been materialized yet in queries
+    ALTER MATERIALIZED VIEW ASSET_DATAPOINT_HOURLY SET (timescaledb.materialized_only = false);
+    ALTER MATERIALIZED VIEW ASSET_DATAPOINT_DAILY SET (timescaledb.materialized_only = false);
+
+    -- A null start offset materializes existing data on the first refresh
+    PERFORM public.add_continuous_aggregate_policy('asset_datapoint_hourly',
+        start_offset => NULL, end_offset => INTERVAL '1 hour', schedule_interval => INTERVAL '30 minutes');
+    PERFORM public.add_continuous_aggregate_policy('asset_datapoint_daily',
+        start_offset => NULL, end_offset => INTERVAL '1 day', schedule_interval => INTERVAL '6 hours');
+EXCEPTION WHEN OTHERS THEN
+    RAISE NOTICE 'Continuous aggregates are not available so datapoint rollups will be maintained by the manager: %', SQLERRM;
+
+    CREATE TABLE ASSET_DATAPOINT_HOURLY (
+        ENTITY_ID      varchar(22)  not null,
+        ATTRIBUTE_NAME varchar(255) not null,
+        BUCKET         timestamp    not null,
+        MIN_VALUE      numeric,
+        MAX_VALUE      numeric,
+        SUM_VALUE      numeric,
+        VALUE_COUNT    bigint       not null,
+        FIRST_VALUE    numeric,
+        LAST_VALUE     numeric,
+        primary key (ENTITY_ID, ATTRIBUTE_NAME, BUCKET),
+        foreign key (ENTITY_ID) references ASSET (ID) on delete cascade
+    );
+
+    CREATE TABLE ASSET_DATAPOINT_DAILY (
+        ENTITY_ID      varchar(22)  not null,
+        ATTRIBUTE_NAME varchar(255) not null,
+        BUCKET         timestamp    not null,
+        MIN_VALUE      numeric,
+        MAX_VALUE      numeric,
+        SUM_VALUE      numeric,
+        VALUE_COUNT    bigint       not null,
+        FIRST_VALUE    numeric,
+        LAST_VALUE     numeric,
+        primary key (ENTITY_ID, ATTRIBUTE_NAME, BUCKET),
+        foreign key (ENTITY_ID) references ASSET (ID) on delete cascade
+    );
+END
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,80 @@
+/*
+  Store numbers and booleans (as 1/0) in a double precision NUMERIC_VALUE column so numeric queries don't have to cast
+  the jsonb VALUE of every row; VALUE is only kept for other values, booleans and numbers that a double cannot represent
+  exactly. The continuous aggregate rollups are recreated to aggregate the new column.
+
+  Only the schema is changed here; existing datapoints are moved to the new column in batches by the datapoint services
+  after startup (see AbstractDatapointService.backfillNumericValues) using the progress stored in
+  DATAPOINT_NUMERIC_VALUE_BACKFILL. Until then numeric queries and the rollups read the value of those datapoints from
+  VALUE through DATAPOINT_DOUBLE_VALUE.
+ */
+CREATE OR REPLACE FUNCTION DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE double precision, VALUE jsonb) RETURNS double precision AS $$
+    SELECT coalesce(NUMERIC_VALUE, CASE WHEN abs(DATAPOINT_NUMERIC_VALUE(VALUE)) < 1e308 THEN DATAPOINT_NUMERIC_VALUE(VALUE)::double precision END)
+$$ LANGUAGE sql IMMUTABLE;
+
+DO $$
+DECLARE
+    CONTINUOUS_ROLLUPS boolean;
+BEGIN
+    SELECT exists(SELECT 1 FROM timescaledb_information.continuous_aggregates WHERE view_name = 'asset_datapoint_hourly')
+    INTO CONTINUOUS_ROLLUPS;
+
+    IF CONTINUOUS_ROLLUPS THEN
+        DROP MATERIALIZED VIEW ASSET_DATAPOINT_DAILY;
+        DROP MATERIALIZED VIEW ASSET_DATAPOINT_HOURLY;
+    END IF;
+
+    ALTER TABLE ASSET_DATAPOINT ADD COLUMN NUMERIC_VALUE double precision;
+    ALTER TABLE ASSET_DATAPOINT ALTER COLUMN VALUE DROP NOT NULL;
+    ALTER TABLE ASSET_PREDICTED_DATAPOINT ADD COLUMN NUMERIC_VALUE double precision;
+    ALTER TABLE ASSET_PREDICTED_DATAPOINT ALTER COLUMN VALUE DROP NOT NULL;
+
+    CREATE TABLE DATAPOINT_NUMERIC_VALUE_BACKFILL (
+        TABLE_NAME    varchar(255) not null primary key,
+        BACKFILLED_TO timestamp    not null
+    );
+    INSERT INTO DATAPOINT_NUMERIC_VALUE_BACKFILL (TABLE_NAME, BACKFILLED_TO) VALUES
+        ('asset_datapoint', '1970-01-01'),
+        ('asset_predicted_datapoint', '1970-01-01');
+
+    IF CONTINUOUS_ROLLUPS THEN
+        CREATE MATERIALIZED VIEW ASSET_DATAPOINT_HOURLY WITH (timescaledb.continuous) AS
+        SELECT ENTITY_ID,
+               ATTRIBUTE_NAME,
+               public.time_bucket(INTERVAL '1 hour', TIMESTAMP) AS BUCKET,
+               min(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS MIN_VALUE,
+               max(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS MAX_VALUE,
+               sum(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS SUM_VALUE,
+               count(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS VALUE_COUNT,
+               public.first(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE), TIMESTAMP) AS FIRST_VALUE,
+               public.last(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE), TIMESTAMP) AS LAST_VALUE
+        FROM ASSET_DATAPOINT
+        WHERE DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE) IS NOT NULL
+        GROUP BY ENTITY_ID, ATTRIBUTE_NAME, BUCKET
+        WITH NO DATA;
+
+        CREATE MATERIALIZED VIEW ASSET_DATAPOINT_DAILY WITH (timescaledb.continuous) AS
+        SELECT ENTITY_ID,
+               ATTRIBUTE_NAME,
+               public.time_bucket(INTERVAL '1 day', TIMESTAMP) AS BUCKET,
+               min(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS MIN_VALUE,
+               max(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS MAX_VALUE,
+               sum(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS SUM_VALUE,
+               count(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)) AS VALUE_COUNT,
+               public.first(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE), TIMESTAMP) AS FIRST_VALUE,
+               public.last(DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE), TIMESTAMP) AS LAST_VALUE
+        FROM ASSET_DATAPOINT
+        WHERE DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE) IS NOT NULL
+        GROUP BY ENTITY_ID, ATTRIBUTE_NAME, BUCKET
+        WITH NO DATA;
+
+        ALTER MATERIALIZED VIEW ASSET_DATAPOINT_HOURLY SET (timescaledb.materialized_only = false);
+        ALTER MATERIALIZED VIEW ASSET_DATAPOINT_DAILY SET (timescaledb.materialized_only = false);
+
+        PERFORM public.add_continuous_aggregate_policy('asset_datapoint_hourly',
+            start_offset => NULL, end_offset => INTERVAL '1 hour', schedule_interval => INTERVAL '30 minutes');
+        PERFORM public.add_continuous_aggregate_policy('asset_datapoint_daily',
+            start_offset => NULL, end_offset => INTERVAL '1 day', schedule_interval => INTERVAL '6 hours');
+    END IF;
+END
+$$ LANGUAGE plpgsql;
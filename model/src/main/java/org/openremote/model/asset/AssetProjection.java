@@ -0,0 +1,162 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.asset;
+
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.ValueDescriptor;
+import org.openremote.model.value.ValueType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A lightweight row of an {@link AssetQuery} with a {@link AssetQuery.Select#projection} select; it only contains the
+ * identifying columns of the asset and the value, type and timestamp of each selected attribute that exists (and is
+ * readable with the {@link AssetQuery#access} of the query), without hydrating the full {@link Asset}.
+ */
+public class AssetProjection {
+
+    public static class AttributeProjection {
+
+        protected String name;
+        protected String type;
+        protected Object value;
+        protected Long timestamp;
+
+        public AttributeProjection(String name, String type, Object value, Long timestamp) {
+            this.name = name;
+            this.type = type;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * The name of the {@link ValueDescriptor} of the attribute.
+         */
+        public String getType() {
+            return type;
+        }
+
+        public Optional<Object> getValue() {
+            return Optional.ofNullable(value);
+        }
+
+        public <T> Optional<T> getValue(Class<T> valueType) {
+            return ValueUtil.getValueCoerced(value, valueType);
+        }
+
+        public Optional<Long> getTimestamp() {
+            return Optional.ofNullable(timestamp);
+        }
+
+        /**
+         * Convert to an {@link Attribute} for callers that need one; the attribute has no meta items.
+         */
+        @SuppressWarnings("unchecked")
+        public Attribute<?> toAttribute() {
+            ValueDescriptor<Object> valueDescriptor = (ValueDescriptor<Object>) ValueUtil.getValueDescriptor(type)
+                .orElse(ValueType.JSON);
+            return new Attribute<>(name, valueDescriptor, value, timestamp != null ? timestamp : 0L);
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" +
+                "name='" + name + '\'' +
+                ", type='" + type + '\'' +
+                ", value=" + value +
+                ", timestamp=" + timestamp +
+                '}';
+        }
+    }
+
+    protected String id;
+    protected String name;
+    protected String type;
+    protected String realm;
+    protected String parentId;
+    protected String[] path;
+    protected Map<String, AttributeProjection> attributes;
+
+    public AssetProjection(String id, String name, String type, String realm, String parentId, String[] path, Map<String, AttributeProjection> attributes) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.realm = realm;
+        this.parentId = parentId;
+        this.path = path;
+        this.attributes = attributes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    /**
+     * See {@link Asset#getPath}.
+     */
+    public String[] getPath() {
+        return path;
+    }
+
+    public Map<String, AttributeProjection> getAttributes() {
+        return attributes;
+    }
+
+    public Optional<AttributeProjection> getAttribute(String name) {
+        return Optional.ofNullable(attributes.get(name));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "id='" + id + '\'' +
+            ", name='" + name + '\'' +
+            ", type='" + type + '\'' +
+            ", realm='" + realm + '\'' +
+            ", parentId='" + parentId + '\'' +
+            ", path=" + Arrays.toString(path) +
+            ", attributes=" + attributes +
+            '}';
+    }
+}
@@ -280,6 +280,17 @@ public interface AssetResource {
     @Produces(APPLICATION_JSON)
     Asset<?>[] queryAssets(@BeanParam RequestParams requestParams, AssetQuery query);
 
+    /**
+     * Same as {@link #queryAssets} except the assets are written to the response as a JSON array as they are read from
+     * the database rather than being loaded into memory first; use this for bulk export of large numbers of assets.
+     * Large results can also be retrieved in pages using {@link AssetQuery#limit} and {@link AssetQuery#after}.
+     */
+    @POST
+    @Path("query/stream")
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    Response streamAssets(@BeanParam RequestParams requestParams, AssetQuery query);
+
     /**
      * Change parent for a set of asset
      */
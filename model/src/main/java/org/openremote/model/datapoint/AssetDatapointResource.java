@@ -21,12 +21,12 @@ package org.openremote.model.datapoint;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.openremote.model.Constants;
+import org.openremote.model.datapoint.query.AssetDatapointBatchQuery;
 import org.openremote.model.datapoint.query.AssetDatapointQuery;
 import org.openremote.model.http.RequestParams;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.ws.rs.*;
-import jakarta.ws.rs.container.AsyncResponse;
-import jakarta.ws.rs.container.Suspended;
+import jakarta.ws.rs.core.Response;
 
 import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
 
@@ -50,6 +50,19 @@ public interface AssetDatapointResource {
                                       @PathParam("attributeName") String attributeName,
                                       AssetDatapointQuery query);
 
+    /**
+     * Retrieve the historical datapoints of many asset attributes using the same query in a single request, for example
+     * to load all the charts of a dashboard. Access rules are the same as {@link #getDatapoints} except that attributes
+     * that don't exist or that the user cannot read are omitted from the result rather than failing the request; a 400
+     * status is returned if the query cannot be applied to one of the attributes.
+     */
+    @POST
+    @Path("batch")
+    @Consumes(APPLICATION_JSON)
+    @Produces(APPLICATION_JSON)
+    DatapointSeries[] getDatapointSeries(@BeanParam RequestParams requestParams,
+                                         AssetDatapointBatchQuery query);
+
     @GET
     @Path("periods")
     @Produces(APPLICATION_JSON)
@@ -58,13 +71,18 @@ public interface AssetDatapointResource {
                                           @QueryParam("assetId") String assetId,
                                           @QueryParam("attributeName") String attributeName);
 
+    /**
+     * Export the historical datapoints of the specified asset attributes (a JSON array of {@link
+     * org.openremote.model.attribute.AttributeRef}s) as CSV with timestamp, asset name, attribute name and value
+     * columns; the CSV is streamed from the database into the gzip compressed response as it is read so exports of any
+     * size can be retrieved.
+     */
     @GET
     @Path("export")
-    @Produces("application/zip")
+    @Produces("text/csv")
     @RolesAllowed({Constants.READ_ASSETS_ROLE})
-    void getDatapointExport(@Suspended AsyncResponse asyncResponse,
-                            @QueryParam("attributeRefs") String attributeRefsString,
-                            @QueryParam("fromTimestamp") long fromTimestamp,
-                            @QueryParam("toTimestamp") long toTimestamp);
+    Response getDatapointExport(@QueryParam("attributeRefs") String attributeRefsString,
+                                @QueryParam("fromTimestamp") long fromTimestamp,
+                                @QueryParam("toTimestamp") long toTimestamp);
 
 }
@@ -19,6 +19,7 @@
  */
 package org.openremote.model.datapoint;
 
+import org.hibernate.annotations.ColumnTransformer;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 import org.openremote.model.attribute.AttributeEvent;
@@ -39,6 +40,20 @@ import java.util.Objects;
 @IdClass(DatapointID.class)
 public abstract class Datapoint implements Serializable {
 
+    /**
+     * Numbers that can be exactly represented as a double are only stored in the NUMERIC_VALUE (double precision)
+     * column; booleans are stored in both the VALUE (jsonb) column and as 1 or 0 in the NUMERIC_VALUE column so numeric
+     * queries only have to read the NUMERIC_VALUE column. This is the SQL expression of the value as jsonb.
+     */
+    public static final String VALUE_SQL = "coalesce(VALUE, to_jsonb(NUMERIC_VALUE))";
+
+    /**
+     * The SQL expression of the value as a double precision for numeric queries; falls back to the number or boolean in
+     * the VALUE column for datapoints that were stored before the NUMERIC_VALUE column was added and have not yet been
+     * backfilled.
+     */
+    public static final String NUMERIC_VALUE_SQL = "DATAPOINT_DOUBLE_VALUE(NUMERIC_VALUE, VALUE)";
+
     @Id
     @Column(name = "ENTITY_ID", length = 36, nullable = false)
     protected String assetId;
@@ -51,8 +66,9 @@ public abstract class Datapoint implements Serializable {
     @Column(name = "TIMESTAMP", updatable = false, nullable = false, columnDefinition = "TIMESTAMP")
     protected Date timestamp;
 
-    @Column(name = "VALUE", nullable = false)
+    @Column(name = "VALUE")
     @JdbcTypeCode(SqlTypes.JSON)
+    @ColumnTransformer(read = VALUE_SQL)
     protected Object value;
 
     public Datapoint() {
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.datapoint;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The datapoints of an asset attribute in columnar form; the value at each index of {@link #getValues} is the value at
+ * the same index of {@link #getTimestamps}.
+ */
+public class DatapointSeries {
+
+    protected String assetId;
+    protected String attributeName;
+    protected long[] timestamps;
+    protected Object[] values;
+
+    @JsonCreator
+    public DatapointSeries(@JsonProperty("assetId") String assetId,
+                           @JsonProperty("attributeName") String attributeName,
+                           @JsonProperty("x") long[] timestamps,
+                           @JsonProperty("y") Object[] values) {
+        this.assetId = assetId;
+        this.attributeName = attributeName;
+        this.timestamps = timestamps;
+        this.values = values;
+    }
+
+    public DatapointSeries(String assetId, String attributeName, List<ValueDatapoint<?>> datapoints) {
+        this(assetId, attributeName, new long[datapoints.size()], new Object[datapoints.size()]);
+        for (int i = 0; i < datapoints.size(); i++) {
+            timestamps[i] = datapoints.get(i).getTimestamp();
+            values[i] = datapoints.get(i).getValue();
+        }
+    }
+
+    @JsonProperty("assetId")
+    public String getAssetId() {
+        return assetId;
+    }
+
+    @JsonProperty("attributeName")
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    @JsonProperty("x")
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    @JsonProperty("y")
+    public Object[] getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "assetId='" + assetId + '\'' +
+            ", attributeName='" + attributeName + '\'' +
+            ", count=" + timestamps.length +
+            '}';
+    }
+}
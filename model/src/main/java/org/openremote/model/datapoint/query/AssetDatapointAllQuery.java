@@ -1,6 +1,7 @@
 package org.openremote.model.datapoint.query;
 
 import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.Datapoint;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -22,12 +23,10 @@ public class AssetDatapointAllQuery extends AssetDatapointQuery {
     public String getSQLQuery(String tableName, Class<?> attributeType) throws IllegalStateException {
         boolean isNumber = Number.class.isAssignableFrom(attributeType);
         boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
-        if (isNumber) {
-            return "select timestamp as X, value::text::numeric as Y from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? order by timestamp desc";
-        } else if (isBoolean) {
-            return "select timestamp as X, (case when VALUE::text::boolean is true then 1 else 0 end) as Y from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? order by timestamp desc";
+        if (isNumber || isBoolean) {
+            return "select timestamp as X, " + Datapoint.NUMERIC_VALUE_SQL + " as Y from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? order by timestamp desc";
         } else {
-            return "select distinct timestamp as X, value as Y from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? order by timestamp desc";
+            return "select distinct timestamp as X, " + Datapoint.VALUE_SQL + " as Y from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? order by timestamp desc";
         }
     }
 
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.datapoint.query;
+
+import org.openremote.model.attribute.AttributeRef;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Applies the same {@link AssetDatapointQuery} to the datapoints of each of the specified asset attributes.
+ */
+public class AssetDatapointBatchQuery implements Serializable {
+
+    public AttributeRef[] attributeRefs;
+    public AssetDatapointQuery query;
+
+    public AssetDatapointBatchQuery() {
+    }
+
+    public AssetDatapointBatchQuery(AssetDatapointQuery query, AttributeRef... attributeRefs) {
+        this.query = query;
+        this.attributeRefs = attributeRefs;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "attributeRefs=" + Arrays.toString(attributeRefs) +
+            ", query=" + query +
+            '}';
+    }
+}
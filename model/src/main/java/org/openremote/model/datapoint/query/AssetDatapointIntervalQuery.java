@@ -1,6 +1,8 @@
 package org.openremote.model.datapoint.query;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.Datapoint;
 import org.openremote.model.datapoint.DatapointInterval;
 
 import java.time.Instant;
@@ -41,10 +43,8 @@ public class AssetDatapointIntervalQuery extends AssetDatapointQuery {
         boolean isNumber = Number.class.isAssignableFrom(attributeType);
         boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
         String function = (gapFill ? "public.time_bucket_gapfill" : "public.time_bucket");
-        if (isNumber) {
-            return "select " + function + "(?::interval, timestamp) AS x, " + this.formula.toString().toLowerCase() + "(value::text::numeric) FROM " + tableName + " WHERE ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? GROUP BY x;";
-        } else if (isBoolean) {
-            return "select " + function + "(?::interval, timestamp) AS x, " + this.formula.toString().toLowerCase() + "(case when VALUE::text::boolean is true then 1 else 0 end) FROM " + tableName + " WHERE ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? GROUP BY x;";
+        if (isNumber || isBoolean) {
+            return "select " + function + "(?::interval, timestamp) AS x, " + this.formula.toString().toLowerCase() + "(" + Datapoint.NUMERIC_VALUE_SQL + ") FROM " + tableName + " WHERE ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? GROUP BY x;";
         } else {
             throw new IllegalStateException("Query of type Interval requires either a number or a boolean attribute.");
         }
@@ -53,16 +53,69 @@ public class AssetDatapointIntervalQuery extends AssetDatapointQuery {
     @Override
     public HashMap<Integer, Object> getSQLParameters(AttributeRef attributeRef) {
         HashMap<Integer, Object> parameters = new HashMap<>();
-        LocalDateTime fromTimestamp = (this.fromTime != null) ? this.fromTime :  LocalDateTime.ofInstant(Instant.ofEpochMilli(super.fromTimestamp), ZoneId.systemDefault());
-        LocalDateTime toTimestamp = (this.toTime != null) ? this.toTime :  LocalDateTime.ofInstant(Instant.ofEpochMilli(super.toTimestamp), ZoneId.systemDefault());
         parameters.put(1, this.interval);
         parameters.put(2, attributeRef.getId());
         parameters.put(3, attributeRef.getName());
-        parameters.put(4, fromTimestamp);
-        parameters.put(5, toTimestamp);
+        parameters.put(4, getFromLocalDateTime());
+        parameters.put(5, getToLocalDateTime());
         return parameters;
     }
 
+    /**
+     * Same as {@link #getSQLQuery} but reads the pre-aggregated buckets of a rollup table (with MIN_VALUE, MAX_VALUE,
+     * SUM_VALUE and VALUE_COUNT columns per BUCKET) between the rollup from (inclusive) and to (exclusive) times and only
+     * reads raw datapoints for the rest of the requested time range; the interval must be a multiple of the rollup
+     * bucket width so each result bucket is made up of whole rollup buckets.
+     */
+    public String getRollupSQLQuery(String tableName, String rollupTableName, Class<?> attributeType) throws IllegalStateException {
+        boolean isNumber = Number.class.isAssignableFrom(attributeType);
+        boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
+        String function = (gapFill ? "public.time_bucket_gapfill" : "public.time_bucket");
+        if (!isNumber && !isBoolean) {
+            throw new IllegalStateException("Query of type Interval requires either a number or a boolean attribute.");
+        }
+        String aggregate = switch (this.formula) {
+            case MIN -> "min(MIN_VALUE)";
+            case MAX -> "max(MAX_VALUE)";
+            case AVG -> "sum(SUM_VALUE) / nullif(sum(VALUE_COUNT), 0)";
+        };
+        return "select " + function + "(?::interval, T) AS x, " + aggregate + " FROM (" +
+            "select BUCKET AS T, MIN_VALUE, MAX_VALUE, SUM_VALUE, VALUE_COUNT FROM " + rollupTableName + " WHERE ENTITY_ID = ? and ATTRIBUTE_NAME = ? and BUCKET >= ? and BUCKET < ?" +
+            " union all " +
+            "select TIMESTAMP, V, V, V, 1 FROM (select TIMESTAMP, " + Datapoint.NUMERIC_VALUE_SQL + " AS V FROM " + tableName + " WHERE ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? and (TIMESTAMP < ? or TIMESTAMP >= ?)) R WHERE V is not null" +
+            ") D WHERE T >= ? and T <= ? GROUP BY x;";
+    }
+
+    public HashMap<Integer, Object> getRollupSQLParameters(AttributeRef attributeRef, LocalDateTime rollupFromTime, LocalDateTime rollupToTime) {
+        HashMap<Integer, Object> parameters = new HashMap<>();
+        LocalDateTime fromTimestamp = getFromLocalDateTime();
+        LocalDateTime toTimestamp = getToLocalDateTime();
+        parameters.put(1, this.interval);
+        parameters.put(2, attributeRef.getId());
+        parameters.put(3, attributeRef.getName());
+        parameters.put(4, rollupFromTime);
+        parameters.put(5, rollupToTime);
+        parameters.put(6, attributeRef.getId());
+        parameters.put(7, attributeRef.getName());
+        parameters.put(8, fromTimestamp);
+        parameters.put(9, toTimestamp);
+        parameters.put(10, rollupFromTime);
+        parameters.put(11, rollupToTime);
+        parameters.put(12, fromTimestamp);
+        parameters.put(13, toTimestamp);
+        return parameters;
+    }
+
+    @JsonIgnore
+    public LocalDateTime getFromLocalDateTime() {
+        return (this.fromTime != null) ? this.fromTime :  LocalDateTime.ofInstant(Instant.ofEpochMilli(super.fromTimestamp), ZoneId.systemDefault());
+    }
+
+    @JsonIgnore
+    public LocalDateTime getToLocalDateTime() {
+        return (this.toTime != null) ? this.toTime :  LocalDateTime.ofInstant(Instant.ofEpochMilli(super.toTimestamp), ZoneId.systemDefault());
+    }
+
     // Method that makes sure the interval is correctly formatted.
     // The AssetDatapointIntervalQuery requires to specify an amount such as "1 day" or "5 hours",
     // so adding an amount automatically if only a DatapointInterval such as "MINUTE" or "YEAR" is specified.
@@ -1,6 +1,7 @@
 package org.openremote.model.datapoint.query;
 
 import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.Datapoint;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -27,10 +28,8 @@ public final class AssetDatapointLTTBQuery extends AssetDatapointQuery {
     public String getSQLQuery(String tableName, Class<?> attributeType) throws IllegalStateException {
         boolean isNumber = Number.class.isAssignableFrom(attributeType);
         boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
-        if (isNumber) {
-            return "select * from public.unnest((select public.lttb(timestamp::timestamptz, value::double precision, ?) from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ?))";
-        } else if (isBoolean) {
-            return "select * from public.unnest((select public.lttb(timestamp::timestamptz, (case when VALUE::text::boolean is true then 1 else 0 end), ?) from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ?))";
+        if (isNumber || isBoolean) {
+            return "select * from public.unnest((select public.lttb(timestamp::timestamptz, " + Datapoint.NUMERIC_VALUE_SQL + ", ?) from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? and " + Datapoint.NUMERIC_VALUE_SQL + " is not null))";
         } else {
             throw new IllegalStateException("Query of type LTTB requires either a number or a boolean attribute.");
         }
@@ -39,6 +39,7 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -202,11 +203,13 @@ public final class ProtocolUtil {
             return null;
         }
 
+        Predicate<Object> messagePredicate = matchPredicate.asPredicate(currentMillisSupplier);
+
         return message -> {
             if (!TextUtil.isNullOrEmpty(message)) {
                 Object messageFiltered = applyValueFilters(message, matchFilters);
                 if (messageFiltered != null) {
-                    if (matchPredicate.asPredicate(currentMillisSupplier).test(messageFiltered)) {
+                    if (messagePredicate.test(messageFiltered)) {
                         LOG.finest("Inbound message meets attribute matching meta so writing state to state consumer for attribute: asssetId=" + assetId + ", attribute=" + attribute.getName());
                         stateConsumer.accept(new AttributeRef(assetId, attribute.getName()), message);
                     }
@@ -36,6 +36,12 @@ public class AssetQuery implements Serializable {
     public static class Select {
         protected static final String[] EMPTY_ATTRIBUTES = new String[0];
         public String[] attributes;
+        /**
+         * Return {@link org.openremote.model.asset.AssetProjection} rows containing only the value, type and timestamp
+         * of the selected {@link #attributes} instead of full assets; only supported by queries that return
+         * projections.
+         */
+        public boolean projection;
 
         public Select attributes(String... attributeNames) {
             this.attributes = attributeNames;
@@ -47,10 +53,17 @@ public class AssetQuery implements Serializable {
             return this;
         }
 
+        public Select projection(String... attributeNames) {
+            this.attributes = attributeNames != null ? attributeNames : EMPTY_ATTRIBUTES;
+            this.projection = true;
+            return this;
+        }
+
         @Override
         public String toString() {
             return getClass().getSimpleName() + "{" +
                     ", attributeNames=" + Arrays.toString(attributes) +
+                    ", projection=" + projection +
                     '}';
         }
     }
@@ -184,6 +197,12 @@ public class AssetQuery implements Serializable {
     // Ordering
     public OrderBy orderBy;
     public int limit;
+    /**
+     * Keyset pagination: only return assets that come after the asset with this ID in the {@link #orderBy} order (ties
+     * are ordered by asset ID); set this to the ID of the last asset of the previous page to get the next page. When
+     * ordering by a property the asset must still exist otherwise the query fails rather than returning an empty page.
+     */
+    public String after;
 
     public AssetQuery() {
     }
@@ -385,6 +404,16 @@ public class AssetQuery implements Serializable {
         return this;
     }
 
+    public AssetQuery limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    public AssetQuery after(String assetId) {
+        this.after = assetId;
+        return this;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{" +
@@ -398,6 +427,8 @@ public class AssetQuery implements Serializable {
                 ", type=" + Arrays.toString(types) +
                 ", attribute=" + (attributes != null ? attributes.toString() : "null") +
                 ", orderBy=" + orderBy +
+                ", limit=" + limit +
+                ", after='" + after + '\'' +
                 ", recursive=" + recursive +
                 '}';
     }
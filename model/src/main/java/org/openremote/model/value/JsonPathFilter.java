@@ -20,24 +20,34 @@
 package org.openremote.model.value;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.ParseContext;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import com.kjetland.jackson.jsonSchema.annotations.JsonSchemaTitle;
+import org.openremote.model.util.Pair;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
 
 import jakarta.validation.constraints.NotNull;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 /**
  * This filter works on any type of data; when applying the filter the data should be converted to JSON representation
  * using a tool like Jackson and then the JSON path expression should be applied to this JSON string.
+ * <p>
+ * The path expression is compiled the first time the filter is applied; when the same value is passed to many filters
+ * (e.g. an inbound protocol message that is offered to every linked attribute) the filters should be applied within
+ * {@link #withSharedDocuments} so the value is only parsed once.
  */
 @JsonSchemaTitle("JSON Path")
 @JsonTypeName(JsonPathFilter.NAME)
@@ -52,6 +62,7 @@ public class JsonPathFilter extends ValueFilter {
         );
 
     public static final String NAME = "jsonPath";
+    protected static final ThreadLocal<Map<Object, DocumentContext>> SHARED_DOCUMENTS = new ThreadLocal<>();
 
     @NotNull
     @JsonProperty
@@ -63,6 +74,9 @@ public class JsonPathFilter extends ValueFilter {
     @JsonProperty
     public boolean returnLast;
 
+    @JsonIgnore
+    protected transient Pair<String, JsonPath> compiledPath;
+
     @JsonCreator
     public JsonPathFilter(@JsonProperty("path") String path,
                           @JsonProperty("returnFirst") boolean returnFirst,
@@ -78,17 +92,67 @@ public class JsonPathFilter extends ValueFilter {
             return null;
         }
 
-        String valueStr = ValueUtil.convert(value, String.class);
+        DocumentContext document = getDocument(value);
 
-        if (valueStr == null) {
+        if (document == null) {
             return null;
         }
 
-        Object obj = jsonPathParser.parse(valueStr).read(path);
+        Object obj = document.read(getCompiledPath());
 
         if ((returnFirst || returnLast) && obj instanceof ArrayNode arrayNode) {
             obj = arrayNode.get(returnFirst ? 0 : arrayNode.size() - 1);
         }
         return obj;
     }
+
+    /**
+     * Runs the supplied runnable with a document cache scoped to the current thread so any {@link JsonPathFilter}s
+     * applied to the same value instance (by identity) share the same parsed document.
+     */
+    public static void withSharedDocuments(Runnable runnable) {
+        if (SHARED_DOCUMENTS.get() != null) {
+            runnable.run();
+            return;
+        }
+
+        SHARED_DOCUMENTS.set(new IdentityHashMap<>());
+        try {
+            runnable.run();
+        } finally {
+            SHARED_DOCUMENTS.remove();
+        }
+    }
+
+    protected static DocumentContext getDocument(Object value) {
+        Map<Object, DocumentContext> sharedDocuments = SHARED_DOCUMENTS.get();
+
+        if (sharedDocuments == null) {
+            return parse(value);
+        }
+
+        return sharedDocuments.computeIfAbsent(value, JsonPathFilter::parse);
+    }
+
+    protected static DocumentContext parse(Object value) {
+        String valueStr = value instanceof String str ? str : ValueUtil.convert(value, String.class);
+
+        if (valueStr == null) {
+            return null;
+        }
+
+        return jsonPathParser.parse(valueStr);
+    }
+
+    protected JsonPath getCompiledPath() {
+        Pair<String, JsonPath> compiled = compiledPath;
+
+        // Path is a public field so re-compile if it has been changed
+        if (compiled == null || !compiled.key.equals(path)) {
+            compiled = new Pair<>(path, JsonPath.compile(path));
+            compiledPath = compiled;
+        }
+
+        return compiled.value;
+    }
 }
@@ -3,6 +3,7 @@ package org.openremote.test.assets
 import org.openremote.container.util.UniqueIdentifierGenerator
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.datapoint.AssetDatapointService
+import org.openremote.manager.datapoint.DatapointRollups
 import org.openremote.manager.setup.SetupService
 import org.openremote.model.asset.impl.LightAsset
 import org.openremote.model.asset.impl.ThingAsset
@@ -10,7 +11,9 @@ import org.openremote.model.attribute.Attribute
 import org.openremote.model.attribute.AttributeRef
 import org.openremote.model.attribute.MetaItem
 import org.openremote.model.datapoint.AssetDatapoint
+import org.openremote.model.datapoint.AssetDatapointResource
 import org.openremote.model.datapoint.ValueDatapoint
+import org.openremote.model.datapoint.query.AssetDatapointBatchQuery
 import org.openremote.model.datapoint.query.AssetDatapointIntervalQuery
 import org.openremote.model.datapoint.query.AssetDatapointLTTBQuery
 import org.openremote.model.geo.GeoJSONPoint
@@ -24,9 +27,19 @@ import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
+import jakarta.ws.rs.WebApplicationException
+import java.time.Instant
 import java.time.LocalDateTime
+import java.time.ZoneOffset
+import java.time.temporal.ChronoUnit
 
 import static java.util.concurrent.TimeUnit.HOURS
+import static org.openremote.container.security.IdentityProvider.OR_ADMIN_PASSWORD
+import static org.openremote.container.security.IdentityProvider.OR_ADMIN_PASSWORD_DEFAULT
+import static org.openremote.container.util.MapAccess.getString
+import static org.openremote.model.Constants.KEYCLOAK_CLIENT_ID
+import static org.openremote.model.Constants.MASTER_REALM
+import static org.openremote.model.Constants.MASTER_REALM_ADMIN_USER
 
 class AssetDatapointQueryTest extends Specification implements ManagerContainerTrait {
 
@@ -309,4 +322,165 @@ class AssetDatapointQueryTest extends Specification implements ManagerContainerT
         }}
 
     }
+
+    def "Interval queries are answered from the datapoint rollups"() {
+
+        given: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+
+        and: "the second light asset in City realm"
+        def asset = assetStorageService.find(
+                new AssetQuery()
+                        .types(LightAsset.class)
+                        .realm(new RealmPredicate(keycloakTestSetup.realmCity.name))
+                        .names("Light 2")
+        )
+        def brightnessRef = new AttributeRef(asset.id, LightAsset.BRIGHTNESS.name)
+
+        expect: "datapoint rollups to be available"
+        assert assetDatapointService.rollups != null
+        assert assetDatapointService.rollups.getMode() != DatapointRollups.Mode.NONE
+
+        when: "the rollups have been refreshed so later refreshes start from the stored datapoints"
+        if (assetDatapointService.rollups.getMode() == DatapointRollups.Mode.TABLE) {
+            assetDatapointService.rollups.refresh()
+        }
+
+        and: "a value is stored every 30 minutes for two whole days"
+        def from = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).minusDays(3)
+        def to = from.plusDays(2)
+        def fromMillis = from.toInstant(ZoneOffset.UTC).toEpochMilli()
+        assetDatapointService.upsertValues(brightnessRef.id, brightnessRef.name, (0..<96).collect { new ValueDatapoint<>(fromMillis + it * 1800000L, it) })
+
+        and: "the rollups are up to date"
+        if (assetDatapointService.rollups.getMode() == DatapointRollups.Mode.TABLE) {
+            assetDatapointService.rollups.refresh()
+        }
+
+        then: "hourly and daily interval queries over the range should be answered from the rollups"
+        assert assetDatapointService.rollups.getRollupRange("1 hour", from, to).isPresent()
+        assert assetDatapointService.rollups.getRollupRange("1 day", from, to).isPresent()
+
+        when: "an hourly average interval query is executed"
+        def hourlyDatapoints = assetDatapointService.queryDatapoints(
+                asset.id,
+                brightnessRef.name,
+                new AssetDatapointIntervalQuery(from, to, "1 hour", AssetDatapointIntervalQuery.Formula.AVG, false)
+        ).sort { it.timestamp }
+
+        then: "each hour should be the average of its two values"
+        assert hourlyDatapoints.size() == 48
+        hourlyDatapoints.eachWithIndex { datapoint, hour ->
+            assert datapoint.timestamp == fromMillis + hour * 3600000L
+            assert (datapoint.value as Double) == 2 * hour + 0.5d
+        }
+
+        when: "daily min and max interval queries are executed"
+        def dailyMinDatapoints = assetDatapointService.queryDatapoints(
+                asset.id,
+                brightnessRef.name,
+                new AssetDatapointIntervalQuery(from, to, "1 day", AssetDatapointIntervalQuery.Formula.MIN, false)
+        ).sort { it.timestamp }
+        def dailyMaxDatapoints = assetDatapointService.queryDatapoints(
+                asset.id,
+                brightnessRef.name,
+                new AssetDatapointIntervalQuery(from, to, "1 day", AssetDatapointIntervalQuery.Formula.MAX, false)
+        ).sort { it.timestamp }
+
+        then: "each day should have the min and max of its values"
+        assert dailyMinDatapoints.collect { it.value as Double } == [0d, 48d]
+        assert dailyMaxDatapoints.collect { it.value as Double } == [47d, 95d]
+
+        when: "a query range starts and ends part way through the rollup buckets"
+        def partialDatapoints = assetDatapointService.queryDatapoints(
+                asset.id,
+                brightnessRef.name,
+                new AssetDatapointIntervalQuery(from.plusMinutes(90), from.plusHours(26), "1 day", AssetDatapointIntervalQuery.Formula.MIN, false)
+        ).sort { it.timestamp }
+
+        then: "the datapoints outside of the whole buckets should be read from the raw datapoints"
+        assert partialDatapoints.collect { it.value as Double } == [3d, 48d]
+    }
+
+    def "Batch datapoint queries return a series for each readable attribute"() {
+
+        given: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+
+        and: "an authenticated admin user and the datapoint resource"
+        def accessToken = authenticate(
+                container,
+                MASTER_REALM,
+                KEYCLOAK_CLIENT_ID,
+                MASTER_REALM_ADMIN_USER,
+                getString(container.getConfig(), OR_ADMIN_PASSWORD, OR_ADMIN_PASSWORD_DEFAULT)
+        ).token
+        def datapointResource = getClientApiTarget(serverUri(serverPort), MASTER_REALM, accessToken).proxy(AssetDatapointResource.class)
+
+        and: "the second light asset in City realm"
+        def asset = assetStorageService.find(
+                new AssetQuery()
+                        .types(LightAsset.class)
+                        .realm(new RealmPredicate(keycloakTestSetup.realmCity.name))
+                        .names("Light 2")
+        )
+        def brightnessRef = new AttributeRef(asset.id, LightAsset.BRIGHTNESS.name)
+        def colourTemperatureRef = new AttributeRef(asset.id, LightAsset.COLOUR_TEMPERATURE.name)
+
+        when: "values are stored every 30 minutes for two whole days"
+        def from = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).minusDays(6)
+        def to = from.plusDays(2)
+        def fromMillis = from.toInstant(ZoneOffset.UTC).toEpochMilli()
+        assetDatapointService.upsertValues(brightnessRef.id, brightnessRef.name, (0..<96).collect { new ValueDatapoint<>(fromMillis + it * 1800000L, it) })
+        assetDatapointService.upsertValues(colourTemperatureRef.id, colourTemperatureRef.name, (0..<96).collect { new ValueDatapoint<>(fromMillis + it * 1800000L, 2 * it) })
+
+        and: "the same interval query is executed for several attributes in a batch"
+        def series = datapointResource.getDatapointSeries(null, new AssetDatapointBatchQuery(
+                new AssetDatapointIntervalQuery(from, to, "1 day", AssetDatapointIntervalQuery.Formula.MAX, false),
+                brightnessRef,
+                colourTemperatureRef,
+                new AttributeRef(asset.id, "doesNotExist")
+        ))
+
+        then: "a series should be returned for each existing attribute"
+        assert series.length == 2
+        def brightnessSeries = series.find { it.attributeName == brightnessRef.name }
+        def colourTemperatureSeries = series.find { it.attributeName == colourTemperatureRef.name }
+        assert brightnessSeries.assetId == asset.id
+        assert [brightnessSeries.timestamps as List, brightnessSeries.values as List].transpose().sort { it[0] } == [[fromMillis, 47d], [fromMillis + 86400000L, 95d]]
+        assert [colourTemperatureSeries.timestamps as List, colourTemperatureSeries.values as List].transpose().sort { it[0] } == [[fromMillis, 94d], [fromMillis + 86400000L, 190d]]
+
+        and: "the batch result should match querying each attribute on its own"
+        assert [colourTemperatureSeries.timestamps as List, colourTemperatureSeries.values as List].transpose().sort { it[0] } == assetDatapointService.queryDatapoints(
+                asset.id,
+                colourTemperatureRef.name,
+                new AssetDatapointIntervalQuery(from, to, "1 day", AssetDatapointIntervalQuery.Formula.MAX, false)
+        ).collect { [it.timestamp, it.value] }.sort { it[0] }
+
+        when: "the service is queried for several attributes in a batch"
+        def datapoints = assetDatapointService.queryDatapoints(
+                [(brightnessRef): Double.class, (colourTemperatureRef): Integer.class] as LinkedHashMap<AttributeRef, Class<?>>,
+                new AssetDatapointIntervalQuery(from, to, "1 day", AssetDatapointIntervalQuery.Formula.MIN, false)
+        )
+
+        then: "the datapoints of each attribute should be returned"
+        assert datapoints.size() == 2
+        assert datapoints.get(brightnessRef).collect { it.value as Double }.sort() == [0d, 48d]
+        assert datapoints.get(colourTemperatureRef).collect { it.value as Double }.sort() == [0d, 96d]
+
+        when: "a batch query is executed for an attribute that doesn't support the query"
+        datapointResource.getDatapointSeries(null, new AssetDatapointBatchQuery(
+                new AssetDatapointLTTBQuery(from, to, 10),
+                new AttributeRef(asset.id, LightAsset.COLOUR_RGB.name)
+        ))
+
+        then: "the request should fail"
+        thrown(WebApplicationException)
+    }
 }
@@ -1,15 +1,21 @@
 package org.openremote.test.assets
 
 import org.openremote.agent.protocol.simulator.SimulatorProtocol
+import org.openremote.container.persistence.PersistenceService
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.datapoint.AssetDatapointService
 import org.openremote.manager.datapoint.AssetPredictedDatapointService
+import org.openremote.manager.datapoint.DatapointWriteBuffer
+import org.openremote.manager.datapoint.DatapointRollups
 import org.openremote.manager.setup.SetupService
 import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.datapoint.AssetDatapoint
 import org.openremote.model.datapoint.AssetPredictedDatapointResource
 import org.openremote.model.datapoint.ValueDatapoint
+import org.openremote.model.datapoint.query.AssetDatapointAllQuery
 import org.openremote.model.datapoint.query.AssetDatapointIntervalQuery
+import org.openremote.model.datapoint.query.AssetDatapointLTTBQuery
 import org.openremote.model.util.ValueUtil
 import org.openremote.setup.integration.ManagerTestSetup
 import org.openremote.test.ManagerContainerTrait
@@ -19,6 +25,7 @@ import spock.util.concurrent.PollingConditions
 import java.time.Instant
 import java.time.LocalDateTime
 import java.time.ZoneId
+import java.time.ZoneOffset
 import java.time.temporal.ChronoUnit
 import java.util.concurrent.TimeUnit
 
@@ -400,4 +407,171 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
         assert predictedData.size() == 5
         assert predictedData.count {it.value == false} == 2
     }
+
+    def "Purging datapoints also purges their rollups"() {
+
+        given: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def persistenceService = container.getService(PersistenceService.class)
+        def attributeRef = new AttributeRef(managerTestSetup.thingId, "light1PowerConsumption")
+        def rollups = assetDatapointService.rollups
+
+        and: "a function to count the rollup buckets of the attribute within a range"
+        def countBuckets = { String tableName, LocalDateTime from, LocalDateTime to ->
+            persistenceService.doReturningTransaction { em ->
+                (em.createNativeQuery("select count(*) from " + tableName + " where ENTITY_ID = ?1 and ATTRIBUTE_NAME = ?2 and BUCKET >= ?3 and BUCKET < ?4")
+                        .setParameter(1, attributeRef.id)
+                        .setParameter(2, attributeRef.name)
+                        .setParameter(3, from)
+                        .setParameter(4, to)
+                        .getSingleResult() as Number).longValue()
+            }
+        }
+
+        expect: "datapoint rollups to be available"
+        assert rollups != null
+        assert rollups.getMode() != DatapointRollups.Mode.NONE
+
+        when: "the rollups have been refreshed so later refreshes start from the stored datapoints"
+        if (rollups.getMode() == DatapointRollups.Mode.TABLE) {
+            rollups.refresh()
+        }
+
+        and: "datapoints are stored before and within the max age"
+        def today = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS)
+        def oldDay = today.minusDays(OR_DATA_POINTS_MAX_AGE_DAYS_DEFAULT + 9)
+        def recentDay = today.minusDays(1)
+        def purgeTime = today.minusDays(OR_DATA_POINTS_MAX_AGE_DAYS_DEFAULT)
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 5d, oldDay.plusHours(12))
+        assetDatapointService.upsertValue(attributeRef.id, attributeRef.name, 10d, recentDay.plusHours(12))
+
+        and: "the rollups have been refreshed"
+        if (rollups.getMode() == DatapointRollups.Mode.TABLE) {
+            rollups.refresh()
+        } else {
+            rollups.refreshPurged(today)
+        }
+
+        then: "the rollups should contain buckets for both days"
+        assert countBuckets("ASSET_DATAPOINT_DAILY", oldDay, oldDay.plusDays(1)) == 1
+        assert countBuckets("ASSET_DATAPOINT_HOURLY", oldDay, oldDay.plusDays(1)) == 1
+        assert countBuckets("ASSET_DATAPOINT_DAILY", recentDay, today) == 1
+        assert countBuckets("ASSET_DATAPOINT_HOURLY", recentDay, today) == 1
+
+        when: "the purge routine runs"
+        assetDatapointService.purgeDataPoints()
+
+        then: "the old datapoint should have been purged"
+        def datapoints = assetDatapointService.getDatapoints(attributeRef)
+        assert datapoints.every { it.timestamp >= purgeTime.toInstant(ZoneOffset.UTC).toEpochMilli() }
+        assert datapoints.any { it.timestamp == recentDay.plusHours(12).toInstant(ZoneOffset.UTC).toEpochMilli() }
+
+        and: "the rollup buckets of the old datapoint should have been purged"
+        assert countBuckets("ASSET_DATAPOINT_DAILY", oldDay.minusYears(100), purgeTime) == 0
+        assert countBuckets("ASSET_DATAPOINT_HOURLY", oldDay.minusYears(100), purgeTime) == 0
+
+        and: "the rollup buckets of the recent datapoint should remain"
+        assert countBuckets("ASSET_DATAPOINT_DAILY", recentDay, today) == 1
+        assert countBuckets("ASSET_DATAPOINT_HOURLY", recentDay, today) == 1
+    }
+
+    def "Numeric datapoint queries read datapoints that have not been backfilled yet"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def persistenceService = container.getService(PersistenceService.class)
+        def attributeRef = new AttributeRef(managerTestSetup.thingId, "light1PowerConsumption")
+
+        and: "the startup backfill has completed"
+        conditions.eventually {
+            assert assetDatapointService.numericValueBackfillFuture == null || assetDatapointService.numericValueBackfillFuture.isDone()
+        }
+
+        and: "functions to run each numeric query"
+        def day = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).minusDays(2)
+        def queryValues = { query ->
+            assetDatapointService.queryDatapoints(attributeRef.id, attributeRef.name, query).sort { it.timestamp }.collect { it.value }
+        }
+        def queryIntervals = { queryValues(new AssetDatapointIntervalQuery(day, day.plusHours(2), "30 minutes", AssetDatapointIntervalQuery.Formula.MAX, false)) }
+        def queryAll = { queryValues(new AssetDatapointAllQuery(day, day.plusHours(2))) }
+        def queryLTTB = { queryValues(new AssetDatapointLTTBQuery(day, day.plusHours(2), 4)) }
+
+        when: "datapoints are stored as they were before the numeric value column was added"
+        persistenceService.doTransaction { em ->
+            (1..4).each {
+                em.createNativeQuery("insert into ASSET_DATAPOINT (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP, VALUE) values (?1, ?2, ?3, cast(?4 as jsonb))")
+                        .setParameter(1, attributeRef.id)
+                        .setParameter(2, attributeRef.name)
+                        .setParameter(3, day.plusMinutes(it * 30 - 15))
+                        .setParameter(4, it.toString())
+                        .executeUpdate()
+            }
+        }
+
+        then: "the numeric queries should read the values of these datapoints"
+        assert queryIntervals() == [1d, 2d, 3d, 4d]
+        assert queryAll() == [1d, 2d, 3d, 4d]
+        assert queryLTTB() == [1d, 2d, 3d, 4d]
+
+        when: "the numeric values of these datapoints are backfilled"
+        persistenceService.doTransaction { em ->
+            em.createNativeQuery("insert into DATAPOINT_NUMERIC_VALUE_BACKFILL (TABLE_NAME, BACKFILLED_TO) values (?1, ?2)")
+                    .setParameter(1, assetDatapointService.getDatapointTableName())
+                    .setParameter(2, LocalDateTime.of(1970, 1, 1, 0, 0))
+                    .executeUpdate()
+        }
+        assetDatapointService.backfillNumericValues()
+
+        then: "the values should have been moved to the numeric value column"
+        assert persistenceService.doReturningTransaction { em ->
+            (em.createNativeQuery("select count(*) from ASSET_DATAPOINT where ENTITY_ID = ?1 and ATTRIBUTE_NAME = ?2 and TIMESTAMP >= ?3 and TIMESTAMP < ?4 and NUMERIC_VALUE is not null and VALUE is null")
+                    .setParameter(1, attributeRef.id)
+                    .setParameter(2, attributeRef.name)
+                    .setParameter(3, day)
+                    .setParameter(4, day.plusHours(2))
+                    .getSingleResult() as Number).longValue()
+        } == 4
+
+        and: "the numeric queries should return the same values"
+        assert queryIntervals() == [1d, 2d, 3d, 4d]
+        assert queryAll() == [1d, 2d, 3d, 4d]
+        assert queryLTTB() == [1d, 2d, 3d, 4d]
+    }
+
+    def "Buffered datapoints of a failed batch are written one at a time"() {
+
+        given: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def assetDatapointService = container.getService(AssetDatapointService.class)
+        def attributeRef = new AttributeRef(managerTestSetup.thingId, "light1PowerConsumption")
+
+        and: "a write buffer that is flushed manually"
+        def writeBuffer = new DatapointWriteBuffer<AssetDatapoint>(assetDatapointService, 10, 10, 60000)
+
+        when: "valid datapoints and a datapoint with an invalid asset ID are buffered"
+        def timestamp = getClockTimeOf(container) - TimeUnit.HOURS.toMillis(1)
+        (1..3).each {
+            writeBuffer.add(new AssetDatapoint(attributeRef.id, attributeRef.name, it as Double, timestamp + it * 1000))
+        }
+        writeBuffer.add(new AssetDatapoint("x" * 40, attributeRef.name, 4d, timestamp + 4000))
+
+        and: "the buffer is flushed"
+        writeBuffer.flushAll()
+
+        then: "the valid datapoints should have been written"
+        def datapoints = assetDatapointService.getDatapoints(attributeRef)
+        assert (1..3).every { i -> datapoints.any { it.timestamp == timestamp + i * 1000 && it.value == i as Double } }
+
+        and: "only the invalid datapoint should have been discarded"
+        assert writeBuffer.size() == 0
+        assert writeBuffer.getDroppedCount() == 1
+    }
 }
@@ -35,6 +35,7 @@ import static org.openremote.model.query.AssetQuery.Access.PRIVATE
 import static org.openremote.model.query.AssetQuery.Access.PROTECTED
 import static org.openremote.model.query.AssetQuery.OrderBy.Property.CREATED_ON
 import static org.openremote.model.query.AssetQuery.OrderBy.Property.NAME
+import static org.openremote.model.query.AssetQuery.OrderBy.Property.PARENT_ID
 import static org.openremote.model.value.MetaItemType.*
 import static org.openremote.model.value.ValueType.CALENDAR_EVENT
 import static org.openremote.model.value.ValueType.TIMESTAMP_ISO8601
@@ -709,6 +710,119 @@ class AssetQueryTest extends Specification implements ManagerContainerTrait {
         assert asset == null
     }
 
+    def "Query assets with the same shape and different values"() {
+
+        when: "two queries with the same shape but different ids and names are built"
+        def query1 = new AssetQuery().ids(managerTestSetup.apartment1Id).names("Apartment 1")
+        def query2 = new AssetQuery().ids(managerTestSetup.apartment2Id).names("Apartment 2")
+
+        then: "they should share a prepared query"
+        assert AssetStorageService.getQueryShapeKey(query1) == AssetStorageService.getQueryShapeKey(query2)
+
+        when: "the queries are executed one after the other"
+        def asset1 = assetStorageService.find(query1)
+        def asset2 = assetStorageService.find(query2)
+
+        then: "each query should return its own asset"
+        assert asset1 != null
+        assert asset1.id == managerTestSetup.apartment1Id
+        assert asset2 != null
+        assert asset2.id == managerTestSetup.apartment2Id
+
+        when: "a query with the same shape but mismatching values is executed"
+        def asset = assetStorageService.find(new AssetQuery().ids(managerTestSetup.apartment1Id).names("Apartment 2"))
+
+        then: "no assets should match"
+        assert asset == null
+
+        when: "queries with the same attribute predicate shape but different values are executed"
+        def assets1 = assetStorageService.findAll(new AssetQuery().attributes(
+                new AttributePredicate(new StringPredicate("co2Level"), new NumberPredicate(340, Operator.GREATER_THAN))
+        ))
+        def assets2 = assetStorageService.findAll(new AssetQuery().attributes(
+                new AttributePredicate(new StringPredicate("co2Level"), new NumberPredicate(100000, Operator.GREATER_THAN))
+        ))
+
+        then: "each query should use its own values"
+        assert !assets1.isEmpty()
+        assert assets2.isEmpty()
+
+        when: "queries for an empty and a non-empty realm name are built"
+        def emptyRealmQuery = new AssetQuery().select(new Select().excludeAttributes()).realm(new RealmPredicate(""))
+        def realmQuery = new AssetQuery().select(new Select().excludeAttributes()).realm(new RealmPredicate(keycloakTestSetup.realmBuilding.name))
+
+        then: "they should not share a prepared query as only the non-empty realm name adds a realm predicate"
+        assert AssetStorageService.getQueryShapeKey(emptyRealmQuery) != AssetStorageService.getQueryShapeKey(realmQuery)
+
+        when: "the query for the empty realm name is executed before the query for the non-empty realm name"
+        def emptyRealmAssets = assetStorageService.findAll(emptyRealmQuery)
+        def realmAssets = assetStorageService.findAll(realmQuery)
+
+        then: "the realm query should only return assets of the realm"
+        assert emptyRealmAssets.any { it.realm != keycloakTestSetup.realmBuilding.name }
+        assert !realmAssets.isEmpty()
+        assert realmAssets.every { it.realm == keycloakTestSetup.realmBuilding.name }
+    }
+
+    def "Keyset paging of assets"() {
+
+        given: "a query for all assets of a realm"
+        def realmQuery = {
+            new AssetQuery()
+                    .select(new Select().excludeAttributes())
+                    .realm(new RealmPredicate(keycloakTestSetup.realmBuilding.name))
+        }
+        def allAssetIds = assetStorageService.findAll(realmQuery()).collect { it.id }
+
+        expect: "the realm to have more assets than fit in a page"
+        assert allAssetIds.size() > 3
+
+        when: "the assets are read in pages using the last asset of each page as the after asset"
+        def pagedAssets = [:]
+        [PARENT_ID, NAME, CREATED_ON].each { property ->
+            [false, true].each { descending ->
+                def assets = []
+                def page
+                def query = realmQuery().orderBy(new OrderBy(property, descending)).limit(3)
+                while (true) {
+                    page = assetStorageService.findAll(query)
+                    assets.addAll(page)
+                    if (page.size() < 3) {
+                        break
+                    }
+                    query.after(page.last().id)
+                }
+                pagedAssets[property.toString() + (descending ? " desc" : " asc")] = assets
+            }
+        }
+
+        then: "every order should return each asset exactly once"
+        pagedAssets.each { order, assets ->
+            assert assets.size() == allAssetIds.size() : order
+            assert assets.collect { it.id } as Set == allAssetIds as Set : order
+        }
+
+        and: "the pages should be in the requested order"
+        assert pagedAssets["NAME asc"].collect { it.name } == assetStorageService.findAll(realmQuery().orderBy(new OrderBy(NAME))).collect { it.name }
+        assert pagedAssets["NAME desc"].collect { it.name } == assetStorageService.findAll(realmQuery().orderBy(new OrderBy(NAME, true))).collect { it.name }
+        assert pagedAssets["PARENT_ID asc"].findIndexOf { it.parentId == null } > pagedAssets["PARENT_ID asc"].findLastIndexOf { it.parentId != null }
+        assert pagedAssets["PARENT_ID desc"].findLastIndexOf { it.parentId == null } < pagedAssets["PARENT_ID desc"].findIndexOf { it.parentId != null }
+
+        when: "assets are streamed after an asset"
+        def afterQuery = realmQuery().orderBy(new OrderBy(NAME)).after(pagedAssets["NAME asc"][1].id)
+        def streamedAssetIds = []
+        assetStorageService.streamAll(afterQuery, { assets -> assets.forEach { streamedAssetIds.add(it.id) } })
+
+        then: "the assets after that asset should be returned"
+        assert streamedAssetIds == pagedAssets["NAME asc"].drop(2).collect { it.id }
+
+        when: "a page is requested after an asset that doesn't exist"
+        assetStorageService.findAll(realmQuery().orderBy(new OrderBy(NAME)).limit(3).after("doesNotExist1234567890"))
+
+        then: "the query should fail rather than return an empty page"
+        thrown(IllegalArgumentException)
+    }
+
     def "Location queries"() {
 
         given: "polling conditions"
@@ -0,0 +1,185 @@
+package org.openremote.test.assets
+
+import jakarta.persistence.EntityManager
+import org.openremote.container.util.UniqueIdentifierGenerator
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.event.AttributeEventInterceptor
+import org.openremote.model.Constants
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.openremote.manager.asset.AssetProcessingService.OR_ATTRIBUTE_EVENT_THREADS
+import static org.openremote.manager.asset.AssetProcessingService.OR_ATTRIBUTE_EVENT_WORK_STEALING
+import static org.openremote.manager.asset.AssetProcessingService.OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD
+import static org.openremote.model.value.ValueType.NUMBER
+
+class AttributeEventRoutingTest extends Specification implements ManagerContainerTrait {
+
+    def "Events for an asset are always routed to the same processor when work stealing is disabled"() {
+
+        given: "an asset processing service with 8 processors and busy processor queues"
+        def queueSizeChecks = new AtomicInteger()
+        def service = new AssetProcessingService() {
+            @Override
+            protected int getEventProcessingQueueSize(int routeNumber) {
+                queueSizeChecks.incrementAndGet()
+                return routeNumber == 1 ? 0 : 1000
+            }
+        }
+        service.eventProcessingThreadCount = 8
+        service.eventProcessingWorkStealing = false
+        service.eventProcessingWorkStealingThreshold = 10
+
+        and: "some asset IDs"
+        def assetIds = (1..1000).collect { UniqueIdentifierGenerator.generateId() }
+
+        when: "the processor of each asset is requested"
+        def routeNumbers = assetIds.collectEntries { [(it): service.getEventProcessingRoute(it)] }
+
+        then: "the processor should be the hashed processor of the asset"
+        assetIds.every { routeNumbers[it] == service.getEventProcessingRouteNumber(it) }
+
+        and: "the assets should be spread over all processors"
+        assert routeNumbers.values().toSet() == (1..8).toSet()
+        assert routeNumbers.values().countBy { it }.values().every { it > 60 }
+
+        when: "the processor of each asset is requested again"
+        def repeatedRouteNumbers = assetIds.collectEntries { [(it): service.getEventProcessingRoute(it)] }
+
+        then: "the same processors should be returned"
+        assert repeatedRouteNumbers == routeNumbers
+
+        and: "no events should have been stolen by the least loaded processor"
+        assert queueSizeChecks.get() == 0
+        assert service.inFlightAssets.isEmpty()
+    }
+
+    def "Work stealing only reroutes assets with no events in flight when the hashed processor is busy"() {
+
+        given: "an asset processing service with 4 processors and work stealing enabled"
+        def queueSizes = new ConcurrentHashMap<Integer, Integer>()
+        def service = new AssetProcessingService() {
+            @Override
+            protected int getEventProcessingQueueSize(int routeNumber) {
+                return queueSizes.getOrDefault(routeNumber, 0)
+            }
+        }
+        service.eventProcessingThreadCount = 4
+        service.eventProcessingWorkStealing = true
+        service.eventProcessingWorkStealingThreshold = 10
+
+        and: "an asset and its hashed processor"
+        def assetId = UniqueIdentifierGenerator.generateId()
+        def hashedRouteNumber = service.getEventProcessingRouteNumber(assetId)
+        def otherRouteNumbers = (1..4).findAll { it != hashedRouteNumber }
+
+        when: "the hashed processor queue is below the threshold"
+        (1..4).each { queueSizes.put(it, it == hashedRouteNumber ? 5 : 0) }
+        def routeNumber = service.getEventProcessingRoute(assetId)
+
+        then: "the hashed processor should be used"
+        assert routeNumber == hashedRouteNumber
+
+        when: "the event has been processed"
+        service.releaseEventProcessingRoute(assetId)
+
+        then: "the asset should no longer be in flight"
+        assert service.inFlightAssets.isEmpty()
+
+        when: "the hashed processor is busy and another processor is idle"
+        (1..4).each { queueSizes.put(it, 50) }
+        queueSizes.put(otherRouteNumbers[0], 0)
+        def firstRouteNumber = service.getEventProcessingRoute(assetId)
+
+        then: "the event should be stolen by the idle processor"
+        assert firstRouteNumber == otherRouteNumbers[0]
+
+        when: "a different processor becomes the least loaded whilst the first event is in flight"
+        queueSizes.put(otherRouteNumbers[0], 100)
+        queueSizes.put(otherRouteNumbers[1], 0)
+        def secondRouteNumber = service.getEventProcessingRoute(assetId)
+
+        then: "the next event should stay on the same processor so ordering is kept"
+        assert secondRouteNumber == firstRouteNumber
+
+        when: "only one of the events has been processed"
+        service.releaseEventProcessingRoute(assetId)
+
+        then: "the next event should still stay on the same processor"
+        assert service.getEventProcessingRoute(assetId) == firstRouteNumber
+
+        when: "all events of the asset have been processed"
+        service.releaseEventProcessingRoute(assetId)
+        service.releaseEventProcessingRoute(assetId)
+
+        then: "the next event should be routed to the least loaded processor"
+        assert service.inFlightAssets.isEmpty()
+        assert service.getEventProcessingRoute(assetId) == otherRouteNumbers[1]
+    }
+
+    def "Events for the same asset are processed in order when work stealing is enabled"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 20, delay: 0.2)
+
+        when: "the container is started with work stealing enabled for every event"
+        def config = defaultConfig() << [
+                (OR_ATTRIBUTE_EVENT_THREADS): "4",
+                (OR_ATTRIBUTE_EVENT_WORK_STEALING): "true",
+                (OR_ATTRIBUTE_EVENT_WORK_STEALING_THRESHOLD): "0"
+        ]
+        def container = startContainer(config, defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+
+        and: "an interceptor records the order that events are processed in"
+        def processedValues = new ConcurrentHashMap<String, List<Double>>()
+        assetProcessingService.addEventInterceptor(new AttributeEventInterceptor() {
+            @Override
+            boolean isEntityManagerRequired() {
+                return false
+            }
+
+            @Override
+            boolean intercept(EntityManager em, AttributeEvent event) {
+                if (event.name == "sequence") {
+                    processedValues.computeIfAbsent(event.id, { new CopyOnWriteArrayList<Double>() }).add(event.value.orElse(null) as Double)
+                }
+                return false
+            }
+        })
+
+        and: "several assets are created"
+        def assets = (1..8).collect {
+            assetStorageService.merge(new ThingAsset("Routing asset " + it)
+                    .setRealm(Constants.MASTER_REALM)
+                    .addOrReplaceAttributes(new Attribute<>("sequence", NUMBER, 0d)))
+        }
+
+        and: "interleaved events are sent for each asset"
+        (1..100).each { sequence ->
+            assets.each { asset -> assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "sequence", sequence as Double)) }
+        }
+
+        then: "the events of each asset should have been processed in the order they were sent"
+        conditions.eventually {
+            assets.each { asset ->
+                assert processedValues.get(asset.id) == (1..100).collect { it as Double }
+            }
+        }
+
+        and: "no assets should remain in flight"
+        conditions.eventually {
+            assert assetProcessingService.inFlightAssets.isEmpty()
+        }
+    }
+}
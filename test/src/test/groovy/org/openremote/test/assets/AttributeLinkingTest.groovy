@@ -2,6 +2,8 @@ package org.openremote.test.assets
 
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.asset.AttributeLinkingService
+import org.openremote.manager.asset.AttributeStateCache
 import org.openremote.manager.setup.SetupService
 import org.openremote.model.Constants
 import org.openremote.model.asset.impl.BuildingAsset
@@ -227,4 +229,40 @@ class AttributeLinkingTest extends Specification implements ManagerContainerTrai
         def apartment1 = assetStorageService.find(managerTestSetup.apartment1Id, true) as BuildingAsset
         assert apartment1.getStreet().orElse(null) == null
     }
+
+    def "Check special converters use the attribute state cache when the asset is cached"() {
+
+        given: "a cached asset whose latest values have not been flushed to the DB"
+        def assetStorageService = Mock(AssetStorageService)
+        def attributeStateCache = new AttributeStateCache(10)
+        def asset = new ThingAsset("Asset 2")
+            .setRealm(Constants.MASTER_REALM)
+            .addOrReplaceAttributes(
+                new Attribute<>("lightOnOff", BOOLEAN, false),
+                new Attribute<>("counter", NUMBER, 0d)
+            )
+        asset.setId("cachedAsset0123456789a")
+        attributeStateCache.getOrLoad(asset.id, { asset })
+        attributeStateCache.updateValue(new AttributeEvent(asset.id, "lightOnOff", true, 1000L))
+        attributeStateCache.updateValue(new AttributeEvent(asset.id, "counter", 5d, 1000L))
+        def sourceAttribute = new AttributeEvent("sourceAsset0123456789a", "button", "PRESSED").setRealm(Constants.MASTER_REALM)
+
+        when: "the toggle and increment converters are applied"
+        def toggled = AttributeLinkingService.doSpecialConversion(assetStorageService, attributeStateCache, sourceAttribute, AttributeLink.ConverterType.TOGGLE, new AttributeRef(asset.id, "lightOnOff"))
+        def incremented = AttributeLinkingService.doSpecialConversion(assetStorageService, attributeStateCache, sourceAttribute, AttributeLink.ConverterType.INCREMENT, new AttributeRef(asset.id, "counter"))
+        def decremented = AttributeLinkingService.doSpecialConversion(assetStorageService, attributeStateCache, sourceAttribute, AttributeLink.ConverterType.DECREMENT, new AttributeRef(asset.id, "counter"))
+
+        then: "the converted values should be based on the cached values and the DB should not be queried"
+        0 * assetStorageService.findProjections(_)
+        assert !toggled.key && toggled.value == false
+        assert !incremented.key && incremented.value == 6d
+        assert !decremented.key && decremented.value == 4d
+
+        when: "the converter is applied to an attribute that doesn't exist on the cached asset"
+        AttributeLinkingService.doSpecialConversion(assetStorageService, attributeStateCache, sourceAttribute, AttributeLink.ConverterType.INCREMENT, new AttributeRef(asset.id, "missing"))
+
+        then: "the conversion should fail without querying the DB"
+        0 * assetStorageService.findProjections(_)
+        thrown(RuntimeException)
+    }
 }
@@ -0,0 +1,120 @@
+package org.openremote.test.assets
+
+import org.openremote.container.persistence.PersistenceService
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.asset.AttributeValueWriter
+import org.openremote.manager.event.ClientEventService
+import org.openremote.model.Constants
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.attribute.AttributeRef
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import static org.openremote.model.value.ValueType.NUMBER
+import static org.openremote.model.value.ValueType.TEXT
+
+class AttributeValueWriterTest extends Specification implements ManagerContainerTrait {
+
+    def "Check batched attribute value writes and failures"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        when: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def persistenceService = container.getService(PersistenceService.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def clientEventService = container.getService(ClientEventService.class)
+
+        then: "the system should settle down"
+        conditions.eventually {
+            assert noEventProcessedIn(assetProcessingService, 300)
+        }
+
+        when: "an asset is created"
+        def asset = new ThingAsset("Writer asset")
+            .setRealm(Constants.MASTER_REALM)
+            .addOrReplaceAttributes(
+                new Attribute<>("number", NUMBER, 0d),
+                new Attribute<>("text", TEXT, "initial")
+            )
+        asset = assetStorageService.merge(asset)
+
+        and: "a writer is created"
+        def results = [:]
+        def writer = new AttributeValueWriter(persistenceService, assetStorageService, clientEventService, 3, 60000, { event, stored -> results.put(event.ref, stored) })
+
+        then: "the writer should be empty"
+        assert writer.isEmpty()
+        assert !writer.isFlushRequired()
+        assert writer.flush().isEmpty()
+
+        when: "events for existing attributes are added"
+        writer.add(new AttributeEvent(asset.id, "number", 1d))
+        writer.add(new AttributeEvent(asset.id, "number", 2d))
+
+        then: "a flush should not be required until the batch is full"
+        assert !writer.isEmpty()
+        assert !writer.isFlushRequired()
+
+        when: "another event is added"
+        writer.add(new AttributeEvent(asset.id, "text", "updated"))
+
+        then: "a flush should be required"
+        assert writer.isFlushRequired()
+
+        when: "the writer is flushed"
+        def failedEvents = writer.flush()
+
+        then: "all events should have been stored and the last value for each attribute should be in the DB"
+        assert failedEvents.isEmpty()
+        assert writer.isEmpty()
+        assert results.size() == 2
+        assert results.values().every { it }
+        def storedAsset = assetStorageService.find(asset.id, true)
+        assert storedAsset.getAttribute("number").flatMap { it.value }.orElse(null) == 2d
+        assert storedAsset.getAttribute("text").flatMap { it.value }.orElse(null) == "updated"
+
+        when: "events for a missing attribute, a missing asset and an existing attribute are flushed together"
+        results.clear()
+        writer.add(new AttributeEvent(asset.id, "missing", 3d))
+        writer.add(new AttributeEvent("missingAssetId0123456", "number", 4d))
+        writer.add(new AttributeEvent(asset.id, "number", 5d))
+        failedEvents = writer.flush()
+
+        then: "only the events for the missing asset and attribute should fail"
+        assert failedEvents.size() == 2
+        assert failedEvents.collect { it.ref } as Set == [new AttributeRef(asset.id, "missing"), new AttributeRef("missingAssetId0123456", "number")] as Set
+        assert !results[new AttributeRef(asset.id, "missing")]
+        assert !results[new AttributeRef("missingAssetId0123456", "number")]
+        assert results[new AttributeRef(asset.id, "number")]
+
+        and: "the existing attribute should be updated and the missing attribute should not have been created"
+        def updatedAsset = assetStorageService.find(asset.id, true)
+        assert updatedAsset.getAttribute("number").flatMap { it.value }.orElse(null) == 5d
+        assert !updatedAsset.getAttribute("missing").isPresent()
+    
+        when: "null values are written over the non-null values"
+        results.clear()
+        writer.add(new AttributeEvent(asset.id, "number", null))
+        writer.add(new AttributeEvent(asset.id, "text", null))
+        failedEvents = writer.flush()
+
+        then: "the events should have been stored"
+        assert failedEvents.isEmpty()
+        assert results.size() == 2
+        assert results.values().every { it }
+
+        and: "the stored values should have been cleared"
+        def clearedAsset = assetStorageService.find(asset.id, true)
+        assert clearedAsset.getAttribute("number").isPresent()
+        assert !clearedAsset.getAttribute("number").flatMap { it.value }.isPresent()
+        assert clearedAsset.getAttribute("text").isPresent()
+        assert !clearedAsset.getAttribute("text").flatMap { it.value }.isPresent()
+    }
+}
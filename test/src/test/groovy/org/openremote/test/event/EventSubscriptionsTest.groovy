@@ -0,0 +1,106 @@
+package org.openremote.test.event
+
+import org.openremote.container.timer.TimerService
+import org.openremote.manager.event.EventSubscriptions
+import org.openremote.model.asset.AssetFilter
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.event.Event
+import org.openremote.model.event.shared.CancelEventSubscription
+import org.openremote.model.event.shared.EventSubscription
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class EventSubscriptionsTest extends Specification {
+
+    def "Concurrent create and cancel of subscriptions for the same session"() {
+
+        given: "event subscriptions and a session"
+        def eventSubscriptions = new EventSubscriptions(new TimerService())
+        def sessionKey = "session1"
+        def threadCount = 8
+        def iterations = 2000
+        def executor = Executors.newFixedThreadPool(threadCount)
+        def start = new CountDownLatch(1)
+        def lostSubscriptions = Collections.synchronizedList([])
+
+        when: "subscriptions are concurrently created and cancelled for the session"
+        def futures = (0..<threadCount).collect { thread ->
+            executor.submit({
+                start.await()
+                for (int i = 0; i < iterations; i++) {
+                    def subscriptionId = "sub-" + thread + "-" + i
+                    eventSubscriptions.createOrUpdate(sessionKey, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset" + thread), subscriptionId))
+
+                    // The subscription must be reachable via the session until cancelled
+                    def sessionSubscriptions = eventSubscriptions.sessionSubscriptionIdMap.get(sessionKey)
+                    if (sessionSubscriptions == null || !sessionSubscriptions.any { it.subscriptionId == subscriptionId }) {
+                        lostSubscriptions.add(subscriptionId)
+                    }
+
+                    eventSubscriptions.cancel(sessionKey, new CancelEventSubscription(AttributeEvent.class, subscriptionId))
+                }
+            } as Runnable)
+        }
+        start.countDown()
+        futures.each { it.get(60, TimeUnit.SECONDS) }
+        executor.shutdown()
+
+        then: "no subscription should have been lost"
+        assert lostSubscriptions.isEmpty()
+
+        and: "all subscriptions should have been cancelled and the session removed"
+        assert !eventSubscriptions.sessionSubscriptionIdMap.containsKey(sessionKey)
+        def index = eventSubscriptions.eventTypeIndexMap.get(Event.getEventType(AttributeEvent.class))
+        assert index.unindexed.isEmpty()
+        assert index.indexed.isEmpty()
+    }
+
+    def "Subscription index only returns subscriptions whose filter could match an event"() {
+
+        given: "event subscriptions for a session with different filters"
+        def eventSubscriptions = new EventSubscriptions(new TimerService())
+        def sessionKey = "session1"
+        eventSubscriptions.createOrUpdate(sessionKey, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1", "asset2"), "assetIds"))
+        eventSubscriptions.createOrUpdate(sessionKey, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setParentIds("parent1"), "parentIds"))
+        eventSubscriptions.createOrUpdate(sessionKey, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAttributeNames("temperature"), "attributeNames"))
+        eventSubscriptions.createOrUpdate(sessionKey, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setRealm("realm1"), "realm"))
+        eventSubscriptions.createOrUpdate(sessionKey, new EventSubscription<>(AttributeEvent.class, null, "unfiltered"))
+        def index = eventSubscriptions.eventTypeIndexMap.get(Event.getEventType(AttributeEvent.class))
+
+        expect: "the subscriptions to be indexed by their most selective filter criteria"
+        assert index.unindexed*.subscriptionId == ["unfiltered"]
+        assert index.indexed.keySet() == ["id:asset1", "id:asset2", "parent:parent1", "attribute:temperature", "realm:realm1"] as Set
+
+        when: "the candidates for an event of a matching asset are requested"
+        def candidates = index.getCandidates(new AttributeEvent("asset2", "humidity", 50).setParentId("parent2").setRealm("realm2"))
+
+        then: "only the asset ID and unfiltered subscriptions should be candidates"
+        assert candidates*.subscriptionId as Set == ["assetIds", "unfiltered"] as Set
+
+        when: "the candidates for an event matching several criteria are requested"
+        candidates = index.getCandidates(new AttributeEvent("asset3", "temperature", 20).setParentId("parent1").setRealm("realm1"))
+
+        then: "each matching subscription should be a candidate once"
+        assert candidates.size() == 4
+        assert candidates*.subscriptionId as Set == ["parentIds", "attributeNames", "realm", "unfiltered"] as Set
+
+        when: "a subscription is updated with a different filter"
+        eventSubscriptions.createOrUpdate(sessionKey, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset3"), "assetIds"))
+        candidates = index.getCandidates(new AttributeEvent("asset2", "humidity", 50))
+
+        then: "it should only be indexed by the new filter"
+        assert !index.indexed.containsKey("id:asset1")
+        assert !index.indexed.containsKey("id:asset2")
+        assert candidates*.subscriptionId == ["unfiltered"]
+
+        when: "all subscriptions of the session are cancelled"
+        eventSubscriptions.cancelAll(sessionKey)
+
+        then: "the index should be empty"
+        assert index.unindexed.isEmpty()
+        assert index.indexed.isEmpty()
+    }
+}
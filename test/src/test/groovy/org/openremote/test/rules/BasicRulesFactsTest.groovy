@@ -7,6 +7,8 @@ import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.rules.RulesFacts
 import org.openremote.manager.rules.RulesService
 import org.openremote.manager.rules.facade.AssetsFacade
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.query.AssetQuery
 import spock.lang.Specification
 
 import java.util.concurrent.TimeUnit
@@ -390,4 +392,32 @@ class BasicRulesFactsTest extends Specification {
         assert !rulesFacts.hasTemporaryFacts()
         assert rulesFacts.match(AnonFact).count() == 0
     }
+
+    def "Match asset states after an asset is moved"() {
+
+        when: "an asset state is added"
+        rulesFacts.putAssetState(new AttributeEvent("asset1", "temperature", 20d).setParentId("parent1"))
+
+        then: "the asset state should be matched by its parent"
+        assert rulesFacts.assetStates.size() == 1
+        assert rulesFacts.matchAssetState(new AssetQuery().parents("parent1")).count() == 1
+        assert rulesFacts.matchAssetState(new AssetQuery().parents("parent2")).count() == 0
+
+        when: "the asset is moved to another parent"
+        rulesFacts.putAssetState(new AttributeEvent("asset1", "temperature", 21d).setParentId("parent2"))
+
+        then: "the asset state should only be matched by its new parent"
+        assert rulesFacts.assetStates.size() == 1
+        assert rulesFacts.matchAssetState(new AssetQuery().parents("parent1")).count() == 0
+        assert rulesFacts.matchAssetState(new AssetQuery().parents("parent2")).count() == 1
+        assert rulesFacts.matchAssetState(new AssetQuery().ids("asset1")).findFirst().get().value.orElse(null) == 21d
+
+        when: "the asset state is removed"
+        rulesFacts.removeAssetState(new AttributeEvent("asset1", "temperature", null))
+
+        then: "the asset state should no longer be matched"
+        assert rulesFacts.assetStates.isEmpty()
+        assert rulesFacts.matchAssetState(new AssetQuery().parents("parent2")).count() == 0
+        assert rulesFacts.matchAssetState(new AssetQuery().ids("asset1")).count() == 0
+    }
 }
@@ -386,7 +386,7 @@ export class PageExport extends Page<AppStateKeyed> {
             const url = window.URL.createObjectURL(new Blob([response.data]));
             const link = document.createElement('a');
             link.href = url;
-            link.setAttribute("download", "dataexport.zip");
+            link.setAttribute("download", "dataexport.csv");
             document.body.appendChild(link);
             link.click();
         });